@@ -0,0 +1,125 @@
+package com.test.demo.auth;
+
+import com.test.demo.model.User;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * 密码哈希(BCrypt),计算全部提交到专用的有界线程池
+ * 一次校验在 cost=10 时约几十毫秒 CPU,放在 Tomcat 线程上算,登录高峰会占满工作线程拖慢所有接口;
+ * 线程池满时直接拒绝(RejectedExecutionException),由调用方返回 503
+ */
+public class PasswordHasher {
+    private final BCryptPasswordEncoder encoder;
+    private final int strength;
+    private final Executor executor;
+    private final int parallelism;
+
+    /**
+     * 用户不存在时也对它做一次校验,让"用户不存在"和"密码错误"耗时一致,不能据此枚举用户名
+     */
+    private final String dummyHash;
+
+    public PasswordHasher(int strength, Executor executor, int parallelism) {
+        this.encoder = new BCryptPasswordEncoder(strength);
+        this.strength = strength;
+        this.executor = executor;
+        this.parallelism = Math.max(1, parallelism);
+        this.dummyHash = encoder.encode("dummy-password");
+    }
+
+    /**
+     * 校验密码,stored 为库里的值(BCrypt 哈希,或升级前的明文)
+     * 校验通过且需要升级(明文或 cost 低于当前配置)时顺便算好新哈希,调用方写回即可,不用再排一次队
+     */
+    public CompletableFuture<Verification> verify(String raw, String stored) {
+        return CompletableFuture.supplyAsync(() -> {
+            if (raw == null || stored == null || stored.isEmpty()) {
+                encoder.matches(raw == null ? "" : raw, dummyHash);
+                return Verification.FAILED;
+            }
+            boolean matched = isHashed(stored) ? encoder.matches(raw, stored) : constantTimeEquals(raw, stored);
+            if (!matched) {
+                return Verification.FAILED;
+            }
+            return new Verification(true, needsUpgrade(stored) ? encoder.encode(raw) : null);
+        }, executor);
+    }
+
+    public CompletableFuture<String> encode(String raw) {
+        return CompletableFuture.supplyAsync(() -> encoder.encode(raw), executor);
+    }
+
+    /**
+     * 写库前把用户的明文密码换成哈希(为空或已是哈希的跳过),阻塞到全部算完
+     * 批量导入时按线程池大小分批提交,不会一次塞满队列被拒绝
+     */
+    public void hashPasswords(List<User> users) {
+        List<CompletableFuture<Void>> window = new ArrayList<>(parallelism);
+        for (User user : users) {
+            String password = user.getLoginPassword();
+            if (password == null || isHashed(password)) {
+                continue;
+            }
+            window.add(encode(password).thenAccept(user::setLoginPassword));
+            if (window.size() == parallelism) {
+                joinAll(window);
+                window.clear();
+            }
+        }
+        joinAll(window);
+    }
+
+    public boolean needsUpgrade(String stored) {
+        return !isHashed(stored) || costOf(stored) < strength;
+    }
+
+    /**
+     * BCrypt 哈希格式 $2a$10$ + 53 个字符
+     */
+    public static boolean isHashed(String stored) {
+        return stored != null && stored.length() == 60 && stored.startsWith("$2")
+                && stored.charAt(3) == '$' && stored.charAt(6) == '$';
+    }
+
+    private static int costOf(String hash) {
+        return Integer.parseInt(hash.substring(4, 6));
+    }
+
+    private static boolean constantTimeEquals(String raw, String stored) {
+        return MessageDigest.isEqual(raw.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void joinAll(List<CompletableFuture<Void>> futures) {
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+    }
+
+    public static final class Verification {
+        static final Verification FAILED = new Verification(false, null);
+
+        private final boolean matched;
+        private final String upgradedHash;
+
+        Verification(boolean matched, String upgradedHash) {
+            this.matched = matched;
+            this.upgradedHash = upgradedHash;
+        }
+
+        public boolean isMatched() {
+            return matched;
+        }
+
+        /**
+         * 需要写回库里的新哈希,不需要升级时为 null
+         */
+        public String getUpgradedHash() {
+            return upgradedHash;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.test.demo.auth;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.test.demo.service.RedisService;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 登录会话令牌: 随机不透明字符串,Redis 里存 token -> userId,滑动过期
+ * 每次请求校验先查进程内缓存,命中时不访问 Redis;距上次续期超过 renewIntervalSeconds 才续一次 Redis 过期时间
+ * 注销只能清掉本节点的进程内缓存,其它节点最多在 localTtlSeconds 内仍认为令牌有效
+ */
+public class SessionTokenService {
+    public static final String KEY_PREFIX = "session:";
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final RedisService redisService;
+    private final long ttlSeconds;
+    private final long renewIntervalMillis;
+    private final Cache<String, Session> localCache;
+
+    public SessionTokenService(RedisService redisService, long ttlSeconds, long renewIntervalSeconds,
+                               long localTtlSeconds, long localMaximumSize) {
+        this.redisService = redisService;
+        this.ttlSeconds = ttlSeconds;
+        this.renewIntervalMillis = TimeUnit.SECONDS.toMillis(renewIntervalSeconds);
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(localMaximumSize)
+                .expireAfterWrite(localTtlSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 为用户签发令牌
+     */
+    public String issue(long userId) {
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        String token = ENCODER.encodeToString(bytes);
+        if (!redisService.set(KEY_PREFIX + token, userId, ttlSeconds)) {
+            throw new IllegalStateException("failed to store session token");
+        }
+        localCache.put(token, new Session(userId, System.currentTimeMillis()));
+        return token;
+    }
+
+    /**
+     * 令牌对应的 userId,无效或已过期返回 null;有效时顺带续期
+     */
+    public Long resolve(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        Session session = localCache.getIfPresent(token);
+        if (session != null) {
+            if (now - session.renewedAt >= renewIntervalMillis) {
+                redisService.expire(KEY_PREFIX + token, ttlSeconds);
+                session.renewedAt = now;
+            }
+            return session.userId;
+        }
+        //升级前签发的令牌存的是字符串,getObject 会转换
+        Long userId = redisService.getObject(KEY_PREFIX + token, Long.class);
+        if (userId == null) {
+            return null;
+        }
+        redisService.expire(KEY_PREFIX + token, ttlSeconds);
+        localCache.put(token, new Session(userId, now));
+        return userId;
+    }
+
+    public void revoke(String token) {
+        if (token == null || token.isEmpty()) {
+            return;
+        }
+        localCache.invalidate(token);
+        redisService.del(KEY_PREFIX + token);
+    }
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    private static final class Session {
+        final long userId;
+        volatile long renewedAt;
+
+        Session(long userId, long renewedAt) {
+            this.userId = userId;
+            this.renewedAt = renewedAt;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.test.demo.auth;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 校验请求携带的会话令牌(Authorization: Bearer xxx 或 X-Auth-Token 头),
+ * 通过后把 userId 放到请求属性 USER_ID_ATTRIBUTE,否则返回 401
+ */
+public class TokenInterceptor extends HandlerInterceptorAdapter {
+    public static final String USER_ID_ATTRIBUTE = TokenInterceptor.class.getName() + ".userId";
+    public static final String TOKEN_HEADER = "X-Auth-Token";
+
+    private static final String BEARER = "Bearer ";
+
+    private final SessionTokenService sessionTokenService;
+
+    public TokenInterceptor(SessionTokenService sessionTokenService) {
+        this.sessionTokenService = sessionTokenService;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        Long userId = sessionTokenService.resolve(tokenOf(request));
+        if (userId == null) {
+            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+            return false;
+        }
+        request.setAttribute(USER_ID_ATTRIBUTE, userId);
+        return true;
+    }
+
+    public static String tokenOf(HttpServletRequest request) {
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization != null && authorization.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            return authorization.substring(BEARER.length()).trim();
+        }
+        return request.getHeader(TOKEN_HEADER);
+    }
+}
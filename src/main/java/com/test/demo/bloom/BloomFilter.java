@@ -0,0 +1,212 @@
+package com.test.demo.bloom;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 固定大小的 long 键布隆过滤器,位数组可以并发写入,读不加锁
+ *
+ * 位的编号与 Redis 位图一致(SETBIT/GETBIT 的 offset),toRedisBytes/or 在两种位序之间转换:
+ * 本地第 i 位在 words[i / 64] 的第 i % 64 位(低位起),Redis 第 i 位在第 i / 8 个字节的高位起第 i % 8 位
+ */
+public final class BloomFilter {
+    /**
+     * Redis 字符串最大 512MB,即 2^32 位
+     */
+    public static final long MAX_BITS = 1L << 32;
+
+    private final long bitSize;
+    private final int hashes;
+    private final AtomicLongArray words;
+
+    public BloomFilter(long bitSize, int hashes) {
+        if (bitSize <= 0 || bitSize > MAX_BITS || bitSize % Long.SIZE != 0) {
+            throw new IllegalArgumentException("bitSize must be a positive multiple of 64 up to 2^32: " + bitSize);
+        }
+        if (hashes <= 0) {
+            throw new IllegalArgumentException("hashes must be positive: " + hashes);
+        }
+        this.bitSize = bitSize;
+        this.hashes = hashes;
+        this.words = new AtomicLongArray((int) (bitSize / Long.SIZE));
+    }
+
+    /**
+     * 按预计插入数和误判率计算位数 m = -n*ln(p)/ln2^2 和哈希次数 k = m/n*ln2
+     *
+     * @param expectedInsertions
+     * @param fpp
+     * @return
+     */
+    public static BloomFilter create(long expectedInsertions, double fpp) {
+        long m = bitsFor(expectedInsertions, fpp);
+        int k = Math.max(1, (int) Math.round((double) m / Math.max(1, expectedInsertions) * Math.log(2)));
+        return new BloomFilter(m, k);
+    }
+
+    /**
+     * create 会分配的位数,按 64 位取整,不超过 MAX_BITS
+     *
+     * @param expectedInsertions
+     * @param fpp
+     * @return
+     */
+    public static long bitsFor(long expectedInsertions, double fpp) {
+        if (fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("fpp must be in (0, 1): " + fpp);
+        }
+        double bits = -Math.max(1, expectedInsertions) * Math.log(fpp) / (Math.log(2) * Math.log(2));
+        return Math.min(MAX_BITS, Math.max(Long.SIZE, ((long) Math.ceil(bits) + Long.SIZE - 1) / Long.SIZE * Long.SIZE));
+    }
+
+    /**
+     * 插入,返回是否有位从 0 变成 1(为 false 说明之前已经"可能存在")
+     *
+     * @param key
+     * @return
+     */
+    public boolean put(long key) {
+        boolean changed = false;
+        for (long position : positions(key)) {
+            changed |= setBit(position);
+        }
+        return changed;
+    }
+
+    public boolean mightContain(long key) {
+        long h1 = mix(key);
+        long h2 = mix(key ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long position = Long.remainderUnsigned(h1 + i * h2, bitSize);
+            if ((words.get((int) (position >>> 6)) & (1L << position)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * key 对应的 k 个位的编号,同步到 Redis 时用作 SETBIT 的 offset
+     *
+     * @param key
+     * @return
+     */
+    public long[] positions(long key) {
+        long h1 = mix(key);
+        long h2 = mix(key ^ 0x9E3779B97F4A7C15L) | 1;
+        long[] positions = new long[hashes];
+        for (int i = 0; i < hashes; i++) {
+            positions[i] = Long.remainderUnsigned(h1 + i * h2, bitSize);
+        }
+        return positions;
+    }
+
+    /**
+     * 导出 Redis 位图中从 byteOffset 开始的 length 个字节,分段传输时使用
+     *
+     * @param byteOffset
+     * @param length
+     * @return
+     */
+    public byte[] toRedisBytes(long byteOffset, int length) {
+        byte[] bytes = new byte[(int) Math.max(0, Math.min(length, sizeBytes() - byteOffset))];
+        for (int i = 0; i < bytes.length; i++) {
+            long index = byteOffset + i;
+            long word = words.get((int) (index / Long.BYTES));
+            bytes[i] = reverse((int) (word >>> ((index % Long.BYTES) * Byte.SIZE)));
+        }
+        return bytes;
+    }
+
+    /**
+     * 合并 Redis 位图中从 byteOffset 开始的一段,超出本过滤器的部分忽略
+     *
+     * @param redisBytes
+     * @param byteOffset
+     */
+    public void or(byte[] redisBytes, long byteOffset) {
+        int length = (int) Math.max(0, Math.min(redisBytes.length, sizeBytes() - byteOffset));
+        for (int i = 0; i < length; i++) {
+            long bits = reverse(redisBytes[i]) & 0xFFL;
+            if (bits != 0) {
+                long index = byteOffset + i;
+                int w = (int) (index / Long.BYTES);
+                long mask = bits << ((index % Long.BYTES) * Byte.SIZE);
+                long word;
+                do {
+                    word = words.get(w);
+                } while ((word | mask) != word && !words.compareAndSet(w, word, word | mask));
+            }
+        }
+    }
+
+    public long bitCount() {
+        long count = 0;
+        for (int w = 0; w < words.length(); w++) {
+            count += Long.bitCount(words.get(w));
+        }
+        return count;
+    }
+
+    /**
+     * 由置位数估算插入过的键数: n ≈ -m/k * ln(1 - X/m)
+     *
+     * @return
+     */
+    public long approximateInsertions() {
+        double fraction = (double) bitCount() / bitSize;
+        if (fraction >= 1) {
+            return Long.MAX_VALUE;
+        }
+        return Math.round(-(double) bitSize / hashes * Math.log(1 - fraction));
+    }
+
+    /**
+     * 按当前置位比例估算的误判率 (X/m)^k
+     *
+     * @return
+     */
+    public double expectedFpp() {
+        return Math.pow((double) bitCount() / bitSize, hashes);
+    }
+
+    public long bitSize() {
+        return bitSize;
+    }
+
+    public int hashes() {
+        return hashes;
+    }
+
+    public long sizeBytes() {
+        return bitSize / Byte.SIZE;
+    }
+
+    private boolean setBit(long position) {
+        int w = (int) (position >>> 6);
+        long mask = 1L << position;
+        long word;
+        do {
+            word = words.get(w);
+            if ((word & mask) != 0) {
+                return false;
+            }
+        } while (!words.compareAndSet(w, word, word | mask));
+        return true;
+    }
+
+    private static byte reverse(int b) {
+        return (byte) (Integer.reverse(b & 0xFF) >>> 24);
+    }
+
+    /**
+     * MurmurHash3 的 fmix64,连续的 user_id 也能打散到整个位数组
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
@@ -0,0 +1,161 @@
+package com.test.demo.bloom;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 可扩容的布隆过滤器: 由若干片 BloomFilter 组成,最后一片插满后追加一片,
+ * 第 i 片容量为 initialCapacity * 2^i,误判率为 fpp * 0.5^(i+1),总误判率不超过 fpp
+ *
+ * 每片的参数只由 (initialCapacity, fpp, i) 决定,其它节点拿到这两个参数就能按同样的大小从 Redis 位图还原;
+ * 总大小超过 maxBytes 后不再追加,继续写入最后一片,误判率随之上升(见 expectedFpp)
+ */
+public class ScalableBloomFilter {
+    private static final int GROWTH = 2;
+    private static final double TIGHTENING = 0.5;
+
+    private final long initialCapacity;
+    private final double fpp;
+    private final long maxBytes;
+    private final List<Slice> slices = new CopyOnWriteArrayList<>();
+
+    public ScalableBloomFilter(long initialCapacity, double fpp, long maxBytes) {
+        this(initialCapacity, fpp, maxBytes, 1);
+    }
+
+    /**
+     * 预先建好 sliceCount 片空的过滤器,用于从 Redis 位图还原,还原完调用 recount
+     *
+     * @param initialCapacity
+     * @param fpp
+     * @param maxBytes
+     * @param sliceCount
+     */
+    public ScalableBloomFilter(long initialCapacity, double fpp, long maxBytes, int sliceCount) {
+        this.initialCapacity = Math.max(1, initialCapacity);
+        this.fpp = fpp;
+        this.maxBytes = maxBytes;
+        List<Slice> created = new ArrayList<>(sliceCount);
+        for (int i = 0; i < Math.max(1, sliceCount); i++) {
+            created.add(new Slice(newSlice(i), 0));
+        }
+        slices.addAll(created);
+    }
+
+    /**
+     * 按置位数重新估算每片已插入的键数
+     */
+    public void recount() {
+        for (Slice slice : slices) {
+            slice.count.set(slice.filter.approximateInsertions());
+        }
+    }
+
+    /**
+     * 插入,返回写入的是第几片;已经"可能存在"时不写,返回 -1
+     *
+     * @param key
+     * @return
+     */
+    public int put(long key) {
+        if (mightContain(key)) {
+            return -1;
+        }
+        int index = slices.size() - 1;
+        Slice last = slices.get(index);
+        if (last.count.get() >= capacity(index)) {
+            synchronized (slices) {
+                index = slices.size() - 1;
+                last = slices.get(index);
+                long nextBytes = BloomFilter.bitsFor(capacity(index + 1), sliceFpp(index + 1)) / Byte.SIZE;
+                if (last.count.get() >= capacity(index) && sizeBytes() + nextBytes <= maxBytes) {
+                    index++;
+                    last = new Slice(newSlice(index), 0);
+                    slices.add(last);
+                }
+            }
+        }
+        if (last.filter.put(key)) {
+            last.count.incrementAndGet();
+        }
+        return index;
+    }
+
+    public boolean mightContain(long key) {
+        for (Slice slice : slices) {
+            if (slice.filter.mightContain(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int sliceCount() {
+        return slices.size();
+    }
+
+    public BloomFilter slice(int index) {
+        return slices.get(index).filter;
+    }
+
+    public long initialCapacity() {
+        return initialCapacity;
+    }
+
+    public double fpp() {
+        return fpp;
+    }
+
+    public long sizeBytes() {
+        long bytes = 0;
+        for (Slice slice : slices) {
+            bytes += slice.filter.sizeBytes();
+        }
+        return bytes;
+    }
+
+    public long approximateInsertions() {
+        long count = 0;
+        for (Slice slice : slices) {
+            count += slice.count.get();
+        }
+        return count;
+    }
+
+    /**
+     * 按各片当前的置位比例估算的误判率,任何一片误判即误判
+     *
+     * @return
+     */
+    public double expectedFpp() {
+        double allNegative = 1;
+        for (Slice slice : slices) {
+            allNegative *= 1 - slice.filter.expectedFpp();
+        }
+        return 1 - allNegative;
+    }
+
+    private long capacity(int index) {
+        return initialCapacity * (long) Math.pow(GROWTH, index);
+    }
+
+    private double sliceFpp(int index) {
+        return fpp * (1 - TIGHTENING) * Math.pow(TIGHTENING, index);
+    }
+
+    private BloomFilter newSlice(int index) {
+        return BloomFilter.create(capacity(index), sliceFpp(index));
+    }
+
+    private static final class Slice {
+        final BloomFilter filter;
+        final AtomicLong count;
+
+        Slice(BloomFilter filter, long count) {
+            this.filter = filter;
+            this.count = new AtomicLong(count);
+        }
+    }
+}
@@ -0,0 +1,476 @@
+package com.test.demo.bloom;
+
+import com.test.demo.dao.UserMapper;
+import com.test.demo.id.SnowflakeIdGenerator;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.ibatis.cursor.Cursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 已存在 user_id 的布隆过滤器,查询/删除前先判断,一定不存在的 userId 直接返回,不读 Redis 也不查库
+ *
+ * 过滤器分代保存在 Redis 位图里(user:bloom:{代}:{片}),user:bloom:current 指向当前代:
+ * 集群里只有拿到 user:bloom:rebuild 的节点流式扫描 user 表建新一代,分段写入 Redis 后切换指针;
+ * 其它节点每 sync-seconds 检查指针,变了就分段读入本地。新增用户本地直接写入并 SETBIT 到当前代,
+ * 其它节点通过缓存失效广播(UserCacheInvalidationListener)补上。删除不从过滤器里去掉,靠定期重建清理。
+ * 还没加载好、Redis 不可用时全部放行;id 时间戳在 recent-seconds 内的也放行,覆盖广播和切换代之间的空档
+ */
+@Component
+public class UserIdFilter {
+    private static final Logger logger = LoggerFactory.getLogger(UserIdFilter.class);
+
+    /**
+     * 位图分段读写的大小,避免一条命令传几十 MB 阻塞 Redis
+     */
+    static final int CHUNK_BYTES = 1 << 20;
+    private static final int MIRROR_BATCH = 1000;
+
+    @Autowired
+    UserMapper userMapper;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+    @Autowired
+    private ValueOperations<String, Object> valueOperations;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private UserIdFilterProperties properties;
+
+    private volatile Generation current;
+
+    /**
+     * 重建或加载期间的写入同时落到正在建的过滤器
+     */
+    private final Object updateLock = new Object();
+    private ScalableBloomFilter building;
+
+    private final LongAdder rejected = new LongAdder();
+    private ScheduledExecutorService scheduler;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Gauge.builder("user.bloom.size", this, filter -> filter.stat(ScalableBloomFilter::sizeBytes))
+                .baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("user.bloom.insertions", this, filter -> filter.stat(ScalableBloomFilter::approximateInsertions))
+                .register(meterRegistry);
+        Gauge.builder("user.bloom.expected.fpp", this, filter -> filter.stat(ScalableBloomFilter::expectedFpp))
+                .register(meterRegistry);
+        FunctionCounter.builder("user.bloom.rejected", rejected, LongAdder::sum)
+                .description("userIds rejected as definitely missing").register(meterRegistry);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-bloom-filter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::sync, 0, Math.max(1, properties.getSyncSeconds()), TimeUnit.SECONDS);
+        if (properties.getRebuildMinutes() > 0) {
+            scheduler.scheduleWithFixedDelay(this::rebuild, properties.getRebuildMinutes(), properties.getRebuildMinutes(), TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 返回 false 表示该用户一定不存在
+     *
+     * @param userId
+     * @return
+     */
+    public boolean mightExist(long userId) {
+        Generation generation = current;
+        if (generation == null || generation.filter.mightContain(userId) || isRecent(userId)) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * 本节点写入用户后调用,写入本地过滤器并同步到 Redis 当前代;同步失败只记日志,由重建兜底
+     *
+     * @param userIds
+     */
+    public void addAll(Collection<Long> userIds) {
+        Generation generation = current;
+        List<long[]> changed = put(generation, userIds);
+        if (!changed.isEmpty()) {
+            try {
+                mirror(generation, changed);
+            } catch (RuntimeException e) {
+                logger.warn("mirror {} user ids to bloom filter failed: {}", changed.size(), e.getMessage());
+            }
+        }
+    }
+
+    public void add(long userId) {
+        addAll(Collections.singletonList(userId));
+    }
+
+    /**
+     * 收到其它节点的变更广播时调用,只写本地
+     *
+     * @param userIds
+     */
+    public void addLocal(Collection<Long> userIds) {
+        put(current, userIds);
+    }
+
+    /**
+     * 过滤器状态,用于评估误判率和内存占用
+     *
+     * @return
+     */
+    public Map<String, Object> stats() {
+        Generation generation = current;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", properties.isEnabled());
+        stats.put("ready", generation != null);
+        stats.put("generation", generation == null ? null : generation.id);
+        stats.put("slices", generation == null ? 0 : generation.filter.sliceCount());
+        stats.put("approximateInsertions", generation == null ? 0 : generation.filter.approximateInsertions());
+        stats.put("sizeBytes", generation == null ? 0 : generation.filter.sizeBytes());
+        stats.put("configuredFpp", properties.getFpp());
+        stats.put("expectedFpp", generation == null ? 0 : generation.filter.expectedFpp());
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+
+    /**
+     * Redis 里的当前代与本地不同时加载;还没有任何一代时重建
+     */
+    void sync() {
+        try {
+            Object pointer = valueOperations.get(pointerKey());
+            Generation generation = current;
+            if (pointer == null) {
+                rebuild();
+            } else if (generation == null || !generation.pointer().equals(pointer.toString())) {
+                load(pointer.toString());
+            }
+        } catch (RuntimeException e) {
+            logger.warn("sync user bloom filter failed, {}: {}",
+                    current == null ? "all user ids pass" : "keeping current filter", e.getMessage());
+        }
+    }
+
+    /**
+     * 全量重建新一代,集群内同一个重建周期只有一个节点执行
+     */
+    void rebuild() {
+        String marker = properties.getKeyPrefix() + ":rebuild";
+        //标记比重建周期略短,下一个周期总有节点能拿到
+        long ttlSeconds = Math.max(60, TimeUnit.MINUTES.toSeconds(properties.getRebuildMinutes()) - properties.getSyncSeconds());
+        try {
+            if (!Boolean.TRUE.equals(valueOperations.setIfAbsent(marker, System.currentTimeMillis(), ttlSeconds, TimeUnit.SECONDS))) {
+                return;
+            }
+        } catch (RuntimeException e) {
+            logger.warn("user bloom filter rebuild skipped: {}", e.getMessage());
+            return;
+        }
+        long started = System.currentTimeMillis();
+        Generation previous = current;
+        long capacity = Math.max(properties.getExpectedInsertions(),
+                previous == null ? 0 : previous.filter.approximateInsertions() * 2);
+        ScalableBloomFilter fresh = new ScalableBloomFilter(capacity, properties.getFpp(), maxBytes());
+        synchronized (updateLock) {
+            building = fresh;
+        }
+        try {
+            scan(null, fresh::put);
+            Generation generation = new Generation(Long.toString(started), capacity, properties.getFpp(), fresh);
+            upload(generation);
+            valueOperations.set(pointerKey(), generation.pointer());
+            install(generation);
+            logger.info("user bloom filter built: ~{} ids, {} slices, {} bytes, expected fpp {} in {} ms",
+                    fresh.approximateInsertions(), fresh.sliceCount(), fresh.sizeBytes(), fresh.expectedFpp(),
+                    System.currentTimeMillis() - started);
+            //扫描开始后新增、或其它节点切换代之前写进旧一代的 id 都是新的,等各节点都切换后补扫一遍
+            long floor = SnowflakeIdGenerator.minIdAt(started - TimeUnit.SECONDS.toMillis(properties.getRecentSeconds()));
+            if (scheduler != null) {
+                scheduler.schedule(() -> catchUp(generation, previous, floor),
+                        Math.max(1, properties.getSyncSeconds()) * 2, TimeUnit.SECONDS);
+            }
+        } catch (RuntimeException e) {
+            synchronized (updateLock) {
+                building = null;
+            }
+            try {
+                redisTemplate.delete(marker);
+            } catch (RuntimeException ignored) {
+                //标记过期后其它节点会重试
+            }
+            logger.warn("user bloom filter rebuild failed, {}: {}",
+                    current == null ? "all user ids pass" : "keeping current filter", e.getMessage());
+        }
+    }
+
+    private void load(String pointer) {
+        Generation parsed = Generation.parse(pointer);
+        int sliceCount = 0;
+        while (Boolean.TRUE.equals(redisTemplate.hasKey(sliceKey(parsed.id, sliceCount)))) {
+            sliceCount++;
+        }
+        if (sliceCount == 0) {
+            //位图丢了(被清理或过期),删掉指针由下一次 sync 重建
+            logger.warn("user bloom filter generation {} has no bitmap, rebuilding", parsed.id);
+            redisTemplate.delete(pointerKey());
+            return;
+        }
+        ScalableBloomFilter loaded = new ScalableBloomFilter(parsed.capacity, parsed.fpp, maxBytes(), sliceCount);
+        synchronized (updateLock) {
+            building = loaded;
+        }
+        try {
+            for (int i = 0; i < sliceCount; i++) {
+                byte[] key = rawKey(sliceKey(parsed.id, i));
+                BloomFilter slice = loaded.slice(i);
+                for (long offset = 0; offset < slice.sizeBytes(); offset += CHUNK_BYTES) {
+                    long start = offset;
+                    byte[] chunk = redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                            connection.getRange(key, start, start + CHUNK_BYTES - 1));
+                    if (chunk != null) {
+                        slice.or(chunk, start);
+                    }
+                }
+            }
+            loaded.recount();
+            Object after = valueOperations.get(pointerKey());
+            if (after == null || !pointer.equals(after.toString())) {
+                //加载期间又切换了一代,旧代可能已经删掉,下一次 sync 重新加载
+                synchronized (updateLock) {
+                    building = null;
+                }
+                return;
+            }
+            install(new Generation(parsed.id, parsed.capacity, parsed.fpp, loaded));
+            logger.info("user bloom filter generation {} loaded: ~{} ids, {} bytes", parsed.id,
+                    loaded.approximateInsertions(), loaded.sizeBytes());
+        } catch (RuntimeException e) {
+            synchronized (updateLock) {
+                building = null;
+            }
+            throw e;
+        }
+    }
+
+    private void install(Generation generation) {
+        synchronized (updateLock) {
+            current = generation;
+            building = null;
+        }
+    }
+
+    /**
+     * 补扫 floor 之后的 id 写入新一代,再删掉上一代的位图
+     */
+    private void catchUp(Generation generation, Generation previous, long floor) {
+        try {
+            if (current == generation) {
+                List<long[]> changed = new ArrayList<>();
+                scan(floor, userId -> {
+                    int slice = generation.filter.put(userId);
+                    if (slice >= 0) {
+                        changed.add(new long[]{slice, userId});
+                    }
+                });
+                for (int i = 0; i < changed.size(); i += MIRROR_BATCH) {
+                    mirror(generation, changed.subList(i, Math.min(changed.size(), i + MIRROR_BATCH)));
+                }
+            }
+            if (previous != null) {
+                List<String> keys = new ArrayList<>();
+                for (int i = 0; Boolean.TRUE.equals(redisTemplate.hasKey(sliceKey(previous.id, i))); i++) {
+                    keys.add(sliceKey(previous.id, i));
+                }
+                redisTemplate.delete(keys);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("user bloom filter catch-up failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 按 user_id 顺序流式扫描,lastUserId 为空时从头开始;游标只在事务内有效
+     */
+    private void scan(Long lastUserId, LongConsumer consumer) {
+        transactionTemplate.execute(status -> {
+            try (Cursor<Long> cursor = userMapper.streamUserIds(lastUserId)) {
+                for (Long userId : cursor) {
+                    consumer.accept(userId);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 分段写入新一代的每一片;全 0 的段跳过,最后一段总是写,保证 key 存在且长度完整
+     */
+    private void upload(Generation generation) {
+        for (int i = 0; i < generation.filter.sliceCount(); i++) {
+            String key = sliceKey(generation.id, i);
+            byte[] rawKey = rawKey(key);
+            BloomFilter slice = generation.filter.slice(i);
+            redisTemplate.delete(key);
+            for (long offset = 0; offset < slice.sizeBytes(); offset += CHUNK_BYTES) {
+                byte[] chunk = slice.toRedisBytes(offset, CHUNK_BYTES);
+                if (offset + chunk.length < slice.sizeBytes() && isZero(chunk)) {
+                    continue;
+                }
+                long start = offset;
+                redisTemplate.execute((RedisCallback<Object>) connection -> {
+                    connection.setRange(rawKey, chunk, start);
+                    return null;
+                });
+            }
+        }
+    }
+
+    /**
+     * 把 [片, userId] 对应的位 SETBIT 到 Redis,一次流水线
+     */
+    private void mirror(Generation generation, List<long[]> changed) {
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                for (long[] entry : changed) {
+                    int slice = (int) entry[0];
+                    String key = sliceKey(generation.id, slice);
+                    for (long position : generation.filter.slice(slice).positions(entry[1])) {
+                        operations.opsForValue().setBit(key, position, true);
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
+    private List<long[]> put(Generation generation, Collection<Long> userIds) {
+        List<long[]> changed = new ArrayList<>();
+        synchronized (updateLock) {
+            if (building != null) {
+                for (Long userId : userIds) {
+                    building.put(userId);
+                }
+            }
+        }
+        if (generation != null) {
+            for (Long userId : userIds) {
+                int slice = generation.filter.put(userId);
+                if (slice >= 0) {
+                    changed.add(new long[]{slice, userId});
+                }
+            }
+        }
+        return changed;
+    }
+
+    private boolean isRecent(long userId) {
+        long age = System.currentTimeMillis() - SnowflakeIdGenerator.timestampOf(userId);
+        return Math.abs(age) <= TimeUnit.SECONDS.toMillis(properties.getRecentSeconds());
+    }
+
+    private double stat(ToDoubleFunction<ScalableBloomFilter> metric) {
+        Generation generation = current;
+        return generation == null ? 0 : metric.applyAsDouble(generation.filter);
+    }
+
+    private long maxBytes() {
+        return properties.getMaxSizeMb() * 1024 * 1024;
+    }
+
+    private String pointerKey() {
+        return properties.getKeyPrefix() + ":current";
+    }
+
+    private String sliceKey(String generation, int slice) {
+        return properties.getKeyPrefix() + ":" + generation + ":" + slice;
+    }
+
+    private static byte[] rawKey(String key) {
+        return RedisSerializer.string().serialize(key);
+    }
+
+    private static boolean isZero(byte[] chunk) {
+        for (byte b : chunk) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 一代过滤器: 代号和首片参数写在指针里(代号:首片容量:误判率),其它节点按这些参数还原各片的大小
+     */
+    private static final class Generation {
+        final String id;
+        final long capacity;
+        final double fpp;
+        final ScalableBloomFilter filter;
+
+        Generation(String id, long capacity, double fpp, ScalableBloomFilter filter) {
+            this.id = id;
+            this.capacity = capacity;
+            this.fpp = fpp;
+            this.filter = filter;
+        }
+
+        String pointer() {
+            return id + ":" + capacity + ":" + fpp;
+        }
+
+        static Generation parse(String pointer) {
+            String[] parts = pointer.split(":");
+            if (parts.length != 3) {
+                throw new IllegalStateException("bad user bloom filter pointer: " + pointer);
+            }
+            return new Generation(parts[0], Long.parseLong(parts[1]), Double.parseDouble(parts[2]), null);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.test.demo.bloom;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * user_id 布隆过滤器配置,前缀 user.bloom
+ * 内存占用约为 expected-insertions * 1.44 * log2(1/fpp) / 8 字节,每个节点本地一份,Redis 里一份
+ */
+@Component
+@ConfigurationProperties(prefix = "user.bloom")
+public class UserIdFilterProperties {
+    /**
+     * 关闭后所有 userId 都放行
+     */
+    private boolean enabled = true;
+
+    /**
+     * 首片容量;重建时取它和当前用户数两倍中的较大值,超出后自动追加分片
+     */
+    private long expectedInsertions = 1000000;
+
+    /**
+     * 目标误判率(存在于过滤器但库里没有的比例),越小占用内存越多
+     */
+    private double fpp = 0.01;
+
+    /**
+     * 本地过滤器总大小上限,达到后不再追加分片,误判率会上升
+     */
+    private long maxSizeMb = 256;
+
+    /**
+     * 多久检查一次 Redis 里是否有新一代过滤器
+     */
+    private long syncSeconds = 30;
+
+    /**
+     * 全量重建间隔,用来清掉已删除用户占的位;集群内同一时间只有一个节点重建
+     */
+    private long rebuildMinutes = 360;
+
+    /**
+     * id 中的时间戳在这个范围内的视为刚创建,总是放行:其它节点新增的用户经失效广播同步过来之前不会被误拒
+     */
+    private long recentSeconds = 300;
+
+    private String keyPrefix = "user:bloom";
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getExpectedInsertions() {
+        return expectedInsertions;
+    }
+
+    public void setExpectedInsertions(long expectedInsertions) {
+        this.expectedInsertions = expectedInsertions;
+    }
+
+    public double getFpp() {
+        return fpp;
+    }
+
+    public void setFpp(double fpp) {
+        this.fpp = fpp;
+    }
+
+    public long getMaxSizeMb() {
+        return maxSizeMb;
+    }
+
+    public void setMaxSizeMb(long maxSizeMb) {
+        this.maxSizeMb = maxSizeMb;
+    }
+
+    public long getSyncSeconds() {
+        return syncSeconds;
+    }
+
+    public void setSyncSeconds(long syncSeconds) {
+        this.syncSeconds = syncSeconds;
+    }
+
+    public long getRebuildMinutes() {
+        return rebuildMinutes;
+    }
+
+    public void setRebuildMinutes(long rebuildMinutes) {
+        this.rebuildMinutes = rebuildMinutes;
+    }
+
+    public long getRecentSeconds() {
+        return recentSeconds;
+    }
+
+    public void setRecentSeconds(long recentSeconds) {
+        this.recentSeconds = recentSeconds;
+    }
+
+    public String getKeyPrefix() {
+        return keyPrefix;
+    }
+
+    public void setKeyPrefix(String keyPrefix) {
+        this.keyPrefix = keyPrefix;
+    }
+}
@@ -0,0 +1,509 @@
+package com.test.demo.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.test.demo.model.User;
+import com.test.demo.service.RedisService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+/**
+ * 用户详情的两级读穿缓存: 进程内近端缓存 -> Redis -> 数据库
+ * 未命中时同一个 userId 只有一个线程回源数据库,不存在的 userId 缓存一个短期空标记;
+ * 数据变更时通过 Redis 发布订阅通知所有节点清掉各自的近端缓存
+ * <p>
+ * 写入不做 write-behind(先写缓存、异步落库): 缓存不是持久化存储,落库前宕机会丢写,
+ * 且与 user_outbox 同事务记录变更的做法冲突;写入一律先落库,缓存只做失效,由发件箱保证最终一致
+ */
+@Component
+public class UserCache {
+    private static final Logger logger = LoggerFactory.getLogger(UserCache.class);
+
+    public static final String KEY_PREFIX = "user:info:";
+    /**
+     * 空值标记,数据库中不存在的 userId 缓存为该值
+     */
+    public static final String NULL_MARKER = "__NULL__";
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+    @Autowired
+    private ValueOperations<String, Object> valueOperations;
+    @Autowired
+    private RedisService redisService;
+
+    @Value("${user.cache.ttl-seconds:1800}")
+    private long ttlSeconds;
+
+    @Value("${user.cache.ttl-jitter-seconds:300}")
+    private long ttlJitterSeconds;
+
+    @Value("${user.cache.null-ttl-seconds:60}")
+    private long nullTtlSeconds;
+
+    @Value("${user.cache.double-delete-delay-ms:500}")
+    private long doubleDeleteDelayMs;
+
+    @Value("${user.cache.near.maximum-size:10000}")
+    private long nearMaximumSize;
+
+    /**
+     * 近端缓存只作为 Redis 前的一层短期副本,失效消息丢失时最多脏这么久
+     */
+    @Value("${user.cache.near.ttl-seconds:30}")
+    private long nearTtlSeconds;
+
+    @Value("${user.cache.invalidation-topic:user:cache:invalidate}")
+    private String invalidationTopic;
+
+    private Cache<Long, Object> nearCache;
+
+    /**
+     * 每收到一次失效就加一,回源期间发生过失效的结果不再放进近端缓存
+     */
+    private final AtomicLong invalidationGeneration = new AtomicLong();
+
+    private final SingleFlight<String, Flight> singleFlight = new SingleFlight<>();
+
+    private final ScheduledExecutorService evictScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "user-cache-evict");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final LongAdder nearHits = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder nullHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder remoteInvalidations = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        nearCache = Caffeine.newBuilder()
+                .maximumSize(nearMaximumSize)
+                .expireAfterWrite(nearTtlSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 依次查近端缓存、Redis,都未命中再用 loader 回源并回填
+     */
+    public User get(long userId, LongFunction<User> loader) {
+        Object near = nearCache.getIfPresent(userId);
+        if (near != null) {
+            nearHits.increment();
+            return unwrap(near);
+        }
+        //同一个 userId 的并发请求合并成一次 Redis 读取和至多一次回源,共享同一个结果
+        String key = KEY_PREFIX + userId;
+        Flight flight = singleFlight.execute(key, () -> readThrough(key, userId, loader));
+        fillNear(userId, flight.value, flight.generation);
+        return unwrap(flight.value);
+    }
+
+    /**
+     * 批量查询: 近端缓存 -> 一次分批 MGET -> 一次批量回源,结果按 userIds 顺序返回,不存在的跳过
+     * 批量回源不做单飞合并,调用方应控制批大小
+     */
+    public List<User> getAll(List<Long> userIds, Function<List<Long>, List<User>> loader) {
+        Map<Long, Object> found = new HashMap<>();
+        List<Long> remaining = new ArrayList<>();
+        for (Long userId : new LinkedHashSet<>(userIds)) {
+            Object near = userId == null ? null : nearCache.getIfPresent(userId);
+            if (near != null) {
+                nearHits.increment();
+                found.put(userId, near);
+            } else if (userId != null) {
+                remaining.add(userId);
+            }
+        }
+        if (!remaining.isEmpty()) {
+            long generation = invalidationGeneration.get();
+            List<String> keys = new ArrayList<>(remaining.size());
+            for (Long userId : remaining) {
+                keys.add(KEY_PREFIX + userId);
+            }
+            List<Object> cached = redisService.mget(keys);
+            List<Long> missing = new ArrayList<>();
+            for (int i = 0; i < remaining.size(); i++) {
+                Object value = cached == null ? null : cached.get(i);
+                if (value instanceof User) {
+                    hits.increment();
+                    found.put(remaining.get(i), value);
+                } else if (NULL_MARKER.equals(value)) {
+                    nullHits.increment();
+                    found.put(remaining.get(i), value);
+                } else {
+                    missing.add(remaining.get(i));
+                }
+            }
+            if (!missing.isEmpty()) {
+                misses.add(missing.size());
+                found.putAll(loadAll(missing, loader));
+            }
+            for (Long userId : remaining) {
+                fillNear(userId, found.get(userId), generation);
+            }
+        }
+        List<User> users = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            Object value = found.get(userId);
+            if (value instanceof User) {
+                users.add((User) value);
+            }
+        }
+        return users;
+    }
+
+    /**
+     * 数据变更后删除缓存;处于事务中时等提交后再删,并延迟再删一次,
+     * 覆盖删除前已读到旧值、删除后才回填的并发加载
+     */
+    public void evict(long userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    evictNow(userId);
+                }
+            });
+        } else {
+            evictNow(userId);
+        }
+    }
+
+    /**
+     * 批量删除缓存,Redis 端分批 DEL,失效通知合并成一条消息
+     */
+    public void evictAll(Collection<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(userIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    evictAllNow(ids);
+                }
+            });
+        } else {
+            evictAllNow(ids);
+        }
+    }
+
+    /**
+     * 变更捕获(UserChangeRelay)使用: 立即删除 Redis 缓存并广播失效
+     * 与 evictAll 不同,删除或广播失败时抛出异常,调用方保留变更稍后重试
+     */
+    public void evictAllOrThrow(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            nearCache.invalidate(userId);
+            keys.add(KEY_PREFIX + userId);
+        }
+        redisTemplate.delete(keys);
+        redisTemplate.convertAndSend(invalidationTopic, new ArrayList<>(userIds));
+        evictions.add(userIds.size());
+    }
+
+    /**
+     * 缓存预热: 一次流水线 SET NX 写入 Redis,已有的 key(请求回源刚写入的)不覆盖;
+     * 过期时间在 [ttl/2, ttl+抖动] 内逐个随机,预热写入的大批 key 不会在同一时刻一起过期
+     * 不写近端缓存,Redis 异常时抛出,由预热任务记录
+     */
+    public void warm(List<User> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+        long minTtl = Math.max(1, ttlSeconds / 2);
+        long maxTtl = ttlSeconds + ttlJitterSeconds;
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                for (User user : users) {
+                    long ttl = maxTtl > minTtl ? ThreadLocalRandom.current().nextLong(minTtl, maxTtl + 1) : minTtl;
+                    operations.opsForValue().setIfAbsent(KEY_PREFIX + user.getUserId(), user, ttl, TimeUnit.SECONDS);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 近端缓存里访问最频繁的 userId(按 W-TinyLFU 的频率估计),Redis 丢数据后优先预热这些
+     */
+    public List<Long> hottestUserIds(int limit) {
+        return nearCache.policy().eviction()
+                .map(eviction -> (List<Long>) new ArrayList<>(eviction.hottest(limit).keySet()))
+                .orElse(Collections.emptyList());
+    }
+
+    /**
+     * 收到其它节点(包括本节点)的失效通知,只清本地近端缓存
+     */
+    public void invalidateLocal(long userId) {
+        //先推进版本再清除,与 fillNear 的先写后校验配合,保证失效之后不会留下旧值
+        invalidationGeneration.incrementAndGet();
+        nearCache.invalidate(userId);
+        remoteInvalidations.increment();
+    }
+
+    /**
+     * 把命中、回源、失效等计数注册为监控指标
+     */
+    public void bindMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("user.cache.requests", nearHits, LongAdder::sum).tag("result", "near-hit").register(registry);
+        FunctionCounter.builder("user.cache.requests", hits, LongAdder::sum).tag("result", "hit").register(registry);
+        FunctionCounter.builder("user.cache.requests", nullHits, LongAdder::sum).tag("result", "null-hit").register(registry);
+        FunctionCounter.builder("user.cache.requests", misses, LongAdder::sum).tag("result", "miss").register(registry);
+        FunctionTimer.builder("user.cache.loads", this, cache -> cache.loads.sum(), cache -> cache.loadNanos.sum(), TimeUnit.NANOSECONDS)
+                .register(registry);
+        FunctionCounter.builder("user.cache.load.failures", loadFailures, LongAdder::sum).register(registry);
+        FunctionCounter.builder("user.cache.evictions", evictions, LongAdder::sum).register(registry);
+        FunctionCounter.builder("user.cache.remote.invalidations", remoteInvalidations, LongAdder::sum).register(registry);
+        Gauge.builder("user.cache.near.size", this, cache -> cache.nearCache.estimatedSize()).register(registry);
+        Gauge.builder("user.cache.loads.in.flight", singleFlight, SingleFlight::inFlightCount).register(registry);
+        FunctionCounter.builder("user.cache.coalesced", singleFlight, SingleFlight::coalescedCount).register(registry);
+    }
+
+    public String getInvalidationTopic() {
+        return invalidationTopic;
+    }
+
+    public Map<String, Object> stats() {
+        long loadCount = loads.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("nearHits", nearHits.sum());
+        stats.put("nearSize", nearCache.estimatedSize());
+        stats.put("hits", hits.sum());
+        stats.put("nullHits", nullHits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("loads", loadCount);
+        stats.put("loadFailures", loadFailures.sum());
+        stats.put("averageLoadMillis", loadCount == 0 ? 0d : loadNanos.sum() / 1e6 / loadCount);
+        stats.put("evictions", evictions.sum());
+        stats.put("remoteInvalidations", remoteInvalidations.sum());
+        stats.put("inFlightLoads", singleFlight.inFlightCount());
+        stats.put("coalesced", singleFlight.coalescedCount());
+        return stats;
+    }
+
+    /**
+     * 仅供测试查看近端缓存内容
+     */
+    Object peekNear(long userId) {
+        return nearCache.getIfPresent(userId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        evictScheduler.shutdownNow();
+    }
+
+    /**
+     * 由合并后的第一个请求执行: 读 Redis,未命中再回源
+     * 版本号在读取之前记录,合并进来的请求都按它判断结果能否放进近端缓存
+     */
+    private Flight readThrough(String key, long userId, LongFunction<User> loader) {
+        long generation = invalidationGeneration.get();
+        Object value = readCache(key);
+        if (value instanceof User) {
+            hits.increment();
+        } else if (NULL_MARKER.equals(value)) {
+            nullHits.increment();
+        } else {
+            misses.increment();
+            value = load(key, userId, loader);
+        }
+        return new Flight(value, generation);
+    }
+
+    private Object load(String key, long userId, LongFunction<User> loader) {
+        long start = System.nanoTime();
+        User user;
+        try {
+            user = loader.apply(userId);
+        } catch (RuntimeException e) {
+            loadFailures.increment();
+            throw e;
+        } finally {
+            loads.increment();
+            loadNanos.add(System.nanoTime() - start);
+        }
+        if (user == null) {
+            writeCache(key, NULL_MARKER, nullTtlSeconds);
+            return NULL_MARKER;
+        }
+        writeCache(key, user, ttlSeconds + jitter());
+        return user;
+    }
+
+    private Map<Long, Object> loadAll(List<Long> userIds, Function<List<Long>, List<User>> loader) {
+        long start = System.nanoTime();
+        List<User> users;
+        try {
+            users = loader.apply(userIds);
+        } catch (RuntimeException e) {
+            loadFailures.increment();
+            throw e;
+        } finally {
+            loads.increment();
+            loadNanos.add(System.nanoTime() - start);
+        }
+        Map<Long, Object> loaded = new HashMap<>();
+        Map<String, Object> toCache = new HashMap<>();
+        for (User user : users) {
+            loaded.put(user.getUserId(), user);
+            toCache.put(KEY_PREFIX + user.getUserId(), user);
+        }
+        Map<String, Object> nullMarkers = new HashMap<>();
+        for (Long userId : userIds) {
+            if (!loaded.containsKey(userId)) {
+                loaded.put(userId, NULL_MARKER);
+                nullMarkers.put(KEY_PREFIX + userId, NULL_MARKER);
+            }
+        }
+        //同一批共用一个抖动值,不同批之间仍然错开过期时间
+        redisService.mset(toCache, ttlSeconds + jitter());
+        redisService.mset(nullMarkers, nullTtlSeconds);
+        return loaded;
+    }
+
+    private void fillNear(long userId, Object value, long generation) {
+        nearCache.put(userId, value);
+        if (invalidationGeneration.get() != generation) {
+            nearCache.invalidate(userId);
+        }
+    }
+
+    private void evictNow(long userId) {
+        invalidateEverywhere(userId);
+        evictions.increment();
+        if (doubleDeleteDelayMs > 0) {
+            evictScheduler.schedule(() -> invalidateEverywhere(userId), doubleDeleteDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void evictAllNow(List<Long> userIds) {
+        invalidateAllEverywhere(userIds);
+        evictions.add(userIds.size());
+        if (doubleDeleteDelayMs > 0) {
+            evictScheduler.schedule(() -> invalidateAllEverywhere(userIds), doubleDeleteDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void invalidateAllEverywhere(List<Long> userIds) {
+        List<String> keys = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            nearCache.invalidate(userId);
+            keys.add(KEY_PREFIX + userId);
+        }
+        redisService.delBatch(keys);
+        try {
+            redisTemplate.convertAndSend(invalidationTopic, userIds);
+        } catch (RuntimeException e) {
+            logger.warn("publish user cache invalidation of {} users failed: {}", userIds.size(), e.getMessage());
+        }
+    }
+
+    private void invalidateEverywhere(long userId) {
+        nearCache.invalidate(userId);
+        deleteQuietly(KEY_PREFIX + userId);
+        try {
+            redisTemplate.convertAndSend(invalidationTopic, userId);
+        } catch (RuntimeException e) {
+            logger.warn("publish user cache invalidation {} failed: {}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * 一次合并读取的结果及读取前的失效版本号
+     */
+    private static final class Flight {
+        final Object value;
+        final long generation;
+
+        Flight(Object value, long generation) {
+            this.value = value;
+            this.generation = generation;
+        }
+    }
+
+    private static User unwrap(Object value) {
+        return value instanceof User ? (User) value : null;
+    }
+
+    private long jitter() {
+        return ttlJitterSeconds > 0 ? ThreadLocalRandom.current().nextLong(ttlJitterSeconds + 1) : 0;
+    }
+
+    /**
+     * Redis 不可用时按未命中处理,直接回源数据库
+     */
+    private Object readCache(String key) {
+        try {
+            return valueOperations.get(key);
+        } catch (RuntimeException e) {
+            logger.warn("read user cache {} failed: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeCache(String key, Object value, long seconds) {
+        try {
+            valueOperations.set(key, value, seconds, TimeUnit.SECONDS);
+        } catch (RuntimeException e) {
+            logger.warn("write user cache {} failed: {}", key, e.getMessage());
+        }
+    }
+
+    private void deleteQuietly(String key) {
+        try {
+            redisTemplate.delete(key);
+        } catch (RuntimeException e) {
+            logger.warn("evict user cache {} failed: {}", key, e.getMessage());
+        }
+    }
+}
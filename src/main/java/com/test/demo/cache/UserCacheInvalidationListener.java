@@ -0,0 +1,49 @@
+package com.test.demo.cache;
+
+import com.test.demo.bloom.UserIdFilter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 订阅用户缓存失效频道,清掉本节点的近端缓存;消息体为单个 userId 或 userId 列表
+ * userId 按字符串解析,兼容升级前以字符串发布的消息
+ * 其它节点新增的用户也经这里补进本节点的布隆过滤器(删除的 id 补进去只是多一次误判,无害)
+ */
+@Component
+public class UserCacheInvalidationListener implements MessageListener {
+    @Autowired
+    private UserCache userCache;
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+    @Autowired
+    private UserIdFilter userIdFilter;
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object payload = redisTemplate.getValueSerializer().deserialize(message.getBody());
+        List<Long> userIds;
+        if (payload instanceof Collection) {
+            //批量变更合并成一条消息
+            userIds = new ArrayList<>(((Collection<?>) payload).size());
+            for (Object userId : (Collection<?>) payload) {
+                userIds.add(Long.parseLong(userId.toString()));
+            }
+        } else if (payload != null) {
+            userIds = Collections.singletonList(Long.parseLong(payload.toString()));
+        } else {
+            return;
+        }
+        for (Long userId : userIds) {
+            userCache.invalidateLocal(userId);
+        }
+        userIdFilter.addLocal(userIds);
+    }
+}
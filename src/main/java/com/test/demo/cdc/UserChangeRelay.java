@@ -0,0 +1,161 @@
+package com.test.demo.cdc;
+
+import com.test.demo.cache.UserCache;
+import com.test.demo.datasource.ReadWriteRouting;
+import com.test.demo.etag.UserVersions;
+import com.test.demo.model.UserChange;
+import com.test.demo.shard.UserShard;
+import com.test.demo.shard.UserShards;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 轮询各分片的 user_outbox,把变更同步到 Redis 缓存: 一批内按 userId 去重,一次 DEL + 一条失效广播 + 更新版本戳,成功后再删除这批记录
+ * <p>
+ * 同步方式是失效而不是写入新值: 删除与顺序无关、可以重复执行,所以多个节点同时轮询、
+ * 同一条变更投递多次(至少一次)都不会留下旧值,不需要在节点间选主或按 userId 排序;缓存由下一次读取回填。
+ * Redis 出错时这批记录保留,下一轮重试;某个分片出错不影响其它分片。
+ */
+@Component
+public class UserChangeRelay {
+    private static final Logger logger = LoggerFactory.getLogger(UserChangeRelay.class);
+
+    @Autowired
+    UserShards userShards;
+    @Autowired
+    UserCache userCache;
+    @Autowired
+    UserVersions userVersions;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${user.cdc.enabled:true}")
+    private boolean enabled;
+
+    @Value("${user.cdc.poll-interval-ms:500}")
+    private long pollIntervalMs;
+
+    @Value("${user.cdc.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * 按分片下标记录最近一次轮询时最早一条未处理变更的等待时间,没有积压时为 0
+     */
+    private AtomicLong[] lagMillis;
+
+    private Counter changes;
+    private Counter batches;
+    private Counter failures;
+    private Timer delay;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        changes = Counter.builder("user.cdc.changes").register(meterRegistry);
+        batches = Counter.builder("user.cdc.batches").register(meterRegistry);
+        failures = Counter.builder("user.cdc.failures").register(meterRegistry);
+        delay = Timer.builder("user.cdc.delay")
+                .description("time from the outbox write to the cache invalidation")
+                .register(meterRegistry);
+        lagMillis = new AtomicLong[userShards.size()];
+        for (UserShard shard : userShards.all()) {
+            lagMillis[shard.getIndex()] = new AtomicLong();
+            Gauge.builder("user.cdc.lag", lagMillis[shard.getIndex()], AtomicLong::get)
+                    .tag("shard", String.valueOf(shard.getIndex()))
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-cdc-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::relayPending, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 逐个分片处理完积压再返回;出错时记录并等下一轮
+     */
+    void relayPending() {
+        for (UserShard shard : userShards.all()) {
+            try {
+                while (relayBatch(shard) == batchSize) {
+                    //一批满了说明还有积压,继续
+                }
+            } catch (RuntimeException e) {
+                failures.increment();
+                logger.warn("user change relay failed on {}, will retry: {}", shard, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 处理分片上的一批变更,返回处理的记录数
+     */
+    int relayBatch(UserShard shard) {
+        //发件箱从主库读: 从库上已删除的记录会被重复处理,积压时长也会偏小
+        List<UserChange> pending = ReadWriteRouting.onPrimary(() -> shard.getOutboxMapper().getPendingChanges(batchSize));
+        long now = System.currentTimeMillis();
+        AtomicLong lag = lagMillis[shard.getIndex()];
+        if (pending.isEmpty()) {
+            lag.set(0);
+            return 0;
+        }
+        lag.set(Math.max(0, now - pending.get(0).getCreatedAt()));
+
+        Set<Long> userIds = new LinkedHashSet<>();
+        List<Long> ids = new ArrayList<>(pending.size());
+        for (UserChange change : pending) {
+            userIds.add(change.getUserId());
+            ids.add(change.getId());
+        }
+        userCache.evictAllOrThrow(userIds);
+        //写入方已经更新过版本戳,这里在失效广播之后再更新一次: 其它节点在广播到达前用旧的近端缓存配上新版本生成的 ETag 会就此失效
+        userVersions.bumpOrThrow(userIds);
+        //缓存已失效再删记录;删除前宕机只会导致重复失效
+        shard.getOutboxMapper().delChanges(ids);
+
+        long applied = System.currentTimeMillis();
+        for (UserChange change : pending) {
+            delay.record(Math.max(0, applied - change.getCreatedAt()), TimeUnit.MILLISECONDS);
+        }
+        changes.increment(pending.size());
+        batches.increment();
+        return pending.size();
+    }
+}
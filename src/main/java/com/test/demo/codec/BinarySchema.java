@@ -0,0 +1,22 @@
+package com.test.demo.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 单个类型的二进制结构定义,字段顺序即协议,改字段时换一个新的 tag
+ */
+public interface BinarySchema<T> {
+
+    /**
+     * 写在值最前面的类型标识,同一个 SchemaBinaryCodec 内唯一
+     */
+    byte tag();
+
+    Class<T> type();
+
+    void write(T value, DataOutput out) throws IOException;
+
+    T read(DataInput in) throws IOException;
+}
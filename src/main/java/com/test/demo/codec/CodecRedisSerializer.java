@@ -0,0 +1,103 @@
+package com.test.demo.codec;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 把 ValueCodec 适配成 RedisSerializer
+ * 每个值前加一个头字节: 0xC0 原样, 0xC1 deflate 压缩;超过阈值的值才压缩。
+ * 0xC0/0xC1 在 UTF-8 中不会出现在首字节,没有头字节的值(INCR 写入的计数、旧的 JSON 字符串)按字符串返回
+ */
+public class CodecRedisSerializer implements RedisSerializer<Object> {
+    private static final byte PLAIN = (byte) 0xC0;
+    private static final byte DEFLATED = (byte) 0xC1;
+
+    private final ValueCodec codec;
+    private final int compressThreshold;
+
+    /**
+     * @param codec             值编码
+     * @param compressThreshold 编码后超过该字节数才压缩,小于等于0不压缩
+     */
+    public CodecRedisSerializer(ValueCodec codec, int compressThreshold) {
+        this.codec = codec;
+        this.compressThreshold = compressThreshold;
+    }
+
+    public ValueCodec getCodec() {
+        return codec;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        byte[] encoded = codec.encode(value);
+        if (compressThreshold > 0 && encoded.length > compressThreshold) {
+            byte[] compressed = deflate(encoded);
+            if (compressed.length < encoded.length) {
+                return withHeader(DEFLATED, compressed);
+            }
+        }
+        return withHeader(PLAIN, encoded);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] == PLAIN) {
+            return codec.decode(Arrays.copyOfRange(bytes, 1, bytes.length));
+        }
+        if (bytes[0] == DEFLATED) {
+            return codec.decode(inflate(bytes));
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] withHeader(byte header, byte[] payload) {
+        byte[] bytes = new byte[payload.length + 1];
+        bytes[0] = header;
+        System.arraycopy(payload, 0, bytes, 1, payload.length);
+        return bytes;
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DeflaterOutputStream deflating = new DeflaterOutputStream(out, deflater)) {
+            deflating.write(bytes);
+        } catch (IOException e) {
+            throw new SerializationException("Could not compress value", e);
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 3);
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1))) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new SerializationException("Could not decompress value", e);
+        }
+        return out.toByteArray();
+    }
+}
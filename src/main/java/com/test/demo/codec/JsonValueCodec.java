@@ -0,0 +1,136 @@
+package com.test.demo.codec;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DatabindContext;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.cfg.MapperConfig;
+import com.fasterxml.jackson.databind.jsontype.NamedType;
+import com.fasterxml.jackson.databind.jsontype.TypeIdResolver;
+import com.fasterxml.jackson.databind.jsontype.impl.ClassNameIdResolver;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 紧凑 JSON 编码,不输出 null 字段,非 final 类型带 @class 以便反序列化回原类型
+ * 读取时 @class 只接受白名单内的类型(本项目的 model 包和常用 JDK 集合、数值类型),
+ * 能写 Redis 的人不能借 @class 让 Jackson 实例化任意类(已知的反序列化利用链)
+ */
+public class JsonValueCodec implements ValueCodec {
+    static final String MODEL_PACKAGE = "com.test.demo.model.";
+
+    static final Set<String> ALLOWED_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "java.lang.Long", "java.lang.Integer", "java.lang.Short", "java.lang.Byte",
+            "java.lang.Double", "java.lang.Float", "java.lang.Boolean", "java.lang.String", "java.lang.Character",
+            "java.math.BigDecimal", "java.math.BigInteger", "java.util.Date",
+            "java.util.ArrayList", "java.util.LinkedList", "java.util.Arrays$ArrayList",
+            "java.util.HashMap", "java.util.LinkedHashMap", "java.util.TreeMap",
+            "java.util.HashSet", "java.util.LinkedHashSet", "java.util.TreeSet")));
+
+    private final ObjectMapper objectMapper;
+
+    public JsonValueCodec() {
+        objectMapper = new ObjectMapper();
+        objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        objectMapper.setDefaultTyping(new AllowListTypeResolverBuilder());
+    }
+
+    @Override
+    public String name() {
+        return "json";
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new SerializationException("Could not write JSON: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Object decode(byte[] bytes) {
+        try {
+            return objectMapper.readValue(bytes, Object.class);
+        } catch (IOException e) {
+            throw new SerializationException("Could not read JSON: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @class 是否可以反序列化: 白名单类型、model 包内的类(不含子包)、JDK 内部的不可变集合包装,以及它们的数组
+     * 带泛型参数的类型名一律拒绝,参数里可以夹带任意类
+     */
+    static boolean isAllowed(String typeId) {
+        if (typeId == null || typeId.indexOf('<') >= 0) {
+            return false;
+        }
+        String name = typeId;
+        while (name.startsWith("[")) {
+            name = name.substring(1);
+        }
+        if (name.length() != typeId.length()) {
+            if (name.length() == 1) {
+                //基本类型数组,如 [J
+                return true;
+            }
+            if (!name.startsWith("L") || !name.endsWith(";")) {
+                return false;
+            }
+            name = name.substring(1, name.length() - 1);
+        }
+        if (ALLOWED_TYPES.contains(name) || name.startsWith("java.util.Collections$")) {
+            return true;
+        }
+        return name.startsWith(MODEL_PACKAGE) && name.indexOf('.', MODEL_PACKAGE.length()) < 0;
+    }
+
+    /**
+     * 与 enableDefaultTyping(NON_FINAL, PROPERTY) 写出的格式相同,已经在 Redis 里的值照常可读
+     */
+    static final class AllowListTypeResolverBuilder extends ObjectMapper.DefaultTypeResolverBuilder {
+        private static final long serialVersionUID = 1L;
+
+        AllowListTypeResolverBuilder() {
+            super(ObjectMapper.DefaultTyping.NON_FINAL);
+            init(JsonTypeInfo.Id.CLASS, null);
+            inclusion(JsonTypeInfo.As.PROPERTY);
+        }
+
+        @Override
+        protected TypeIdResolver idResolver(MapperConfig<?> config, JavaType baseType, Collection<NamedType> subtypes,
+                                            boolean forSer, boolean forDeser) {
+            return new AllowListIdResolver(baseType, config.getTypeFactory());
+        }
+    }
+
+    static final class AllowListIdResolver extends ClassNameIdResolver {
+
+        AllowListIdResolver(JavaType baseType, TypeFactory typeFactory) {
+            super(baseType, typeFactory);
+        }
+
+        @Override
+        public JavaType typeFromId(DatabindContext context, String id) throws IOException {
+            if (!isAllowed(id)) {
+                if (context instanceof DeserializationContext) {
+                    throw ((DeserializationContext) context).invalidTypeIdException(_baseType, id, "type not allowed in cached values");
+                }
+                throw new IllegalArgumentException("type not allowed in cached values: " + id);
+            }
+            return super.typeFromId(context, id);
+        }
+    }
+}
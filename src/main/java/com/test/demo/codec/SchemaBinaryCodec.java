@@ -0,0 +1,116 @@
+package com.test.demo.codec;
+
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按注册的 BinarySchema 编码,首字节为类型标识;
+ * 常用标量直接写二进制,没有 schema 的类型退回 fallback 编码
+ * 同一类型注册了多个 schema 时按最后一个写入,前面的只用于读取旧格式的值
+ */
+public class SchemaBinaryCodec implements ValueCodec {
+    private static final byte STRING = 0x01;
+    private static final byte LONG = 0x02;
+    private static final byte INTEGER = 0x03;
+    private static final byte BOOLEAN = 0x04;
+    private static final byte FALLBACK = 0x7F;
+
+    private final ValueCodec fallback;
+    private final Map<Class<?>, BinarySchema<?>> schemasByType = new HashMap<>();
+    private final BinarySchema<?>[] schemasByTag = new BinarySchema<?>[128];
+
+    public SchemaBinaryCodec(ValueCodec fallback, BinarySchema<?>... schemas) {
+        this.fallback = fallback;
+        for (BinarySchema<?> schema : schemas) {
+            if (schema.tag() <= BOOLEAN || schema.tag() == FALLBACK || schemasByTag[schema.tag()] != null) {
+                throw new IllegalArgumentException("Duplicate or reserved schema tag " + schema.tag());
+            }
+            schemasByTag[schema.tag()] = schema;
+            schemasByType.put(schema.type(), schema);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "binary";
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public byte[] encode(Object value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            BinarySchema<Object> schema = (BinarySchema<Object>) schemasByType.get(value.getClass());
+            if (schema != null) {
+                out.writeByte(schema.tag());
+                schema.write(value, out);
+            } else if (value instanceof String) {
+                out.writeByte(STRING);
+                out.write(((String) value).getBytes(StandardCharsets.UTF_8));
+            } else if (value instanceof Long) {
+                out.writeByte(LONG);
+                out.writeLong((Long) value);
+            } else if (value instanceof Integer) {
+                out.writeByte(INTEGER);
+                out.writeInt((Integer) value);
+            } else if (value instanceof Boolean) {
+                out.writeByte(BOOLEAN);
+                out.writeBoolean((Boolean) value);
+            } else {
+                out.writeByte(FALLBACK);
+                out.write(fallback.encode(value));
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new SerializationException("Could not encode " + value.getClass().getName(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 空值(例如其它客户端写入的只有头部的值)当作未命中,返回 null
+     */
+    @Override
+    public Object decode(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        byte tag = bytes[0];
+        try {
+            switch (tag) {
+                case STRING:
+                    return new String(bytes, 1, bytes.length - 1, StandardCharsets.UTF_8);
+                case LONG:
+                    return input(bytes).readLong();
+                case INTEGER:
+                    return input(bytes).readInt();
+                case BOOLEAN:
+                    return input(bytes).readBoolean();
+                case FALLBACK:
+                    return fallback.decode(Arrays.copyOfRange(bytes, 1, bytes.length));
+                default:
+                    BinarySchema<?> schema = tag > 0 ? schemasByTag[tag] : null;
+                    if (schema == null) {
+                        throw new SerializationException("Unknown binary schema tag " + tag);
+                    }
+                    return schema.read(input(bytes));
+            }
+        } catch (IOException e) {
+            throw new SerializationException("Could not decode binary value with tag " + tag, e);
+        }
+    }
+
+    private static DataInputStream input(byte[] bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1));
+    }
+}
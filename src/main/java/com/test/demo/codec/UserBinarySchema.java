@@ -0,0 +1,67 @@
+package com.test.demo.codec;
+
+import com.test.demo.model.User;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * User 的二进制结构: 一个字节的字段存在位图,随后依次是存在的字段,userId 固定 8 字节
+ */
+public class UserBinarySchema implements BinarySchema<User> {
+    private static final int USER_ID = 1;
+    private static final int USER_NAME = 1 << 1;
+    private static final int LOGIN_PASSWORD = 1 << 2;
+    private static final int USER_SEX = 1 << 3;
+
+    @Override
+    public byte tag() {
+        return 0x11;
+    }
+
+    @Override
+    public Class<User> type() {
+        return User.class;
+    }
+
+    @Override
+    public void write(User user, DataOutput out) throws IOException {
+        int present = USER_ID
+                | (user.getUserName() != null ? USER_NAME : 0)
+                | (user.getLoginPassword() != null ? LOGIN_PASSWORD : 0)
+                | (user.getUserSex() != null ? USER_SEX : 0);
+        out.writeByte(present);
+        if ((present & USER_ID) != 0) {
+            out.writeLong(user.getUserId());
+        }
+        if ((present & USER_NAME) != 0) {
+            out.writeUTF(user.getUserName());
+        }
+        if ((present & LOGIN_PASSWORD) != 0) {
+            out.writeUTF(user.getLoginPassword());
+        }
+        if ((present & USER_SEX) != 0) {
+            out.writeUTF(user.getUserSex());
+        }
+    }
+
+    @Override
+    public User read(DataInput in) throws IOException {
+        int present = in.readUnsignedByte();
+        User user = new User();
+        if ((present & USER_ID) != 0) {
+            user.setUserId(in.readLong());
+        }
+        if ((present & USER_NAME) != 0) {
+            user.setUserName(in.readUTF());
+        }
+        if ((present & LOGIN_PASSWORD) != 0) {
+            user.setLoginPassword(in.readUTF());
+        }
+        if ((present & USER_SEX) != 0) {
+            user.setUserSex(in.readUTF());
+        }
+        return user;
+    }
+}
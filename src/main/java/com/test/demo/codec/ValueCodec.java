@@ -0,0 +1,16 @@
+package com.test.demo.codec;
+
+/**
+ * 缓存值编解码 SPI,由 CodecRedisSerializer 包装后交给 RedisTemplate 使用
+ */
+public interface ValueCodec {
+
+    /**
+     * 配置项 redis.codec 中使用的名字
+     */
+    String name();
+
+    byte[] encode(Object value);
+
+    Object decode(byte[] bytes);
+}
@@ -0,0 +1,85 @@
+package com.test.demo.comfig;
+
+import com.test.demo.datasource.ReadWriteRouting;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 异步请求处理配置
+ * user.web.mode=async 时数据库调用提交到有界的 userDbExecutor,Tomcat 线程立即释放;
+ * 队列满时拒绝并返回 503,而不是无限堆积请求
+ */
+@Configuration
+public class AsyncConfig implements WebMvcConfigurer {
+
+    @Value("${user.async.timeout-ms:10000}")
+    private long timeoutMs;
+
+    @Value("${user.async.mvc-pool-size:16}")
+    private int mvcPoolSize;
+
+    /**
+     * 实例化数据库线程池的排队耗时统计
+     *
+     * @return
+     */
+    @Bean
+    public QueueTimeTaskDecorator userDbQueueTime() {
+        return new QueueTimeTaskDecorator();
+    }
+
+    /**
+     * 实例化数据库调用线程池,默认大小与连接池最大连接数一致,多出的线程只会在连接池上等待
+     *
+     * @param poolSize
+     * @param queueCapacity
+     * @return
+     */
+    @Bean
+    public ThreadPoolTaskExecutor userDbExecutor(@Value("${user.async.db-pool-size:0}") int poolSize,
+                                                 @Value("${user.async.queue-capacity:1000}") int queueCapacity) {
+        int size = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors() * 2 + 1;
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(size);
+        executor.setMaxPoolSize(size);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("user-db-");
+        QueueTimeTaskDecorator queueTime = userDbQueueTime();
+        //带上提交线程的读写分离 Scope,请求内写入后在线程池里的读取同样走主库
+        executor.setTaskDecorator(task -> queueTime.decorate(ReadWriteRouting.propagate(task)));
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            queueTime.recordRejection();
+            throw new RejectedExecutionException("userDbExecutor queue is full");
+        });
+        return executor;
+    }
+
+    /**
+     * 实例化 MVC 异步任务(StreamingResponseBody 等)线程池,替换默认的每次新建线程的实现
+     *
+     * @return
+     */
+    @Bean
+    public ThreadPoolTaskExecutor mvcAsyncExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(mvcPoolSize);
+        executor.setMaxPoolSize(mvcPoolSize);
+        executor.setQueueCapacity(mvcPoolSize * 4);
+        executor.setThreadNamePrefix("mvc-async-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setDefaultTimeout(timeoutMs);
+        configurer.setTaskExecutor(mvcAsyncExecutor());
+    }
+}
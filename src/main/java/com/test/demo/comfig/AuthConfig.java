@@ -0,0 +1,138 @@
+package com.test.demo.comfig;
+
+import com.test.demo.auth.PasswordHasher;
+import com.test.demo.auth.SessionTokenService;
+import com.test.demo.auth.TokenInterceptor;
+import com.test.demo.service.RedisService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 登录与会话令牌配置
+ * 密码哈希在独立的 passwordHashExecutor 上计算,线程数默认等于 CPU 核数(纯计算,多了没用),
+ * 与数据库线程池、Tomcat 线程池互不影响;批量导入另用 batchPasswordHashExecutor,大批量哈希不和登录抢线程
+ */
+@Configuration
+public class AuthConfig {
+
+    /**
+     * 实例化密码哈希线程池,队列满时拒绝,登录接口返回 503
+     *
+     * @param poolSize
+     * @param queueCapacity
+     * @return
+     */
+    @Bean
+    public ThreadPoolTaskExecutor passwordHashExecutor(@Value("${auth.password.pool-size:0}") int poolSize,
+                                                       @Value("${auth.password.queue-capacity:200}") int queueCapacity) {
+        int size = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(size);
+        executor.setMaxPoolSize(size);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("password-hash-");
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            throw new RejectedExecutionException("passwordHashExecutor queue is full");
+        });
+        return executor;
+    }
+
+    /**
+     * 实例化批量导入用的密码哈希线程池,线程数默认为 CPU 核数的一半
+     * PasswordHasher.hashPasswords 按线程数分批提交,队列不会积压
+     *
+     * @param poolSize
+     * @return
+     */
+    @Bean
+    public ThreadPoolTaskExecutor batchPasswordHashExecutor(@Value("${auth.password.batch-pool-size:0}") int poolSize) {
+        int size = poolSize > 0 ? poolSize : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(size);
+        executor.setMaxPoolSize(size);
+        executor.setQueueCapacity(size);
+        executor.setThreadNamePrefix("batch-password-hash-");
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            throw new RejectedExecutionException("batchPasswordHashExecutor queue is full");
+        });
+        return executor;
+    }
+
+    /**
+     * 实例化 PasswordHasher 对象
+     *
+     * @param strength BCrypt cost,每加 1 耗时翻倍
+     * @param passwordHashExecutor
+     * @return
+     */
+    @Bean
+    @Primary
+    public PasswordHasher passwordHasher(@Value("${auth.password.bcrypt-strength:10}") int strength,
+                                         @Qualifier("passwordHashExecutor") ThreadPoolTaskExecutor passwordHashExecutor) {
+        return new PasswordHasher(strength, passwordHashExecutor, passwordHashExecutor.getCorePoolSize());
+    }
+
+    /**
+     * 实例化批量导入用的 PasswordHasher 对象,cost 与登录相同,只是线程池不同
+     *
+     * @param strength
+     * @param batchPasswordHashExecutor
+     * @return
+     */
+    @Bean
+    public PasswordHasher batchPasswordHasher(@Value("${auth.password.bcrypt-strength:10}") int strength,
+                                              @Qualifier("batchPasswordHashExecutor") ThreadPoolTaskExecutor batchPasswordHashExecutor) {
+        return new PasswordHasher(strength, batchPasswordHashExecutor, batchPasswordHashExecutor.getCorePoolSize());
+    }
+
+    /**
+     * 实例化 SessionTokenService 对象
+     *
+     * @param redisService
+     * @param ttlSeconds 令牌空闲过期时间
+     * @param renewIntervalSeconds 续期间隔,间隔内重复使用不再访问 Redis
+     * @param localTtlSeconds 进程内缓存时间,也是注销在其它节点生效的最大延迟
+     * @param localMaximumSize
+     * @return
+     */
+    @Bean
+    public SessionTokenService sessionTokenService(RedisService redisService,
+                                                   @Value("${auth.token.ttl-seconds:1800}") long ttlSeconds,
+                                                   @Value("${auth.token.renew-interval-seconds:60}") long renewIntervalSeconds,
+                                                   @Value("${auth.token.local-ttl-seconds:30}") long localTtlSeconds,
+                                                   @Value("${auth.token.local-maximum-size:100000}") long localMaximumSize) {
+        return new SessionTokenService(redisService, ttlSeconds, renewIntervalSeconds, localTtlSeconds, localMaximumSize);
+    }
+
+    /**
+     * auth.required=true 时其它接口都要求携带有效令牌
+     */
+    @Configuration
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    @ConditionalOnProperty(name = "auth.required", havingValue = "true")
+    public static class TokenCheckConfig implements WebMvcConfigurer {
+        @Autowired
+        private SessionTokenService sessionTokenService;
+
+        @Value("${auth.protected-paths:/**}")
+        private String[] protectedPaths;
+
+        @Override
+        public void addInterceptors(InterceptorRegistry registry) {
+            registry.addInterceptor(new TokenInterceptor(sessionTokenService))
+                    .addPathPatterns(protectedPaths)
+                    .excludePathPatterns("/user/Login", "/error", "/actuator/**");
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.test.demo.comfig;
+
+import com.alibaba.druid.filter.stat.StatFilter;
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.support.http.StatViewServlet;
+import com.alibaba.druid.support.http.WebStatFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Collections;
+
+/**
+ * Druid 连接池配置
+ * 连接池参数可通过 spring.datasource.druid.* 覆盖;监控页面 /druid/(默认关闭,开启需配置登录密码),
+ * 其中 /druid/datasource.json 可查看活跃/空闲连接数和等待次数、等待时长
+ */
+@Configuration
+public class DruidConfig {
+
+    /**
+     * 实例化 DruidDataSource 对象
+     * 默认最大连接数按 CPU 核数 * 2 + 1 计算,连接等待超时后直接报错,便于区分连接池耗尽和慢 SQL
+     *
+     * @param properties
+     * @param statFilter
+     * @return
+     */
+    @Bean(destroyMethod = "close")
+    @ConfigurationProperties("spring.datasource.druid")
+    public DruidDataSource dataSource(DataSourceProperties properties, StatFilter statFilter) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        DruidDataSource dataSource = new DruidDataSource();
+        dataSource.setUrl(properties.determineUrl());
+        dataSource.setUsername(properties.determineUsername());
+        dataSource.setPassword(properties.determinePassword());
+        dataSource.setDriverClassName(properties.determineDriverClassName());
+        dataSource.setMaxActive(cores * 2 + 1);
+        dataSource.setMinIdle(cores);
+        dataSource.setMaxWait(3000);
+        dataSource.setValidationQuery("SELECT 1");
+        dataSource.setValidationQueryTimeout(1);
+        dataSource.setTestWhileIdle(true);
+        dataSource.setTestOnBorrow(false);
+        dataSource.setTimeBetweenEvictionRunsMillis(60000);
+        dataSource.setMinEvictableIdleTimeMillis(300000);
+        //语句缓存交给驱动(cachePrepStmts + useServerPrepStmts),连接池不再重复缓存
+        dataSource.setPoolPreparedStatements(false);
+        dataSource.setProxyFilters(Collections.singletonList(statFilter));
+        return dataSource;
+    }
+
+    /**
+     * 实例化 StatFilter 对象,合并参数不同的同一条 SQL 作为指纹统计,超过阈值的记慢 SQL 日志
+     *
+     * @param slowSqlMillis
+     * @return
+     */
+    @Bean
+    public StatFilter statFilter(@Value("${spring.datasource.druid.slow-sql-millis:500}") long slowSqlMillis) {
+        StatFilter statFilter = new StatFilter();
+        statFilter.setMergeSql(true);
+        statFilter.setSlowSqlMillis(slowSqlMillis);
+        statFilter.setLogSlowSql(true);
+        return statFilter;
+    }
+
+    /**
+     * 注册 Druid 监控页面,仅 Servlet 容器下可用
+     * 页面能看到完整 SQL 和连接信息,默认不注册;stat-view.enabled=true 时必须同时配置登录密码,否则启动失败
+     *
+     * @return
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    @ConditionalOnProperty(prefix = "spring.datasource.druid.stat-view", name = "enabled", havingValue = "true")
+    public ServletRegistrationBean<StatViewServlet> druidStatViewServlet(
+            @Value("${spring.datasource.druid.stat-view.allow:127.0.0.1}") String allow,
+            @Value("${spring.datasource.druid.stat-view.login-username:admin}") String loginUsername,
+            @Value("${spring.datasource.druid.stat-view.login-password:}") String loginPassword) {
+        if (loginPassword.trim().isEmpty()) {
+            throw new IllegalStateException("spring.datasource.druid.stat-view.login-password must be set when the Druid stat view is enabled");
+        }
+        ServletRegistrationBean<StatViewServlet> registration = new ServletRegistrationBean<>(new StatViewServlet(), "/druid/*");
+        registration.addInitParameter("allow", allow);
+        registration.addInitParameter("resetEnable", "false");
+        registration.addInitParameter("loginUsername", loginUsername);
+        registration.addInitParameter("loginPassword", loginPassword);
+        return registration;
+    }
+
+    /**
+     * 按请求 URI 统计 SQL 次数和耗时
+     *
+     * @return
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public FilterRegistrationBean<WebStatFilter> druidWebStatFilter() {
+        FilterRegistrationBean<WebStatFilter> registration = new FilterRegistrationBean<>(new WebStatFilter());
+        registration.addUrlPatterns("/*");
+        registration.addInitParameter("exclusions", "*.js,*.css,*.ico,/druid/*");
+        return registration;
+    }
+}
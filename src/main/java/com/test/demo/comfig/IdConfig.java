@@ -0,0 +1,51 @@
+package com.test.demo.comfig;
+
+import com.test.demo.id.IdGenerator;
+import com.test.demo.id.RedisWorkerIdLease;
+import com.test.demo.id.SnowflakeIdGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * user_id 生成配置: 本地雪花算法发号,只有 workerId 的租用和续期访问 Redis
+ */
+@Configuration
+public class IdConfig {
+
+    /**
+     * 实例化 workerId 租约,启动时租用,停机时释放
+     * 不能延迟创建: 否则第一次发号的请求才去 Redis 租用,prod 下用 @Lazy(false) 排除
+     *
+     * @param redisTemplate
+     * @param keyPrefix
+     * @param leaseSeconds 节点宕机后其 workerId 多久可以被其它节点使用
+     * @param maxClockDriftMs
+     * @return
+     */
+    @Bean(destroyMethod = "close")
+    @Lazy(false)
+    public RedisWorkerIdLease workerIdLease(RedisTemplate<String, Object> redisTemplate,
+                                            @Value("${user.id.worker-key-prefix:user:id:worker}") String keyPrefix,
+                                            @Value("${user.id.lease-seconds:30}") long leaseSeconds,
+                                            @Value("${user.id.max-clock-drift-ms:1000}") long maxClockDriftMs) {
+        RedisWorkerIdLease lease = new RedisWorkerIdLease(redisTemplate, keyPrefix, leaseSeconds, maxClockDriftMs);
+        lease.start();
+        return lease;
+    }
+
+    /**
+     * 实例化 user_id 生成器
+     *
+     * @param workerIdLease
+     * @param maxClockDriftMs 时钟回拨在这个范围内时沿用逻辑时钟继续发号,超过则拒绝
+     * @return
+     */
+    @Bean
+    public IdGenerator idGenerator(RedisWorkerIdLease workerIdLease,
+                                   @Value("${user.id.max-clock-drift-ms:1000}") long maxClockDriftMs) {
+        return new SnowflakeIdGenerator(workerIdLease::workerId, maxClockDriftMs);
+    }
+}
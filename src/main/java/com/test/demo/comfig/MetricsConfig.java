@@ -0,0 +1,83 @@
+package com.test.demo.comfig;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.test.demo.cache.UserCache;
+import com.test.demo.datasource.ReadWriteRoutingDataSource;
+import com.test.demo.metrics.MybatisMetricsInterceptor;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+
+/**
+ * 监控指标配置,统一从 /actuator/prometheus 暴露
+ * 接口耗时(http.server.requests)由 Actuator 自动记录;SQL 耗时见 MybatisMetricsInterceptor,
+ * Redis 命令耗时见 TimedRedisTemplate;这里补充缓存、数据库线程池、密码哈希线程池、Druid 连接池和读写分离的指标
+ */
+@Configuration
+public class MetricsConfig {
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private UserCache userCache;
+    @Autowired
+    private QueueTimeTaskDecorator userDbQueueTime;
+    @Autowired
+    @Qualifier("userDbExecutor")
+    private ThreadPoolTaskExecutor userDbExecutor;
+    @Autowired
+    @Qualifier("passwordHashExecutor")
+    private ThreadPoolTaskExecutor passwordHashExecutor;
+    @Autowired
+    @Qualifier("batchPasswordHashExecutor")
+    private ThreadPoolTaskExecutor batchPasswordHashExecutor;
+    @Autowired
+    private DruidDataSource dataSource;
+    @Autowired
+    private ReadWriteRoutingDataSource routingDataSource;
+
+    /**
+     * 实例化 MyBatis 语句耗时拦截器,mybatis-spring-boot-starter 会自动注册到 SqlSessionFactory
+     * static 方法,创建 SqlSessionFactory 时不需要先注入本类的字段
+     *
+     * @param meterRegistry
+     * @return
+     */
+    @Bean
+    public static MybatisMetricsInterceptor mybatisMetricsInterceptor(MeterRegistry meterRegistry) {
+        return new MybatisMetricsInterceptor(meterRegistry);
+    }
+
+    @PostConstruct
+    public void bindMetrics() {
+        userCache.bindMetrics(meterRegistry);
+
+        userDbQueueTime.bindMetrics(meterRegistry, "userDbExecutor");
+        new ExecutorServiceMetrics(userDbExecutor.getThreadPoolExecutor(), "userDbExecutor", Collections.emptyList())
+                .bindTo(meterRegistry);
+        new ExecutorServiceMetrics(passwordHashExecutor.getThreadPoolExecutor(), "passwordHashExecutor", Collections.emptyList())
+                .bindTo(meterRegistry);
+        new ExecutorServiceMetrics(batchPasswordHashExecutor.getThreadPoolExecutor(), "batchPasswordHashExecutor", Collections.emptyList())
+                .bindTo(meterRegistry);
+
+        routingDataSource.bindMetrics(meterRegistry);
+        Gauge.builder("druid.connections.active", dataSource, DruidDataSource::getActiveCount).register(meterRegistry);
+        Gauge.builder("druid.connections.idle", dataSource, DruidDataSource::getPoolingCount).register(meterRegistry);
+        Gauge.builder("druid.connections.max", dataSource, DruidDataSource::getMaxActive).register(meterRegistry);
+        Gauge.builder("druid.connections.pending", dataSource, DruidDataSource::getWaitThreadCount).register(meterRegistry);
+        FunctionCounter.builder("druid.connections.waits", dataSource, DruidDataSource::getNotEmptyWaitCount).register(meterRegistry);
+        FunctionCounter.builder("druid.connections.wait.time", dataSource, ds -> ds.getNotEmptyWaitMillis() / 1000d)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        FunctionCounter.builder("druid.connections.created", dataSource, DruidDataSource::getCreateCount).register(meterRegistry);
+        FunctionCounter.builder("druid.connections.errors", dataSource, DruidDataSource::getConnectErrorCount).register(meterRegistry);
+    }
+}
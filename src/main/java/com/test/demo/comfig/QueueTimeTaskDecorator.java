@@ -0,0 +1,74 @@
+package com.test.demo.comfig;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.task.TaskDecorator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 记录任务从提交到开始执行的排队时间,以及队列满被拒绝的次数
+ */
+public class QueueTimeTaskDecorator implements TaskDecorator {
+    private final LongAdder tasks = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder queueNanos = new LongAdder();
+    private final LongAccumulator maxQueueNanos = new LongAccumulator(Math::max, 0);
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        long submitted = System.nanoTime();
+        return () -> {
+            long waited = System.nanoTime() - submitted;
+            tasks.increment();
+            queueNanos.add(waited);
+            maxQueueNanos.accumulate(waited);
+            runnable.run();
+        };
+    }
+
+    public void recordRejection() {
+        rejections.increment();
+    }
+
+    public long getTaskCount() {
+        return tasks.sum();
+    }
+
+    public long getTotalQueueNanos() {
+        return queueNanos.sum();
+    }
+
+    /**
+     * 注册排队耗时和拒绝次数指标,name 为线程池名称
+     */
+    public void bindMetrics(MeterRegistry registry, String name) {
+        FunctionTimer.builder("executor.queue.time", this, QueueTimeTaskDecorator::getTaskCount,
+                QueueTimeTaskDecorator::getTotalQueueNanos, TimeUnit.NANOSECONDS)
+                .tag("name", name)
+                .register(registry);
+        Gauge.builder("executor.queue.time.max", maxQueueNanos, max -> max.get() / 1e9)
+                .tag("name", name)
+                .baseUnit("seconds")
+                .register(registry);
+        FunctionCounter.builder("executor.rejections", rejections, LongAdder::sum)
+                .tag("name", name)
+                .register(registry);
+    }
+
+    public Map<String, Object> stats() {
+        long count = tasks.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("tasks", count);
+        stats.put("averageQueueMillis", count == 0 ? 0d : queueNanos.sum() / 1e6 / count);
+        stats.put("maxQueueMillis", maxQueueNanos.get() / 1e6);
+        stats.put("rejections", rejections.sum());
+        return stats;
+    }
+}
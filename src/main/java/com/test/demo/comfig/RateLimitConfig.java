@@ -0,0 +1,52 @@
+package com.test.demo.comfig;
+
+import com.test.demo.limit.RateLimitFilter;
+import com.test.demo.limit.RateLimitProperties;
+import com.test.demo.limit.RedisRateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * 热点接口限流,规则见 application.properties 中的 rate-limit.*
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "rate-limit.enabled", havingValue = "true", matchIfMissing = true)
+public class RateLimitConfig {
+
+    /**
+     * 实例化 RedisRateLimiter 对象
+     *
+     * @param redisTemplate
+     * @return
+     */
+    @Bean
+    public RedisRateLimiter redisRateLimiter(RedisTemplate<String, Object> redisTemplate) {
+        return new RedisRateLimiter(redisTemplate);
+    }
+
+    /**
+     * 注册限流过滤器,排在其它过滤器之前,被拒绝的请求不再产生后续开销
+     *
+     * @param rateLimiter
+     * @param properties
+     * @param meterRegistry
+     * @return
+     */
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(RedisRateLimiter rateLimiter,
+                                                                   RateLimitProperties properties,
+                                                                   MeterRegistry meterRegistry) {
+        FilterRegistrationBean<RateLimitFilter> registration =
+                new FilterRegistrationBean<>(new RateLimitFilter(rateLimiter, properties, meterRegistry));
+        registration.addUrlPatterns("/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+}
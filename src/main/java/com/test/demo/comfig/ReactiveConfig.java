@@ -0,0 +1,52 @@
+package com.test.demo.comfig;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.reactive.config.CorsRegistry;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * reactive 配置文件(spring.profiles.active=reactive)下的 WebFlux 配置
+ * 请求由少量 Netty 事件循环线程处理,阻塞的数据库调用统一切到有界的 userDbExecutor 上执行
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveConfig implements WebFluxConfigurer {
+
+    /**
+     * 实例化 Netty 服务器;classpath 上同时有 Tomcat,不显式指定时会用 Tomcat 跑 WebFlux
+     *
+     * @return
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    /**
+     * 实例化数据库调用的 Scheduler,与 async 模式共用 userDbExecutor,队列满时同样拒绝
+     * trampoline 保证同一个订阅上的任务串行执行,游标不会被多个线程同时读取
+     *
+     * @param userDbExecutor
+     * @return
+     */
+    @Bean
+    public Scheduler userDbScheduler(@Qualifier("userDbExecutor") ThreadPoolTaskExecutor userDbExecutor) {
+        return Schedulers.fromExecutor(userDbExecutor, true);
+    }
+
+    @Override
+    public void addCorsMappings(CorsRegistry registry) {
+        registry
+                .addMapping("/**")
+                .allowedMethods("*")
+                .allowedOrigins("*")
+                .allowedHeaders("*");
+    }
+}
@@ -0,0 +1,99 @@
+package com.test.demo.comfig;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.test.demo.datasource.ReadWriteRoutingDataSource;
+import com.test.demo.datasource.ReadWriteRoutingInterceptor;
+import com.test.demo.datasource.ReadWriteScopeFilter;
+import com.test.demo.datasource.ReplicaProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 读写分离配置
+ * MyBatis 和事务管理器使用 routingDataSource(@Primary),SELECT 分摊到 spring.datasource.replica.nodes 配置的从库,
+ * 写入和事务走主库 dataSource;从库连接池复制主库的 Druid 参数
+ */
+@Configuration
+public class ReadWriteRoutingConfig {
+
+    /**
+     * 实例化读写分离数据源
+     * 先创建主库 dataSource: 它初始化完成时 DataSourceInitializerInvoker 会反过来获取 @Primary 数据源,
+     * 此时本方法能拿到主库的提前引用,否则两者互相等待
+     *
+     * @param dataSource 主库连接池
+     * @param properties
+     * @return
+     */
+    @Bean
+    @Primary
+    @DependsOn("dataSource")
+    public ReadWriteRoutingDataSource routingDataSource(DruidDataSource dataSource, ReplicaProperties properties) {
+        List<ReadWriteRoutingDataSource.Replica> replicas = replicas(dataSource, "replica-", properties.getNodes());
+        ReadWriteRoutingDataSource routing =
+                new ReadWriteRoutingDataSource(dataSource, replicas, properties.getValidationTimeoutSeconds());
+        routing.startHealthCheck(properties.getHealthCheckIntervalMs());
+        return routing;
+    }
+
+    /**
+     * 按 nodes 复制出从库连接池,名称为 prefix + 序号
+     */
+    static List<ReadWriteRoutingDataSource.Replica> replicas(DruidDataSource template, String prefix,
+                                                             List<ReplicaProperties.Node> nodes) {
+        List<ReadWriteRoutingDataSource.Replica> replicas = new ArrayList<>(nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            String name = prefix + i;
+            replicas.add(new ReadWriteRoutingDataSource.Replica(name, clonePool(template, name, nodes.get(i))));
+        }
+        return replicas;
+    }
+
+    /**
+     * 复制 template 的连接池参数,换成 node 的地址和账号
+     */
+    static DruidDataSource clonePool(DruidDataSource template, String name, ReplicaProperties.Node node) {
+        DruidDataSource pool = template.cloneDruidDataSource();
+        pool.setName(name);
+        pool.setUrl(node.getUrl());
+        if (node.getUsername() != null) {
+            pool.setUsername(node.getUsername());
+        }
+        if (node.getPassword() != null) {
+            pool.setPassword(node.getPassword());
+        }
+        return pool;
+    }
+
+    /**
+     * 实例化读写路由拦截器,mybatis-spring-boot-starter 会自动注册到 SqlSessionFactory
+     *
+     * @return
+     */
+    @Bean
+    public static ReadWriteRoutingInterceptor readWriteRoutingInterceptor() {
+        return new ReadWriteRoutingInterceptor();
+    }
+
+    /**
+     * 注册读己之写过滤器,请求内写入之后的读取走主库
+     *
+     * @return
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public FilterRegistrationBean<ReadWriteScopeFilter> readWriteScopeFilter() {
+        FilterRegistrationBean<ReadWriteScopeFilter> registration = new FilterRegistrationBean<>(new ReadWriteScopeFilter());
+        registration.addUrlPatterns("/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 20);
+        return registration;
+    }
+}
@@ -1,11 +1,24 @@
 package com.test.demo.comfig;
 
+import com.test.demo.cache.UserCacheInvalidationListener;
+import com.test.demo.codec.CodecRedisSerializer;
+import com.test.demo.codec.JsonValueCodec;
+import com.test.demo.codec.SchemaBinaryCodec;
+import com.test.demo.codec.UserBinarySchema;
+import com.test.demo.codec.ValueCodec;
+import com.test.demo.metrics.TimedRedisTemplate;
+import com.test.demo.service.RedisService;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.*;
-import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 /**
@@ -20,17 +33,76 @@ public class RedisConfig {
     RedisConnectionFactory redisConnectionFactory;
 
     /**
-     * 实例化 RedisTemplate 对象
+     * 缓存值编码方式: binary(按 schema 的二进制) 或 json
+     */
+    @Value("${redis.codec:binary}")
+    private String codecName;
+
+    /**
+     * 编码后超过该字节数的值用 deflate 压缩,小于等于0不压缩
+     */
+    @Value("${redis.codec.compress-threshold:1024}")
+    private int compressThreshold;
+
+    /**
+     * 实例化 RedisTemplate 对象,每条命令的耗时记入 redis.command 指标
      *
+     * @param meterRegistry
      * @return
      */
     @Bean
-    public RedisTemplate<String, Object> functionDomainRedisTemplate() {
-        RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
+    public RedisTemplate<String, Object> functionDomainRedisTemplate(MeterRegistry meterRegistry) {
+        RedisTemplate<String, Object> redisTemplate = new TimedRedisTemplate<>(meterRegistry);
         initDomainRedisTemplate(redisTemplate, redisConnectionFactory);
         return redisTemplate;
     }
 
+    /**
+     * 实例化 ReactiveRedisTemplate 对象,序列化方式与 functionDomainRedisTemplate 一致,两边读写的缓存互通
+     *
+     * @param reactiveRedisConnectionFactory
+     * @return
+     */
+    @Bean
+    public ReactiveRedisTemplate<String, Object> functionDomainReactiveRedisTemplate(ReactiveRedisConnectionFactory reactiveRedisConnectionFactory) {
+        CodecRedisSerializer valueSerializer = redisValueSerializer();
+        RedisSerializationContext<String, Object> context = RedisSerializationContext
+                .<String, Object>newSerializationContext(new StringRedisSerializer())
+                .value(valueSerializer)
+                .hashKey(new StringRedisSerializer())
+                .hashValue(valueSerializer)
+                .build();
+        return new ReactiveRedisTemplate<>(reactiveRedisConnectionFactory, context);
+    }
+
+    /**
+     * 实例化缓存值的序列化器,值和 hash 值共用
+     *
+     * @return
+     */
+    @Bean
+    public CodecRedisSerializer redisValueSerializer() {
+        return new CodecRedisSerializer(valueCodec(codecName), compressThreshold);
+    }
+
+    /**
+     * 按名字创建编码器,新增 BinarySchema 时在这里注册;同一类型的旧版本 schema 注册在前面,只用来读取
+     *
+     * @param name
+     * @return
+     */
+    public static ValueCodec valueCodec(String name) {
+        JsonValueCodec json = new JsonValueCodec();
+        if (json.name().equals(name)) {
+            return json;
+        }
+        SchemaBinaryCodec binary = new SchemaBinaryCodec(json, new UserBinarySchema());
+        if (binary.name().equals(name)) {
+            return binary;
+        }
+        throw new IllegalArgumentException("Unknown redis.codec: " + name);
+    }
+
     /**
      * 设置数据存入 redis 的序列化方式
      *
@@ -38,10 +110,11 @@ public class RedisConfig {
      * @param factory
      */
     private void initDomainRedisTemplate(RedisTemplate<String, Object> redisTemplate, RedisConnectionFactory factory) {
+        CodecRedisSerializer valueSerializer = redisValueSerializer();
         redisTemplate.setKeySerializer(new StringRedisSerializer());
         redisTemplate.setHashKeySerializer(new StringRedisSerializer());
-        redisTemplate.setHashValueSerializer(new JdkSerializationRedisSerializer());
-        redisTemplate.setValueSerializer(new JdkSerializationRedisSerializer());
+        redisTemplate.setHashValueSerializer(valueSerializer);
+        redisTemplate.setValueSerializer(valueSerializer);
         redisTemplate.setConnectionFactory(factory);
     }
 
@@ -99,4 +172,36 @@ public class RedisConfig {
     public ZSetOperations<String, Object> zSetOperations(RedisTemplate<String, Object> redisTemplate) {
         return redisTemplate.opsForZSet();
     }
+
+    /**
+     * 实例化 RedisService 对象,批量操作按 redis.batch.chunk-size 分批
+     *
+     * @param redisTemplate
+     * @param batchSize
+     * @return
+     */
+    @Bean
+    public RedisService redisService(RedisTemplate<String, Object> redisTemplate,
+                                     @Value("${redis.batch.chunk-size:500}") int batchSize) {
+        RedisService redisService = new RedisService();
+        redisService.setRedisTemplate(redisTemplate);
+        redisService.setBatchSize(batchSize);
+        return redisService;
+    }
+
+    /**
+     * 实例化 RedisMessageListenerContainer 对象,订阅用户缓存失效频道
+     *
+     * @param listener
+     * @param topic
+     * @return
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(UserCacheInvalidationListener listener,
+                                                                       @Value("${user.cache.invalidation-topic:user:cache:invalidate}") String topic) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(listener, new ChannelTopic(topic));
+        return container;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,124 @@
+package com.test.demo.comfig;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.test.demo.datasource.ReadWriteRouting;
+import com.test.demo.datasource.ReadWriteRoutingDataSource;
+import com.test.demo.datasource.ReplicaProperties;
+import com.test.demo.shard.ShardProperties;
+import com.test.demo.shard.ShardedUserMapper;
+import com.test.demo.shard.UserShard;
+import com.test.demo.shard.UserShardMigrator;
+import com.test.demo.shard.UserShards;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.boot.autoconfigure.MybatisProperties;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分片配置,见 ShardProperties
+ * 第 0 个分片沿用自动配置的 SqlSessionFactory 和事务管理器;其它分片各自复制主库的连接池参数、
+ * 映射文件和 MyBatis 拦截器,建立独立的 SqlSessionFactory 和事务管理器
+ */
+@Configuration
+public class ShardConfig {
+
+    /**
+     * 实例化所有分片
+     *
+     * @param sqlSessionFactory 第 0 个分片
+     * @param transactionTemplate 第 0 个分片
+     * @param dataSource 主库连接池,作为其它分片连接池的模板
+     * @param shardProperties
+     * @param replicaProperties
+     * @param mybatisProperties
+     * @param interceptors
+     * @return
+     * @throws Exception
+     */
+    @Bean(destroyMethod = "close")
+    public UserShards userShards(SqlSessionFactory sqlSessionFactory, TransactionTemplate transactionTemplate,
+                                 DruidDataSource dataSource, ShardProperties shardProperties,
+                                 ReplicaProperties replicaProperties, MybatisProperties mybatisProperties,
+                                 ObjectProvider<Interceptor[]> interceptors) throws Exception {
+        List<UserShard> shards = new ArrayList<>();
+        shards.add(new UserShard(0, sqlSessionFactory, transactionTemplate));
+        for (int i = 0; i < shardProperties.getNodes().size(); i++) {
+            int index = i + 1;
+            ShardProperties.Node node = shardProperties.getNodes().get(i);
+            DruidDataSource pool = ReadWriteRoutingConfig.clonePool(dataSource, "shard-" + index, node);
+            ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(pool,
+                    ReadWriteRoutingConfig.replicas(dataSource, "shard-" + index + "-replica-", node.getReplicas()),
+                    replicaProperties.getValidationTimeoutSeconds());
+            routing.startHealthCheck(replicaProperties.getHealthCheckIntervalMs());
+
+            SqlSessionFactoryBean factory = new SqlSessionFactoryBean();
+            factory.setDataSource(routing);
+            factory.setMapperLocations(mybatisProperties.resolveMapperLocations());
+            factory.setTypeAliasesPackage(mybatisProperties.getTypeAliasesPackage());
+            Interceptor[] plugins = interceptors.getIfAvailable();
+            if (plugins != null) {
+                factory.setPlugins(plugins);
+            }
+            shards.add(new UserShard(index, factory.getObject(),
+                    new TransactionTemplate(new DataSourceTransactionManager(routing)), routing, pool));
+        }
+        return new UserShards(shards, shardProperties.getPreviousCount());
+    }
+
+    /**
+     * 实例化分片并行查询线程池,带上调用方的读写分离 Scope
+     *
+     * @param shardProperties
+     * @return
+     */
+    @Bean
+    public ThreadPoolTaskExecutor userShardExecutor(ShardProperties shardProperties) {
+        int shards = shardProperties.getNodes().size() + 1;
+        int size = shardProperties.getQueryPoolSize() > 0 ? shardProperties.getQueryPoolSize() : shards * 4;
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(size);
+        executor.setMaxPoolSize(size);
+        executor.setQueueCapacity(size * 16);
+        executor.setThreadNamePrefix("user-shard-");
+        executor.setTaskDecorator(ReadWriteRouting::propagate);
+        return executor;
+    }
+
+    /**
+     * 实例化分片后的 UserMapper,注入 UserMapper 的地方都使用它
+     *
+     * @param userShards
+     * @param userShardExecutor
+     * @return
+     */
+    @Bean
+    @Primary
+    public ShardedUserMapper shardedUserMapper(UserShards userShards,
+                                               @Qualifier("userShardExecutor") ThreadPoolTaskExecutor userShardExecutor) {
+        return new ShardedUserMapper(userShards, userShardExecutor);
+    }
+
+    /**
+     * 实例化分片迁移工具
+     *
+     * @param userShards
+     * @param shardProperties
+     * @return
+     */
+    @Bean
+    public UserShardMigrator userShardMigrator(UserShards userShards, ShardProperties shardProperties) {
+        return new UserShardMigrator(userShards, shardProperties.getMigrateBatchSize());
+    }
+}
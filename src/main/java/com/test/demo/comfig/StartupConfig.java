@@ -0,0 +1,26 @@
+package com.test.demo.comfig;
+
+import com.test.demo.FirstBootApplication;
+import com.test.demo.startup.LazyInitBeanFactoryPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 启动速度相关配置,生产环境通过 prod profile(application-prod.properties)打开
+ */
+@Configuration
+public class StartupConfig {
+
+    /**
+     * 实例化延迟创建 bean 的后置处理器,只作用于 com.test.demo 下的 bean
+     * static 方法,后置处理器要在其它 bean 定义之前实例化,不能依赖本类的实例
+     *
+     * @return
+     */
+    @Bean
+    @ConditionalOnProperty(name = "spring.main.lazy-initialization", havingValue = "true")
+    public static LazyInitBeanFactoryPostProcessor lazyInitBeanFactoryPostProcessor() {
+        return new LazyInitBeanFactoryPostProcessor(FirstBootApplication.class.getPackage().getName());
+    }
+}
@@ -0,0 +1,45 @@
+package com.test.demo.comfig;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * 响应格式配置: 除 JSON 外按 Accept 协商返回 CBOR / Smile,同一份 Jackson 模型和序列化器,字段名和数字按二进制编码,体积更小、编码更省 CPU
+ * 转换器直接在 Servlet 输出流上创建 JsonGenerator 边编码边写出,不先生成完整的 byte[];
+ * gzip 压缩由 server.compression.* 在 Tomcat 层完成,对三种格式都生效
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class WireFormatConfig {
+    public static final MediaType APPLICATION_CBOR = MediaType.valueOf("application/cbor");
+    public static final MediaType APPLICATION_SMILE = MediaType.valueOf("application/x-jackson-smile");
+
+    /**
+     * 实例化 CBOR 转换器,替换 Spring MVC 默认创建的那个,使其同样应用 spring.jackson.* 配置
+     *
+     * @param builder
+     * @return
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.createXmlMapper(false).factory(new CBORFactory()).build());
+    }
+
+    /**
+     * 实例化 Smile 转换器,同上
+     *
+     * @param builder
+     * @return
+     */
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.createXmlMapper(false).factory(new SmileFactory()).build());
+    }
+}
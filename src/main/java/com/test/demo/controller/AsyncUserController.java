@@ -0,0 +1,108 @@
+package com.test.demo.controller;
+
+import com.test.demo.etag.ConditionalGet;
+import com.test.demo.model.User;
+import com.test.demo.model.UserField;
+import com.test.demo.model.UserView;
+import com.test.demo.service.UserSearchService;
+import com.test.demo.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * 与 UserController 相同的接口,数据库调用交给 userDbExecutor,Tomcat 线程立即返回;
+ * 同时在途的请求数由线程池队列决定,不再受 Tomcat 线程数限制
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "user.web.mode", havingValue = "async")
+public class AsyncUserController {
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserSearchService userSearchService;
+    @Autowired
+    private ConditionalGet conditionalGet;
+    @Autowired
+    @Qualifier("userDbExecutor")
+    private ThreadPoolTaskExecutor userDbExecutor;
+
+    @RequestMapping(value = "/getUserList",method = RequestMethod.GET)
+    public CompletableFuture<ResponseEntity<List<UserView>>> selectUserList(String userName, Long lastUserId, Integer pageSize, String fields,
+                                                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+        Set<UserField> selected = UserField.parse(fields);
+        return supply(() -> conditionalGet.respond("/getUserList", conditionalGet.listETag(), ifNoneMatch,
+                () -> userService.getUserList(userName, lastUserId, pageSize, selected)));
+    }
+    /**
+     * 添加,返回服务端生成的 userId
+     */
+    @RequestMapping("/addUser")
+    public CompletableFuture<String> addUser(User user){
+        return supply(() -> {
+            userService.addUser(user);
+            return String.valueOf(user.getUserId());
+        });
+    }
+    @RequestMapping("/upUser")
+    public CompletableFuture<Integer> upUser(User user){
+        return supply(() -> userService.upUser(user));
+    }
+    @RequestMapping("/delUser")
+    public CompletableFuture<Integer> delUser(@RequestParam long userId){
+        return supply(() -> userService.delUser(userId));
+    }
+    @RequestMapping("/getUserInfo")
+    public CompletableFuture<ResponseEntity<UserView>> getUserInfo(@RequestParam long userId, String fields,
+                                                                   @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+        if (!userService.mightExist(userId)) {
+            return CompletableFuture.completedFuture(ResponseEntity.ok().build());
+        }
+        Set<UserField> selected = UserField.parse(fields);
+        return supply(() -> conditionalGet.respond("/getUserInfo", conditionalGet.userETag(userId), ifNoneMatch,
+                () -> UserView.of(userService.getUserInfo(userId), selected)));
+    }
+    @RequestMapping("/getUserInfoList")
+    public CompletableFuture<ResponseEntity<List<UserView>>> getUserInfoList(@RequestParam List<Long> userIds, String fields,
+                                                                             @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+        Set<UserField> selected = UserField.parse(fields);
+        return supply(() -> conditionalGet.respond("/getUserInfoList", conditionalGet.usersETag(userIds), ifNoneMatch,
+                () -> UserView.of(userService.getUserInfoList(userIds), selected)));
+    }
+    @RequestMapping(value = "/searchUser",method = RequestMethod.GET)
+    public CompletableFuture<List<UserView>> searchUser(String q, Integer limit){
+        return supply(() -> UserView.of(userSearchService.search(q, limit), UserField.ALL));
+    }
+
+    /**
+     * 线程池队列已满,让客户端稍后重试
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<String> busy(){
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body("busy");
+    }
+
+    private <T> CompletableFuture<T> supply(Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(supplier, userDbExecutor);
+    }
+}
@@ -0,0 +1,45 @@
+package com.test.demo.controller;
+
+import com.test.demo.bloom.UserIdFilter;
+import com.test.demo.cache.UserCache;
+import com.test.demo.warmup.UserCacheWarmer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+public class CacheController {
+    @Autowired
+    private UserCache userCache;
+    @Autowired
+    private UserIdFilter userIdFilter;
+    @Autowired
+    private UserCacheWarmer userCacheWarmer;
+
+    /**
+     * 用户缓存命中/未命中/回源耗时统计,用于评估缓存容量和 TTL
+     */
+    @RequestMapping(value = "/cacheStats", method = RequestMethod.GET)
+    public Map<String, Object> cacheStats(){
+        return userCache.stats();
+    }
+
+    /**
+     * user_id 布隆过滤器的大小、插入数、估算误判率和拦截次数
+     */
+    @RequestMapping(value = "/bloomStats", method = RequestMethod.GET)
+    public Map<String, Object> bloomStats(){
+        return userIdFilter.stats();
+    }
+
+    /**
+     * 缓存预热进度、吞吐和是否就绪
+     */
+    @RequestMapping(value = "/warmupStats", method = RequestMethod.GET)
+    public Map<String, Object> warmupStats(){
+        return userCacheWarmer.stats();
+    }
+}
@@ -0,0 +1,38 @@
+package com.test.demo.controller;
+
+import com.test.demo.comfig.QueueTimeTaskDecorator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+
+@RestController
+public class ExecutorController {
+    @Autowired
+    @Qualifier("userDbExecutor")
+    private ThreadPoolTaskExecutor userDbExecutor;
+    @Autowired
+    private QueueTimeTaskDecorator userDbQueueTime;
+
+    /**
+     * 数据库线程池的活跃线程、队列长度、拒绝次数及排队耗时
+     */
+    @RequestMapping(value = "/executorStats", method = RequestMethod.GET)
+    public Map<String, Object> executorStats(){
+        ThreadPoolExecutor executor = userDbExecutor.getThreadPoolExecutor();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("poolSize", executor.getPoolSize());
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("remainingCapacity", executor.getQueue().remainingCapacity());
+        stats.put("completed", executor.getCompletedTaskCount());
+        stats.putAll(userDbQueueTime.stats());
+        return stats;
+    }
+}
@@ -0,0 +1,50 @@
+package com.test.demo.controller;
+
+import com.test.demo.auth.TokenInterceptor;
+import com.test.demo.model.LoginResult;
+import com.test.demo.service.LoginService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 登录/注销;密码校验期间 Tomcat 线程已释放,由哈希线程池计算
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class LoginController {
+    @Autowired
+    private LoginService loginService;
+
+    /**
+     * 登录成功返回令牌,用户名或密码错误返回 401;只接受 POST,密码不出现在 URL 和访问日志里
+     */
+    @RequestMapping(value = "/user/Login", method = RequestMethod.POST)
+    public CompletableFuture<ResponseEntity<LoginResult>> login(String userName, String password){
+        return loginService.login(userName, password).thenApply(result -> result == null
+                ? ResponseEntity.status(HttpStatus.UNAUTHORIZED).<LoginResult>build()
+                : ResponseEntity.ok(result));
+    }
+
+    @RequestMapping(value = "/user/Logout", method = RequestMethod.POST)
+    public void logout(HttpServletRequest request){
+        loginService.logout(TokenInterceptor.tokenOf(request));
+    }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<String> busy(){
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body("busy");
+    }
+}
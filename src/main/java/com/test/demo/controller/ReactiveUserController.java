@@ -0,0 +1,139 @@
+package com.test.demo.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.test.demo.etag.ConditionalGet;
+import com.test.demo.model.User;
+import com.test.demo.model.UserField;
+import com.test.demo.model.UserView;
+import com.test.demo.service.ReactiveUserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 与 UserController 相同的接口,运行在 WebFlux 上,spring.profiles.active=reactive 时生效
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveUserController {
+    private static final byte[] ARRAY_START = {'['};
+    private static final byte[] ARRAY_END = {']'};
+    private static final byte[] SEPARATOR = {','};
+    private static final byte[] EMPTY_ARRAY = {'[', ']'};
+
+    @Autowired
+    private ReactiveUserService reactiveUserService;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private ConditionalGet conditionalGet;
+
+    /**
+     * 返回值仍是 JSON 数组,但逐条编码写出;Jackson 编码器对 application/json 的 Flux 会先收集成 List 再写,这里自己拼数组
+     * "[" 随第一条数据一起写出,查询在出数据前失败时仍能返回正常的错误响应
+     * 游标本身不读密码列,fields 在写出前从每行中选取;没有任何用户变更时返回 304,不打开游标
+     */
+    @RequestMapping(value = "/getUserList",method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public Flux<DataBuffer> selectUserList(String userName, Long lastUserId, Integer pageSize, String fields,
+                                           @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                           ServerHttpResponse response){
+        Set<UserField> selected = UserField.parse(fields);
+        return reactiveUserService.eTag(conditionalGet::listETag).flatMapMany(etag -> {
+            response.getHeaders().putAll(conditionalGet.headers("/getUserList", etag));
+            if (conditionalGet.isNotModified("/getUserList", etag, ifNoneMatch)) {
+                response.setStatusCode(HttpStatus.NOT_MODIFIED);
+                return Flux.empty();
+            }
+            return writeUserList(userName, lastUserId, pageSize, selected, response.bufferFactory());
+        });
+    }
+
+    private Flux<DataBuffer> writeUserList(String userName, Long lastUserId, Integer pageSize, Set<UserField> selected,
+                                           DataBufferFactory bufferFactory){
+        ObjectWriter writer = objectMapper.writerFor(UserView.class);
+        AtomicBoolean started = new AtomicBoolean();
+        return reactiveUserService.getUserList(userName, lastUserId, pageSize)
+                .map(user -> {
+                    byte[] json;
+                    try {
+                        json = writer.writeValueAsBytes(UserView.of(user, selected));
+                    } catch (JsonProcessingException e) {
+                        throw Exceptions.propagate(e);
+                    }
+                    DataBuffer buffer = bufferFactory.allocateBuffer(json.length + 1);
+                    buffer.write(started.getAndSet(true) ? SEPARATOR : ARRAY_START);
+                    return buffer.write(json);
+                })
+                .concatWith(Mono.fromSupplier(() -> bufferFactory.wrap(started.get() ? ARRAY_END : EMPTY_ARRAY)));
+    }
+    /**
+     * 添加,返回服务端生成的 userId
+     */
+    @RequestMapping("/addUser")
+    public Mono<String> addUser(User user){
+        return reactiveUserService.addUser(user).map(rows -> String.valueOf(user.getUserId()));
+    }
+    @RequestMapping("/upUser")
+    public Mono<Integer> upUser(User user){
+        return reactiveUserService.upUser(user);
+    }
+    @RequestMapping("/delUser")
+    public Mono<Integer> delUser(@RequestParam long userId){
+        return reactiveUserService.delUser(userId);
+    }
+    @RequestMapping("/getUserInfo")
+    public Mono<ResponseEntity<UserView>> getUserInfo(@RequestParam long userId, String fields,
+                                                      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+        if (!reactiveUserService.mightExist(userId)) {
+            return Mono.just(ResponseEntity.ok().build());
+        }
+        Set<UserField> selected = UserField.parse(fields);
+        return reactiveUserService.eTag(() -> conditionalGet.userETag(userId))
+                .flatMap(etag -> conditionalGet.respond("/getUserInfo", etag, ifNoneMatch,
+                        reactiveUserService.getUserInfo(userId).map(user -> UserView.of(user, selected))));
+    }
+    @RequestMapping("/getUserInfoList")
+    public Mono<ResponseEntity<List<UserView>>> getUserInfoList(@RequestParam List<Long> userIds, String fields,
+                                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+        Set<UserField> selected = UserField.parse(fields);
+        return reactiveUserService.eTag(() -> conditionalGet.usersETag(userIds))
+                .flatMap(etag -> conditionalGet.respond("/getUserInfoList", etag, ifNoneMatch,
+                        reactiveUserService.getUserInfoList(userIds).map(users -> UserView.of(users, selected))));
+    }
+    @RequestMapping(value = "/searchUser",method = RequestMethod.GET)
+    public Mono<List<UserView>> searchUser(String q, Integer limit){
+        return reactiveUserService.searchUser(q, limit).map(users -> UserView.of(users, UserField.ALL));
+    }
+
+    /**
+     * 数据库线程池队列已满,让客户端稍后重试
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<String> busy(){
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body("busy");
+    }
+}
@@ -0,0 +1,49 @@
+package com.test.demo.controller;
+
+import com.test.demo.shard.UserShardMigrator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+public class ShardController {
+    private static final Logger logger = LoggerFactory.getLogger(ShardController.class);
+
+    @Autowired
+    private UserShardMigrator userShardMigrator;
+
+    /**
+     * 分片数、是否在迁移及迁移进度
+     */
+    @RequestMapping(value = "/shardStats", method = RequestMethod.GET)
+    public Map<String, Object> shardStats(){
+        return userShardMigrator.status();
+    }
+
+    /**
+     * 在后台开始一轮迁移,已在执行时返回 409;进度见 /shardStats
+     */
+    @RequestMapping(value = "/shardMigrate", method = RequestMethod.POST)
+    public ResponseEntity<Map<String, Object>> shardMigrate(){
+        if (Boolean.TRUE.equals(userShardMigrator.status().get("running"))) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(userShardMigrator.status());
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                userShardMigrator.migrate();
+            } catch (RuntimeException e) {
+                logger.warn("shard migration failed: {}", e.getMessage());
+            }
+        }, "user-shard-migrate");
+        thread.setDaemon(true);
+        thread.start();
+        return ResponseEntity.accepted().body(userShardMigrator.status());
+    }
+}
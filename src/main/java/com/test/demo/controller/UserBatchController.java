@@ -0,0 +1,70 @@
+package com.test.demo.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.test.demo.model.BatchRowResult;
+import com.test.demo.model.User;
+import com.test.demo.service.UserBatchService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * 批量导入/修改/删除用户,返回每一行的处理结果
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class UserBatchController {
+    private static final String NDJSON = "application/x-ndjson";
+
+    @Autowired
+    private UserBatchService userBatchService;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @RequestMapping(value = "/users/batch", method = RequestMethod.POST, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<BatchRowResult> addUsers(@RequestBody List<User> users){
+        return userBatchService.addUsers(users);
+    }
+
+    /**
+     * 请求体每行一个用户 JSON,边读边写,结果同样按行流式返回
+     */
+    @RequestMapping(value = "/users/batch", method = RequestMethod.POST, consumes = NDJSON)
+    public void addUsers(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        try (SequenceWriter writer = objectMapper.writerFor(BatchRowResult.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("\n")
+                .writeValues(response.getOutputStream())) {
+            userBatchService.addUsers(request.getInputStream(), result -> {
+                try {
+                    writer.write(result);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    @RequestMapping(value = "/users/batch", method = RequestMethod.PUT, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<BatchRowResult> upUsers(@RequestBody List<User> users){
+        return userBatchService.upUsers(users);
+    }
+
+    @RequestMapping(value = "/users/batch", method = RequestMethod.DELETE, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<BatchRowResult> delUsers(@RequestBody List<Long> userIds){
+        return userBatchService.delUsers(userIds);
+    }
+}
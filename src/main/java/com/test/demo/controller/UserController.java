@@ -1,37 +1,96 @@
 package com.test.demo.controller;
 
+import com.test.demo.etag.ConditionalGet;
 import com.test.demo.model.User;
+import com.test.demo.model.UserField;
+import com.test.demo.model.UserView;
+import com.test.demo.service.UserSearchService;
 import com.test.demo.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
+import java.util.Set;
 
+/**
+ * 同步处理,数据库调用期间占用 Tomcat 工作线程;user.web.mode=async 时由 AsyncUserController 代替
+ */
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "user.web.mode", havingValue = "blocking", matchIfMissing = true)
 public class UserController {
     @Autowired
     private UserService userService;
+    @Autowired
+    private UserSearchService userSearchService;
+    @Autowired
+    private ConditionalGet conditionalGet;
 
+    /**
+     * 分页查询,下一页把本页最后一条的 userId 作为 lastUserId 传回
+     * fields=userName,userSex 只查询并返回这些字段,不传时返回全部字段
+     * 带 If-None-Match 且没有任何用户变更时返回 304
+     */
     @RequestMapping(value = "/getUserList",method = RequestMethod.GET)
-    public List<User> selectUserList(String userName){
-        return  userService.getUserList(userName);
+    public ResponseEntity<List<UserView>> selectUserList(String userName, Long lastUserId, Integer pageSize, String fields,
+                                                         @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+        Set<UserField> selected = UserField.parse(fields);
+        return conditionalGet.respond("/getUserList", conditionalGet.listETag(), ifNoneMatch,
+                () -> userService.getUserList(userName, lastUserId, pageSize, selected));
     }
+
+    /**
+     * 添加,返回服务端生成的 userId
+     */
     @RequestMapping("/addUser")
-    public void addUser(User user){
+    public String addUser(User user){
         userService.addUser(user);
+        return String.valueOf(user.getUserId());
     }
     @RequestMapping("/upUser")
     public void upUser(User user){
         userService.upUser(user);
     }
     @RequestMapping("/delUser")
-    public void delUser(String userId){
+    public void delUser(@RequestParam long userId){
         userService.delUser(userId);
     }
+    /**
+     * 单个查询走缓存,fields 从缓存的结果中选取;该用户没有变更时返回 304;一定不存在的 userId 不读版本戳直接返回空
+     */
     @RequestMapping("/getUserInfo")
-    public User getUserInfo(String userId){
-        return userService.getUserInfo(userId);
+    public ResponseEntity<UserView> getUserInfo(@RequestParam long userId, String fields,
+                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+        if (!userService.mightExist(userId)) {
+            return ResponseEntity.ok().build();
+        }
+        Set<UserField> selected = UserField.parse(fields);
+        return conditionalGet.respond("/getUserInfo", conditionalGet.userETag(userId), ifNoneMatch,
+                () -> UserView.of(userService.getUserInfo(userId), selected));
+    }
+    /**
+     * 批量查询,userIds=1,2,3
+     */
+    @RequestMapping("/getUserInfoList")
+    public ResponseEntity<List<UserView>> getUserInfoList(@RequestParam List<Long> userIds, String fields,
+                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+        Set<UserField> selected = UserField.parse(fields);
+        return conditionalGet.respond("/getUserInfoList", conditionalGet.usersETag(userIds), ifNoneMatch,
+                () -> UserView.of(userService.getUserInfoList(userIds), selected));
+    }
+    /**
+     * 按用户名搜索(前缀/子串/容错),q 为关键字,limit 为返回条数
+     */
+    @RequestMapping(value = "/searchUser",method = RequestMethod.GET)
+    public List<UserView> searchUser(String q, Integer limit){
+        return UserView.of(userSearchService.search(q, limit), UserField.ALL);
     }
 }
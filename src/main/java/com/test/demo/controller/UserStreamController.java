@@ -0,0 +1,132 @@
+package com.test.demo.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.test.demo.comfig.WireFormatConfig;
+import com.test.demo.export.UserExportFormat;
+import com.test.demo.export.UserExportService;
+import com.test.demo.model.UserField;
+import com.test.demo.model.UserView;
+import com.test.demo.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 流式接口,写出过程本身在 MVC 异步线程池中执行,同步/异步模式共用
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class UserStreamController {
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private MappingJackson2CborHttpMessageConverter cborConverter;
+    @Autowired
+    private MappingJackson2SmileHttpMessageConverter smileConverter;
+    @Autowired
+    private UserExportService userExportService;
+
+    /**
+     * 流式导出全部匹配的用户,逐行写出数组,内存占用不随表大小增长
+     * 按 Accept 以 JSON、CBOR 或 Smile 编码,生成器直接写在响应输出流上
+     */
+    @RequestMapping(value = "/getUserList/stream", method = RequestMethod.GET,
+            produces = {MediaType.APPLICATION_JSON_UTF8_VALUE, "application/cbor", "application/x-jackson-smile"})
+    public ResponseEntity<StreamingResponseBody> streamUserList(String userName,
+                                                                @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept){
+        MediaType contentType = negotiate(accept);
+        ObjectMapper mapper = mapperFor(contentType);
+        //按行刷新会让每个用户都产生一次 socket 写,交给缓冲区满了再刷
+        ObjectWriter writer = mapper.writerFor(UserView.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+                generator.writeStartArray();
+                userService.streamUserList(userName, user -> {
+                    try {
+                        writer.writeValue(generator, UserView.of(user, UserField.ALL));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(contentType).body(body);
+    }
+
+    /**
+     * 全表导出,format=csv|ndjson|columnar,fields 同列表接口;行直接编码进池化缓冲区,满一块写一次响应
+     * csv/ndjson 按 server.compression 配置 gzip,列式格式本身已压缩
+     */
+    @RequestMapping(value = "/users/export", method = RequestMethod.GET)
+    public ResponseEntity<StreamingResponseBody> exportUsers(String format, String fields){
+        UserExportFormat exportFormat = UserExportFormat.parse(format);
+        Set<UserField> selected = UserField.parse(fields);
+        StreamingResponseBody body = out -> userExportService.export(exportFormat, selected, Channels.newChannel(out));
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users." + exportFormat.getExtension() + "\"")
+                .body(body);
+    }
+
+    //未知的 format 或 fields
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> badRequest(IllegalArgumentException e){
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+    }
+
+    /**
+     * 按 Accept 的 q 值和具体程度选第一个支持的格式,没有 Accept 或只有通配时用 JSON
+     */
+    private static MediaType negotiate(String accept) {
+        if (accept == null || accept.isEmpty()) {
+            return MediaType.APPLICATION_JSON_UTF8;
+        }
+        List<MediaType> accepted = MediaType.parseMediaTypes(accept);
+        MediaType.sortBySpecificityAndQuality(accepted);
+        for (MediaType type : accepted) {
+            if (type.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                return MediaType.APPLICATION_JSON_UTF8;
+            }
+            if (type.isCompatibleWith(WireFormatConfig.APPLICATION_CBOR)) {
+                return WireFormatConfig.APPLICATION_CBOR;
+            }
+            if (type.isCompatibleWith(WireFormatConfig.APPLICATION_SMILE)) {
+                return WireFormatConfig.APPLICATION_SMILE;
+            }
+        }
+        return MediaType.APPLICATION_JSON_UTF8;
+    }
+
+    private ObjectMapper mapperFor(MediaType contentType) {
+        if (contentType.equals(WireFormatConfig.APPLICATION_CBOR)) {
+            return cborConverter.getObjectMapper();
+        }
+        if (contentType.equals(WireFormatConfig.APPLICATION_SMILE)) {
+            return smileConverter.getObjectMapper();
+        }
+        return objectMapper;
+    }
+}
@@ -1,21 +1,54 @@
 package com.test.demo.dao;
 
 import com.test.demo.model.User;
+import com.test.demo.model.UserField;
+import com.test.demo.model.UserIdRange;
+import com.test.demo.model.UserView;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 
 import java.util.List;
+import java.util.Set;
 
 public interface UserMapper {
-    //查询
-    List<User> getUserList(String userName);
+    //查询(按user_id游标分页,userName为前缀过滤)
+    List<User> getUserList(@Param("userName") String userName,
+                           @Param("lastUserId") Long lastUserId,
+                           @Param("pageSize") int pageSize);
+    //按字段投影的分页查询,只读取选中的列,userId 总是返回
+    List<UserView> getUserViewList(@Param("userName") String userName,
+                                   @Param("lastUserId") Long lastUserId,
+                                   @Param("pageSize") int pageSize,
+                                   @Param("fields") Set<UserField> fields);
+    //流式查询,必须在同一个 SqlSession 内遍历并关闭;lastUserId、limit 可为空
+    Cursor<User> streamUserList(@Param("userName") String userName,
+                                @Param("lastUserId") Long lastUserId,
+                                @Param("limit") Integer limit);
+    //只流式读取 user_id(按 user_id 升序),用于建立布隆过滤器;lastUserId 可为空
+    Cursor<Long> streamUserIds(@Param("lastUserId") Long lastUserId);
+    //user_id 不小于 minUserId 的最小值、最大值和行数,用于缓存预热切分区间;minUserId 可为空
+    UserIdRange getUserIdRange(@Param("minUserId") Long minUserId);
+    //按 user_id 区间 (lastUserId, maxUserId] 取一页完整的行(含密码哈希,与缓存里的一致),用于缓存预热
+    List<User> getUserRangePage(@Param("lastUserId") long lastUserId,
+                                @Param("maxUserId") long maxUserId,
+                                @Param("limit") int limit);
+    //流式读取 user_id 区间 (lastUserId, maxUserId] 的对外列,用于分区间并行导出
+    Cursor<User> streamUserRange(@Param("lastUserId") long lastUserId,
+                                 @Param("maxUserId") long maxUserId);
     //添加
    int addUser(User user);
+    //批量添加,user_id 由服务端生成
+    int batchAddUser(@Param("users") List<User> users);
    //修改
    int upUser(User user);
    //查询单个
-    User getUserInfo(String userId);
+    User getUserInfo(long userId);
+    //批量查询
+    List<User> getUserInfoList(@Param("userIds") List<Long> userIds);
    //删除
-    int delUser(String userId);
-    //登录
+    int delUser(long userId);
+    //登录,按用户名查找(走 idx_user_name 索引)
+    User getUserByName(String userName);
 
 }
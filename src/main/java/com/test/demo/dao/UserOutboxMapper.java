@@ -0,0 +1,17 @@
+package com.test.demo.dao;
+
+import com.test.demo.model.UserChange;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+public interface UserOutboxMapper {
+    //记录一个用户的变更,须与 user 表的写入在同一个事务里
+    int addChange(@Param("userId") long userId, @Param("op") String op, @Param("createdAt") long createdAt);
+    //批量记录
+    int batchAddChange(@Param("userIds") List<Long> userIds, @Param("op") String op, @Param("createdAt") long createdAt);
+    //按写入顺序取未处理的变更
+    List<UserChange> getPendingChanges(@Param("limit") int limit);
+    //删除已处理的变更
+    int delChanges(@Param("ids") List<Long> ids);
+}
@@ -0,0 +1,18 @@
+package com.test.demo.dao;
+
+import com.test.demo.model.User;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 分片迁移用的语句,只在单个分片上执行,见 UserShardMigrator
+ */
+public interface UserReshardMapper {
+    //按 user_id 顺序取一页并加行锁,必须在事务中调用;lastUserId 可为空
+    List<User> lockUserPage(@Param("lastUserId") Long lastUserId, @Param("limit") int limit);
+    //复制到目标分片,已存在的 user_id 保留目标分片上的数据
+    int copyUsers(@Param("users") List<User> users);
+    //按 user_id 批量删除
+    int delUsers(@Param("userIds") List<Long> userIds);
+}
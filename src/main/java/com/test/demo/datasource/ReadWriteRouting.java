@@ -0,0 +1,121 @@
+package com.test.demo.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * 读写分离的线程上下文
+ * ReadWriteRoutingInterceptor 在执行 SELECT 期间标记当前线程为只读语句,ReadWriteRoutingDataSource 据此选库;
+ * Scope 对应一次请求,请求内发生过写入后,后续读取固定走主库(读己之写)。
+ * Scope 由 ReadWriteScopeFilter 绑定,提交到 userDbExecutor 的任务通过 propagate 带上提交线程的 Scope;
+ * 结果要写进缓存的读取用 onPrimary 固定走主库
+ */
+public final class ReadWriteRouting {
+    private static final ThreadLocal<Boolean> READ_STATEMENT = new ThreadLocal<>();
+    private static final ThreadLocal<Scope> SCOPE = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> PRIMARY = new ThreadLocal<>();
+
+    private ReadWriteRouting() {
+    }
+
+    /**
+     * 一次请求的读写状态,可能被多个线程同时访问
+     */
+    public static final class Scope {
+        private volatile boolean wrote;
+
+        public boolean hasWritten() {
+            return wrote;
+        }
+    }
+
+    /**
+     * 绑定新的 Scope,返回之前绑定的(一般为 null),用于 restore
+     */
+    public static Scope bind(Scope scope) {
+        Scope previous = SCOPE.get();
+        SCOPE.set(scope);
+        return previous;
+    }
+
+    public static void restore(Scope previous) {
+        if (previous == null) {
+            SCOPE.remove();
+        } else {
+            SCOPE.set(previous);
+        }
+    }
+
+    public static Scope currentScope() {
+        return SCOPE.get();
+    }
+
+    /**
+     * 让任务在提交线程的 Scope 中执行;提交时没有 Scope 则原样返回
+     */
+    public static Runnable propagate(Runnable task) {
+        Scope scope = SCOPE.get();
+        if (scope == null) {
+            return task;
+        }
+        return () -> {
+            Scope previous = bind(scope);
+            try {
+                task.run();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    /**
+     * 在主库上执行读取: 读穿缓存的加载、缓存预热读出的行会在 Redis 里留到 TTL 过期,
+     * 从库延迟期间读到的旧行不能写进缓存(写入后的延迟双删和变更中继都只删一次,挡不住更长的延迟)
+     */
+    public static <T> T onPrimary(Supplier<T> reader) {
+        Boolean previous = PRIMARY.get();
+        PRIMARY.set(Boolean.TRUE);
+        try {
+            return reader.get();
+        } finally {
+            if (previous == null) {
+                PRIMARY.remove();
+            } else {
+                PRIMARY.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 开始执行一条语句,写语句同时把当前 Scope 固定到主库;返回值交给 endStatement 恢复
+     */
+    static Boolean beginStatement(boolean read) {
+        if (!read) {
+            Scope scope = SCOPE.get();
+            if (scope != null) {
+                scope.wrote = true;
+            }
+        }
+        Boolean previous = READ_STATEMENT.get();
+        READ_STATEMENT.set(read);
+        return previous;
+    }
+
+    static void endStatement(Boolean previous) {
+        if (previous == null) {
+            READ_STATEMENT.remove();
+        } else {
+            READ_STATEMENT.set(previous);
+        }
+    }
+
+    /**
+     * 当前线程正在执行只读语句,不在 onPrimary 中,且所在请求还没有写过
+     */
+    static boolean replicaAllowed() {
+        if (!Boolean.TRUE.equals(READ_STATEMENT.get()) || Boolean.TRUE.equals(PRIMARY.get())) {
+            return false;
+        }
+        Scope scope = SCOPE.get();
+        return scope == null || !scope.wrote;
+    }
+}
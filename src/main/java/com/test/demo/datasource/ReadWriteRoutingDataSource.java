@@ -0,0 +1,180 @@
+package com.test.demo.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 读写分离数据源: 只读语句(见 ReadWriteRouting)轮询分配到健康的从库,其余连接都来自主库
+ * 从库由后台定时检查,取连接失败也会立即标记为不可用;没有可用从库时读请求退回主库
+ * 从库连接池归本对象所有,close 时一并关闭;主库连接池是独立的 Bean,不在这里关闭
+ */
+public class ReadWriteRoutingDataSource extends AbstractDataSource implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ReadWriteRoutingDataSource.class);
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final int validationTimeoutSeconds;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private Counter primaryRoutes;
+    private ScheduledExecutorService healthChecker;
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<Replica> replicas, int validationTimeoutSeconds) {
+        this.primary = primary;
+        this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+    }
+
+    /**
+     * 一个从库
+     */
+    public static class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy = true;
+        private Counter routes;
+
+        public Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isHealthy() {
+            return healthy;
+        }
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!replicas.isEmpty() && ReadWriteRouting.replicaAllowed()
+                && !TransactionSynchronizationManager.isActualTransactionActive()) {
+            int size = replicas.size();
+            int start = Math.floorMod(next.getAndIncrement(), size);
+            for (int i = 0; i < size; i++) {
+                Replica replica = replicas.get((start + i) % size);
+                if (!replica.healthy) {
+                    continue;
+                }
+                try {
+                    Connection connection = replica.dataSource.getConnection();
+                    if (replica.routes != null) {
+                        replica.routes.increment();
+                    }
+                    return connection;
+                } catch (SQLException e) {
+                    markDown(replica, e);
+                }
+            }
+        }
+        if (primaryRoutes != null) {
+            primaryRoutes.increment();
+        }
+        return primary.getConnection();
+    }
+
+    /**
+     * 显式指定账号的连接一律来自主库,从库的账号在各自的连接池里配置
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        if (primaryRoutes != null) {
+            primaryRoutes.increment();
+        }
+        return primary.getConnection(username, password);
+    }
+
+    /**
+     * 逐个校验从库连接,恢复的从库重新参与分配
+     */
+    public void checkHealth() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection()) {
+                if (!connection.isValid(validationTimeoutSeconds)) {
+                    throw new SQLException("connection is not valid");
+                }
+                if (!replica.healthy) {
+                    replica.healthy = true;
+                    logger.info("replica {} is back in rotation", replica.name);
+                }
+            } catch (SQLException e) {
+                markDown(replica, e);
+            }
+        }
+    }
+
+    /**
+     * 开始定时检查从库,intervalMillis 小于等于 0 或没有从库时不检查
+     */
+    public void startHealthCheck(long intervalMillis) {
+        if (replicas.isEmpty() || intervalMillis <= 0) {
+            return;
+        }
+        healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        healthChecker.scheduleWithFixedDelay(this::checkHealth, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * datasource.routing: 按目标库统计取连接次数;datasource.replica.healthy: 从库是否可用
+     */
+    public void bindMetrics(MeterRegistry registry) {
+        primaryRoutes = Counter.builder("datasource.routing").tag("target", "primary").register(registry);
+        for (Replica replica : replicas) {
+            replica.routes = Counter.builder("datasource.routing").tag("target", replica.name).register(registry);
+            Gauge.builder("datasource.replica.healthy", replica, r -> r.healthy ? 1 : 0)
+                    .tag("replica", replica.name)
+                    .register(registry);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+        }
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) replica.dataSource).close();
+                } catch (Exception e) {
+                    logger.warn("close replica {} failed: {}", replica.name, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void markDown(Replica replica, SQLException e) {
+        if (replica.healthy) {
+            replica.healthy = false;
+            logger.warn("replica {} taken out of rotation: {}", replica.name, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.test.demo.datasource;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.util.Properties;
+
+/**
+ * 按映射语句类型设置读写路由: SELECT 可以走从库,INSERT/UPDATE/DELETE 走主库并固定当前请求
+ * 非事务的 SqlSession 在执行第一条语句时才取连接,所以这里设置的标记能影响 ReadWriteRoutingDataSource 的选择;
+ * 事务中的连接在事务开始时已经取好(没有标记,走主库),整个事务都在主库上
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "queryCursor", args = {MappedStatement.class, Object.class, RowBounds.class})
+})
+public class ReadWriteRoutingInterceptor implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+        Boolean previous = ReadWriteRouting.beginStatement(statement.getSqlCommandType() == SqlCommandType.SELECT);
+        try {
+            return invocation.proceed();
+        } finally {
+            ReadWriteRouting.endStatement(previous);
+        }
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        return target instanceof Executor ? Plugin.wrap(target, this) : target;
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+    }
+}
@@ -0,0 +1,26 @@
+package com.test.demo.datasource;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 每个请求绑定一个 ReadWriteRouting.Scope,请求内写过之后的读取都走主库
+ */
+public class ReadWriteScopeFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ReadWriteRouting.Scope previous = ReadWriteRouting.bind(new ReadWriteRouting.Scope());
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadWriteRouting.restore(previous);
+        }
+    }
+}
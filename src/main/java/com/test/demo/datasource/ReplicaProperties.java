@@ -0,0 +1,81 @@
+package com.test.demo.datasource;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 从库配置,前缀 spring.datasource.replica
+ * 连接池参数沿用主库(spring.datasource.druid.*),这里只配置地址和账号;没有配置从库时所有语句都走主库
+ */
+@Component
+@ConfigurationProperties(prefix = "spring.datasource.replica")
+public class ReplicaProperties {
+    private List<Node> nodes = new ArrayList<>();
+
+    /**
+     * 从库健康检查间隔,0 表示只在取连接失败时摘除、不再自动恢复
+     */
+    private long healthCheckIntervalMs = 5000;
+
+    private int validationTimeoutSeconds = 1;
+
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(List<Node> nodes) {
+        this.nodes = nodes;
+    }
+
+    public long getHealthCheckIntervalMs() {
+        return healthCheckIntervalMs;
+    }
+
+    public void setHealthCheckIntervalMs(long healthCheckIntervalMs) {
+        this.healthCheckIntervalMs = healthCheckIntervalMs;
+    }
+
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+    }
+
+    /**
+     * 一个从库,账号密码为空时与主库相同
+     */
+    public static class Node {
+        private String url;
+        private String username;
+        private String password;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+    }
+}
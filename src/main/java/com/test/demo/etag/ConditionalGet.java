@@ -0,0 +1,158 @@
+package com.test.demo.etag;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 查询接口的条件请求: ETag 由 UserVersions 中的版本戳生成,If-None-Match 命中时直接返回 304,
+ * 不查缓存和数据库,也不序列化响应体
+ * <p>
+ * 版本戳要在读数据之前取: 先读到旧版本再读到新数据,最多是客户端下次多拿一次完整响应;反过来会让旧数据配上新版本
+ */
+@Component
+public class ConditionalGet {
+    /**
+     * 响应式接口里 Mono 不能包含 null,用它表示没有 ETag
+     */
+    public static final String NO_ETAG = "";
+
+    @Autowired
+    private UserVersions userVersions;
+    @Autowired
+    private HttpCacheProperties properties;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 单个用户的 ETag;关闭或 Redis 不可用时返回 null,照常返回完整响应
+     */
+    public String userETag(long userId) {
+        return properties.isEnabled() ? quote(userVersions.userVersion(userId)) : null;
+    }
+
+    /**
+     * 批量查询的 ETag,由每个用户的版本戳合成
+     */
+    public String usersETag(List<Long> userIds) {
+        if (!properties.isEnabled() || userIds == null || userIds.isEmpty()) {
+            return null;
+        }
+        List<String> versions = userVersions.userVersions(userIds);
+        if (versions == null) {
+            return null;
+        }
+        return quote(DigestUtils.md5DigestAsHex(String.join(",", versions).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * 列表类查询的 ETag,任何用户变更都会让它失效
+     */
+    public String listETag() {
+        return properties.isEnabled() ? quote(userVersions.listVersion()) : null;
+    }
+
+    /**
+     * If-None-Match 与 etag 匹配时返回 304,否则调用 body 生成完整响应;两种情况都带上 ETag 和 Cache-Control
+     */
+    public <T> ResponseEntity<T> respond(String endpoint, String etag, String ifNoneMatch, Supplier<T> body) {
+        HttpHeaders headers = headers(endpoint, etag);
+        if (isNotModified(endpoint, etag, ifNoneMatch)) {
+            return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+        }
+        return new ResponseEntity<>(body.get(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * respond 的响应式版本,未命中时才订阅 body;body 为空时返回空的 200 响应
+     */
+    public <T> Mono<ResponseEntity<T>> respond(String endpoint, String etag, String ifNoneMatch, Mono<T> body) {
+        HttpHeaders headers = headers(endpoint, etag);
+        if (isNotModified(endpoint, etag, ifNoneMatch)) {
+            return Mono.just(new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED));
+        }
+        return body.map(value -> new ResponseEntity<>(value, headers, HttpStatus.OK))
+                .defaultIfEmpty(new ResponseEntity<>(headers, HttpStatus.OK));
+    }
+
+    /**
+     * 判断是否可以返回 304,并按接口记录 user.http.etag.requests:
+     * not-modified 返回了 304,modified 带了 If-None-Match 但已变化,unconditional 没带 If-None-Match,unavailable 没有版本戳
+     */
+    public boolean isNotModified(String endpoint, String etag, String ifNoneMatch) {
+        if (!properties.isEnabled()) {
+            return false;
+        }
+        String result;
+        if (etag == null || etag.isEmpty()) {
+            result = "unavailable";
+        } else if (ifNoneMatch == null) {
+            result = "unconditional";
+        } else if (matches(etag, ifNoneMatch)) {
+            result = "not-modified";
+        } else {
+            result = "modified";
+        }
+        counters.computeIfAbsent(endpoint + ' ' + result, key -> Counter.builder("user.http.etag.requests")
+                .tag("endpoint", endpoint)
+                .tag("result", result)
+                .register(meterRegistry))
+                .increment();
+        return "not-modified".equals(result);
+    }
+
+    /**
+     * ETag 和该接口配置的 Cache-Control
+     * 同一份数据按 Accept 可能编码成 JSON/CBOR/Smile,ETag 相同,用 Vary: Accept 让中间缓存按格式分开存
+     */
+    public HttpHeaders headers(String endpoint, String etag) {
+        HttpHeaders headers = new HttpHeaders();
+        if (!properties.isEnabled()) {
+            return headers;
+        }
+        headers.setVary(Collections.singletonList(HttpHeaders.ACCEPT));
+        if (etag != null && !etag.isEmpty()) {
+            headers.setETag(etag);
+        }
+        String cacheControl = properties.cacheControlFor(endpoint);
+        if (cacheControl != null && !cacheControl.isEmpty()) {
+            headers.setCacheControl(cacheControl);
+        }
+        return headers;
+    }
+
+    /**
+     * If-None-Match 可以是 * 或逗号分隔的多个 ETag,按弱比较(忽略 W/ 前缀)
+     */
+    static boolean matches(String etag, String ifNoneMatch) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String quote(String version) {
+        return version == null ? null : '"' + version + '"';
+    }
+}
@@ -0,0 +1,55 @@
+package com.test.demo.etag;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 查询接口的 HTTP 缓存配置,前缀 user.http-cache
+ * cache-control 按接口路径配置 Cache-Control 响应头,没有配置的接口用 default-cache-control
+ */
+@Component
+@ConfigurationProperties(prefix = "user.http-cache")
+public class HttpCacheProperties {
+    /**
+     * 关闭后不返回 ETag,也不处理 If-None-Match
+     */
+    private boolean enabled = true;
+
+    /**
+     * no-cache 表示客户端可以缓存,但每次使用前都要带 If-None-Match 验证
+     */
+    private String defaultCacheControl = "no-cache";
+
+    private Map<String, String> cacheControl = new LinkedHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDefaultCacheControl() {
+        return defaultCacheControl;
+    }
+
+    public void setDefaultCacheControl(String defaultCacheControl) {
+        this.defaultCacheControl = defaultCacheControl;
+    }
+
+    public Map<String, String> getCacheControl() {
+        return cacheControl;
+    }
+
+    public void setCacheControl(Map<String, String> cacheControl) {
+        this.cacheControl = cacheControl;
+    }
+
+    public String cacheControlFor(String endpoint) {
+        return cacheControl.getOrDefault(endpoint, defaultCacheControl);
+    }
+}
@@ -0,0 +1,126 @@
+package com.test.demo.etag;
+
+import com.test.demo.id.IdGenerator;
+import com.test.demo.service.RedisService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户数据的版本戳,存在 Redis: 每个用户一个 user:version:{userId},所有列表共用一个 user:version:list
+ * <p>
+ * 版本戳不是计数器,每次变更写入一个新发出的雪花 ID: 同一个 key 不会两次出现相同的值,
+ * key 过期或 Redis 数据丢失后重新生成的版本也不会与客户端手里旧的 ETag 相同,只会多返回一次完整响应。
+ * 读取时 key 不存在就当场生成一个,之后的变更再覆盖它
+ */
+@Component
+public class UserVersions {
+    private static final Logger logger = LoggerFactory.getLogger(UserVersions.class);
+
+    public static final String KEY_PREFIX = "user:version:";
+    public static final String LIST_KEY = KEY_PREFIX + "list";
+
+    @Autowired
+    private RedisService redisService;
+    @Autowired
+    private ValueOperations<String, Object> valueOperations;
+    @Autowired
+    private IdGenerator idGenerator;
+
+    /**
+     * 版本戳的过期时间,过期只会让客户端多拿一次完整响应
+     */
+    @Value("${user.http-cache.version-ttl-seconds:86400}")
+    private long ttlSeconds;
+
+    /**
+     * 与 userIds 一一对应的版本戳;Redis 不可用或发不出新 ID 时返回 null
+     */
+    public List<String> userVersions(List<Long> userIds) {
+        List<String> keys = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            keys.add(KEY_PREFIX + userId);
+        }
+        return versions(keys);
+    }
+
+    public String userVersion(long userId) {
+        List<String> versions = versions(Collections.singletonList(KEY_PREFIX + userId));
+        return versions == null ? null : versions.get(0);
+    }
+
+    public String listVersion() {
+        List<String> versions = versions(Collections.singletonList(LIST_KEY));
+        return versions == null ? null : versions.get(0);
+    }
+
+    /**
+     * 变更后更新这些用户和列表的版本,失败只记录日志;由变更同步任务兜底再更新一次
+     */
+    public void bump(Collection<Long> userIds) {
+        try {
+            bumpOrThrow(userIds);
+        } catch (RuntimeException e) {
+            logger.warn("bump user versions {} failed: {}", userIds, e.getMessage());
+        }
+    }
+
+    /**
+     * 与 bump 相同,失败时抛出异常,调用方保留变更稍后重试
+     */
+    public void bumpOrThrow(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        String version = String.valueOf(idGenerator.nextId());
+        Map<String, Object> versions = new LinkedHashMap<>();
+        for (Long userId : userIds) {
+            versions.put(KEY_PREFIX + userId, version);
+        }
+        versions.put(LIST_KEY, version);
+        if (!redisService.mset(versions, ttlSeconds)) {
+            throw new IllegalStateException("bump user versions failed");
+        }
+    }
+
+    private List<String> versions(List<String> keys) {
+        try {
+            List<Object> values = redisService.mget(keys);
+            if (values == null) {
+                return null;
+            }
+            List<String> versions = new ArrayList<>(keys.size());
+            String created = null;
+            for (int i = 0; i < keys.size(); i++) {
+                Object value = values.get(i);
+                if (value == null) {
+                    if (created == null) {
+                        created = String.valueOf(idGenerator.nextId());
+                    }
+                    //并发的变更可能抢先写入,以 Redis 中的为准
+                    value = Boolean.TRUE.equals(valueOperations.setIfAbsent(keys.get(i), created, ttlSeconds, TimeUnit.SECONDS))
+                            ? created : valueOperations.get(keys.get(i));
+                    if (value == null) {
+                        return null;
+                    }
+                }
+                versions.add(value.toString());
+            }
+            return versions;
+        } catch (RuntimeException e) {
+            logger.warn("read user versions failed: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.test.demo.export;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 固定大小的直接内存缓冲区池,导出时每个写出器借一块,用完归还;总数有上限,
+ * 同时进行的导出再多,缓冲区占用也不超过 bufferSize * maxBuffers
+ */
+public class BufferPool {
+    private final int bufferSize;
+    private final Semaphore permits;
+    private final BlockingQueue<ByteBuffer> free = new LinkedBlockingQueue<>();
+
+    public BufferPool(int bufferSize, int maxBuffers) {
+        if (bufferSize < 1024) {
+            throw new IllegalArgumentException("bufferSize must be at least 1024: " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+        this.permits = new Semaphore(Math.max(1, maxBuffers));
+    }
+
+    /**
+     * 借一块清空的缓冲区,池已借空时最多等待 timeoutMs,超时抛 IllegalStateException
+     */
+    public ByteBuffer acquire(long timeoutMs) {
+        try {
+            if (!permits.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("no export buffer available within " + timeoutMs + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for an export buffer", e);
+        }
+        ByteBuffer buffer = free.poll();
+        return buffer == null ? ByteBuffer.allocateDirect(bufferSize) : buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+        buffer.clear();
+        free.offer(buffer);
+        permits.release();
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public int available() {
+        return permits.availablePermits();
+    }
+}
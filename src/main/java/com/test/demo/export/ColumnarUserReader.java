@@ -0,0 +1,206 @@
+package com.test.demo.export;
+
+import com.test.demo.model.User;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * 读取 ColumnarUserWriter 写出的列式文件:先从文件末尾读尾部拿到行组偏移,再逐个行组解压各列
+ * 供校验导出结果和下游用 Java 读取使用,一次只在内存中保留一个行组
+ */
+public final class ColumnarUserReader {
+
+    private ColumnarUserReader() {
+    }
+
+    /**
+     * 按文件顺序把每一行交给 consumer,返回总行数;格式不对时抛 IOException
+     */
+    public static long read(SeekableByteChannel channel, Consumer<User> consumer) throws IOException {
+        long size = channel.size();
+        if (size < 13) {
+            throw new IOException("not a columnar user file, size " + size);
+        }
+        ByteBuffer head = readFully(channel, 0, 5);
+        ByteBuffer tail = readFully(channel, size - 8, 8);
+        checkMagic(head);
+        int version = head.get();
+        if (version != ColumnarUserWriter.VERSION) {
+            throw new IOException("unsupported columnar version " + version);
+        }
+        int footerLength = tail.getInt();
+        checkMagic(tail);
+
+        DataInputStream footer = stream(readFully(channel, size - 8 - footerLength, footerLength));
+        int columnCount = (int) varint(footer);
+        String[] names = new String[columnCount];
+        int[] types = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            byte[] name = new byte[(int) varint(footer)];
+            footer.readFully(name);
+            names[i] = new String(name, StandardCharsets.UTF_8);
+            types[i] = footer.readUnsignedByte();
+        }
+        int groupCount = (int) varint(footer);
+        long[] offsets = new long[groupCount];
+        for (int i = 0; i < groupCount; i++) {
+            offsets[i] = footer.readLong();
+            footer.readInt();
+        }
+        long total = footer.readLong();
+
+        Inflater inflater = new Inflater(true);
+        try {
+            long rows = 0;
+            for (long offset : offsets) {
+                channel.position(offset);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 64 * 1024));
+                rows += readRowGroup(in, inflater, names, types, consumer);
+            }
+            if (rows != total) {
+                throw new IOException("row count mismatch, footer " + total + " actual " + rows);
+            }
+            return rows;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static int readRowGroup(DataInputStream in, Inflater inflater, String[] names, int[] types,
+                                    Consumer<User> consumer) throws IOException {
+        int count = in.readInt();
+        User[] users = new User[count];
+        for (int i = 0; i < count; i++) {
+            users[i] = new User();
+        }
+        for (int c = 0; c < names.length; c++) {
+            int encoding = in.readUnsignedByte();
+            byte[] raw = new byte[in.readInt()];
+            byte[] compressed = new byte[in.readInt()];
+            in.readFully(compressed);
+            inflate(inflater, compressed, raw);
+            DataInputStream column = stream(ByteBuffer.wrap(raw));
+            if (types[c] == ColumnarUserWriter.TYPE_INT64) {
+                long previous = 0;
+                for (User user : users) {
+                    long zigzag = varint(column);
+                    previous += zigzag >>> 1 ^ -(zigzag & 1);
+                    set(user, names[c], previous);
+                }
+            } else if (encoding == ColumnarUserWriter.ENCODING_DICTIONARY) {
+                String[] entries = new String[(int) varint(column)];
+                for (int i = 0; i < entries.length; i++) {
+                    entries[i] = string(column);
+                }
+                for (User user : users) {
+                    int index = (int) varint(column);
+                    set(user, names[c], index == 0 ? null : entries[index - 1]);
+                }
+            } else {
+                for (User user : users) {
+                    set(user, names[c], string(column));
+                }
+            }
+        }
+        for (User user : users) {
+            consumer.accept(user);
+        }
+        return count;
+    }
+
+    private static void set(User user, String column, Object value) {
+        switch (column) {
+            case "user_id":
+                user.setUserId((Long) value);
+                break;
+            case "user_name":
+                user.setUserName((String) value);
+                break;
+            case "user_sex":
+                user.setUserSex((String) value);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void inflate(Inflater inflater, byte[] compressed, byte[] raw) throws IOException {
+        inflater.reset();
+        inflater.setInput(compressed);
+        try {
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                int n = inflater.inflate(raw, length, raw.length - length);
+                if (n == 0 && inflater.needsInput()) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != raw.length) {
+                throw new IOException("truncated column, expected " + raw.length + " bytes, got " + length);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("corrupt column", e);
+        }
+    }
+
+    private static String string(DataInputStream in) throws IOException {
+        long length = varint(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] utf8 = new byte[(int) length - 1];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static long varint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+
+    private static void checkMagic(ByteBuffer buffer) throws IOException {
+        byte[] magic = new byte[ColumnarUserWriter.MAGIC.length];
+        buffer.get(magic);
+        if (!Arrays.equals(magic, ColumnarUserWriter.MAGIC)) {
+            throw new IOException("not a columnar user file");
+        }
+    }
+
+    private static ByteBuffer readFully(SeekableByteChannel channel, long position, int length) throws IOException {
+        if (position < 0 || length < 0) {
+            throw new IOException("corrupt columnar footer");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        channel.position(position);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("unexpected end of columnar file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static DataInputStream stream(ByteBuffer buffer) {
+        return new DataInputStream(new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining()));
+    }
+}
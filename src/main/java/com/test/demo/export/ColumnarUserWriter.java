@@ -0,0 +1,244 @@
+package com.test.demo.export;
+
+import com.test.demo.model.User;
+import com.test.demo.model.UserField;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * 仿 Parquet 的列式文件(.ucol),按行组缓存一批行后逐列编码、deflate 压缩写出:
+ * <pre>
+ * "UCOL" 版本(1 字节)
+ * 行组*: 行数(int) { 编码(1 字节) 原始长度(int) 压缩长度(int) 压缩数据 }*列数
+ * 尾部: 列数(varint) { 列名(varint 长度 + UTF-8) 类型(1 字节) }* 行组数(varint) { 偏移(long) 行数(int) }* 总行数(long)
+ * 尾部长度(int) "UCOL"
+ * </pre>
+ * user_id 按差值 + zigzag varint 编码(按主键顺序导出时几乎都是 1 字节);字符串列重复值多时用字典编码,
+ * 否则按 varint(长度 + 1) + UTF-8 写出,0 表示 null。读取见 ColumnarUserReader
+ */
+public class ColumnarUserWriter extends UserRowWriter {
+    static final byte[] MAGIC = {'U', 'C', 'O', 'L'};
+    static final int VERSION = 1;
+    static final int TYPE_INT64 = 0;
+    static final int TYPE_STRING = 1;
+    static final int ENCODING_DELTA = 0;
+    static final int ENCODING_PLAIN = 1;
+    static final int ENCODING_DICTIONARY = 2;
+
+    private final int rowGroupSize;
+    private final Deflater deflater;
+    private final long[] userIds;
+    private final String[][] strings;
+    private final List<long[]> groups = new ArrayList<>();
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final Bytes raw = new Bytes();
+    private byte[] compressed = new byte[0];
+    private int count;
+
+    public ColumnarUserWriter(WritableByteChannel channel, BufferPool pool, long acquireTimeoutMs, Set<UserField> fields,
+                              int rowGroupSize, int compressionLevel) throws IOException {
+        super(channel, pool, acquireTimeoutMs, fields);
+        this.rowGroupSize = Math.max(1, rowGroupSize);
+        this.deflater = new Deflater(compressionLevel, true);
+        this.userIds = new long[this.rowGroupSize];
+        this.strings = new String[this.fields.size()][];
+        for (int i = 0; i < this.fields.size(); i++) {
+            if (this.fields.get(i) != UserField.USER_ID) {
+                strings[i] = new String[this.rowGroupSize];
+            }
+        }
+        putBytes(MAGIC, 0, MAGIC.length);
+        putByte(VERSION);
+    }
+
+    @Override
+    protected void writeRow(User user) throws IOException {
+        userIds[count] = user.getUserId();
+        for (int i = 0; i < fields.size(); i++) {
+            if (strings[i] != null) {
+                strings[i][count] = valueOf(user, fields.get(i));
+            }
+        }
+        if (++count == rowGroupSize) {
+            writeRowGroup();
+        }
+    }
+
+    @Override
+    protected void finish() throws IOException {
+        try {
+            if (count > 0) {
+                writeRowGroup();
+            }
+            long start = position();
+            raw.reset();
+            raw.varint(fields.size());
+            for (UserField field : fields) {
+                byte[] name = field.getColumn().getBytes(StandardCharsets.UTF_8);
+                raw.varint(name.length);
+                raw.put(name, 0, name.length);
+                raw.put(field == UserField.USER_ID ? TYPE_INT64 : TYPE_STRING);
+            }
+            raw.varint(groups.size());
+            long total = 0;
+            for (long[] group : groups) {
+                raw.putLong(group[0]);
+                raw.putInt((int) group[1]);
+                total += group[1];
+            }
+            raw.putLong(total);
+            putBytes(raw.bytes, 0, raw.size);
+            ensure(4);
+            buffer.putInt((int) (position() - start));
+            putBytes(MAGIC, 0, MAGIC.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public void abort() {
+        deflater.end();
+        super.abort();
+    }
+
+    private void writeRowGroup() throws IOException {
+        groups.add(new long[]{position(), count});
+        ensure(4);
+        buffer.putInt(count);
+        for (int i = 0; i < fields.size(); i++) {
+            raw.reset();
+            int encoding = strings[i] == null ? encodeUserIds() : encodeStrings(strings[i]);
+            int length = compress();
+            ensure(9);
+            buffer.put((byte) encoding).putInt(raw.size).putInt(length);
+            putBytes(compressed, 0, length);
+        }
+        for (String[] column : strings) {
+            if (column != null) {
+                Arrays.fill(column, 0, count, null);
+            }
+        }
+        count = 0;
+    }
+
+    private int encodeUserIds() {
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            long delta = userIds[i] - previous;
+            raw.varint(delta << 1 ^ delta >> 63);
+            previous = userIds[i];
+        }
+        return ENCODING_DELTA;
+    }
+
+    /**
+     * 不同值不超过行数一半时用字典:字典项 + 每行 varint(下标 + 1);否则逐行写值
+     */
+    private int encodeStrings(String[] column) {
+        dictionary.clear();
+        for (int i = 0; i < count && dictionary.size() <= count / 2; i++) {
+            if (column[i] != null) {
+                dictionary.putIfAbsent(column[i], dictionary.size());
+            }
+        }
+        if (dictionary.size() > count / 2) {
+            for (int i = 0; i < count; i++) {
+                raw.string(column[i]);
+            }
+            return ENCODING_PLAIN;
+        }
+        String[] entries = new String[dictionary.size()];
+        dictionary.forEach((value, index) -> entries[index] = value);
+        raw.varint(entries.length);
+        for (String entry : entries) {
+            raw.string(entry);
+        }
+        for (int i = 0; i < count; i++) {
+            raw.varint(column[i] == null ? 0 : dictionary.get(column[i]) + 1);
+        }
+        return ENCODING_DICTIONARY;
+    }
+
+    private int compress() {
+        deflater.reset();
+        deflater.setInput(raw.bytes, 0, raw.size);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                compressed = Arrays.copyOf(compressed, Math.max(4096, compressed.length * 2));
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        return length;
+    }
+
+    /**
+     * 可复用的增长字节数组,行组之间不重新分配
+     */
+    static final class Bytes {
+        byte[] bytes = new byte[4096];
+        int size;
+
+        void reset() {
+            size = 0;
+        }
+
+        void put(int b) {
+            grow(1);
+            bytes[size++] = (byte) b;
+        }
+
+        void put(byte[] b, int offset, int length) {
+            grow(length);
+            System.arraycopy(b, offset, bytes, size, length);
+            size += length;
+        }
+
+        void putInt(int v) {
+            put(v >>> 24);
+            put(v >>> 16);
+            put(v >>> 8);
+            put(v);
+        }
+
+        void putLong(long v) {
+            putInt((int) (v >>> 32));
+            putInt((int) v);
+        }
+
+        void varint(long v) {
+            while ((v & ~0x7FL) != 0) {
+                put((int) (v & 0x7F | 0x80));
+                v >>>= 7;
+            }
+            put((int) v);
+        }
+
+        void string(String value) {
+            if (value == null) {
+                varint(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            varint(utf8.length + 1L);
+            put(utf8, 0, utf8.length);
+        }
+
+        private void grow(int n) {
+            if (size + n > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + n));
+            }
+        }
+    }
+}
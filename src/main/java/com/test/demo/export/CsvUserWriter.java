@@ -0,0 +1,77 @@
+package com.test.demo.export;
+
+import com.test.demo.model.User;
+import com.test.demo.model.UserField;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Set;
+
+/**
+ * RFC 4180 CSV: 第一行为列名,CRLF 换行;含逗号、引号、换行或首尾空白的值加双引号,引号写两遍,null 写成空
+ */
+public class CsvUserWriter extends UserRowWriter {
+
+    public CsvUserWriter(WritableByteChannel channel, BufferPool pool, long acquireTimeoutMs, Set<UserField> fields) throws IOException {
+        super(channel, pool, acquireTimeoutMs, fields);
+        for (int i = 0; i < this.fields.size(); i++) {
+            if (i > 0) {
+                putByte(',');
+            }
+            putAscii(this.fields.get(i).getColumn());
+        }
+        putAscii("\r\n");
+    }
+
+    @Override
+    protected void writeRow(User user) throws IOException {
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                putByte(',');
+            }
+            UserField field = fields.get(i);
+            if (field == UserField.USER_ID) {
+                putDecimal(user.getUserId());
+            } else {
+                putField(valueOf(user, field));
+            }
+        }
+        putAscii("\r\n");
+    }
+
+    private void putField(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (!needsQuotes(value)) {
+            for (int i = 0; i < value.length(); ) {
+                i += putUtf8(value, i);
+            }
+            return;
+        }
+        putByte('"');
+        for (int i = 0; i < value.length(); ) {
+            if (value.charAt(i) == '"') {
+                putByte('"');
+            }
+            i += putUtf8(value, i);
+        }
+        putByte('"');
+    }
+
+    private static boolean needsQuotes(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        if (Character.isWhitespace(value.charAt(0)) || Character.isWhitespace(value.charAt(value.length() - 1))) {
+            return true;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,65 @@
+package com.test.demo.export;
+
+import com.test.demo.model.User;
+import com.test.demo.model.UserField;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Set;
+
+/**
+ * 换行分隔的 JSON,每行一个用户,属性名与查询接口一致;userId 与接口一样写成字符串,避免超出 JavaScript 的精度
+ */
+public class NdjsonUserWriter extends UserRowWriter {
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    public NdjsonUserWriter(WritableByteChannel channel, BufferPool pool, long acquireTimeoutMs, Set<UserField> fields) {
+        super(channel, pool, acquireTimeoutMs, fields);
+    }
+
+    @Override
+    protected void writeRow(User user) throws IOException {
+        putByte('{');
+        for (int i = 0; i < fields.size(); i++) {
+            UserField field = fields.get(i);
+            if (i > 0) {
+                putByte(',');
+            }
+            putByte('"');
+            putAscii(field.getProperty());
+            putAscii("\":");
+            if (field == UserField.USER_ID) {
+                putByte('"');
+                putDecimal(user.getUserId());
+                putByte('"');
+            } else {
+                putString(valueOf(user, field));
+            }
+        }
+        putAscii("}\n");
+    }
+
+    private void putString(String value) throws IOException {
+        if (value == null) {
+            putAscii("null");
+            return;
+        }
+        putByte('"');
+        for (int i = 0; i < value.length(); ) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                putByte('\\');
+                putByte(c);
+                i++;
+            } else if (c < 0x20) {
+                putAscii("\\u00");
+                putByte(HEX[c >> 4]);
+                putByte(HEX[c & 0xF]);
+                i++;
+            } else {
+                i += putUtf8(value, i);
+            }
+        }
+        putByte('"');
+    }
+}
@@ -0,0 +1,54 @@
+package com.test.demo.export;
+
+import com.test.demo.model.UserField;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Paths;
+
+/**
+ * 命令行导出,供每晚的定时任务调用,导出完成后退出进程(成功 0,失败 1):
+ * <pre>
+ * java -jar demo.jar --spring.main.web-application-type=none \
+ *     --export.dir=/data/export/20190301 --export.format=columnar [--export.fields=userName]
+ * </pre>
+ * 不传 export.dir 时不创建这个 Bean,正常启动服务
+ */
+@Component
+@ConditionalOnProperty(prefix = "export", name = "dir")
+public class UserExportCommand implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(UserExportCommand.class);
+
+    @Autowired
+    private UserExportService userExportService;
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Value("${export.dir}")
+    private String dir;
+    @Value("${export.format:csv}")
+    private String format;
+    @Value("${export.fields:}")
+    private String fields;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        int exitCode = 0;
+        try {
+            userExportService.exportToDirectory(UserExportFormat.parse(format), UserField.parse(fields), Paths.get(dir));
+        } catch (Exception e) {
+            logger.error("user export to {} failed", dir, e);
+            exitCode = 1;
+        }
+        int code = exitCode;
+        System.exit(SpringApplication.exit(applicationContext, () -> code));
+    }
+}
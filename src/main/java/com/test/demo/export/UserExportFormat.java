@@ -0,0 +1,44 @@
+package com.test.demo.export;
+
+/**
+ * 导出格式,format 参数取小写名称
+ */
+public enum UserExportFormat {
+    CSV("text/csv;charset=UTF-8", "csv"),
+    NDJSON("application/x-ndjson;charset=UTF-8", "ndjson"),
+    /**
+     * 仿 Parquet 的压缩列式格式,见 ColumnarUserWriter
+     */
+    COLUMNAR("application/vnd.user-columnar", "ucol");
+
+    private final String contentType;
+    private final String extension;
+
+    UserExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * 按名称解析,不区分大小写,为空时用 CSV;未知格式抛 IllegalArgumentException
+     */
+    public static UserExportFormat parse(String format) {
+        if (format == null || format.trim().isEmpty()) {
+            return CSV;
+        }
+        for (UserExportFormat value : values()) {
+            if (value.name().equalsIgnoreCase(format.trim())) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("unknown export format " + format);
+    }
+}
@@ -0,0 +1,104 @@
+package com.test.demo.export;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.zip.Deflater;
+
+/**
+ * 用户导出配置,前缀 user.export
+ */
+@Component
+@ConfigurationProperties(prefix = "user.export")
+public class UserExportProperties {
+    /**
+     * 每个写出器的缓冲区大小(KB),写满一块才写一次文件或 socket
+     */
+    private int bufferKb = 256;
+
+    /**
+     * 缓冲区总数,即同时进行的导出(含并行导出的每个区间)上限,直接内存占用为 buffer-kb * buffers
+     */
+    private int buffers = 16;
+
+    /**
+     * 缓冲区借空时最多等待多久(毫秒),超时的导出请求失败
+     */
+    private long bufferWaitMs = 5000;
+
+    /**
+     * 列式格式每个行组的行数,行组越大压缩率越高,写出器缓存的行也越多
+     */
+    private int rowGroupSize = 65536;
+
+    /**
+     * 列式格式的 deflate 压缩级别 1-9,默认最快
+     */
+    private int compressionLevel = Deflater.BEST_SPEED;
+
+    /**
+     * 导出到目录时并行的线程数,也是最多同时占用的数据库连接数
+     */
+    private int parallelism = 4;
+
+    /**
+     * 导出到目录时每个分片按 user_id 切成的区间数,每个区间一个文件
+     */
+    private int rangesPerShard = 4;
+
+    public int getBufferKb() {
+        return bufferKb;
+    }
+
+    public void setBufferKb(int bufferKb) {
+        this.bufferKb = bufferKb;
+    }
+
+    public int getBuffers() {
+        return buffers;
+    }
+
+    public void setBuffers(int buffers) {
+        this.buffers = buffers;
+    }
+
+    public long getBufferWaitMs() {
+        return bufferWaitMs;
+    }
+
+    public void setBufferWaitMs(long bufferWaitMs) {
+        this.bufferWaitMs = bufferWaitMs;
+    }
+
+    public int getRowGroupSize() {
+        return rowGroupSize;
+    }
+
+    public void setRowGroupSize(int rowGroupSize) {
+        this.rowGroupSize = rowGroupSize;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public int getRangesPerShard() {
+        return rangesPerShard;
+    }
+
+    public void setRangesPerShard(int rangesPerShard) {
+        this.rangesPerShard = rangesPerShard;
+    }
+}
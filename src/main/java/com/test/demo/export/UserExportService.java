@@ -0,0 +1,246 @@
+package com.test.demo.export;
+
+import com.test.demo.model.User;
+import com.test.demo.model.UserField;
+import com.test.demo.model.UserIdRange;
+import com.test.demo.service.UserService;
+import com.test.demo.shard.UserShard;
+import com.test.demo.shard.UserShards;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.ibatis.cursor.Cursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 全表导出: 从 MyBatis Cursor 逐行读出,编码进池化的直接缓冲区,整块写到响应或文件通道,
+ * 内存占用与表大小无关(列式格式多缓存一个行组)
+ * <p>
+ * 导出到目录时每个分片按 user_id 切成 ranges-per-shard 个区间,由 parallelism 个线程各自开只读事务、
+ * 各自的游标写各自的文件(users-分片-区间.扩展名),文件先写 .tmp,force 后原子改名,
+ * 下游看到的文件总是完整的;任一区间失败其余区间停止,已写的临时文件删除
+ */
+@Service
+public class UserExportService {
+    private static final Logger logger = LoggerFactory.getLogger(UserExportService.class);
+
+    @Autowired
+    UserService userService;
+    @Autowired
+    UserShards userShards;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private UserExportProperties properties;
+
+    private BufferPool bufferPool;
+
+    @PostConstruct
+    public void init() {
+        bufferPool = new BufferPool(Math.max(1, properties.getBufferKb()) * 1024, properties.getBuffers());
+    }
+
+    /**
+     * 按分片归并后的 user_id 顺序把全表写到通道,返回行数;通道由调用方关闭
+     */
+    public long export(UserExportFormat format, Set<UserField> fields, WritableByteChannel channel) throws IOException {
+        UserRowWriter writer = open(format, fields, channel);
+        try {
+            userService.streamUserList(null, user -> write(writer, user));
+            writer.close();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            writer.abort();
+            record(format, writer);
+        }
+        return writer.rows();
+    }
+
+    /**
+     * 按区间并行导出到目录,返回总行数;表为空时写一个只有表头(或空行组)的文件
+     */
+    public long exportToDirectory(UserExportFormat format, Set<UserField> fields, Path directory) throws IOException {
+        long started = System.nanoTime();
+        Files.createDirectories(directory);
+        List<Part> parts = new ArrayList<>();
+        for (UserShard shard : userShards.all()) {
+            UserIdRange range = shard.getUserMapper().getUserIdRange(null);
+            int index = 0;
+            for (long[] bounds : range.split(Math.max(1, properties.getRangesPerShard()))) {
+                parts.add(new Part(shard, shard.getIndex(), index++, bounds[0], bounds[1]));
+            }
+        }
+        if (parts.isEmpty()) {
+            parts.add(new Part(null, 0, 0, 0, 0));
+        }
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(properties.getParallelism(), parts.size())), runnable -> {
+            Thread thread = new Thread(runnable, "user-export-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long rows = 0;
+        long bytes = 0;
+        try {
+            List<Future<long[]>> futures = new ArrayList<>(parts.size());
+            for (Part part : parts) {
+                futures.add(pool.submit(() -> exportPart(format, fields, part, directory)));
+            }
+            pool.shutdown();
+            for (Future<long[]> future : futures) {
+                long[] written = future.get();
+                rows += written[0];
+                bytes += written[1];
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("user export interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        double seconds = Math.max(1, System.nanoTime() - started) / 1e9;
+        logger.info("exported {} users ({} MB) as {} into {} files under {} in {} ms, {} MB/s",
+                rows, bytes >> 20, format, parts.size(), directory, (long) (seconds * 1000),
+                String.format("%.1f", bytes / seconds / (1 << 20)));
+        return rows;
+    }
+
+    /**
+     * 导出一个区间,返回 {行数, 字节数}
+     */
+    private long[] exportPart(UserExportFormat format, Set<UserField> fields, Part part, Path directory) throws IOException {
+        String name = "users-" + part.shardIndex + "-" + part.index + "." + format.getExtension();
+        Path target = directory.resolve(name);
+        Path temp = directory.resolve(name + ".tmp");
+        boolean moved = false;
+        try {
+            UserRowWriter writer;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                writer = open(format, fields, channel);
+                try {
+                    if (part.shard != null) {
+                        readRange(part, writer);
+                    }
+                    writer.close();
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                } finally {
+                    writer.abort();
+                    record(format, writer);
+                }
+                channel.force(false);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            moved = true;
+            return new long[]{writer.rows(), writer.position()};
+        } finally {
+            if (!moved) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * 在本分片的只读事务里遍历游标,事务结束前游标和连接一直有效;读写分离时走从库
+     */
+    private void readRange(Part part, UserRowWriter writer) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(part.shard.getTransactionTemplate().getTransactionManager());
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.execute(status -> {
+            try (Cursor<User> cursor = part.shard.getUserMapper().streamUserRange(part.after, part.upTo)) {
+                for (User user : cursor) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException("user export cancelled");
+                    }
+                    writer.write(user);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        });
+    }
+
+    private UserRowWriter open(UserExportFormat format, Set<UserField> fields, WritableByteChannel channel) throws IOException {
+        long waitMs = properties.getBufferWaitMs();
+        switch (format) {
+            case NDJSON:
+                return new NdjsonUserWriter(channel, bufferPool, waitMs, fields);
+            case COLUMNAR:
+                return new ColumnarUserWriter(channel, bufferPool, waitMs, fields,
+                        properties.getRowGroupSize(), properties.getCompressionLevel());
+            default:
+                return new CsvUserWriter(channel, bufferPool, waitMs, fields);
+        }
+    }
+
+    private static void write(UserRowWriter writer, User user) {
+        try {
+            writer.write(user);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void record(UserExportFormat format, UserRowWriter writer) {
+        String tag = format.name().toLowerCase();
+        Counter.builder("user.export.rows").tag("format", tag).register(meterRegistry).increment(writer.rows());
+        Counter.builder("user.export.bytes").tag("format", tag).register(meterRegistry).increment(writer.position());
+    }
+
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * 一个导出区间: 分片内 (after, upTo] 的用户
+     */
+    private static final class Part {
+        final UserShard shard;
+        final int shardIndex;
+        final int index;
+        final long after;
+        final long upTo;
+
+        Part(UserShard shard, int shardIndex, int index, long after, long upTo) {
+            this.shard = shard;
+            this.shardIndex = shardIndex;
+            this.index = index;
+            this.after = after;
+            this.upTo = upTo;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.test.demo.export;
+
+import com.test.demo.model.User;
+import com.test.demo.model.UserField;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 导出写出器: 行直接编码进从 BufferPool 借来的缓冲区,写满后整块写到通道(文件为 FileChannel,
+ * HTTP 响应为包装输出流的通道),编码过程中不为每行创建字符串或字节数组
+ * 不是线程安全的,一个写出器只在一个线程里使用;close 时写出尾部、刷新并归还缓冲区,不关闭通道
+ */
+public abstract class UserRowWriter implements Closeable {
+    private final WritableByteChannel channel;
+    private final BufferPool pool;
+    private final byte[] digits = new byte[20];
+    protected final List<UserField> fields;
+    protected ByteBuffer buffer;
+    private long rows;
+    private long flushedBytes;
+
+    protected UserRowWriter(WritableByteChannel channel, BufferPool pool, long acquireTimeoutMs, Set<UserField> fields) {
+        this.channel = channel;
+        this.pool = pool;
+        this.fields = new ArrayList<>(fields);
+        this.buffer = pool.acquire(acquireTimeoutMs);
+    }
+
+    public final void write(User user) throws IOException {
+        writeRow(user);
+        rows++;
+    }
+
+    public long rows() {
+        return rows;
+    }
+
+    /**
+     * 已写出(含缓冲区中未刷新)的字节数
+     */
+    public long position() {
+        return flushedBytes + (buffer == null ? 0 : buffer.position());
+    }
+
+    protected abstract void writeRow(User user) throws IOException;
+
+    /**
+     * 关闭前写出尾部,默认没有
+     */
+    protected void finish() throws IOException {
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            finish();
+            flush();
+        } finally {
+            pool.release(buffer);
+            buffer = null;
+        }
+    }
+
+    /**
+     * 失败时调用: 不写尾部、不刷新,直接归还缓冲区;已经 close 过的写出器调用无效
+     */
+    public void abort() {
+        if (buffer != null) {
+            pool.release(buffer);
+            buffer = null;
+        }
+    }
+
+    protected void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            flushedBytes += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    protected void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    protected void putByte(int b) throws IOException {
+        ensure(1);
+        buffer.put((byte) b);
+    }
+
+    protected void putAscii(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            putByte(s.charAt(i));
+        }
+    }
+
+    /**
+     * 十进制写出 long,不经过 Long.toString
+     */
+    protected void putDecimal(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            putAscii(Long.toString(value));
+            return;
+        }
+        ensure(digits.length);
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int i = digits.length;
+        do {
+            digits[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        buffer.put(digits, i, digits.length - i);
+    }
+
+    /**
+     * 按 UTF-8 写出一个字符,代理对在高位字符处一起写出,返回消耗的 char 数
+     */
+    protected int putUtf8(CharSequence s, int index) throws IOException {
+        char c = s.charAt(index);
+        ensure(4);
+        if (c < 0x80) {
+            buffer.put((byte) c);
+        } else if (c < 0x800) {
+            buffer.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && index + 1 < s.length() && Character.isLowSurrogate(s.charAt(index + 1))) {
+            int cp = Character.toCodePoint(c, s.charAt(index + 1));
+            buffer.put((byte) (0xF0 | cp >> 18)).put((byte) (0x80 | cp >> 12 & 0x3F))
+                    .put((byte) (0x80 | cp >> 6 & 0x3F)).put((byte) (0x80 | cp & 0x3F));
+            return 2;
+        } else if (Character.isSurrogate(c)) {
+            buffer.put((byte) '?');
+        } else {
+            buffer.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+        }
+        return 1;
+    }
+
+    /**
+     * 写出大块字节,超过缓冲区剩余空间时分段刷新
+     */
+    protected void putBytes(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int n = Math.min(length, buffer.remaining());
+            buffer.put(bytes, offset, n);
+            offset += n;
+            length -= n;
+        }
+    }
+
+    protected static String valueOf(User user, UserField field) {
+        switch (field) {
+            case USER_NAME:
+                return user.getUserName();
+            case USER_SEX:
+                return user.getUserSex();
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.test.demo.id;
+
+/**
+ * 全局唯一的 user_id 生成器,所有实例、所有分片共享同一个序列
+ */
+public interface IdGenerator {
+    long nextId();
+}
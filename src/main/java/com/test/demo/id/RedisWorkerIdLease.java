@@ -0,0 +1,199 @@
+package com.test.demo.id;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 通过 Redis 租用雪花算法的 workerId: {prefix}:{id} 存本节点的随机令牌并带过期时间,定期续期
+ * <p>
+ * 续期时同时在 {prefix}:{id}:time 记下本节点用这个 workerId 可能发到的最大时间戳(续期时间 + 租期 + 允许的时钟漂移),
+ * 下一个拿到这个 workerId 的节点等本机时钟超过它再发号,即使两台机器时钟不一致也不会发出重复的 id。
+ * 续期失败(Redis 不可用)时本节点按本地单调时钟计算租约,到期后拒绝发号,避免与接手的节点冲突
+ */
+public class RedisWorkerIdLease implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(RedisWorkerIdLease.class);
+
+    /**
+     * KEYS[1] 租约 KEYS[2] 最大时间戳 ARGV[1] 令牌 ARGV[2] 租期毫秒 ARGV[3] 本节点可能用到的最大时间戳
+     * 租到时返回上一个持有者记下的最大时间戳(没有为 0),已被占用返回 -1
+     */
+    private static final RedisScript<Long> ACQUIRE = new DefaultRedisScript<>(
+            "if not redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then return -1 end " +
+            "local previous = tonumber(redis.call('GET', KEYS[2]) or '0') " +
+            "redis.call('SET', KEYS[2], tostring(math.max(previous, tonumber(ARGV[3])))) " +
+            "return previous", Long.class);
+
+    /**
+     * 参数同 ACQUIRE,令牌不一致(租约已过期被别人拿走)返回 0
+     */
+    private static final RedisScript<Long> RENEW = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) ~= ARGV[1] then return 0 end " +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[2]) " +
+            "local previous = tonumber(redis.call('GET', KEYS[2]) or '0') " +
+            "if tonumber(ARGV[3]) > previous then redis.call('SET', KEYS[2], ARGV[3]) end " +
+            "return 1", Long.class);
+
+    /**
+     * 停机时主动释放,ARGV[2] 为已经发出的最大时间戳上界
+     */
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) ~= ARGV[1] then return 0 end " +
+            "redis.call('DEL', KEYS[1]) " +
+            "local previous = tonumber(redis.call('GET', KEYS[2]) or '0') " +
+            "if tonumber(ARGV[2]) > previous then redis.call('SET', KEYS[2], ARGV[2]) end " +
+            "return 1", Long.class);
+
+    private static final StringRedisSerializer STRING = new StringRedisSerializer();
+
+    /**
+     * 脚本返回整数,结果序列化器不会被用到
+     */
+    @SuppressWarnings("unchecked")
+    private static final RedisSerializer<Long> RESULT = (RedisSerializer) STRING;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final String keyPrefix;
+    private final long leaseMillis;
+    private final long maxClockDriftMs;
+    private final String token = UUID.randomUUID().toString();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "id-worker-lease");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile int workerId = -1;
+    /**
+     * 按 System.nanoTime 计算的租约到期时间,以发起续期的时刻为起点,比 Redis 端的过期时间早
+     */
+    private volatile long validUntilNanos;
+
+    public RedisWorkerIdLease(RedisTemplate<String, Object> redisTemplate, String keyPrefix,
+                              long leaseSeconds, long maxClockDriftMs) {
+        this.redisTemplate = redisTemplate;
+        this.keyPrefix = keyPrefix;
+        this.leaseMillis = TimeUnit.SECONDS.toMillis(leaseSeconds);
+        this.maxClockDriftMs = maxClockDriftMs;
+    }
+
+    /**
+     * 租一个 workerId 并开始定期续期;Redis 不可用或 workerId 都被占用时不影响启动,之后续期时重试,期间拒绝发号
+     */
+    public void start() {
+        try {
+            acquire();
+        } catch (RuntimeException e) {
+            logger.warn("lease worker id failed, will retry: {}", e.getMessage());
+        }
+        long period = Math.max(1, leaseMillis / 3);
+        scheduler.scheduleWithFixedDelay(this::renew, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 当前有效的 workerId,租约失效时为 -1
+     */
+    public int workerId() {
+        return System.nanoTime() - validUntilNanos < 0 ? workerId : -1;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        int held = workerId;
+        workerId = -1;
+        if (held < 0) {
+            return;
+        }
+        try {
+            redisTemplate.execute(RELEASE, STRING, RESULT, keys(held), token,
+                    String.valueOf(System.currentTimeMillis() + maxClockDriftMs));
+        } catch (RuntimeException e) {
+            logger.warn("release worker id {} failed, it will expire: {}", held, e.getMessage());
+        }
+    }
+
+    private void acquire() {
+        int start = ThreadLocalRandom.current().nextInt(SnowflakeIdGenerator.MAX_WORKERS);
+        for (int i = 0; i < SnowflakeIdGenerator.MAX_WORKERS; i++) {
+            int candidate = (start + i) % SnowflakeIdGenerator.MAX_WORKERS;
+            long requestedAt = System.nanoTime();
+            Long previous = redisTemplate.execute(ACQUIRE, STRING, RESULT, keys(candidate), token,
+                    String.valueOf(leaseMillis), String.valueOf(maxIssuable()));
+            if (previous != null && previous >= 0) {
+                waitForClock(candidate, previous);
+                validUntilNanos = requestedAt + TimeUnit.MILLISECONDS.toNanos(leaseMillis);
+                workerId = candidate;
+                logger.info("leased worker id {}", candidate);
+                return;
+            }
+        }
+        throw new IllegalStateException("all " + SnowflakeIdGenerator.MAX_WORKERS + " worker ids are leased under " + keyPrefix);
+    }
+
+    private void renew() {
+        int held = workerId;
+        try {
+            if (held < 0) {
+                acquire();
+                return;
+            }
+            long requestedAt = System.nanoTime();
+            Long renewed = redisTemplate.execute(RENEW, STRING, RESULT, keys(held), token,
+                    String.valueOf(leaseMillis), String.valueOf(maxIssuable()));
+            if (renewed != null && renewed == 1) {
+                validUntilNanos = requestedAt + TimeUnit.MILLISECONDS.toNanos(leaseMillis);
+            } else {
+                logger.warn("worker id {} lease was lost, acquiring a new one", held);
+                workerId = -1;
+                acquire();
+            }
+        } catch (RuntimeException e) {
+            //Redis 不可用时保留租约直到本地计算的到期时间,下次继续尝试
+            logger.warn("renew worker id {} failed: {}", held, e.getMessage());
+        }
+    }
+
+    /**
+     * 上一个持有者可能已经用到了 previous,本机时钟落后于它时先等一等
+     */
+    private void waitForClock(int candidate, long previous) {
+        long behind = previous - System.currentTimeMillis();
+        if (behind <= 0) {
+            return;
+        }
+        logger.info("worker id {} was used up to {}ms ahead of the local clock, waiting", candidate, behind);
+        try {
+            Thread.sleep(behind + 1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for the clock", e);
+        }
+    }
+
+    /**
+     * 本次租约有效期内能发出的最大时间戳
+     */
+    private long maxIssuable() {
+        return System.currentTimeMillis() + leaseMillis + maxClockDriftMs;
+    }
+
+    private List<String> keys(int candidate) {
+        String key = keyPrefix + ":" + candidate;
+        return Arrays.asList(key, key + ":time");
+    }
+}
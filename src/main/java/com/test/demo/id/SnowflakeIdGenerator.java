@@ -0,0 +1,86 @@
+package com.test.demo.id;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * 雪花算法: 41 位毫秒时间戳 | 10 位 workerId | 12 位序号,同一节点发出的 id 严格递增,不同节点按时间大致有序
+ * <p>
+ * 时间戳和序号合在一个 AtomicLong 里用 CAS 推进,不加锁;一毫秒内序号用完时直接借用下一毫秒。
+ * 时钟回拨时继续沿用已发出的最大时间戳(逻辑时钟),只要领先系统时钟不超过 maxClockDriftMs 就照常发号,
+ * 超过说明回拨太多或持续超出每毫秒 4096 个的速度,抛出异常而不是发出可能重复的 id
+ */
+public class SnowflakeIdGenerator implements IdGenerator {
+    /**
+     * 2024-01-01T00:00:00Z,41 位时间戳可以用到 2093 年
+     */
+    public static final long EPOCH = 1704067200000L;
+    public static final int WORKER_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    public static final int MAX_WORKERS = 1 << WORKER_BITS;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final IntSupplier workerId;
+    private final long maxClockDriftMs;
+    private final LongSupplier clock;
+
+    /**
+     * 已发出的最大 (时间戳 << SEQUENCE_BITS | 序号)
+     */
+    private final AtomicLong last = new AtomicLong();
+
+    /**
+     * @param workerId 当前持有的 workerId,返回负数表示没有有效的租约,此时拒绝发号
+     */
+    public SnowflakeIdGenerator(IntSupplier workerId, long maxClockDriftMs) {
+        this(workerId, maxClockDriftMs, System::currentTimeMillis);
+    }
+
+    SnowflakeIdGenerator(IntSupplier workerId, long maxClockDriftMs, LongSupplier clock) {
+        this.workerId = workerId;
+        this.maxClockDriftMs = maxClockDriftMs;
+        this.clock = clock;
+    }
+
+    @Override
+    public long nextId() {
+        int worker = workerId.getAsInt();
+        if (worker < 0 || worker >= MAX_WORKERS) {
+            throw new IllegalStateException("no valid worker id lease");
+        }
+        long now = (clock.getAsLong() - EPOCH) << SEQUENCE_BITS;
+        while (true) {
+            long previous = last.get();
+            long next = Math.max(now, previous + 1);
+            if (next - now > maxClockDriftMs << SEQUENCE_BITS) {
+                throw new IllegalStateException("clock is " + ((next - now) >> SEQUENCE_BITS)
+                        + "ms behind the last issued id, max drift " + maxClockDriftMs + "ms");
+            }
+            if (last.compareAndSet(previous, next)) {
+                return (next >>> SEQUENCE_BITS) << (WORKER_BITS + SEQUENCE_BITS)
+                        | (long) worker << SEQUENCE_BITS
+                        | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    /**
+     * id 中的毫秒时间戳
+     */
+    public static long timestampOf(long id) {
+        return (id >>> (WORKER_BITS + SEQUENCE_BITS)) + EPOCH;
+    }
+
+    /**
+     * 该毫秒及之后生成的 id 都不小于返回值
+     */
+    public static long minIdAt(long timestamp) {
+        return Math.max(0, timestamp - EPOCH) << (WORKER_BITS + SEQUENCE_BITS);
+    }
+
+    public static int workerOf(long id) {
+        return (int) (id >>> SEQUENCE_BITS) & (MAX_WORKERS - 1);
+    }
+}
@@ -0,0 +1,134 @@
+package com.test.demo.limit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按接口 + 客户端限流,超出的请求直接返回 429,不进入 Controller
+ * Redis 不可用时放行,限流失效不影响正常请求
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitFilter.class);
+
+    private final RedisRateLimiter rateLimiter;
+    private final RateLimitProperties properties;
+
+    /**
+     * 路径 -> 规则,请求路径精确匹配
+     */
+    private final Map<String, RuleMeters> rules = new HashMap<>();
+
+    private volatile long bypassUntil;
+
+    public RateLimitFilter(RedisRateLimiter rateLimiter, RateLimitProperties properties, MeterRegistry registry) {
+        this.rateLimiter = rateLimiter;
+        this.properties = properties;
+        for (Map.Entry<String, RateLimitProperties.Rule> entry : properties.getRules().entrySet()) {
+            RateLimitProperties.Rule rule = entry.getValue();
+            if (rule.getPath() == null || !valid(rule)) {
+                throw new IllegalArgumentException("rate-limit.rules." + entry.getKey() + " needs path, capacity and refill-per-second");
+            }
+            for (Map.Entry<String, RateLimitProperties.Limit> client : rule.getClients().entrySet()) {
+                if (!valid(client.getValue())) {
+                    throw new IllegalArgumentException("rate-limit.rules." + entry.getKey() + ".clients[" + client.getKey() + "] needs positive capacity and refill-per-second");
+                }
+            }
+            rules.put(rule.getPath(), new RuleMeters(entry.getKey(), rule, registry));
+        }
+    }
+
+    private static boolean valid(RateLimitProperties.Limit limit) {
+        return limit.getCapacity() > 0 && limit.getRefillPerSecond() > 0;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !rules.containsKey(request.getServletPath());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RuleMeters rule = rules.get(request.getServletPath());
+        if (System.currentTimeMillis() < bypassUntil) {
+            rule.bypassed.increment();
+            chain.doFilter(request, response);
+            return;
+        }
+        String client = clientOf(request);
+        RedisRateLimiter.Decision decision;
+        try {
+            decision = rateLimiter.tryAcquire(properties.getKeyPrefix() + rule.name + ":" + client, rule.rule.limitFor(client));
+        } catch (RuntimeException e) {
+            bypassUntil = System.currentTimeMillis() + properties.getErrorBackoffMillis();
+            rule.bypassed.increment();
+            logger.warn("rate limiter unavailable, allowing requests for {} ms: {}", properties.getErrorBackoffMillis(), e.getMessage());
+            chain.doFilter(request, response);
+            return;
+        }
+        response.setHeader("X-RateLimit-Remaining", String.valueOf(decision.getRemaining()));
+        if (decision.isAllowed()) {
+            rule.allowed.increment();
+            chain.doFilter(request, response);
+            return;
+        }
+        rule.rejected.increment();
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (decision.getRetryAfterMillis() + 999) / 1000)));
+        response.setContentType("text/plain;charset=UTF-8");
+        response.getWriter().write("too many requests");
+    }
+
+    /**
+     * 客户端标识: 配置的请求头 -> X-Forwarded-For 第一个地址(需开启) -> 连接来源 IP
+     */
+    private String clientOf(HttpServletRequest request) {
+        if (!properties.getClientHeader().isEmpty()) {
+            String client = request.getHeader(properties.getClientHeader());
+            if (client != null && !client.isEmpty()) {
+                return client;
+            }
+        }
+        if (properties.isTrustForwardedFor()) {
+            String forwarded = request.getHeader("X-Forwarded-For");
+            if (forwarded != null && !forwarded.isEmpty()) {
+                int comma = forwarded.indexOf(',');
+                return (comma > 0 ? forwarded.substring(0, comma) : forwarded).trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private static final class RuleMeters {
+        final String name;
+        final RateLimitProperties.Rule rule;
+        final Counter allowed;
+        final Counter rejected;
+        final Counter bypassed;
+
+        RuleMeters(String name, RateLimitProperties.Rule rule, MeterRegistry registry) {
+            this.name = name;
+            this.rule = rule;
+            allowed = counter(registry, name, "allowed");
+            rejected = counter(registry, name, "rejected");
+            bypassed = counter(registry, name, "bypassed");
+        }
+
+        private static Counter counter(MeterRegistry registry, String rule, String outcome) {
+            return Counter.builder("rate.limit.requests").tag("rule", rule).tag("outcome", outcome).register(registry);
+        }
+    }
+}
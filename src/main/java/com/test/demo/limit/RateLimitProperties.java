@@ -0,0 +1,138 @@
+package com.test.demo.limit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 限流配置,前缀 rate-limit
+ * 每条规则对应一个接口路径,按客户端各自一个令牌桶;clients 下可以为个别客户端单独指定容量和速率
+ */
+@Component
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+    private boolean enabled = true;
+
+    /**
+     * 识别客户端的请求头,为空或请求没带该头时按来源 IP 限流
+     * 请求头可以被客户端随意伪造,只应在网关已校验/覆盖该头时使用
+     */
+    private String clientHeader = "";
+
+    /**
+     * 应用部署在反向代理之后时取 X-Forwarded-For 的第一个地址作为来源 IP
+     */
+    private boolean trustForwardedFor = false;
+
+    private String keyPrefix = "rate:";
+
+    /**
+     * Redis 出错后这段时间内直接放行,不再逐个请求尝试连接
+     */
+    private long errorBackoffMillis = 1000;
+
+    private Map<String, Rule> rules = new LinkedHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getClientHeader() {
+        return clientHeader;
+    }
+
+    public void setClientHeader(String clientHeader) {
+        this.clientHeader = clientHeader;
+    }
+
+    public boolean isTrustForwardedFor() {
+        return trustForwardedFor;
+    }
+
+    public void setTrustForwardedFor(boolean trustForwardedFor) {
+        this.trustForwardedFor = trustForwardedFor;
+    }
+
+    public String getKeyPrefix() {
+        return keyPrefix;
+    }
+
+    public void setKeyPrefix(String keyPrefix) {
+        this.keyPrefix = keyPrefix;
+    }
+
+    public long getErrorBackoffMillis() {
+        return errorBackoffMillis;
+    }
+
+    public void setErrorBackoffMillis(long errorBackoffMillis) {
+        this.errorBackoffMillis = errorBackoffMillis;
+    }
+
+    public Map<String, Rule> getRules() {
+        return rules;
+    }
+
+    public void setRules(Map<String, Rule> rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * 令牌桶参数: 桶容量即允许的突发请求数,每秒补充 refillPerSecond 个令牌
+     */
+    public static class Limit {
+        private int capacity = 20;
+        private double refillPerSecond = 10;
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public double getRefillPerSecond() {
+            return refillPerSecond;
+        }
+
+        public void setRefillPerSecond(double refillPerSecond) {
+            this.refillPerSecond = refillPerSecond;
+        }
+    }
+
+    public static class Rule extends Limit {
+        private String path;
+        private Map<String, Limit> clients = new LinkedHashMap<>();
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public Map<String, Limit> getClients() {
+            return clients;
+        }
+
+        public void setClients(Map<String, Limit> clients) {
+            this.clients = clients;
+        }
+
+        /**
+         * 该客户端单独配置的限额,没有则用规则的默认值
+         */
+        public Limit limitFor(String client) {
+            Limit limit = clients.get(client);
+            return limit != null ? limit : this;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.test.demo.limit;
+
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 基于 Redis 的令牌桶,取令牌和补充令牌在一个 Lua 脚本里完成,多个实例共享同一个桶
+ */
+public class RedisRateLimiter {
+    /**
+     * KEYS[1] 桶 hash(tokens 剩余令牌, ts 上次补充时间毫秒)
+     * ARGV[1] 容量 ARGV[2] 每毫秒补充的令牌数 ARGV[3] 当前时间毫秒 ARGV[4] 本次需要的令牌数
+     * 返回 {是否放行, 剩余令牌, 需等待的毫秒数}
+     * 当前时间由调用方传入(脚本内取 TIME 在旧版本 Redis 上不能复制),各实例时钟偏差只影响补充速度
+     */
+    private static final RedisScript<List> TOKEN_BUCKET = new DefaultRedisScript<>(
+            "local capacity = tonumber(ARGV[1]) " +
+            "local rate = tonumber(ARGV[2]) " +
+            "local now = tonumber(ARGV[3]) " +
+            "local requested = tonumber(ARGV[4]) " +
+            "local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'ts') " +
+            "local tokens = tonumber(bucket[1]) " +
+            "local ts = tonumber(bucket[2]) " +
+            "if tokens == nil or ts == nil then tokens = capacity ts = now end " +
+            "if now > ts then tokens = math.min(capacity, tokens + (now - ts) * rate) ts = now end " +
+            "local allowed = 0 " +
+            "local wait = 0 " +
+            "if tokens >= requested then tokens = tokens - requested allowed = 1 " +
+            "else wait = math.ceil((requested - tokens) / rate) end " +
+            "redis.call('HMSET', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(ts)) " +
+            "redis.call('PEXPIRE', KEYS[1], math.ceil(capacity / rate) + 1000) " +
+            "return {allowed, math.floor(tokens), wait}", List.class);
+
+    private static final StringRedisSerializer STRING = new StringRedisSerializer();
+
+    /**
+     * 脚本返回的都是整数,结果序列化器实际不会被用到,只为满足方法签名
+     */
+    @SuppressWarnings("unchecked")
+    private static final RedisSerializer<List> RESULT = (RedisSerializer) STRING;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    public RedisRateLimiter(RedisTemplate<String, Object> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * 从 key 对应的桶里取一个令牌
+     */
+    public Decision tryAcquire(String key, RateLimitProperties.Limit limit) {
+        double perMillis = limit.getRefillPerSecond() / 1000d;
+        List<?> result = redisTemplate.execute(TOKEN_BUCKET, STRING, RESULT, Collections.singletonList(key),
+                String.valueOf(limit.getCapacity()), String.valueOf(perMillis),
+                String.valueOf(System.currentTimeMillis()), "1");
+        return new Decision(toLong(result.get(0)) == 1, toLong(result.get(1)), toLong(result.get(2)));
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : Long.parseLong(String.valueOf(value));
+    }
+
+    public static final class Decision {
+        private final boolean allowed;
+        private final long remaining;
+        private final long retryAfterMillis;
+
+        public Decision(boolean allowed, long remaining, long retryAfterMillis) {
+            this.allowed = allowed;
+            this.remaining = remaining;
+            this.retryAfterMillis = retryAfterMillis;
+        }
+
+        public boolean isAllowed() {
+            return allowed;
+        }
+
+        public long getRemaining() {
+            return remaining;
+        }
+
+        public long getRetryAfterMillis() {
+            return retryAfterMillis;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.test.demo.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.util.Collection;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按映射语句(UserMapper.getUserList 等)统计执行耗时和影响/返回的行数
+ * mybatis.statement: 耗时,标签 statement、command、exception
+ * mybatis.statement.rows: 查询返回行数或更新影响行数
+ * 批量执行器下 update 只是加入批次,耗时和行数在 flushStatements 时才产生,这里不计行数
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "queryCursor", args = {MappedStatement.class, Object.class, RowBounds.class})
+})
+public class MybatisMetricsInterceptor implements Interceptor {
+    private final MeterRegistry registry;
+
+    /**
+     * 成功路径的计量器按语句缓存,避免每次调用都构造标签和查注册表
+     */
+    private final ConcurrentMap<String, StatementMeters> meters = new ConcurrentHashMap<>();
+
+    public MybatisMetricsInterceptor(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+        StatementMeters statementMeters = meters.computeIfAbsent(statement.getId(), id -> new StatementMeters(statement));
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = invocation.proceed();
+        } catch (Throwable e) {
+            Timer.builder("mybatis.statement")
+                    .tag("statement", statementMeters.name)
+                    .tag("command", statementMeters.command)
+                    .tag("exception", ExceptionUtil.unwrapThrowable(e).getClass().getSimpleName())
+                    .register(registry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        statementMeters.timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (result instanceof Collection) {
+            statementMeters.rows.record(((Collection<?>) result).size());
+        } else if (result instanceof Integer && (Integer) result >= 0) {
+            statementMeters.rows.record((Integer) result);
+        }
+        return result;
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        return target instanceof Executor ? Plugin.wrap(target, this) : target;
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+    }
+
+    private final class StatementMeters {
+        final String name;
+        final String command;
+        final Timer timer;
+        final DistributionSummary rows;
+
+        StatementMeters(MappedStatement statement) {
+            name = shortName(statement.getId());
+            command = statement.getSqlCommandType().name().toLowerCase();
+            timer = Timer.builder("mybatis.statement")
+                    .description("MyBatis mapped statement execution time")
+                    .tag("statement", name)
+                    .tag("command", command)
+                    .tag("exception", "None")
+                    .register(registry);
+            rows = DistributionSummary.builder("mybatis.statement.rows")
+                    .description("Rows returned by a query or affected by an update")
+                    .baseUnit("rows")
+                    .tag("statement", name)
+                    .tag("command", command)
+                    .register(registry);
+        }
+    }
+
+    /**
+     * com.test.demo.dao.UserMapper.getUserList -> UserMapper.getUserList
+     */
+    static String shortName(String id) {
+        int method = id.lastIndexOf('.');
+        int type = method > 0 ? id.lastIndexOf('.', method - 1) : -1;
+        return id.substring(type + 1);
+    }
+}
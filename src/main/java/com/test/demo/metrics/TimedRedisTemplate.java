@@ -0,0 +1,79 @@
+package com.test.demo.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按命令统计耗时的 RedisTemplate,所有经过模板的操作(包括 RedisService)都会被计时
+ * redis.command: 标签 command 为连接上的方法名(get、mGet、evalSha ...);
+ * 管道和事务中的命令只是入队,整体耗时记在 closePipeline / exec 上
+ */
+public class TimedRedisTemplate<K, V> extends RedisTemplate<K, V> {
+    /**
+     * 不访问 Redis 的连接方法,不计时
+     */
+    private static final Set<String> UNTIMED = new HashSet<>(Arrays.asList(
+            "close", "isClosed", "getNativeConnection", "isQueueing", "isPipelined", "openPipeline",
+            "isSubscribed", "getSubscription", "getSentinelConnection", "multi", "toString", "hashCode", "equals"));
+
+    private final MeterRegistry registry;
+    private final ConcurrentMap<Method, Timer> timers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Method, Timer> errorTimers = new ConcurrentHashMap<>();
+
+    public TimedRedisTemplate(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    protected RedisConnection preProcessConnection(RedisConnection connection, boolean existingConnection) {
+        return (RedisConnection) Proxy.newProxyInstance(RedisConnection.class.getClassLoader(),
+                new Class<?>[]{RedisConnection.class}, (proxy, method, args) -> invoke(connection, method, args));
+    }
+
+    private Object invoke(RedisConnection connection, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        boolean flush = "closePipeline".equals(name) || "exec".equals(name) || "discard".equals(name);
+        if (UNTIMED.contains(name) || name.endsWith("Commands")
+                || !flush && (connection.isPipelined() || connection.isQueueing())) {
+            return proceed(connection, method, args);
+        }
+        long start = System.nanoTime();
+        try {
+            Object result = proceed(connection, method, args);
+            timers.computeIfAbsent(method, m -> timer(m, "None")).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (Throwable e) {
+            errorTimers.computeIfAbsent(method, m -> timer(m, "Error")).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    private Timer timer(Method method, String exception) {
+        String command = "closePipeline".equals(method.getName()) ? "pipeline" : method.getName();
+        return Timer.builder("redis.command")
+                .description("Redis command execution time")
+                .tag("command", command)
+                .tag("exception", exception)
+                .register(registry);
+    }
+
+    private static Object proceed(RedisConnection connection, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(connection, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
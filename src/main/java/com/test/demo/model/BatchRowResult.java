@@ -0,0 +1,61 @@
+package com.test.demo.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+
+/**
+ * 批量写入时单行的处理结果,index 为该行在请求中的位置(从0开始)
+ */
+public class BatchRowResult {
+    public static final String OK = "OK";
+    public static final String NOT_FOUND = "NOT_FOUND";
+    public static final String FAILED = "FAILED";
+
+    private int index;
+    @JsonSerialize(using = ToStringSerializer.class)
+    private long userId;
+    private String status;
+    private String message;
+
+    public BatchRowResult() {
+    }
+
+    public BatchRowResult(int index, long userId, String status, String message) {
+        this.index = index;
+        this.userId = userId;
+        this.status = status;
+        this.message = message;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(long userId) {
+        this.userId = userId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
@@ -0,0 +1,60 @@
+package com.test.demo.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+
+/**
+ * 登录成功返回的会话信息,后续请求在 Authorization: Bearer 头里带上 token
+ */
+public class LoginResult {
+    private String token;
+    @JsonSerialize(using = ToStringSerializer.class)
+    private long userId;
+    private String userName;
+    private long expiresIn;
+
+    public LoginResult() {
+    }
+
+    public LoginResult(String token, long userId, String userName, long expiresIn) {
+        this.token = token;
+        this.userId = userId;
+        this.userName = userName;
+        this.expiresIn = expiresIn;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(long userId) {
+        this.userId = userId;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public void setUserName(String userName) {
+        this.userName = userName;
+    }
+
+    /**
+     * 令牌空闲多少秒后失效,每次使用会顺延
+     */
+    public long getExpiresIn() {
+        return expiresIn;
+    }
+
+    public void setExpiresIn(long expiresIn) {
+        this.expiresIn = expiresIn;
+    }
+}
@@ -1,10 +1,20 @@
 package com.test.demo.model;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+
+/**
+ * 不实现 Serializable: 缓存只经 ValueCodec 编码,不会退回 JDK 序列化
+ */
 public class User {
     private String userName;
     private String userSex;
     private String loginPassword;
-    private String userId;
+    /**
+     * 雪花 ID 超过 JavaScript Number 的 53 位精度,JSON 里以字符串输出;输入时字符串和数字都接受
+     */
+    @JsonSerialize(using = ToStringSerializer.class)
+    private long userId;
 
     public String getUserName() {
         return userName;
@@ -30,11 +40,11 @@ public class User {
         this.loginPassword = loginPassword;
     }
 
-    public String getUserId() {
+    public long getUserId() {
         return userId;
     }
 
-    public void setUserId(String userId) {
+    public void setUserId(long userId) {
         this.userId = userId;
     }
 }
@@ -0,0 +1,46 @@
+package com.test.demo.model;
+
+/**
+ * user_outbox 中的一条变更记录,createdAt 为写入时间(毫秒)
+ */
+public class UserChange {
+    public static final String UPSERT = "UPSERT";
+    public static final String DELETE = "DELETE";
+
+    private long id;
+    private long userId;
+    private String op;
+    private long createdAt;
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(long userId) {
+        this.userId = userId;
+    }
+
+    public String getOp() {
+        return op;
+    }
+
+    public void setOp(String op) {
+        this.op = op;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,70 @@
+package com.test.demo.model;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * 列表/详情接口可以选择返回的字段,fields=userName,userSex
+ * login_password 不在其中,任何查询接口都不会返回;userId 是分页游标,总是返回
+ */
+public enum UserField {
+    USER_ID("userId", "user_id"),
+    USER_NAME("userName", "user_name"),
+    USER_SEX("userSex", "user_sex");
+
+    /**
+     * 不传 fields 时返回的字段
+     */
+    public static final Set<UserField> ALL = Collections.unmodifiableSet(EnumSet.allOf(UserField.class));
+
+    private final String property;
+    private final String column;
+
+    UserField(String property, String column) {
+        this.property = property;
+        this.column = column;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    /**
+     * 供 Mapper XML 判断是否选中;EnumSet 的实现类不是 public 的,OGNL 不能直接调用它的 contains
+     */
+    public boolean selectedIn(Set<UserField> fields) {
+        return fields.contains(this);
+    }
+
+    /**
+     * 解析逗号分隔的属性名,为空时返回全部字段;未知的字段名(包括 loginPassword)抛 IllegalArgumentException
+     */
+    public static Set<UserField> parse(String fields) {
+        if (fields == null || fields.trim().isEmpty()) {
+            return ALL;
+        }
+        EnumSet<UserField> selected = EnumSet.of(USER_ID);
+        for (String name : fields.split(",")) {
+            String property = name.trim();
+            if (property.isEmpty()) {
+                continue;
+            }
+            selected.add(of(property));
+        }
+        return selected;
+    }
+
+    private static UserField of(String property) {
+        for (UserField field : values()) {
+            if (field.property.equals(property)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("unknown field " + property);
+    }
+}
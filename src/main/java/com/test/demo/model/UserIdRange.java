@@ -0,0 +1,70 @@
+package com.test.demo.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * user 表中 user_id 的分布: 最小值、最大值和行数,表为空时 minUserId/maxUserId 为 null
+ */
+public class UserIdRange {
+    private Long minUserId;
+    private Long maxUserId;
+    private long userCount;
+
+    public UserIdRange() {
+    }
+
+    public UserIdRange(Long minUserId, Long maxUserId, long userCount) {
+        this.minUserId = minUserId;
+        this.maxUserId = maxUserId;
+        this.userCount = userCount;
+    }
+
+    public boolean isEmpty() {
+        return minUserId == null || maxUserId == null || userCount == 0;
+    }
+
+    /**
+     * 把 [min, max] 切成最多 count 段左开右闭的区间 {after, upTo},用于并行扫描;表为空时返回空列表
+     */
+    public List<long[]> split(int count) {
+        List<long[]> ranges = new ArrayList<>(Math.max(1, count));
+        if (isEmpty()) {
+            return ranges;
+        }
+        long min = minUserId;
+        long max = maxUserId;
+        long step = (max - min) / Math.max(1, count) + 1;
+        long after = min - 1;
+        while (after < max) {
+            long upTo = max - after <= step ? max : after + step;
+            ranges.add(new long[]{after, upTo});
+            after = upTo;
+        }
+        return ranges;
+    }
+
+    public Long getMinUserId() {
+        return minUserId;
+    }
+
+    public void setMinUserId(Long minUserId) {
+        this.minUserId = minUserId;
+    }
+
+    public Long getMaxUserId() {
+        return maxUserId;
+    }
+
+    public void setMaxUserId(Long maxUserId) {
+        this.maxUserId = maxUserId;
+    }
+
+    public long getUserCount() {
+        return userCount;
+    }
+
+    public void setUserCount(long userCount) {
+        this.userCount = userCount;
+    }
+}
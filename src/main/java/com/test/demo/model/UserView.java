@@ -0,0 +1,94 @@
+package com.test.demo.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 查询接口返回的用户,只包含可以对外的字段,不可变
+ * 没有被选中的字段为 null,序列化时直接省略
+ */
+@JsonSerialize(using = UserView.Writer.class)
+public final class UserView {
+    private final long userId;
+    private final String userName;
+    private final String userSex;
+
+    /**
+     * MyBatis 按构造方法映射,参数顺序与 viewResultMap 一致
+     */
+    public UserView(long userId, String userName, String userSex) {
+        this.userId = userId;
+        this.userName = userName;
+        this.userSex = userSex;
+    }
+
+    /**
+     * 从缓存里的完整 User 中取出选中的字段
+     */
+    public static UserView of(User user, Set<UserField> fields) {
+        if (user == null) {
+            return null;
+        }
+        return new UserView(user.getUserId(),
+                fields.contains(UserField.USER_NAME) ? user.getUserName() : null,
+                fields.contains(UserField.USER_SEX) ? user.getUserSex() : null);
+    }
+
+    public static List<UserView> of(List<User> users, Set<UserField> fields) {
+        List<UserView> views = new ArrayList<>(users.size());
+        for (User user : users) {
+            views.add(of(user, fields));
+        }
+        return views;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public String getUserSex() {
+        return userSex;
+    }
+
+    /**
+     * 手写的序列化器: 字段名预先编码,按固定顺序直接写出,不经过 BeanSerializer 的反射和属性遍历
+     * userId 与 User 一样以字符串输出
+     */
+    public static final class Writer extends StdSerializer<UserView> {
+        private static final SerializedString USER_ID = new SerializedString(UserField.USER_ID.getProperty());
+        private static final SerializedString USER_NAME = new SerializedString(UserField.USER_NAME.getProperty());
+        private static final SerializedString USER_SEX = new SerializedString(UserField.USER_SEX.getProperty());
+
+        public Writer() {
+            super(UserView.class);
+        }
+
+        @Override
+        public void serialize(UserView view, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            gen.writeFieldName(USER_ID);
+            gen.writeString(Long.toString(view.userId));
+            if (view.userName != null) {
+                gen.writeFieldName(USER_NAME);
+                gen.writeString(view.userName);
+            }
+            if (view.userSex != null) {
+                gen.writeFieldName(USER_SEX);
+                gen.writeString(view.userSex);
+            }
+            gen.writeEndObject();
+        }
+    }
+}
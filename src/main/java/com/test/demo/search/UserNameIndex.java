@@ -0,0 +1,553 @@
+package com.test.demo.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * user_name 的进程内三元组(trigram)倒排索引,支持前缀、子串和少量拼写错误的模糊搜索,按相关度取前 K 个
+ * <p>
+ * 每个用户名是一个文档,文档号按写入顺序递增,所以倒排表天然有序,用 int 数组存放;
+ * 用户名统一转小写后存在一个 char 数组里,避免每个用户一个 String 对象。
+ * 名字前面补两个、后面补一个边界符再切三元组,1~2 个字符的查询也能靠开头的边界三元组做前缀匹配。
+ * <p>
+ * 修改/删除只把旧文档标记为删除,删除过多时整体压缩重建。读写锁保护,查询之间互不阻塞。
+ */
+public class UserNameIndex {
+    private static final char BOUND = '\u0002';
+    private static final int INITIAL_DOCS = 1024;
+
+    /**
+     * 相关度档位,越小越靠前
+     */
+    private static final int EXACT = 0;
+    private static final int PREFIX = 1;
+    private static final int CONTAINS = 2;
+    private static final int FUZZY = 3;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] userIds = new long[INITIAL_DOCS];
+    private int[] nameStart = new int[INITIAL_DOCS];
+    private int[] nameLength = new int[INITIAL_DOCS];
+    private char[] chars = new char[INITIAL_DOCS * 8];
+    private int charCount;
+    private int docCount;
+    private BitSet deleted = new BitSet();
+    private int deletedCount;
+
+    private LongIntMap docOf = new LongIntMap(INITIAL_DOCS);
+    private Map<Long, Postings> postings = new HashMap<>();
+
+    /**
+     * 模糊查询的计数数组按线程复用,避免每次查询分配一个文档数大小的数组
+     */
+    private final ThreadLocal<int[]> countBuffer = ThreadLocal.withInitial(() -> new int[0]);
+
+    /**
+     * 新增或替换用户名,名字为空时等同于删除
+     */
+    public void put(long userId, String userName) {
+        String name = normalize(userName);
+        lock.writeLock().lock();
+        try {
+            removeLocked(userId);
+            if (!name.isEmpty()) {
+                addLocked(userId, name);
+            }
+            if (deletedCount > INITIAL_DOCS && deletedCount > docCount / 4) {
+                compactLocked();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long userId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(userId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 当前索引的用户数
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docCount - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 批量构建完成后调用,收紧各数组的多余容量
+     */
+    public void trim() {
+        lock.writeLock().lock();
+        try {
+            compactLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 按相关度返回最多 limit 个 userId:
+     * 完全相同 > 前缀 > 包含 > 拼写相近(编辑距离小的在前),同一档位名字短的在前
+     * 前缀/子串一个都没有匹配上时才做模糊匹配(纠错),模糊匹配只针对整个名字或名字开头,不做子串纠错
+     */
+    public long[] search(String query, int limit) {
+        String q = normalize(query);
+        if (q.isEmpty() || limit <= 0) {
+            return new long[0];
+        }
+        lock.readLock().lock();
+        try {
+            TopK top = new TopK(limit);
+            searchExact(q, top);
+            int maxEdits = maxEdits(q.length());
+            if (top.size == 0 && maxEdits > 0) {
+                searchFuzzy(q, maxEdits, top);
+            }
+            return top.userIds();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 允许的编辑距离: 查询越长越宽松,太短的查询纠错只会带来大量噪音
+     */
+    static int maxEdits(int length) {
+        if (length <= 3) {
+            return 0;
+        }
+        return length <= 8 ? 1 : 2;
+    }
+
+    static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        return name.trim().toLowerCase(Locale.ROOT).replace(BOUND, ' ');
+    }
+
+    private void searchExact(String q, TopK top) {
+        if (q.length() < 3) {
+            //1~2 个字符只能用开头的边界三元组,即前缀匹配
+            String padded = (q.length() == 1 ? "" + BOUND + BOUND : "" + BOUND) + q;
+            collect(q, new long[]{gram(padded, 0)}, top);
+            return;
+        }
+        long[] grams = distinctGrams(q, 0, q.length());
+        //先只找以 q 开头的(多一个开头边界三元组,候选少得多);前缀结果已够 limit 个时,子串结果不可能排进来
+        long[] prefixGrams = Arrays.copyOf(grams, grams.length + 1);
+        prefixGrams[grams.length] = gram(BOUND + q, 0);
+        collect(q, prefixGrams, top);
+        if (top.size < top.docs.length) {
+            collect(q, grams, top);
+        }
+    }
+
+    /**
+     * 包含全部 grams 的文档逐个确认后放入结果;从最短的倒排表出发,到其它表里二分查找
+     */
+    private void collect(String q, long[] grams, TopK top) {
+        List<Postings> lists = postingsOf(grams);
+        if (lists.size() < grams.length) {
+            return;
+        }
+        Postings shortest = lists.get(0);
+        candidates:
+        for (int i = 0; i < shortest.size; i++) {
+            int doc = shortest.docs[i];
+            if (deleted.get(doc) || top.containsDoc(doc)) {
+                continue;
+            }
+            for (int j = 1; j < lists.size(); j++) {
+                if (!lists.get(j).contains(doc)) {
+                    continue candidates;
+                }
+            }
+            int at = indexOf(doc, q);
+            if (at < 0) {
+                continue;
+            }
+            int tier = at > 0 ? CONTAINS : nameLength[doc] == q.length() ? EXACT : PREFIX;
+            top.offer(doc, tier, 0, nameLength[doc], userIds[doc]);
+        }
+    }
+
+    /**
+     * 候选文档需至少共享 n - 3k 个三元组(每处编辑最多破坏 3 个三元组),再逐个算编辑距离确认
+     * 满足条件的文档一定出现在最短的 (倒排表数 - 阈值 + 1) 个表中的某一个里,只扫这几个表计数,
+     * 较长的表(如开头字母的边界三元组)只对候选做二分查找
+     */
+    private void searchFuzzy(String q, int maxEdits, TopK top) {
+        long[] grams = distinctGrams("" + BOUND + BOUND + q, 0, q.length() + 2);
+        int threshold = Math.max(1, grams.length - 3 * maxEdits);
+        List<Postings> lists = postingsOf(grams);
+        int scanned = lists.size() - threshold + 1;
+        if (scanned <= 0) {
+            return;
+        }
+        int[] counts = countBuffer.get();
+        if (counts.length < docCount) {
+            counts = new int[Math.max(docCount, counts.length * 2)];
+            countBuffer.set(counts);
+        }
+        IntList touched = new IntList();
+        try {
+            for (int l = 0; l < scanned; l++) {
+                Postings list = lists.get(l);
+                for (int i = 0; i < list.size; i++) {
+                    int doc = list.docs[i];
+                    if (counts[doc]++ == 0) {
+                        touched.add(doc);
+                    }
+                }
+            }
+            for (int i = 0; i < touched.size; i++) {
+                int doc = touched.values[i];
+                int count = counts[doc];
+                for (int l = scanned; l < lists.size() && count < threshold; l++) {
+                    if (count + lists.size() - l < threshold) {
+                        break;
+                    }
+                    if (lists.get(l).contains(doc)) {
+                        count++;
+                    }
+                }
+                if (count < threshold || deleted.get(doc) || top.containsDoc(doc)) {
+                    continue;
+                }
+                int distance = prefixDistance(q, doc, maxEdits);
+                if (distance <= maxEdits) {
+                    top.offer(doc, FUZZY, distance, nameLength[doc], userIds[doc]);
+                }
+            }
+        } finally {
+            for (int i = 0; i < touched.size; i++) {
+                counts[touched.values[i]] = 0;
+            }
+        }
+    }
+
+    /**
+     * 各三元组的倒排表,按长度从短到长;不存在的三元组跳过
+     */
+    private List<Postings> postingsOf(long[] grams) {
+        List<Postings> lists = new ArrayList<>(grams.length);
+        for (long gram : grams) {
+            Postings list = postings.get(gram);
+            if (list != null) {
+                lists.add(list);
+            }
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+        return lists;
+    }
+
+    /**
+     * 查询与整个名字、或与名字开头(长度相差不超过 maxEdits)的最小编辑距离,超过 maxEdits 时返回 maxEdits + 1
+     */
+    private int prefixDistance(String q, int doc, int maxEdits) {
+        int start = nameStart[doc];
+        int n = nameLength[doc];
+        int m = q.length();
+        int[] previous = new int[n + 1];
+        int[] current = new int[n + 1];
+        for (int j = 0; j <= n; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= m; i++) {
+            current[0] = i;
+            char c = q.charAt(i - 1);
+            for (int j = 1; j <= n; j++) {
+                int cost = chars[start + j - 1] == c ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        int best = previous[n];
+        for (int j = Math.max(0, m - maxEdits); j <= Math.min(n, m + maxEdits); j++) {
+            best = Math.min(best, previous[j]);
+        }
+        return Math.min(best, maxEdits + 1);
+    }
+
+    private int indexOf(int doc, String q) {
+        int start = nameStart[doc];
+        int last = nameLength[doc] - q.length();
+        outer:
+        for (int at = 0; at <= last; at++) {
+            for (int k = 0; k < q.length(); k++) {
+                if (chars[start + at + k] != q.charAt(k)) {
+                    continue outer;
+                }
+            }
+            return at;
+        }
+        return -1;
+    }
+
+    private void addLocked(long userId, String name) {
+        int doc = docCount++;
+        if (doc == userIds.length) {
+            int capacity = doc + (doc >> 1);
+            userIds = Arrays.copyOf(userIds, capacity);
+            nameStart = Arrays.copyOf(nameStart, capacity);
+            nameLength = Arrays.copyOf(nameLength, capacity);
+        }
+        if (charCount + name.length() > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(charCount + name.length(), chars.length + (chars.length >> 1)));
+        }
+        userIds[doc] = userId;
+        nameStart[doc] = charCount;
+        nameLength[doc] = name.length();
+        name.getChars(0, name.length(), chars, charCount);
+        charCount += name.length();
+        docOf.put(userId, doc);
+
+        String padded = "" + BOUND + BOUND + name + BOUND;
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            postings.computeIfAbsent(gram(padded, i), g -> new Postings()).add(doc);
+        }
+    }
+
+    private void removeLocked(long userId) {
+        int doc = docOf.remove(userId);
+        if (doc >= 0) {
+            deleted.set(doc);
+            deletedCount++;
+        }
+    }
+
+    /**
+     * 只保留未删除的文档重新编号,倒排表和字符数组一并收紧
+     */
+    private void compactLocked() {
+        long[] oldUserIds = userIds;
+        int[] oldStart = nameStart;
+        int[] oldLength = nameLength;
+        char[] oldChars = chars;
+        int oldCount = docCount;
+        BitSet oldDeleted = deleted;
+
+        int live = docCount - deletedCount;
+        int capacity = Math.max(INITIAL_DOCS, live);
+        userIds = new long[capacity];
+        nameStart = new int[capacity];
+        nameLength = new int[capacity];
+        chars = new char[Math.max(INITIAL_DOCS, charCount)];
+        charCount = 0;
+        docCount = 0;
+        deleted = new BitSet();
+        deletedCount = 0;
+        docOf = new LongIntMap(capacity);
+        postings = new HashMap<>(postings.size() * 2);
+        for (int doc = 0; doc < oldCount; doc++) {
+            if (!oldDeleted.get(doc)) {
+                addLocked(oldUserIds[doc], new String(oldChars, oldStart[doc], oldLength[doc]));
+            }
+        }
+        chars = Arrays.copyOf(chars, Math.max(charCount, 1));
+        for (Postings list : postings.values()) {
+            list.trim();
+        }
+    }
+
+    private static long[] distinctGrams(String text, int from, int to) {
+        long[] grams = new long[Math.max(0, to - from - 2)];
+        int count = 0;
+        for (int i = from; i + 3 <= to; i++) {
+            long gram = gram(text, i);
+            boolean seen = false;
+            for (int j = 0; j < count; j++) {
+                if (grams[j] == gram) {
+                    seen = true;
+                    break;
+                }
+            }
+            if (!seen) {
+                grams[count++] = gram;
+            }
+        }
+        return Arrays.copyOf(grams, count);
+    }
+
+    /**
+     * 三个 UTF-16 字符拼成一个 long
+     */
+    private static long gram(String text, int at) {
+        return ((long) text.charAt(at) << 32) | ((long) text.charAt(at + 1) << 16) | text.charAt(at + 2);
+    }
+
+    /**
+     * 倒排表,文档号递增追加
+     */
+    private static final class Postings {
+        int[] docs = new int[2];
+        int size;
+
+        void add(int doc) {
+            //同一个名字里重复出现的三元组只记一次
+            if (size > 0 && docs[size - 1] == doc) {
+                return;
+            }
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size + (size >> 1) + 1);
+            }
+            docs[size++] = doc;
+        }
+
+        boolean contains(int doc) {
+            return Arrays.binarySearch(docs, 0, size, doc) >= 0;
+        }
+
+        void trim() {
+            docs = Arrays.copyOf(docs, size);
+        }
+    }
+
+    private static final class IntList {
+        int[] values = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    /**
+     * 前 K 个结果,limit 通常很小,有序数组插入即可
+     */
+    private static final class TopK {
+        final int[] docs;
+        final long[] keys;
+        final long[] ids;
+        int size;
+
+        TopK(int limit) {
+            docs = new int[limit];
+            keys = new long[limit];
+            ids = new long[limit];
+        }
+
+        void offer(int doc, int tier, int distance, int length, long userId) {
+            long key = ((long) tier << 48) | ((long) distance << 32) | length;
+            int at = size;
+            while (at > 0 && (keys[at - 1] > key || keys[at - 1] == key && ids[at - 1] > userId)) {
+                at--;
+            }
+            if (at == docs.length) {
+                return;
+            }
+            int moved = Math.min(size, docs.length - 1) - at;
+            System.arraycopy(docs, at, docs, at + 1, moved);
+            System.arraycopy(keys, at, keys, at + 1, moved);
+            System.arraycopy(ids, at, ids, at + 1, moved);
+            docs[at] = doc;
+            keys[at] = key;
+            ids[at] = userId;
+            size = Math.min(size + 1, docs.length);
+        }
+
+        boolean containsDoc(int doc) {
+            for (int i = 0; i < size; i++) {
+                if (docs[i] == doc) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        long[] userIds() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+
+    /**
+     * userId -> 文档号,开放寻址,避免百万级 Long/Integer 装箱对象
+     * 删除时只把值置为 -1,压缩重建时一并清掉
+     */
+    private static final class LongIntMap {
+        private long[] keys;
+        private int[] values;
+        private boolean[] used;
+        private int size;
+
+        LongIntMap(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+            keys = new long[capacity];
+            values = new int[capacity];
+            used = new boolean[capacity];
+        }
+
+        void put(long key, int value) {
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            int slot = slot(key);
+            if (!used[slot]) {
+                used[slot] = true;
+                keys[slot] = key;
+                size++;
+            }
+            values[slot] = value;
+        }
+
+        /**
+         * 返回被删除的值,不存在时返回 -1
+         */
+        int remove(long key) {
+            int slot = slot(key);
+            if (!used[slot]) {
+                return -1;
+            }
+            int value = values[slot];
+            values[slot] = -1;
+            return value;
+        }
+
+        private int slot(long key) {
+            int mask = keys.length - 1;
+            int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+            while (used[slot] && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i] && oldValues[i] >= 0) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+    }
+}
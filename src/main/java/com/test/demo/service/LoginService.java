@@ -0,0 +1,81 @@
+package com.test.demo.service;
+
+import com.test.demo.auth.PasswordHasher;
+import com.test.demo.auth.SessionTokenService;
+import com.test.demo.dao.UserMapper;
+import com.test.demo.model.LoginResult;
+import com.test.demo.model.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * 登录: 按用户名查库 -> 哈希线程池校验密码 -> 签发 Redis 会话令牌
+ * 库里还是明文或 cost 偏低的密码在登录成功时顺便升级成当前配置的哈希
+ */
+@Service
+public class LoginService {
+    @Autowired
+    UserMapper userMapper;
+    @Autowired
+    UserService userService;
+    @Autowired
+    private PasswordHasher passwordHasher;
+    @Autowired
+    private SessionTokenService sessionTokenService;
+    @Autowired
+    @Qualifier("userDbExecutor")
+    private Executor userDbExecutor;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Counter succeeded;
+    private Counter failed;
+    private Counter upgraded;
+
+    @PostConstruct
+    public void init() {
+        succeeded = Counter.builder("auth.login").tag("result", "success").register(meterRegistry);
+        failed = Counter.builder("auth.login").tag("result", "failure").register(meterRegistry);
+        upgraded = Counter.builder("auth.password.upgraded").register(meterRegistry);
+    }
+
+    //登录,用户名或密码错误时结果为 null
+    public CompletableFuture<LoginResult> login(String userName, String password){
+        User user = userName == null || userName.isEmpty() ? null : userMapper.getUserByName(userName);
+        String stored = user == null ? null : user.getLoginPassword();
+        //校验结果回到数据库线程池上写库、写 Redis,哈希线程只做计算
+        return passwordHasher.verify(password, stored).thenApplyAsync(verification -> {
+            if (!verification.isMatched()) {
+                failed.increment();
+                return null;
+            }
+            if (verification.getUpgradedHash() != null) {
+                upgradePassword(user.getUserId(), verification.getUpgradedHash());
+            }
+            succeeded.increment();
+            String token = sessionTokenService.issue(user.getUserId());
+            return new LoginResult(token, user.getUserId(), user.getUserName(), sessionTokenService.getTtlSeconds());
+        }, userDbExecutor);
+    }
+    //注销
+    public void logout(String token){
+        sessionTokenService.revoke(token);
+    }
+
+    //与其它修改一样走 UserService: 分片事务内写发件箱、更新版本戳,各节点缓存里的旧哈希随之失效
+    private void upgradePassword(long userId, String hash) {
+        User change = new User();
+        change.setUserId(userId);
+        change.setLoginPassword(hash);
+        if (userService.upUser(change) > 0) {
+            upgraded.increment();
+        }
+    }
+}
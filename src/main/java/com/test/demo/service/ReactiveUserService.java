@@ -0,0 +1,137 @@
+package com.test.demo.service;
+
+import com.test.demo.cache.UserCache;
+import com.test.demo.dao.UserMapper;
+import com.test.demo.etag.ConditionalGet;
+import com.test.demo.model.User;
+import org.apache.ibatis.cursor.Cursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * UserService 的响应式包装
+ * 缓存命中走 ReactiveRedisTemplate,不占用任何阻塞线程;
+ * 数据库访问仍是 MyBatis + JDBC,统一在 userDbScheduler 上执行,事件循环线程不会被阻塞
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveUserService {
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveUserService.class);
+
+    /**
+     * Redis 中没有该 key 时的占位,与空值标记区分开
+     */
+    private static final Object MISS = new Object();
+
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserSearchService userSearchService;
+    @Autowired
+    private UserMapper userMapper;
+    @Autowired
+    private ReactiveRedisTemplate<String, Object> reactiveRedisTemplate;
+    @Autowired
+    @Qualifier("userDbScheduler")
+    private Scheduler userDbScheduler;
+
+    /**
+     * 按 user_id 顺序流式查询,参数与 UserService.getUserList 相同
+     * 游标按下游的 request(n) 逐批读取,客户端读得慢时数据库端也随之暂停,内存中只保留一个 fetchSize 的数据
+     */
+    public Flux<User> getUserList(String userName, Long lastUserId, Integer pageSize) {
+        String escaped = UserService.escapeLike(userName);
+        int limit = userService.resolvePageSize(pageSize);
+        //游标在订阅时打开(各分片各自的 SqlSession),完成、出错或取消时关闭,连同连接一起释放
+        return Flux.using(
+                () -> userMapper.streamUserList(escaped, lastUserId, limit),
+                Flux::fromIterable,
+                ReactiveUserService::closeQuietly)
+                .subscribeOn(userDbScheduler);
+    }
+
+    /**
+     * 先用 ReactiveRedisTemplate 查缓存,未命中或 Redis 不可用时走 UserService 的读穿逻辑
+     */
+    public Mono<User> getUserInfo(long userId) {
+        if (!userService.mightExist(userId)) {
+            return Mono.empty();
+        }
+        return reactiveRedisTemplate.opsForValue().get(UserCache.KEY_PREFIX + userId)
+                .onErrorResume(e -> {
+                    logger.warn("read user cache {} failed: {}", userId, e.getMessage());
+                    return Mono.empty();
+                })
+                .defaultIfEmpty(MISS)
+                .flatMap(value -> {
+                    if (value instanceof User) {
+                        return Mono.just((User) value);
+                    }
+                    if (UserCache.NULL_MARKER.equals(value)) {
+                        return Mono.empty();
+                    }
+                    return blocking(() -> userService.getUserInfo(userId));
+                });
+    }
+
+    public Mono<List<User>> getUserInfoList(List<Long> userIds) {
+        return blocking(() -> userService.getUserInfoList(userIds));
+    }
+
+    public Mono<List<User>> searchUser(String query, Integer limit) {
+        return blocking(() -> userSearchService.search(query, limit));
+    }
+
+    public Mono<Integer> addUser(User user) {
+        return blocking(() -> userService.addUser(user));
+    }
+
+    public Mono<Integer> upUser(User user) {
+        return blocking(() -> userService.upUser(user));
+    }
+
+    public Mono<Integer> delUser(long userId) {
+        if (!userService.mightExist(userId)) {
+            return Mono.just(0);
+        }
+        return blocking(() -> userService.delUser(userId));
+    }
+
+    /**
+     * 布隆过滤器只查本地内存,不用切到 userDbScheduler
+     */
+    public boolean mightExist(long userId) {
+        return userService.mightExist(userId);
+    }
+
+    /**
+     * 在 userDbScheduler 上读取版本戳生成 ETag,没有时为 ConditionalGet.NO_ETAG
+     */
+    public Mono<String> eTag(Callable<String> lookup) {
+        return blocking(lookup).defaultIfEmpty(ConditionalGet.NO_ETAG);
+    }
+
+    private <T> Mono<T> blocking(Callable<T> callable) {
+        return Mono.fromCallable(callable).subscribeOn(userDbScheduler);
+    }
+
+    private static void closeQuietly(Cursor<User> cursor) {
+        try {
+            cursor.close();
+        } catch (IOException e) {
+            logger.warn("close user cursor failed: {}", e.getMessage());
+        }
+    }
+}
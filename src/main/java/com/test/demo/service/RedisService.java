@@ -1,18 +1,72 @@
 package com.test.demo.service;
 
+import com.test.demo.util.JsonUtil;
+import com.test.demo.util.Print;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.util.CollectionUtils;
 
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 public class RedisService {
+    /**
+     * 写入后在同一个脚本里设置过期时间,避免写成功、expire 失败留下永不过期的 key
+     * ARGV[1] 命令 ARGV[2] 过期秒数 ARGV[3..] 命令参数
+     */
+    private static final RedisScript<Long> WRITE_AND_EXPIRE = new DefaultRedisScript<>(
+            "local result = redis.call(ARGV[1], KEYS[1], unpack(ARGV, 3)) " +
+            "if tonumber(ARGV[2]) > 0 then redis.call('EXPIRE', KEYS[1], ARGV[2]) end " +
+            "if type(result) == 'table' then return 1 end " +
+            "return result", Long.class);
+
+    /**
+     * 一次脚本调用最多传入的命令参数个数,Lua 的 unpack 超过约 8000 个会报 too many results to unpack
+     */
+    private static final int MAX_SCRIPT_ARGS = 4000;
+
+    /**
+     * 脚本参数已按模板的序列化器编码好,原样传递
+     */
+    private static final RedisSerializer<byte[]> RAW = new RedisSerializer<byte[]>() {
+        @Override
+        public byte[] serialize(byte[] bytes) {
+            return bytes;
+        }
+
+        @Override
+        public byte[] deserialize(byte[] bytes) {
+            return bytes;
+        }
+    };
+
     private RedisTemplate<String, Object> redisTemplate;
 
+    /**
+     * 批量操作每批的 key 数,一批为一次网络往返
+     */
+    private int batchSize = 500;
+
     public void setRedisTemplate(RedisTemplate<String, Object> redisTemplate) {
         this.redisTemplate = redisTemplate;
     }
 
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
     /**
      * 指定缓存失效时间
      * @param key 键
@@ -78,36 +132,30 @@ public class RedisService {
 
     //============================String=============================
     /**
-     * 普通缓存获取;
+     * 普通缓存获取;值已由序列化器还原,类型不一致时再转换(兼容旧的 JSON 字符串)
      * @param key 键
      * @return 值
-     * @throws IOException
-     * @throws JsonMappingException
-     * @throws JsonParseException
      */
     public <T> T getObject(String key,Class<T> clazz){
         if(key == null){
             return null;
         }else{
             Object value = redisTemplate.opsForValue().get(key);
-            return ( value == null) ? null : JsonUtil.returnObj(value.toString(), clazz);
+            return JsonUtil.convert(value, clazz);
         }
     }
 
     /**
-     * 普通缓存获取;
+     * 普通缓存获取;值已由序列化器还原,类型不一致时再转换(兼容旧的 JSON 字符串)
      * @param key 键
      * @return 值
-     * @throws IOException
-     * @throws JsonMappingException
-     * @throws JsonParseException
      */
     public <T> List<T> getList(String key,Class<T> clazz){
         if(key == null){
             return null;
         }else{
             Object value = redisTemplate.opsForValue().get(key);
-            return ( value == null) ? null : JsonUtil.toList(value.toString(), clazz);
+            return JsonUtil.convertList(value, clazz);
         }
     }
 
@@ -121,7 +169,7 @@ public class RedisService {
             return null;
         }else{
             Object value = redisTemplate.opsForValue().get(key);
-            return ( value == null) ? null : JsonUtil.returnObj(value.toString(), type);
+            return JsonUtil.convert(value, type);
         }
     }
 
@@ -257,9 +305,18 @@ public class RedisService {
             if(key ==null || map == null || map.isEmpty()){
                 return false;
             }else{
-                redisTemplate.opsForHash().putAll(key, map);
-                if(time > 0){
-                    expire(key, time);
+                //每批在一个脚本里写入并设置过期,单个 key 任何时刻都带着过期时间
+                List<Object> args = new ArrayList<>(Math.min(map.size() * 2, scriptBatchSize()));
+                for (Map.Entry<String, Object> entry : map.entrySet()) {
+                    args.add(hashKeyBytes(entry.getKey()));
+                    args.add(hashValueBytes(entry.getValue()));
+                    if (args.size() >= scriptBatchSize()) {
+                        writeAndExpire("HMSET", key, time, args);
+                        args.clear();
+                    }
+                }
+                if (!args.isEmpty()) {
+                    writeAndExpire("HMSET", key, time, args);
                 }
                 return true;
             }
@@ -303,10 +360,10 @@ public class RedisService {
             if(key == null || value == null ){
                 return false;
             }else{
-                redisTemplate.opsForHash().put(key, item, value);
-                if(time>0){
-                    expire(key, time);
-                }
+                List<Object> args = new ArrayList<>(2);
+                args.add(hashKeyBytes(item));
+                args.add(hashValueBytes(value));
+                writeAndExpire("HSET", key, time, args);
                 return true;
             }
         } catch (Exception e) {
@@ -429,9 +486,20 @@ public class RedisService {
             if(key == null || values == null){
                 return 0;
             }else{
-                Long count = redisTemplate.opsForSet().add(key, values);
-                if(time>0) expire(key, time);
-                return count;
+                //与 hmset 一样分批,脚本里 unpack 的参数个数有上限(约 8000),大集合一次传入会整体失败
+                List<Object> args = new ArrayList<>(Math.min(values.length, scriptBatchSize()));
+                long added = 0;
+                for (Object value : values) {
+                    args.add(valueBytes(value));
+                    if (args.size() >= scriptBatchSize()) {
+                        added += writeAndExpire("SADD", key, time, args);
+                        args.clear();
+                    }
+                }
+                if (!args.isEmpty()) {
+                    added += writeAndExpire("SADD", key, time, args);
+                }
+                return added;
             }
         } catch (Exception e) {
             Print.printException("RedisTool sSet(sSetAndTime(String key,long time,Object...values)",key,String.valueOf(time), JsonUtil.toJson(values),e);
@@ -548,7 +616,7 @@ public class RedisService {
                 return null;
             }else{
                 Object object = lGetIndex(key, index);
-                return object == null ? null :JsonUtil.returnObj(object.toString(),clz);
+                return JsonUtil.convert(object, clz);
             }
         } catch (Exception e) {
             Print.printException("RedisTool lGetObjectIndex(String key)",key,e);
@@ -569,7 +637,7 @@ public class RedisService {
                 return null;
             }else{
                 Object object = lGetIndex(key, index);
-                return object == null ? null :JsonUtil.toList(object.toString(),clz);
+                return JsonUtil.convertList(object, clz);
             }
         } catch (Exception e) {
             Print.printException("RedisTool lGetListIndex(String key)",key,e);
@@ -589,8 +657,7 @@ public class RedisService {
             if(key == null || value == null ){
                 return false;
             }else{
-                redisTemplate.opsForList().rightPush(key, value);
-                if (time > 0) expire(key, time);
+                writeAndExpire("RPUSH", key, time, Collections.singletonList(valueBytes(value)));
                 return true;
             }
         } catch (Exception e) {
@@ -641,7 +708,134 @@ public class RedisService {
     }
 
 
+    //===============================batch=================================
+
+    /**
+     * 批量获取,按 batchSize 分批 MGET,每批一次往返
+     * @param keys 键
+     * @return 与 keys 一一对应的值,不存在为 null;Redis 异常返回 null
+     */
+    public List<Object> mget(List<String> keys) {
+        try {
+            if(keys == null){
+                return null;
+            }
+            List<Object> values = new ArrayList<>(keys.size());
+            for (List<String> chunk : chunks(keys)) {
+                List<Object> chunkValues = redisTemplate.opsForValue().multiGet(chunk);
+                if (chunkValues == null) {
+                    return null;
+                }
+                values.addAll(chunkValues);
+            }
+            return values;
+        } catch (Exception e) {
+            Print.printException("RedisTool mget(List<String> keys)", String.valueOf(keys), e);
+            return null;
+        }
+    }
+
+    /**
+     * 批量放入并设置时间,按 batchSize 分批流水线发送 SETEX,每批一次往返
+     * @param map 键值
+     * @param time 时间(秒) 小于等于0 将设置无限期
+     * @return true成功 false失败
+     */
+    public boolean mset(Map<String, Object> map, long time) {
+        try {
+            if(map == null || map.isEmpty()){
+                return false;
+            }
+            List<Map.Entry<String, Object>> entries = new ArrayList<>(map.entrySet());
+            for (List<Map.Entry<String, Object>> chunk : chunks(entries)) {
+                redisTemplate.executePipelined(new SessionCallback<Object>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public Object execute(RedisOperations operations) throws DataAccessException {
+                        for (Map.Entry<String, Object> entry : chunk) {
+                            if (time > 0) {
+                                operations.opsForValue().set(entry.getKey(), entry.getValue(), time, TimeUnit.SECONDS);
+                            } else {
+                                operations.opsForValue().set(entry.getKey(), entry.getValue());
+                            }
+                        }
+                        return null;
+                    }
+                });
+            }
+            return true;
+        } catch (Exception e) {
+            Print.printException("RedisTool mset(Map<String,Object> map, long time)", String.valueOf(map.keySet()), String.valueOf(time), e);
+            return false;
+        }
+    }
+
+    /**
+     * 批量删除,按 batchSize 分批 DEL
+     * @param keys 键
+     * @return 删除的个数
+     */
+    public long delBatch(Collection<String> keys) {
+        try {
+            if(keys == null || keys.isEmpty()){
+                return 0;
+            }
+            long deleted = 0;
+            for (List<String> chunk : chunks(new ArrayList<>(keys))) {
+                Long count = redisTemplate.delete(chunk);
+                deleted += count == null ? 0 : count;
+            }
+            return deleted;
+        } catch (Exception e) {
+            Print.printException("RedisTool delBatch(Collection<String> keys)", String.valueOf(keys), e);
+            return 0;
+        }
+    }
+
     public RedisTemplate<String, Object> getRedisTemplate() {
         return redisTemplate;
     }
+
+    /**
+     * 每次脚本调用的命令参数个数: batchSize * 2(hash 即 batchSize 个字段对),不超过 Lua unpack 的上限
+     */
+    private int scriptBatchSize() {
+        return Math.max(2, Math.min(batchSize * 2, MAX_SCRIPT_ARGS));
+    }
+
+    private long writeAndExpire(String command, String key, long time, List<Object> args) {
+        Object[] argv = new Object[args.size() + 2];
+        argv[0] = command.getBytes(StandardCharsets.UTF_8);
+        argv[1] = String.valueOf(time).getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < args.size(); i++) {
+            argv[i + 2] = args.get(i);
+        }
+        Long result = redisTemplate.execute(WRITE_AND_EXPIRE, RAW, null,
+                Collections.singletonList(key), argv);
+        return result == null ? 0 : result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] valueBytes(Object value) {
+        return ((RedisSerializer<Object>) redisTemplate.getValueSerializer()).serialize(value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] hashKeyBytes(Object item) {
+        return ((RedisSerializer<Object>) redisTemplate.getHashKeySerializer()).serialize(item);
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] hashValueBytes(Object value) {
+        return ((RedisSerializer<Object>) redisTemplate.getHashValueSerializer()).serialize(value);
+    }
+
+    private <E> List<List<E>> chunks(List<E> list) {
+        int size = Math.max(1, batchSize);
+        List<List<E>> chunks = new ArrayList<>((list.size() + size - 1) / size);
+        for (int from = 0; from < list.size(); from += size) {
+            chunks.add(list.subList(from, Math.min(list.size(), from + size)));
+        }
+        return chunks;
+    }
 }
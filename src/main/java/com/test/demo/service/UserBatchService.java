@@ -0,0 +1,319 @@
+package com.test.demo.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.test.demo.auth.PasswordHasher;
+import com.test.demo.bloom.UserIdFilter;
+import com.test.demo.cache.UserCache;
+import com.test.demo.etag.UserVersions;
+import com.test.demo.id.IdGenerator;
+import com.test.demo.model.BatchRowResult;
+import com.test.demo.model.User;
+import com.test.demo.model.UserChange;
+import com.test.demo.shard.UserShard;
+import com.test.demo.shard.UserShards;
+import org.apache.ibatis.executor.BatchResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * 批量写入用户: 按 user.batch.chunk-size 分块,块内按分片拆开,每个分片一个事务;
+ * 块失败时回滚并逐行重试,定位出具体失败的行,其余行照常写入
+ * <p>
+ * 明文密码在独立的 batchPasswordHasher 线程池上做 BCrypt,cost=10 时每行每核约 50~100ms,
+ * 吞吐受哈希限制(几十万行要以小时计);已是 BCrypt 哈希($2a$...)的密码原样写入,大批量导入应传哈希
+ */
+@Service
+public class UserBatchService {
+    private static final Logger logger = LoggerFactory.getLogger(UserBatchService.class);
+
+    @Autowired
+    UserCache userCache;
+    @Autowired
+    UserVersions userVersions;
+    @Autowired
+    @Qualifier("batchPasswordHasher")
+    PasswordHasher passwordHasher;
+    @Autowired
+    UserSearchService userSearchService;
+    @Autowired
+    UserShards userShards;
+    @Autowired
+    UserIdFilter userIdFilter;
+    @Autowired
+    IdGenerator idGenerator;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${user.batch.chunk-size:1000}")
+    private int chunkSize;
+
+    //批量添加,user_id 由服务端生成(忽略客户端传入的值),结果中返回生成的 id;每块一条多行 INSERT
+    public List<BatchRowResult> addUsers(List<User> users) {
+        List<BatchRowResult> results = new ArrayList<>(users.size());
+        forEachChunk(users, (chunk, offset) -> addChunk(chunk, offset, results::add));
+        return results;
+    }
+
+    //批量修改,JDBC batch
+    public List<BatchRowResult> upUsers(List<User> users) {
+        List<BatchRowResult> results = new ArrayList<>(users.size());
+        forEachChunk(users, (chunk, offset) -> upChunk(chunk, offset, results::add));
+        return results;
+    }
+
+    //批量删除,JDBC batch
+    public List<BatchRowResult> delUsers(List<Long> userIds) {
+        List<BatchRowResult> results = new ArrayList<>(userIds.size());
+        forEachChunk(userIds, (chunk, offset) -> delChunk(chunk, offset, results::add));
+        return results;
+    }
+
+    /**
+     * 流式批量添加: 逐行读取 NDJSON,攒满一块写一次,结果逐行回调,内存只占一块
+     */
+    public void addUsers(InputStream ndjson, Consumer<BatchRowResult> resultConsumer) throws IOException {
+        try (MappingIterator<User> iterator = objectMapper.readerFor(User.class).readValues(ndjson)) {
+            List<User> chunk = new ArrayList<>(chunkSize);
+            int offset = 0;
+            while (iterator.hasNextValue()) {
+                chunk.add(iterator.nextValue());
+                if (chunk.size() == chunkSize) {
+                    addChunk(chunk, offset, resultConsumer);
+                    offset += chunk.size();
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                addChunk(chunk, offset, resultConsumer);
+            }
+        }
+    }
+
+    private void addChunk(List<User> chunk, int offset, Consumer<BatchRowResult> out) {
+        //先分配 id 再按 id 定位分片,与单条添加一致
+        for (User user : chunk) {
+            user.setUserId(idGenerator.nextId());
+        }
+        //哈希在事务外算完,不占着数据库连接
+        passwordHasher.hashPasswords(chunk);
+        List<Long> added = new ArrayList<>(chunk.size());
+        Consumer<BatchRowResult> collecting = result -> {
+            if (BatchRowResult.OK.equals(result.getStatus())) {
+                added.add(result.getUserId());
+            }
+            out.accept(result);
+        };
+        writeChunk(chunk, offset, User::getUserId, indexing(chunk, offset, collecting), true,
+                (shard, rows) -> {
+                    shard.getUserMapper().batchAddUser(rows);
+                    shard.getOutboxMapper().batchAddChange(userIds(rows), UserChange.UPSERT, System.currentTimeMillis());
+                    //多行 INSERT 只返回总影响行数,整块成功即每行成功
+                    int[] counts = new int[rows.size()];
+                    Arrays.fill(counts, 1);
+                    return counts;
+                },
+                user -> inTransaction(userShards.locate(user.getUserId()), shard -> {
+                    shard.getUserMapper().batchAddUser(Collections.singletonList(user));
+                    shard.getOutboxMapper().addChange(user.getUserId(), UserChange.UPSERT, System.currentTimeMillis());
+                    return 1;
+                }));
+        //写入成功的 id 整块一次同步到布隆过滤器
+        userIdFilter.addAll(added);
+    }
+
+    private void upChunk(List<User> chunk, int offset, Consumer<BatchRowResult> out) {
+        passwordHasher.hashPasswords(chunk);
+        writeChunk(chunk, offset, User::getUserId, indexing(chunk, offset, out), false,
+                (shard, rows) -> {
+                    for (User user : rows) {
+                        shard.getBatchUserMapper().upUser(user);
+                    }
+                    int[] counts = updateCounts(shard.getBatchSession().flushStatements(), rows.size());
+                    recordBatchChanges(shard, userIds(rows), UserChange.UPSERT);
+                    return counts;
+                },
+                user -> userShards.update(user.getUserId(), shard -> inTransaction(shard,
+                        s -> recordChange(s, user.getUserId(), UserChange.UPSERT, s.getUserMapper().upUser(user)))));
+    }
+
+    private void delChunk(List<Long> chunk, int offset, Consumer<BatchRowResult> out) {
+        Consumer<BatchRowResult> unindexing = result -> {
+            if (BatchRowResult.OK.equals(result.getStatus())) {
+                userSearchService.onDeleted(result.getUserId());
+            }
+            out.accept(result);
+        };
+        writeChunk(chunk, offset, Long::longValue, unindexing, false,
+                (shard, rows) -> {
+                    for (Long userId : rows) {
+                        shard.getBatchUserMapper().delUser(userId);
+                    }
+                    int[] counts = updateCounts(shard.getBatchSession().flushStatements(), rows.size());
+                    recordBatchChanges(shard, rows, UserChange.DELETE);
+                    return counts;
+                },
+                userId -> userShards.update(userId, shard -> inTransaction(shard,
+                        s -> recordChange(s, userId, UserChange.DELETE, s.getUserMapper().delUser(userId)))));
+    }
+
+    /**
+     * 变更记录与数据写在同一个事务里;BATCH 会话中的语句单独 flush,不混进上面的更新计数
+     * 整块记录所有 userId,没有命中的行多一次缓存失效,无害
+     */
+    private void recordBatchChanges(UserShard shard, List<Long> userIds, String op) {
+        shard.getBatchOutboxMapper().batchAddChange(userIds, op, System.currentTimeMillis());
+        shard.getBatchSession().flushStatements();
+    }
+
+    private int recordChange(UserShard shard, long userId, String op, int rows) {
+        if (rows > 0) {
+            shard.getOutboxMapper().addChange(userId, op, System.currentTimeMillis());
+        }
+        return rows;
+    }
+
+    private static int inTransaction(UserShard shard, ToIntFunction<UserShard> writer) {
+        Integer rows = shard.getTransactionTemplate().execute(status -> writer.applyAsInt(shard));
+        return rows == null ? 0 : rows;
+    }
+
+    private static List<Long> userIds(List<User> users) {
+        List<Long> userIds = new ArrayList<>(users.size());
+        for (User user : users) {
+            userIds.add(user.getUserId());
+        }
+        return userIds;
+    }
+
+    /**
+     * 写入成功的行同步更新用户名搜索索引
+     */
+    private Consumer<BatchRowResult> indexing(List<User> chunk, int offset, Consumer<BatchRowResult> out) {
+        return result -> {
+            if (BatchRowResult.OK.equals(result.getStatus())) {
+                User user = chunk.get(result.getIndex() - offset);
+                userSearchService.onSaved(user.getUserId(), user.getUserName());
+            }
+            out.accept(result);
+        };
+    }
+
+    /**
+     * 按 userId 所在分片拆开,每个分片一个事务整块写入;失败则该分片的行逐行各自一个事务重试
+     * 新增按 locate 写到新位置(id 是新生成的,旧位置不会有副本);修改、删除与单条一样按 candidates 定位,
+     * 迁移期间先整块写旧位置,没命中的行再用 rowWriter(UserShards.update)依次尝试其余候选分片
+     * 分片之间互不影响、也不是原子的,结果按原来的顺序回调;只有命中的行清缓存、更新版本戳
+     */
+    private <T> void writeChunk(List<T> rows, int offset, ToLongFunction<T> idOf, Consumer<BatchRowResult> out, boolean insert,
+                                BiFunction<UserShard, List<T>, int[]> chunkWriter, Function<T, Integer> rowWriter) {
+        BatchRowResult[] results = new BatchRowResult[rows.size()];
+        List<Long> written = new ArrayList<>(rows.size());
+        Map<UserShard, List<Integer>> groups = insert
+                ? userShards.groupByShard(indexes(rows.size()), i -> idOf.applyAsLong(rows.get(i)))
+                : userShards.groupByCandidate(indexes(rows.size()), i -> idOf.applyAsLong(rows.get(i)));
+        for (Map.Entry<UserShard, List<Integer>> group : groups.entrySet()) {
+            UserShard shard = group.getKey();
+            List<Integer> indexes = group.getValue();
+            List<T> shardRows = new ArrayList<>(indexes.size());
+            for (int i : indexes) {
+                shardRows.add(rows.get(i));
+            }
+            try {
+                int[] counts = shard.getTransactionTemplate().execute(status -> chunkWriter.apply(shard, shardRows));
+                for (int j = 0; j < indexes.size(); j++) {
+                    int i = indexes.get(j);
+                    long userId = idOf.applyAsLong(rows.get(i));
+                    if (counts[j] == 0 && !insert && userShards.candidates(userId).size() > 1) {
+                        results[i] = writeRow(rows.get(i), offset + i, userId, rowWriter);
+                    } else {
+                        results[i] = rowResult(offset + i, userId, counts[j]);
+                    }
+                }
+            } catch (RuntimeException chunkError) {
+                logger.warn("batch chunk at {} failed on {}, retrying row by row: {}", offset, shard, rootMessage(chunkError));
+                for (int i : indexes) {
+                    results[i] = writeRow(rows.get(i), offset + i, idOf.applyAsLong(rows.get(i)), rowWriter);
+                }
+            }
+        }
+        for (BatchRowResult result : results) {
+            if (BatchRowResult.OK.equals(result.getStatus())) {
+                written.add(result.getUserId());
+            }
+            out.accept(result);
+        }
+        userCache.evictAll(written);
+        userVersions.bump(written);
+    }
+
+    private static <T> BatchRowResult writeRow(T row, int index, long userId, Function<T, Integer> rowWriter) {
+        try {
+            Integer count = rowWriter.apply(row);
+            return rowResult(index, userId, count == null ? 0 : count);
+        } catch (RuntimeException rowError) {
+            return new BatchRowResult(index, userId, BatchRowResult.FAILED, rootMessage(rowError));
+        }
+    }
+
+    private static List<Integer> indexes(int size) {
+        List<Integer> indexes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            indexes.add(i);
+        }
+        return indexes;
+    }
+
+    private <T> void forEachChunk(List<T> rows, ChunkHandler<T> handler) {
+        for (int from = 0; from < rows.size(); from += chunkSize) {
+            handler.handle(rows.subList(from, Math.min(rows.size(), from + chunkSize)), from);
+        }
+    }
+
+    private static int[] updateCounts(List<BatchResult> batchResults, int rows) {
+        int[] counts = new int[rows];
+        int index = 0;
+        for (BatchResult batchResult : batchResults) {
+            for (int count : batchResult.getUpdateCounts()) {
+                counts[index++] = count;
+            }
+        }
+        return counts;
+    }
+
+    private static BatchRowResult rowResult(int index, long userId, int count) {
+        //驱动改写成多值语句后返回 SUCCESS_NO_INFO,无法区分单行是否命中
+        if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+            return new BatchRowResult(index, userId, BatchRowResult.OK, null);
+        }
+        return new BatchRowResult(index, userId, BatchRowResult.NOT_FOUND, null);
+    }
+
+    private static String rootMessage(Throwable error) {
+        Throwable root = NestedExceptionUtils.getMostSpecificCause(error);
+        return root.getMessage();
+    }
+
+    private interface ChunkHandler<T> {
+        void handle(List<T> chunk, int offset);
+    }
+}
@@ -0,0 +1,189 @@
+package com.test.demo.service;
+
+import com.test.demo.cache.UserCache;
+import com.test.demo.dao.UserMapper;
+import com.test.demo.datasource.ReadWriteRouting;
+import com.test.demo.model.User;
+import com.test.demo.search.UserNameIndex;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.ibatis.cursor.Cursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户名搜索: 启动后在后台流式扫描 user 表建立 UserNameIndex,之后由本节点的增删改增量维护,
+ * 并按 user.search.refresh-minutes 定期全量重建,收敛其它节点写入造成的差异。
+ * 索引还没建好(启动中或数据库不可用)时退化为数据库前缀查询
+ */
+@Service
+public class UserSearchService {
+    private static final Logger logger = LoggerFactory.getLogger(UserSearchService.class);
+
+    @Autowired
+    UserMapper userMapper;
+    @Autowired
+    UserCache userCache;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${user.search.enabled:true}")
+    private boolean enabled;
+
+    @Value("${user.search.refresh-minutes:60}")
+    private long refreshMinutes;
+
+    @Value("${user.search.default-limit:10}")
+    private int defaultLimit;
+
+    @Value("${user.search.max-limit:100}")
+    private int maxLimit;
+
+    private volatile UserNameIndex index;
+
+    /**
+     * 重建期间的写入同时落到新旧两个索引,并记下 userId,扫描读到这些用户时跳过(库里读到的可能是旧值)
+     */
+    private final Object updateLock = new Object();
+    private UserNameIndex building;
+    private Set<Long> touchedDuringBuild;
+
+    private ScheduledExecutorService scheduler;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        Gauge.builder("user.search.index.size", this, service -> {
+            UserNameIndex current = service.index;
+            return current == null ? 0 : current.size();
+        }).register(meterRegistry);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-search-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (refreshMinutes > 0) {
+            scheduler.scheduleWithFixedDelay(this::rebuild, 0, refreshMinutes, TimeUnit.MINUTES);
+        } else {
+            scheduler.execute(this::rebuild);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    //按用户名搜索,结果按相关度排序
+    public List<User> search(String query, Integer limit){
+        int size = limit == null || limit <= 0 ? defaultLimit : Math.min(limit, maxLimit);
+        UserNameIndex current = index;
+        if (current == null) {
+            return userMapper.getUserList(UserService.escapeLike(query == null ? null : query.trim()), null, size);
+        }
+        long[] userIds = current.search(query, size);
+        List<Long> ids = new ArrayList<>(userIds.length);
+        for (long userId : userIds) {
+            ids.add(userId);
+        }
+        return userCache.getAll(ids, missing -> ReadWriteRouting.onPrimary(() -> userMapper.getUserInfoList(missing)));
+    }
+
+    /**
+     * 用户新增或修改后调用,userName 为空表示这次没有改名字
+     */
+    public void onSaved(long userId, String userName) {
+        if (userName == null) {
+            return;
+        }
+        synchronized (updateLock) {
+            if (index != null) {
+                index.put(userId, userName);
+            }
+            if (building != null) {
+                building.put(userId, userName);
+                touchedDuringBuild.add(userId);
+            }
+        }
+    }
+
+    public void onDeleted(long userId) {
+        synchronized (updateLock) {
+            if (index != null) {
+                index.remove(userId);
+            }
+            if (building != null) {
+                building.remove(userId);
+                touchedDuringBuild.add(userId);
+            }
+        }
+    }
+
+    /**
+     * 全量重建,完成后替换当前索引;失败时保留旧索引
+     */
+    void rebuild() {
+        UserNameIndex fresh = new UserNameIndex();
+        synchronized (updateLock) {
+            building = fresh;
+            touchedDuringBuild = new HashSet<>();
+        }
+        long started = System.nanoTime();
+        try {
+            //游标只在事务内有效
+            transactionTemplate.execute(status -> {
+                try (Cursor<User> cursor = userMapper.streamUserList(null, null, null)) {
+                    for (User user : cursor) {
+                        long id = user.getUserId();
+                        synchronized (updateLock) {
+                            if (!touchedDuringBuild.contains(id)) {
+                                fresh.put(id, user.getUserName());
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return null;
+            });
+            fresh.trim();
+            synchronized (updateLock) {
+                index = fresh;
+                building = null;
+                touchedDuringBuild = null;
+            }
+            logger.info("user search index built: {} users in {} ms", fresh.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (RuntimeException e) {
+            synchronized (updateLock) {
+                building = null;
+                touchedDuringBuild = null;
+            }
+            logger.warn("user search index build failed, {}: {}",
+                    index == null ? "falling back to database prefix search" : "keeping previous index", e.getMessage());
+        }
+    }
+}
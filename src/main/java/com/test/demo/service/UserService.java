@@ -1,34 +1,175 @@
 package com.test.demo.service;
 
+import com.test.demo.auth.PasswordHasher;
+import com.test.demo.bloom.UserIdFilter;
+import com.test.demo.cache.UserCache;
 import com.test.demo.dao.UserMapper;
+import com.test.demo.datasource.ReadWriteRouting;
+import com.test.demo.etag.UserVersions;
+import com.test.demo.id.IdGenerator;
 import com.test.demo.model.User;
+import com.test.demo.model.UserChange;
+import com.test.demo.model.UserField;
+import com.test.demo.model.UserView;
+import com.test.demo.shard.UserShard;
+import com.test.demo.shard.UserShards;
+import org.apache.ibatis.cursor.Cursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
 
 @Service
 public class UserService {
     @Autowired
     UserMapper userMapper;
-    //查询
-    public List<User> getUserList(String userName){
-       return  userMapper.getUserList(userName);
+    @Autowired
+    UserCache userCache;
+    @Autowired
+    PasswordHasher passwordHasher;
+    @Autowired
+    UserSearchService userSearchService;
+    @Autowired
+    UserShards userShards;
+    @Autowired
+    IdGenerator idGenerator;
+    @Autowired
+    UserVersions userVersions;
+    @Autowired
+    UserIdFilter userIdFilter;
+
+    @Value("${user.list.page-size:100}")
+    private int defaultPageSize;
+
+    @Value("${user.list.max-page-size:1000}")
+    private int maxPageSize;
+
+    //查询(lastUserId 为上一页最后一条的 userId,首页传 null),只读取 fields 选中的列
+    public List<UserView> getUserList(String userName, Long lastUserId, Integer pageSize, Set<UserField> fields){
+       return  userMapper.getUserViewList(escapeLike(userName), lastUserId, resolvePageSize(pageSize), fields);
     }
-    //添加
+    //流式查询,各分片按 user_id 归并,遍历结束后自动关闭
+    @Transactional(readOnly = true)
+    public void streamUserList(String userName, Consumer<User> consumer){
+        try (Cursor<User> cursor = userMapper.streamUserList(escapeLike(userName), null, null)) {
+            for (User user : cursor) {
+                consumer.accept(user);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    //添加,user_id 由服务端生成(忽略客户端传入的值),清掉可能存在的空值缓存;密码存哈希
+    //写入后先清缓存再更新版本戳,查询接口不会把旧数据配上新的 ETag
     public int addUser(User user){
-        return  userMapper.addUser(user);
+        user.setUserId(idGenerator.nextId());
+        passwordHasher.hashPasswords(Collections.singletonList(user));
+        UserShard shard = userShards.locate(user.getUserId());
+        int rows = write(shard, user.getUserId(), UserChange.UPSERT, mapper -> mapper.addUser(user));
+        userCache.evict(user.getUserId());
+        if (rows > 0) {
+            userVersions.bump(Collections.singletonList(user.getUserId()));
+            userSearchService.onSaved(user.getUserId(), user.getUserName());
+            userIdFilter.add(user.getUserId());
+        }
+        return rows;
     }
     //修改
     public int upUser(User user){
-        return  userMapper.upUser(user);
+        passwordHasher.hashPasswords(Collections.singletonList(user));
+        int rows = userShards.update(user.getUserId(),
+                shard -> write(shard, user.getUserId(), UserChange.UPSERT, mapper -> mapper.upUser(user)));
+        userCache.evict(user.getUserId());
+        if (rows > 0) {
+            userVersions.bump(Collections.singletonList(user.getUserId()));
+            userSearchService.onSaved(user.getUserId(), user.getUserName());
+        }
+        return rows;
+    }
+    //查询单个,走 Redis 读穿缓存;布隆过滤器判定不存在的直接返回
+    public User getUserInfo(long userId){
+        if (!userIdFilter.mightExist(userId)) {
+            return null;
+        }
+        //未命中时从主库加载,从库延迟期间的旧行不会写回缓存
+        return  userCache.get(userId, id -> ReadWriteRouting.onPrimary(() -> userMapper.getUserInfo(id)));
+    }
+    //false 表示该用户一定不存在
+    public boolean mightExist(long userId){
+        return userIdFilter.mightExist(userId);
     }
-    //查询单个
-    public User getUserInfo(String userId){
-        return  userMapper.getUserInfo(userId);
+    //批量查询,一次请求最多 user.list.max-page-size 个
+    public List<User> getUserInfoList(List<Long> userIds){
+        if (userIds == null || userIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (userIds.size() > maxPageSize) {
+            throw new IllegalArgumentException("too many userIds, max " + maxPageSize);
+        }
+        List<Long> candidates = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            if (userId != null && userIdFilter.mightExist(userId)) {
+                candidates.add(userId);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return  userCache.getAll(candidates, ids -> ReadWriteRouting.onPrimary(() -> userMapper.getUserInfoList(ids)));
     }
     //删除
-    public int delUser(String userId){
-        return  userMapper.delUser(userId);
+    public int delUser(long userId){
+        if (!userIdFilter.mightExist(userId)) {
+            return 0;
+        }
+        int rows = userShards.update(userId,
+                shard -> write(shard, userId, UserChange.DELETE, mapper -> mapper.delUser(userId)));
+        userCache.evict(userId);
+        if (rows > 0) {
+            userVersions.bump(Collections.singletonList(userId));
+            userSearchService.onDeleted(userId);
+        }
+        return rows;
+    }
+
+    /**
+     * 在用户所在分片上写 user 表,并在同一个事务里往该分片的发件箱记一条变更,由 UserChangeRelay 异步同步到缓存;
+     * 密码哈希等耗时计算在调用前完成,不占用事务里的连接
+     */
+    private int write(UserShard shard, long userId, String op, ToIntFunction<UserMapper> writer) {
+        Integer rows = shard.getTransactionTemplate().execute(status -> {
+            int changed = writer.applyAsInt(shard.getUserMapper());
+            if (changed > 0) {
+                shard.getOutboxMapper().addChange(userId, op, System.currentTimeMillis());
+            }
+            return changed;
+        });
+        return rows == null ? 0 : rows;
+    }
+
+    int resolvePageSize(Integer pageSize) {
+        if (pageSize == null || pageSize <= 0) {
+            return defaultPageSize;
+        }
+        return Math.min(pageSize, maxPageSize);
+    }
+
+    /**
+     * 前缀匹配时转义 LIKE 通配符,避免用户输入的 % _ 退化成全表扫描
+     */
+    static String escapeLike(String userName) {
+        if (userName == null || userName.isEmpty()) {
+            return null;
+        }
+        return userName.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
     }
 }
@@ -0,0 +1,26 @@
+package com.test.demo.shard;
+
+/**
+ * Jump Consistent Hash(Lamping & Veach): 把 key 均匀映射到 [0, buckets)
+ * 分片数从 n 增加到 n + 1 时只有约 1/(n + 1) 的 key 移到新分片,其余 key 位置不变;减少分片时只有被去掉的分片上的 key 移动。
+ * 只能在末尾增删分片,分片顺序不能调整
+ */
+public final class JumpConsistentHash {
+
+    private JumpConsistentHash() {
+    }
+
+    public static int bucket(long key, int buckets) {
+        if (buckets <= 0) {
+            throw new IllegalArgumentException("buckets must be positive: " + buckets);
+        }
+        long b = -1;
+        long j = 0;
+        while (j < buckets) {
+            b = j;
+            key = key * 2862933555777941757L + 1;
+            j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) b;
+    }
+}
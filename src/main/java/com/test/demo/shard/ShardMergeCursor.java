@@ -0,0 +1,140 @@
+package com.test.demo.shard;
+
+import com.test.demo.dao.UserMapper;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.SqlSession;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * 每个分片各开一个 SqlSession 和游标,按 user_id 归并成一个有序游标;close 时关闭全部游标和会话
+ * 各分片的游标都要按 user_id 升序,userIdOf 从行中取出 user_id
+ * 会话自己持有连接,调用方不需要处在事务中
+ */
+class ShardMergeCursor<T> implements Cursor<T> {
+
+    private final List<SqlSession> sessions = new ArrayList<>();
+    private final List<Cursor<T>> cursors = new ArrayList<>();
+    private final ToLongFunction<T> userIdOf;
+    private final Integer limit;
+
+    private boolean iteratorRetrieved;
+    private boolean consumed;
+    private boolean closed;
+    private int index = -1;
+
+    ShardMergeCursor(List<UserShard> shards, Function<UserMapper, Cursor<T>> open, ToLongFunction<T> userIdOf, Integer limit) {
+        this.userIdOf = userIdOf;
+        this.limit = limit;
+        try {
+            for (UserShard shard : shards) {
+                SqlSession session = shard.getSqlSessionFactory().openSession();
+                sessions.add(session);
+                cursors.add(open.apply(session.getMapper(UserMapper.class)));
+            }
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    @Override
+    public boolean isConsumed() {
+        return consumed;
+    }
+
+    @Override
+    public int getCurrentIndex() {
+        return index;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        if (iteratorRetrieved) {
+            throw new IllegalStateException("Cannot open more than one iterator on a Cursor");
+        }
+        if (closed) {
+            throw new IllegalStateException("A Cursor is already closed.");
+        }
+        iteratorRetrieved = true;
+        PriorityQueue<Head<T>> heads = new PriorityQueue<>(Math.max(1, cursors.size()), Comparator.comparingLong(head -> head.userId));
+        for (Cursor<T> cursor : cursors) {
+            advance(cursor.iterator(), heads);
+        }
+        return new Iterator<T>() {
+            private long lastUserId = Long.MIN_VALUE;
+
+            @Override
+            public boolean hasNext() {
+                //迁移中同一个用户可能短暂出现在两个分片,只取一次
+                while (!heads.isEmpty() && heads.peek().userId == lastUserId) {
+                    advance(heads.poll().rest, heads);
+                }
+                boolean hasNext = !closed && !heads.isEmpty() && (limit == null || index + 1 < limit);
+                if (!hasNext) {
+                    consumed = true;
+                }
+                return hasNext;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Head<T> head = heads.poll();
+                lastUserId = head.userId;
+                advance(head.rest, heads);
+                index++;
+                return head.row;
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Cursor<T> cursor : cursors) {
+            try {
+                cursor.close();
+            } catch (IOException ignored) {
+                //会话关闭时同样会释放游标
+            }
+        }
+        for (SqlSession session : sessions) {
+            session.close();
+        }
+    }
+
+    private void advance(Iterator<T> iterator, PriorityQueue<Head<T>> heads) {
+        if (iterator.hasNext()) {
+            T row = iterator.next();
+            heads.add(new Head<>(row, userIdOf.applyAsLong(row), iterator));
+        }
+    }
+
+    private static final class Head<T> {
+        final T row;
+        final long userId;
+        final Iterator<T> rest;
+
+        Head(T row, long userId, Iterator<T> rest) {
+            this.row = row;
+            this.userId = userId;
+            this.rest = rest;
+        }
+    }
+}
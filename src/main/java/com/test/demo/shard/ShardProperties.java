@@ -0,0 +1,78 @@
+package com.test.demo.shard;
+
+import com.test.demo.datasource.ReplicaProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分片配置,前缀 user.shard
+ * 第 0 个分片就是 spring.datasource(及其从库),nodes 依次是第 1、2 ... 个分片;不配置 nodes 即不分片
+ * 分片只能在末尾增减,顺序不能调整(见 JumpConsistentHash)
+ */
+@Component
+@ConfigurationProperties(prefix = "user.shard")
+public class ShardProperties {
+    private List<Node> nodes = new ArrayList<>();
+
+    /**
+     * 迁移期间填原来的分片数,迁移完成后去掉
+     */
+    private int previousCount = 0;
+
+    /**
+     * 并行查询各分片的线程数,0 表示 分片数 * 4
+     */
+    private int queryPoolSize = 0;
+
+    private int migrateBatchSize = 500;
+
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(List<Node> nodes) {
+        this.nodes = nodes;
+    }
+
+    public int getPreviousCount() {
+        return previousCount;
+    }
+
+    public void setPreviousCount(int previousCount) {
+        this.previousCount = previousCount;
+    }
+
+    public int getQueryPoolSize() {
+        return queryPoolSize;
+    }
+
+    public void setQueryPoolSize(int queryPoolSize) {
+        this.queryPoolSize = queryPoolSize;
+    }
+
+    public int getMigrateBatchSize() {
+        return migrateBatchSize;
+    }
+
+    public void setMigrateBatchSize(int migrateBatchSize) {
+        this.migrateBatchSize = migrateBatchSize;
+    }
+
+    /**
+     * 一个分片的主库,账号密码为空时与 spring.datasource 相同;replicas 为该分片的从库
+     */
+    public static class Node extends ReplicaProperties.Node {
+        private List<ReplicaProperties.Node> replicas = new ArrayList<>();
+
+        public List<ReplicaProperties.Node> getReplicas() {
+            return replicas;
+        }
+
+        public void setReplicas(List<ReplicaProperties.Node> replicas) {
+            this.replicas = replicas;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.test.demo.shard;
+
+import com.test.demo.dao.UserMapper;
+import com.test.demo.model.User;
+import com.test.demo.model.UserField;
+import com.test.demo.model.UserIdRange;
+import com.test.demo.model.UserView;
+import org.apache.ibatis.cursor.Cursor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * 分片后的 UserMapper: 按 user_id 的单条读写路由到所在分片,列表/按用户名查询并行发到所有分片再合并
+ * 每次调用各自取连接,不参与调用方的事务;需要与发件箱写在同一个事务里的修改用 UserShards 拿到分片自己的 Mapper
+ */
+public class ShardedUserMapper implements UserMapper {
+    private final UserShards shards;
+    private final Executor executor;
+
+    public ShardedUserMapper(UserShards shards, Executor executor) {
+        this.shards = shards;
+        this.executor = executor;
+    }
+
+    /**
+     * 每个分片各取 user_id > lastUserId 的前 pageSize 条,合并后取前 pageSize 条
+     */
+    @Override
+    public List<User> getUserList(String userName, Long lastUserId, int pageSize) {
+        List<List<User>> pages = scatter(shards.all(), shard -> shard.getUserMapper().getUserList(userName, lastUserId, pageSize));
+        return pages.size() == 1 ? pages.get(0) : merge(pages, pageSize, User::getUserId);
+    }
+
+    /**
+     * 与 getUserList 相同的分页合并,只读取选中的列
+     */
+    @Override
+    public List<UserView> getUserViewList(String userName, Long lastUserId, int pageSize, Set<UserField> fields) {
+        List<List<UserView>> pages = scatter(shards.all(),
+                shard -> shard.getUserMapper().getUserViewList(userName, lastUserId, pageSize, fields));
+        return pages.size() == 1 ? pages.get(0) : merge(pages, pageSize, UserView::getUserId);
+    }
+
+    /**
+     * 返回的游标自己持有各分片的连接,遍历完必须 close
+     */
+    @Override
+    public Cursor<User> streamUserList(String userName, Long lastUserId, Integer limit) {
+        return new ShardMergeCursor<>(shards.all(), mapper -> mapper.streamUserList(userName, lastUserId, limit),
+                User::getUserId, limit);
+    }
+
+    /**
+     * 与 streamUserList 相同,各分片按 user_id 归并,只读 user_id
+     */
+    @Override
+    public Cursor<Long> streamUserIds(Long lastUserId) {
+        return new ShardMergeCursor<>(shards.all(), mapper -> mapper.streamUserIds(lastUserId), Long::longValue, null);
+    }
+
+    /**
+     * 各分片分别统计后合并;预热等需要按分片并行的场景直接用各分片自己的 Mapper
+     */
+    @Override
+    public UserIdRange getUserIdRange(Long minUserId) {
+        Long min = null;
+        Long max = null;
+        long count = 0;
+        for (UserIdRange range : scatter(shards.all(), shard -> shard.getUserMapper().getUserIdRange(minUserId))) {
+            if (range == null || range.isEmpty()) {
+                continue;
+            }
+            min = min == null ? range.getMinUserId() : Math.min(min, range.getMinUserId());
+            max = max == null ? range.getMaxUserId() : Math.max(max, range.getMaxUserId());
+            count += range.getUserCount();
+        }
+        return new UserIdRange(min, max, count);
+    }
+
+    @Override
+    public List<User> getUserRangePage(long lastUserId, long maxUserId, int limit) {
+        List<List<User>> pages = scatter(shards.all(), shard -> shard.getUserMapper().getUserRangePage(lastUserId, maxUserId, limit));
+        return pages.size() == 1 ? pages.get(0) : merge(pages, limit, User::getUserId);
+    }
+
+    @Override
+    public Cursor<User> streamUserRange(long lastUserId, long maxUserId) {
+        return new ShardMergeCursor<>(shards.all(), mapper -> mapper.streamUserRange(lastUserId, maxUserId),
+                User::getUserId, null);
+    }
+
+    @Override
+    public int addUser(User user) {
+        return shards.locate(user.getUserId()).getUserMapper().addUser(user);
+    }
+
+    /**
+     * 各分片分别执行,不是一个事务;user_id 是新生成的,迁移期间旧位置上也不会有副本
+     */
+    @Override
+    public int batchAddUser(List<User> users) {
+        int rows = 0;
+        for (Map.Entry<UserShard, List<User>> group : shards.groupByShard(users, User::getUserId).entrySet()) {
+            rows += group.getKey().getUserMapper().batchAddUser(group.getValue());
+        }
+        return rows;
+    }
+
+    @Override
+    public int upUser(User user) {
+        return shards.update(user.getUserId(), shard -> shard.getUserMapper().upUser(user));
+    }
+
+    @Override
+    public User getUserInfo(long userId) {
+        for (UserShard shard : shards.candidates(userId)) {
+            User user = shard.getUserMapper().getUserInfo(userId);
+            if (user != null) {
+                return user;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 按分片拆成多条 IN 查询并行执行;迁移期间旧位置上没找到的再到新位置查一次
+     */
+    @Override
+    public List<User> getUserInfoList(List<Long> userIds) {
+        Map<UserShard, List<Long>> first = new LinkedHashMap<>();
+        for (Long userId : userIds) {
+            first.computeIfAbsent(shards.candidates(userId).get(0), shard -> new ArrayList<>()).add(userId);
+        }
+        List<User> users = getUserInfoList(first);
+        if (shards.isMigrating()) {
+            Set<Long> found = new HashSet<>(userIds(users));
+            Map<UserShard, List<Long>> second = new LinkedHashMap<>();
+            for (Long userId : userIds) {
+                List<UserShard> candidates = shards.candidates(userId);
+                if (candidates.size() > 1 && !found.contains(userId)) {
+                    second.computeIfAbsent(candidates.get(1), shard -> new ArrayList<>()).add(userId);
+                }
+            }
+            users.addAll(getUserInfoList(second));
+        }
+        return users;
+    }
+
+    @Override
+    public int delUser(long userId) {
+        return shards.update(userId, shard -> shard.getUserMapper().delUser(userId));
+    }
+
+    /**
+     * 重名时与单库一样取 user_id 最小的一条
+     */
+    @Override
+    public User getUserByName(String userName) {
+        User first = null;
+        for (User user : scatter(shards.all(), shard -> shard.getUserMapper().getUserByName(userName))) {
+            if (user != null && (first == null || user.getUserId() < first.getUserId())) {
+                first = user;
+            }
+        }
+        return first;
+    }
+
+    private List<User> getUserInfoList(Map<UserShard, List<Long>> groups) {
+        List<User> users = new ArrayList<>();
+        List<Map.Entry<UserShard, List<Long>>> entries = new ArrayList<>(groups.entrySet());
+        for (List<User> part : scatter(entries, entry -> entry.getKey().getUserMapper().getUserInfoList(entry.getValue()))) {
+            users.addAll(part);
+        }
+        return users;
+    }
+
+    /**
+     * 只有一个目标时在当前线程执行,否则并行发出并等待全部完成
+     */
+    private <T, R> List<R> scatter(List<T> targets, Function<T, R> query) {
+        if (targets.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (targets.size() == 1) {
+            return Collections.singletonList(query.apply(targets.get(0)));
+        }
+        List<CompletableFuture<R>> futures = new ArrayList<>(targets.size());
+        for (T target : targets) {
+            futures.add(CompletableFuture.supplyAsync(() -> query.apply(target), executor));
+        }
+        List<R> results = new ArrayList<>(targets.size());
+        try {
+            for (CompletableFuture<R> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    /**
+     * 各分片的结果都已按 user_id 排好序,合并去重后取前 limit 条
+     */
+    static <T> List<T> merge(List<List<T>> pages, int limit, ToLongFunction<T> idOf) {
+        List<T> all = new ArrayList<>();
+        for (List<T> page : pages) {
+            all.addAll(page);
+        }
+        all.sort(Comparator.comparingLong(idOf));
+        List<T> merged = new ArrayList<>(Math.min(limit, all.size()));
+        Long lastUserId = null;
+        for (T item : all) {
+            if (merged.size() == limit) {
+                break;
+            }
+            long userId = idOf.applyAsLong(item);
+            if (lastUserId == null || userId != lastUserId) {
+                merged.add(item);
+                lastUserId = userId;
+            }
+        }
+        return merged;
+    }
+
+    private static List<Long> userIds(List<User> users) {
+        List<Long> userIds = new ArrayList<>(users.size());
+        for (User user : users) {
+            userIds.add(user.getUserId());
+        }
+        return userIds;
+    }
+}
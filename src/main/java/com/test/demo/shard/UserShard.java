@@ -0,0 +1,107 @@
+package com.test.demo.shard;
+
+import com.test.demo.dao.UserMapper;
+import com.test.demo.dao.UserOutboxMapper;
+import com.test.demo.dao.UserReshardMapper;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 一个分片: 独立的数据源、SqlSessionFactory 和事务管理器
+ * 这里的 Mapper 只访问本分片;同一事务内的语句必须来自同一个分片的 Mapper
+ */
+public class UserShard {
+    private static final Logger logger = LoggerFactory.getLogger(UserShard.class);
+
+    private final int index;
+    private final SqlSessionFactory sqlSessionFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final UserMapper userMapper;
+    private final UserOutboxMapper outboxMapper;
+    private final UserReshardMapper reshardMapper;
+    /**
+     * BATCH 执行器: 同一事务内的语句攒成 JDBC batch,flushStatements 时一次发送
+     */
+    private final SqlSessionTemplate batchSession;
+    private final UserMapper batchUserMapper;
+    private final UserOutboxMapper batchOutboxMapper;
+    /**
+     * 本分片自己创建的连接池,close 时关闭;第 0 个分片的连接池是 Spring Bean,不在这里
+     */
+    private final List<Closeable> resources;
+
+    public UserShard(int index, SqlSessionFactory sqlSessionFactory, TransactionTemplate transactionTemplate,
+                     Closeable... resources) {
+        this.index = index;
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.transactionTemplate = transactionTemplate;
+        SqlSessionTemplate session = new SqlSessionTemplate(sqlSessionFactory);
+        this.userMapper = session.getMapper(UserMapper.class);
+        this.outboxMapper = session.getMapper(UserOutboxMapper.class);
+        this.reshardMapper = session.getMapper(UserReshardMapper.class);
+        this.batchSession = new SqlSessionTemplate(sqlSessionFactory, ExecutorType.BATCH);
+        this.batchUserMapper = batchSession.getMapper(UserMapper.class);
+        this.batchOutboxMapper = batchSession.getMapper(UserOutboxMapper.class);
+        this.resources = new ArrayList<>(Arrays.asList(resources));
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public SqlSessionFactory getSqlSessionFactory() {
+        return sqlSessionFactory;
+    }
+
+    public TransactionTemplate getTransactionTemplate() {
+        return transactionTemplate;
+    }
+
+    public UserMapper getUserMapper() {
+        return userMapper;
+    }
+
+    public UserOutboxMapper getOutboxMapper() {
+        return outboxMapper;
+    }
+
+    public UserReshardMapper getReshardMapper() {
+        return reshardMapper;
+    }
+
+    public SqlSessionTemplate getBatchSession() {
+        return batchSession;
+    }
+
+    public UserMapper getBatchUserMapper() {
+        return batchUserMapper;
+    }
+
+    public UserOutboxMapper getBatchOutboxMapper() {
+        return batchOutboxMapper;
+    }
+
+    void close() {
+        for (Closeable resource : resources) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                logger.warn("close shard {} resource failed: {}", index, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "shard-" + index;
+    }
+}
@@ -0,0 +1,114 @@
+package com.test.demo.shard;
+
+import com.test.demo.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 在线迁移: 把不在 UserShards.locate 位置上的用户搬到所在分片
+ * <p>
+ * 每个分片按 user_id 分页,每页一个本分片事务: 先 SELECT ... FOR UPDATE 锁住这一页,
+ * 把需要搬走的行复制到目标分片(自动提交,主键冲突保留目标上的数据),再删除本分片上的行后提交。
+ * 中途失败只会留下已复制但未删除的行,重新执行即可。
+ * <p>
+ * 扩容步骤: 1. 在 user.shard.nodes 末尾加新分片,user.shard.previous-count 设为原分片数,所有实例重启;
+ * 2. 执行迁移直到完成;3. 去掉 previous-count,所有实例重启
+ */
+public class UserShardMigrator {
+    private static final Logger logger = LoggerFactory.getLogger(UserShardMigrator.class);
+
+    private final UserShards shards;
+    private final int batchSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong moved = new AtomicLong();
+    private volatile String lastError;
+
+    public UserShardMigrator(UserShards shards, int batchSize) {
+        this.shards = shards;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 执行一轮完整迁移,返回搬运的行数;已有迁移在执行时抛出 IllegalStateException
+     */
+    public long migrate() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("migration is already running");
+        }
+        scanned.set(0);
+        moved.set(0);
+        lastError = null;
+        long started = System.currentTimeMillis();
+        try {
+            for (UserShard shard : shards.all()) {
+                migrate(shard);
+            }
+            logger.info("shard migration finished: scanned {}, moved {} in {} ms",
+                    scanned.get(), moved.get(), System.currentTimeMillis() - started);
+            return moved.get();
+        } catch (RuntimeException e) {
+            lastError = e.getMessage();
+            throw e;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("shards", shards.size());
+        status.put("previousShards", shards.getPreviousCount());
+        status.put("running", running.get());
+        status.put("scanned", scanned.get());
+        status.put("moved", moved.get());
+        status.put("lastError", lastError);
+        return status;
+    }
+
+    private void migrate(UserShard source) {
+        Long lastUserId = null;
+        while (true) {
+            Long after = lastUserId;
+            List<User> page = source.getTransactionTemplate().execute(status -> movePage(source, after));
+            if (page == null || page.isEmpty()) {
+                return;
+            }
+            scanned.addAndGet(page.size());
+            lastUserId = page.get(page.size() - 1).getUserId();
+            if (page.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    private List<User> movePage(UserShard source, Long lastUserId) {
+        List<User> page = source.getReshardMapper().lockUserPage(lastUserId, batchSize);
+        Map<UserShard, List<User>> targets = new LinkedHashMap<>();
+        for (User user : page) {
+            UserShard target = shards.locate(user.getUserId());
+            if (target != source) {
+                targets.computeIfAbsent(target, shard -> new ArrayList<>()).add(user);
+            }
+        }
+        for (Map.Entry<UserShard, List<User>> target : targets.entrySet()) {
+            List<User> users = target.getValue();
+            target.getKey().getReshardMapper().copyUsers(users);
+            List<Long> userIds = new ArrayList<>(users.size());
+            for (User user : users) {
+                userIds.add(user.getUserId());
+            }
+            source.getReshardMapper().delUsers(userIds);
+            moved.addAndGet(users.size());
+        }
+        return page;
+    }
+}
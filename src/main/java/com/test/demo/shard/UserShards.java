@@ -0,0 +1,126 @@
+package com.test.demo.shard;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * 按 user_id 的 Jump Consistent Hash 定位分片
+ * <p>
+ * 扩缩容迁移期间(previousCount > 0)一个用户可能还在旧位置(按 previousCount 计算)或已经到了新位置:
+ * 读、改、删都先查旧位置,没有再查新位置;新增只写新位置。
+ * UserShardMigrator 在旧分片上加行锁搬运并删除,并发的修改要么在搬运前落到旧位置、要么等搬运完成后落到新位置
+ */
+public class UserShards implements Closeable {
+    private final List<UserShard> shards;
+    private final int previousCount;
+
+    public UserShards(List<UserShard> shards, int previousCount) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("at least one shard is required");
+        }
+        if (previousCount < 0 || previousCount > shards.size()) {
+            throw new IllegalArgumentException("previousCount must be between 0 and " + shards.size() + ": " + previousCount);
+        }
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+        this.previousCount = previousCount == shards.size() ? 0 : previousCount;
+    }
+
+    public List<UserShard> all() {
+        return shards;
+    }
+
+    public int size() {
+        return shards.size();
+    }
+
+    public boolean isMigrating() {
+        return previousCount > 0;
+    }
+
+    public int getPreviousCount() {
+        return previousCount;
+    }
+
+    /**
+     * 用户当前应在的分片,新增写入这里
+     */
+    public UserShard locate(long userId) {
+        return shards.get(JumpConsistentHash.bucket(userId, shards.size()));
+    }
+
+    /**
+     * 迁移期间用户原来所在的分片,与 locate 相同或没有在迁移时为 null
+     */
+    public UserShard previousLocation(long userId) {
+        if (previousCount == 0) {
+            return null;
+        }
+        UserShard previous = shards.get(JumpConsistentHash.bucket(userId, previousCount));
+        return previous == locate(userId) ? null : previous;
+    }
+
+    /**
+     * 读、改、删时依次尝试的分片
+     */
+    public List<UserShard> candidates(long userId) {
+        UserShard target = locate(userId);
+        UserShard previous = previousLocation(userId);
+        if (previous == null) {
+            return Collections.singletonList(target);
+        }
+        List<UserShard> candidates = new ArrayList<>(2);
+        candidates.add(previous);
+        candidates.add(target);
+        return candidates;
+    }
+
+    /**
+     * 依次在候选分片上执行修改/删除,某个分片影响行数大于 0 即返回
+     */
+    public int update(long userId, ToIntFunction<UserShard> writer) {
+        int rows = 0;
+        for (UserShard shard : candidates(userId)) {
+            rows = writer.applyAsInt(shard);
+            if (rows > 0) {
+                break;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 按 keyOf 算出的 userId 把一批数据分到各自的分片(locate,新增用),保持原有顺序
+     */
+    public <T> Map<UserShard, List<T>> groupByShard(List<T> items, ToLongFunction<T> keyOf) {
+        Map<UserShard, List<T>> groups = new LinkedHashMap<>();
+        for (T item : items) {
+            groups.computeIfAbsent(locate(keyOf.applyAsLong(item)), shard -> new ArrayList<>()).add(item);
+        }
+        return groups;
+    }
+
+    /**
+     * 按 keyOf 算出的 userId 把一批数据分到第一个候选分片(迁移期间为旧位置),保持原有顺序;
+     * 批量修改、删除用它分组,没命中的行再用 update 尝试其余候选分片
+     */
+    public <T> Map<UserShard, List<T>> groupByCandidate(List<T> items, ToLongFunction<T> keyOf) {
+        Map<UserShard, List<T>> groups = new LinkedHashMap<>();
+        for (T item : items) {
+            groups.computeIfAbsent(candidates(keyOf.applyAsLong(item)).get(0), shard -> new ArrayList<>()).add(item);
+        }
+        return groups;
+    }
+
+    @Override
+    public void close() {
+        for (UserShard shard : shards) {
+            shard.close();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.test.demo.startup;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.Lifecycle;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.core.type.MethodMetadata;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+
+/**
+ * 把应用自己的 bean 改为第一次使用时才创建,缩短启动时间(Spring Boot 2.1 还没有 spring.main.lazy-initialization)
+ *
+ * 只处理 basePackage 下定义的 bean,框架自动配置的 bean 不动。以下 bean 保持启动时创建:
+ * 配置类本身(@PostConstruct 里可能有注册指标之类的副作用)、Lifecycle 和 ApplicationListener、
+ * 带 @EventListener/@Scheduled 方法的类,以及显式标了 @Lazy 的 bean(@Lazy(false) 用来声明必须启动时创建)
+ */
+public class LazyInitBeanFactoryPostProcessor implements BeanFactoryPostProcessor {
+    private final String basePackage;
+
+    public LazyInitBeanFactoryPostProcessor(String basePackage) {
+        this.basePackage = basePackage + ".";
+    }
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+        ClassLoader classLoader = beanFactory.getBeanClassLoader();
+        for (String beanName : beanFactory.getBeanDefinitionNames()) {
+            BeanDefinition definition = beanFactory.getBeanDefinition(beanName);
+            if (definition.isLazyInit() || !definition.isSingleton() || definition.isAbstract()
+                    || definition.getRole() != BeanDefinition.ROLE_APPLICATION
+                    || !(definition instanceof AnnotatedBeanDefinition)) {
+                continue;
+            }
+            AnnotatedBeanDefinition annotated = (AnnotatedBeanDefinition) definition;
+            MethodMetadata factoryMethod = annotated.getFactoryMethodMetadata();
+            String declaringClass = factoryMethod != null ? factoryMethod.getDeclaringClassName() : definition.getBeanClassName();
+            String beanClass = factoryMethod != null ? factoryMethod.getReturnTypeName() : definition.getBeanClassName();
+            AnnotatedTypeMetadata metadata = factoryMethod != null ? factoryMethod : annotated.getMetadata();
+            if (declaringClass == null || !declaringClass.startsWith(basePackage)
+                    || metadata.isAnnotated(Lazy.class.getName())
+                    || metadata.isAnnotated(Configuration.class.getName())) {
+                continue;
+            }
+            if (isSafeToDefer(beanClass, classLoader)) {
+                definition.setLazyInit(true);
+            }
+        }
+    }
+
+    private static boolean isSafeToDefer(String className, ClassLoader classLoader) {
+        Class<?> type;
+        try {
+            type = ClassUtils.forName(className, classLoader);
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+        if (Lifecycle.class.isAssignableFrom(type) || ApplicationListener.class.isAssignableFrom(type)) {
+            return false;
+        }
+        for (Method method : ReflectionUtils.getAllDeclaredMethods(type)) {
+            if (AnnotationUtils.findAnnotation(method, EventListener.class) != null
+                    || AnnotationUtils.findAnnotation(method, Scheduled.class) != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
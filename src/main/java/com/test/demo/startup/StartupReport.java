@@ -0,0 +1,57 @@
+package com.test.demo.startup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * 启动完成时记录从 JVM 启动算起的耗时和当时的常驻内存(RSS,仅 Linux 可取到),
+ * 格式固定,StartupBenchmark 按这一行解析。
+ * startup.exit-on-ready=true 时记录后立即退出,用于生成 AppCDS 归档的训练运行和启动基准
+ */
+@Component
+public class StartupReport {
+    private static final Logger logger = LoggerFactory.getLogger(StartupReport.class);
+
+    static final String PREFIX = "startup-report";
+
+    @Value("${startup.exit-on-ready:false}")
+    private boolean exitOnReady;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ready(ApplicationReadyEvent event) {
+        long uptimeMs = ManagementFactory.getRuntimeMXBean().getUptime();
+        logger.info("{} uptimeMs={} rssKb={}", PREFIX, uptimeMs, residentKb());
+        if (exitOnReady) {
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
+
+    /**
+     * 读取 /proc/self/status 的 VmRSS,取不到时返回 -1
+     *
+     * @return
+     */
+    static long residentKb() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"), StandardCharsets.US_ASCII)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.substring("VmRSS:".length()).replace("kB", "").trim());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.debug("read rss failed: {}", e.getMessage());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,108 @@
+package com.test.demo.util;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * JSON 工具,同时负责把 Redis 里取出的值转换成调用方需要的类型
+ */
+public final class JsonUtil {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private JsonUtil() {
+    }
+
+    public static String toJson(Object value) {
+        try {
+            return OBJECT_MAPPER.writeValueAsString(value);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not write JSON", e);
+        }
+    }
+
+    public static <T> T returnObj(String json, Class<T> clazz) {
+        try {
+            return OBJECT_MAPPER.readValue(json, clazz);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not read JSON as " + clazz.getName(), e);
+        }
+    }
+
+    public static <T> T returnObj(String json, Type type) {
+        try {
+            return OBJECT_MAPPER.readValue(json, OBJECT_MAPPER.getTypeFactory().constructType(type));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not read JSON as " + type.getTypeName(), e);
+        }
+    }
+
+    public static <T> List<T> toList(String json, Class<T> clazz) {
+        JavaType type = OBJECT_MAPPER.getTypeFactory().constructCollectionType(List.class, clazz);
+        try {
+            return OBJECT_MAPPER.readValue(json, type);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not read JSON as List<" + clazz.getName() + ">", e);
+        }
+    }
+
+    /**
+     * Redis 取出的值已由序列化器还原成对象;类型一致直接返回,
+     * 旧数据是 JSON 字符串时再解析
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T convert(Object value, Class<T> clazz) {
+        if (value == null || clazz.isInstance(value)) {
+            return (T) value;
+        }
+        if (value instanceof String) {
+            return returnObj((String) value, clazz);
+        }
+        return OBJECT_MAPPER.convertValue(value, clazz);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> T convert(Object value, Type type) {
+        if (value == null) {
+            return null;
+        }
+        if (type instanceof Class) {
+            return convert(value, (Class<T>) type);
+        }
+        if (value instanceof String) {
+            return returnObj((String) value, type);
+        }
+        return OBJECT_MAPPER.convertValue(value, OBJECT_MAPPER.getTypeFactory().constructType(type));
+    }
+
+    public static <T> List<T> convertList(Object value, Class<T> clazz) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof String) {
+            return toList((String) value, clazz);
+        }
+        if (value instanceof Collection) {
+            return redisToList((Collection<?>) value, clazz);
+        }
+        throw new IllegalArgumentException("Not a list: " + value.getClass().getName());
+    }
+
+    public static <T> List<T> redisToList(Collection<?> values, Class<T> clazz) {
+        if (values == null) {
+            return null;
+        }
+        List<T> list = new ArrayList<>(values.size());
+        for (Object value : values) {
+            list.add(convert(value, clazz));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,26 @@
+package com.test.demo.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+
+/**
+ * 统一的异常日志输出,最后一个参数为异常时作为堆栈打印
+ */
+public final class Print {
+    private static final Logger logger = LoggerFactory.getLogger(Print.class);
+
+    private Print() {
+    }
+
+    public static void printException(String method, Object... args) {
+        int length = args.length;
+        Throwable error = null;
+        if (length > 0 && args[length - 1] instanceof Throwable) {
+            error = (Throwable) args[length - 1];
+            length--;
+        }
+        logger.error("{} failed, args: {}", method, Arrays.toString(Arrays.copyOf(args, length)), error);
+    }
+}
@@ -0,0 +1,24 @@
+package com.test.demo.warmup;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+/**
+ * 缓存预热就绪检查,就绪探针使用 /actuator/health/cacheWarmup:
+ * 启动时缓存预热到 user.cache.warmup.ready-fraction 之前返回 OUT_OF_SERVICE(HTTP 503),负载均衡不会把流量打过来
+ * 存活探针不要用 /actuator/health,预热期间它同样是 503
+ */
+@Component
+public class CacheWarmupHealthIndicator extends AbstractHealthIndicator {
+    @Autowired
+    private UserCacheWarmer userCacheWarmer;
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        builder.status(userCacheWarmer.isReady() ? Status.UP : Status.OUT_OF_SERVICE)
+                .withDetails(userCacheWarmer.stats());
+    }
+}
@@ -0,0 +1,187 @@
+package com.test.demo.warmup;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 用户缓存预热配置,前缀 user.cache.warmup
+ */
+@Component
+@ConfigurationProperties(prefix = "user.cache.warmup")
+public class CacheWarmupProperties {
+    /**
+     * 关闭后不预热,节点启动即就绪
+     */
+    private boolean enabled = true;
+
+    /**
+     * all 预热全表;recent 只预热 recent-days 天内创建的用户(user_id 按创建时间递增)
+     */
+    private String mode = "all";
+
+    private int recentDays = 30;
+
+    /**
+     * Redis 丢数据后先按近端缓存里的访问频率预热最热的这些用户,再扫区间
+     */
+    private int hottestLimit = 10000;
+
+    /**
+     * 并行扫描的线程数,也是预热最多同时占用的数据库连接数
+     */
+    private int threads = 4;
+
+    /**
+     * 每个分片按 user_id 切成的区间数,区间是并行的最小单位
+     */
+    private int rangesPerShard = 16;
+
+    /**
+     * 每页行数,一页一次查询、一次 Redis 流水线
+     */
+    private int pageSize = 500;
+
+    /**
+     * 所有线程合计每秒最多读取的行数,0 不限速
+     */
+    private int maxRowsPerSecond = 20000;
+
+    /**
+     * 启动时预热进度达到该比例才报告就绪
+     */
+    private double readyFraction = 0.9;
+
+    /**
+     * 启动后最多等待多久(秒),超时后即使没预热完也报告就绪,Redis 或数据库不可用时不会一直不就绪
+     */
+    private long maxWaitSeconds = 300;
+
+    /**
+     * 多久检查一次 Redis 是否丢了预热标记(重启、切换到空的实例、被清空)
+     */
+    private long checkSeconds = 10;
+
+    /**
+     * 预热锁的租期(秒),预热期间每 progress-seconds 续期一次;持有锁的节点挂掉后由其它节点接手
+     */
+    private long lockSeconds = 120;
+
+    /**
+     * 进度上报、日志和锁续期的间隔(秒)
+     */
+    private long progressSeconds = 5;
+
+    private String keyPrefix = "user:cache:warmup";
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
+    public int getRecentDays() {
+        return recentDays;
+    }
+
+    public void setRecentDays(int recentDays) {
+        this.recentDays = recentDays;
+    }
+
+    public int getHottestLimit() {
+        return hottestLimit;
+    }
+
+    public void setHottestLimit(int hottestLimit) {
+        this.hottestLimit = hottestLimit;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getRangesPerShard() {
+        return rangesPerShard;
+    }
+
+    public void setRangesPerShard(int rangesPerShard) {
+        this.rangesPerShard = rangesPerShard;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public int getMaxRowsPerSecond() {
+        return maxRowsPerSecond;
+    }
+
+    public void setMaxRowsPerSecond(int maxRowsPerSecond) {
+        this.maxRowsPerSecond = maxRowsPerSecond;
+    }
+
+    public double getReadyFraction() {
+        return readyFraction;
+    }
+
+    public void setReadyFraction(double readyFraction) {
+        this.readyFraction = readyFraction;
+    }
+
+    public long getMaxWaitSeconds() {
+        return maxWaitSeconds;
+    }
+
+    public void setMaxWaitSeconds(long maxWaitSeconds) {
+        this.maxWaitSeconds = maxWaitSeconds;
+    }
+
+    public long getCheckSeconds() {
+        return checkSeconds;
+    }
+
+    public void setCheckSeconds(long checkSeconds) {
+        this.checkSeconds = checkSeconds;
+    }
+
+    public long getLockSeconds() {
+        return lockSeconds;
+    }
+
+    public void setLockSeconds(long lockSeconds) {
+        this.lockSeconds = lockSeconds;
+    }
+
+    public long getProgressSeconds() {
+        return progressSeconds;
+    }
+
+    public void setProgressSeconds(long progressSeconds) {
+        this.progressSeconds = progressSeconds;
+    }
+
+    public String getKeyPrefix() {
+        return keyPrefix;
+    }
+
+    public void setKeyPrefix(String keyPrefix) {
+        this.keyPrefix = keyPrefix;
+    }
+}
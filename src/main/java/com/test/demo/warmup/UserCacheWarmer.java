@@ -0,0 +1,444 @@
+package com.test.demo.warmup;
+
+import com.test.demo.cache.UserCache;
+import com.test.demo.dao.UserMapper;
+import com.test.demo.datasource.ReadWriteRouting;
+import com.test.demo.id.SnowflakeIdGenerator;
+import com.test.demo.model.User;
+import com.test.demo.model.UserIdRange;
+import com.test.demo.shard.UserShard;
+import com.test.demo.shard.UserShards;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 用户缓存预热: 部署后或 Redis 丢数据后,按 user_id 区间从各分片分页读出用户,流水线写入 Redis,
+ * 避免所有 getUserInfo 同时未命中把 MySQL 打垮
+ * <p>
+ * 预热完成后在 Redis 写一个不过期的标记(user:cache:warmup:done),每 check-seconds 检查一次:
+ * 标记还在说明缓存是热的(滚动发布、切换到有数据的从库都不用重新预热),不在说明 Redis 重启或被清空。
+ * 集群内同时只有拿到预热锁的一个节点执行,进度写在 Redis 里,其它节点据此判断是否就绪。
+ * <p>
+ * 每个分片按 user_id 切成 ranges-per-shard 个区间,交给 threads 个线程并行扫描,每页一条短查询,
+ * 所有线程合计按 max-rows-per-second 限速,不会占满数据库连接池。
+ * 启动时进度达到 ready-fraction(或等待超过 max-wait-seconds)之前,健康检查报告 OUT_OF_SERVICE;
+ * 就绪之后再次预热不会让节点重新变为不就绪,否则 Redis 故障时所有节点会被同时摘掉
+ */
+@Component
+public class UserCacheWarmer {
+    private static final Logger logger = LoggerFactory.getLogger(UserCacheWarmer.class);
+
+    static final String TRIGGER_STARTUP = "startup";
+    static final String TRIGGER_FAILOVER = "failover";
+
+    @Autowired
+    UserShards userShards;
+    @Autowired
+    UserMapper userMapper;
+    @Autowired
+    UserCache userCache;
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+    @Autowired
+    private ValueOperations<String, Object> valueOperations;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private CacheWarmupProperties properties;
+
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName();
+
+    private volatile boolean ready;
+    private volatile long startedAt = System.currentTimeMillis();
+    private volatile boolean running;
+    private volatile double progress;
+    private volatile String lastError;
+
+    /**
+     * 本节点当前(或上一次)预热的总行数、已写入行数和开始时间
+     */
+    private volatile long runTotal;
+    private final AtomicLong runWarmed = new AtomicLong();
+    private volatile long runStartedNanos;
+    private volatile long runElapsedNanos;
+
+    private final LongAdder warmedRows = new LongAdder();
+    private ScheduledExecutorService scheduler;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        startedAt = System.currentTimeMillis();
+        if (!properties.isEnabled()) {
+            ready = true;
+            return;
+        }
+        FunctionCounter.builder("user.cache.warmup.rows", warmedRows, LongAdder::sum)
+                .description("user rows written to Redis by cache warm-up").register(meterRegistry);
+        Gauge.builder("user.cache.warmup.progress", this, UserCacheWarmer::getProgress)
+                .description("fraction of the user table currently warm").register(meterRegistry);
+        Gauge.builder("user.cache.warmup.throughput", this, UserCacheWarmer::throughput)
+                .description("rows per second of the current or last local warm-up").register(meterRegistry);
+        Gauge.builder("user.cache.warmup.ready", this, warmer -> warmer.isReady() ? 1 : 0).register(meterRegistry);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-cache-warmup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::check, 0, Math.max(1, properties.getCheckSeconds()), TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public double getProgress() {
+        return progress;
+    }
+
+    /**
+     * 预热状态,健康检查的详情和 /warmupStats 使用
+     *
+     * @return
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ready", ready);
+        stats.put("running", running);
+        stats.put("progress", progress);
+        stats.put("readyFraction", properties.getReadyFraction());
+        stats.put("totalRows", runTotal);
+        stats.put("warmedRows", runWarmed.get());
+        stats.put("rowsPerSecond", throughput());
+        stats.put("lastError", lastError);
+        return stats;
+    }
+
+    /**
+     * 缓存是热的就直接就绪;否则抢到锁的节点预热,其它节点读取进度
+     */
+    void check() {
+        try {
+            if (Boolean.TRUE.equals(redisTemplate.hasKey(doneKey()))) {
+                progress = 1;
+                markReady();
+                return;
+            }
+            if (Boolean.TRUE.equals(valueOperations.setIfAbsent(lockKey(), nodeId,
+                    properties.getLockSeconds(), TimeUnit.SECONDS))) {
+                warm(ready ? TRIGGER_FAILOVER : TRIGGER_STARTUP);
+            } else {
+                progress = parseProgress(valueOperations.get(progressKey()));
+                if (progress >= properties.getReadyFraction()) {
+                    markReady();
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("user cache warm-up check failed: {}", e.getMessage());
+        } finally {
+            readyOnTimeout();
+        }
+    }
+
+    /**
+     * 持有预热锁时执行一轮预热,完成后写入标记并释放锁
+     */
+    void warm(String trigger) {
+        long started = System.nanoTime();
+        running = true;
+        runWarmed.set(0);
+        runTotal = 0;
+        runStartedNanos = started;
+        runElapsedNanos = 0;
+        lastError = null;
+        String result = "success";
+        RatePacer pacer = new RatePacer(properties.getMaxRowsPerSecond());
+        try {
+            if (TRIGGER_FAILOVER.equals(trigger)) {
+                warmHottest(pacer);
+            }
+            List<Range> ranges = new ArrayList<>();
+            long total = 0;
+            Long minUserId = "recent".equalsIgnoreCase(properties.getMode())
+                    ? SnowflakeIdGenerator.minIdAt(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(properties.getRecentDays()))
+                    : null;
+            for (UserShard shard : userShards.all()) {
+                UserIdRange range = shard.getUserMapper().getUserIdRange(minUserId);
+                if (range != null && !range.isEmpty()) {
+                    total += range.getUserCount();
+                    ranges.addAll(split(shard, range, Math.max(1, properties.getRangesPerShard())));
+                }
+            }
+            runTotal = total;
+            logger.info("user cache warm-up ({}) started: {} rows in {} ranges, {} threads, max {} rows/s",
+                    trigger, total, ranges.size(), properties.getThreads(), properties.getMaxRowsPerSecond());
+            warmRanges(ranges, pacer);
+            valueOperations.set(doneKey(), System.currentTimeMillis());
+            report();
+            progress = 1;
+            markReady();
+            logger.info("user cache warm-up ({}) finished: {} rows in {} ms, {} rows/s", trigger, runWarmed.get(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), Math.round(throughput()));
+        } catch (RuntimeException e) {
+            result = "failure";
+            lastError = e.getMessage();
+            logger.warn("user cache warm-up ({}) failed after {} rows: {}", trigger, runWarmed.get(), e.getMessage());
+        } finally {
+            runElapsedNanos = System.nanoTime() - started;
+            running = false;
+            Timer.builder("user.cache.warmup.duration").tag("trigger", trigger).tag("result", result)
+                    .register(meterRegistry).record(runElapsedNanos, TimeUnit.NANOSECONDS);
+            releaseLock();
+        }
+    }
+
+    /**
+     * 把区间交给有界线程池并行扫描,主线程定期上报进度并续期锁;任一区间失败其余区间尽快停止
+     */
+    private void warmRanges(List<Range> ranges, RatePacer pacer) {
+        if (ranges.isEmpty()) {
+            return;
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(properties.getThreads(), ranges.size())), runnable -> {
+            Thread thread = new Thread(runnable, "user-cache-warmup-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicBoolean abort = new AtomicBoolean();
+        try {
+            List<Future<?>> futures = new ArrayList<>(ranges.size());
+            for (Range range : ranges) {
+                futures.add(pool.submit(() -> warmRange(range, pacer, abort)));
+            }
+            pool.shutdown();
+            while (!pool.awaitTermination(Math.max(1, properties.getProgressSeconds()), TimeUnit.SECONDS)) {
+                report();
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("user cache warm-up interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            abort.set(true);
+            pool.shutdownNow();
+        }
+    }
+
+    private void warmRange(Range range, RatePacer pacer, AtomicBoolean abort) {
+        int pageSize = Math.max(1, properties.getPageSize());
+        long lastUserId = range.after;
+        try {
+            while (!abort.get()) {
+                pacer.acquire(pageSize);
+                long after = lastUserId;
+                List<User> page = ReadWriteRouting.onPrimary(
+                        () -> range.shard.getUserMapper().getUserRangePage(after, range.upTo, pageSize));
+                if (page.isEmpty()) {
+                    return;
+                }
+                userCache.warm(page);
+                runWarmed.addAndGet(page.size());
+                warmedRows.add(page.size());
+                lastUserId = page.get(page.size() - 1).getUserId();
+                if (page.size() < pageSize) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            abort.set(true);
+            throw e;
+        }
+    }
+
+    /**
+     * Redis 丢数据时近端缓存还在,按访问频率取最热的一批先写回去
+     */
+    private void warmHottest(RatePacer pacer) {
+        List<Long> hottest = userCache.hottestUserIds(properties.getHottestLimit());
+        int pageSize = Math.max(1, properties.getPageSize());
+        long warmed = 0;
+        try {
+            for (int i = 0; i < hottest.size(); i += pageSize) {
+                List<Long> batch = hottest.subList(i, Math.min(hottest.size(), i + pageSize));
+                pacer.acquire(batch.size());
+                List<User> users = ReadWriteRouting.onPrimary(() -> userMapper.getUserInfoList(batch));
+                userCache.warm(users);
+                warmed += users.size();
+                warmedRows.add(users.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("user cache warm-up interrupted", e);
+        }
+        logger.info("user cache warm-up restored {} hottest users", warmed);
+    }
+
+    static List<Range> split(UserShard shard, UserIdRange range, int count) {
+        List<Range> ranges = new ArrayList<>(count);
+        for (long[] bounds : range.split(count)) {
+            ranges.add(new Range(shard, bounds[0], bounds[1]));
+        }
+        return ranges;
+    }
+
+    /**
+     * 更新进度、写到 Redis 给其它节点看,并续期预热锁
+     */
+    private void report() {
+        long total = runTotal;
+        long warmed = runWarmed.get();
+        progress = total == 0 ? 1 : Math.min(1, (double) warmed / total);
+        if (progress >= properties.getReadyFraction()) {
+            markReady();
+        }
+        readyOnTimeout();
+        try {
+            valueOperations.set(progressKey(), warmed + "/" + total, properties.getLockSeconds(), TimeUnit.SECONDS);
+            redisTemplate.expire(lockKey(), properties.getLockSeconds(), TimeUnit.SECONDS);
+        } catch (RuntimeException e) {
+            logger.warn("report user cache warm-up progress failed: {}", e.getMessage());
+        }
+        if (running) {
+            logger.info("user cache warm-up {}/{} rows ({}%), {} rows/s", warmed, total,
+                    Math.round(progress * 100), Math.round(throughput()));
+        }
+    }
+
+    private void releaseLock() {
+        try {
+            if (nodeId.equals(valueOperations.get(lockKey()))) {
+                redisTemplate.delete(lockKey());
+            }
+        } catch (RuntimeException e) {
+            logger.warn("release user cache warm-up lock failed, it expires in {}s: {}", properties.getLockSeconds(), e.getMessage());
+        }
+    }
+
+    private void markReady() {
+        if (!ready) {
+            ready = true;
+            logger.info("user cache is {}% warm, node ready after {} ms", Math.round(progress * 100),
+                    System.currentTimeMillis() - startedAt);
+        }
+    }
+
+    private void readyOnTimeout() {
+        long waited = System.currentTimeMillis() - startedAt;
+        if (!ready && waited >= TimeUnit.SECONDS.toMillis(properties.getMaxWaitSeconds())) {
+            ready = true;
+            logger.warn("user cache is {}% warm after {} ms, reporting ready anyway", Math.round(progress * 100), waited);
+        }
+    }
+
+    private double throughput() {
+        long elapsed = running ? System.nanoTime() - runStartedNanos : runElapsedNanos;
+        return elapsed <= 0 ? 0 : runWarmed.get() / (elapsed / 1e9);
+    }
+
+    private static double parseProgress(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        String[] parts = value.toString().split("/");
+        long total = Long.parseLong(parts[1]);
+        return total == 0 ? 1 : Math.min(1, (double) Long.parseLong(parts[0]) / total);
+    }
+
+    private String doneKey() {
+        return properties.getKeyPrefix() + ":done";
+    }
+
+    private String lockKey() {
+        return properties.getKeyPrefix() + ":lock";
+    }
+
+    private String progressKey() {
+        return properties.getKeyPrefix() + ":progress";
+    }
+
+    /**
+     * 一个分片上的 user_id 区间 (after, upTo]
+     */
+    static final class Range {
+        final UserShard shard;
+        final long after;
+        final long upTo;
+
+        Range(UserShard shard, long after, long upTo) {
+            this.shard = shard;
+            this.after = after;
+            this.upTo = upTo;
+        }
+    }
+
+    /**
+     * 所有线程共用的匀速限流: 每次按行数预约时间片,不攒突发额度
+     */
+    private static final class RatePacer {
+        private final double nanosPerRow;
+        private long next = Long.MIN_VALUE;
+
+        RatePacer(int rowsPerSecond) {
+            this.nanosPerRow = rowsPerSecond > 0 ? 1e9 / rowsPerSecond : 0;
+        }
+
+        void acquire(int rows) throws InterruptedException {
+            if (nanosPerRow == 0) {
+                return;
+            }
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long start = Math.max(now, next);
+                next = start + (long) (rows * nanosPerRow);
+                wait = start - now;
+            }
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+-- user 表结构,不会被 Spring Boot 自动执行,手工建表/升级时使用
+CREATE TABLE IF NOT EXISTS `user` (
+  `user_id`        BIGINT       NOT NULL,
+  `user_name`      VARCHAR(64)  DEFAULT NULL,
+  `login_password` VARCHAR(100) DEFAULT NULL,
+  `user_sex`       VARCHAR(8)   DEFAULT NULL,
+  PRIMARY KEY (`user_id`),
+  KEY `idx_user_name` (`user_name`)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+-- 已有库升级: getUserList 的 user_name 前缀过滤依赖该索引
+-- ALTER TABLE `user` ADD INDEX `idx_user_name` (`user_name`);
+
+-- 用户变更发件箱: 写 user 表的同一个事务里插入一行,由 UserChangeRelay 轮询后失效 Redis 缓存并删除
+-- 只记录哪个用户变了,不记录变更内容,重复投递和乱序都不影响结果
+CREATE TABLE IF NOT EXISTS `user_outbox` (
+  `id`         BIGINT      NOT NULL AUTO_INCREMENT,
+  `user_id`    BIGINT      NOT NULL,
+  `op`         VARCHAR(8)  NOT NULL,
+  `created_at` BIGINT      NOT NULL,
+  PRIMARY KEY (`id`)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+-- 可选: 绕过应用直接改库(手工修数据、其它服务)也要同步缓存时,在 MySQL 上加触发器写发件箱;
+-- 与应用写入的记录重复无害
+-- CREATE TRIGGER `user_outbox_insert` AFTER INSERT ON `user` FOR EACH ROW
+--   INSERT INTO `user_outbox` (`user_id`, `op`, `created_at`) VALUES (NEW.`user_id`, 'UPSERT', ROUND(UNIX_TIMESTAMP(NOW(3)) * 1000));
+-- CREATE TRIGGER `user_outbox_update` AFTER UPDATE ON `user` FOR EACH ROW
+--   INSERT INTO `user_outbox` (`user_id`, `op`, `created_at`) VALUES (NEW.`user_id`, 'UPSERT', ROUND(UNIX_TIMESTAMP(NOW(3)) * 1000));
+-- CREATE TRIGGER `user_outbox_delete` AFTER DELETE ON `user` FOR EACH ROW
+--   INSERT INTO `user_outbox` (`user_id`, `op`, `created_at`) VALUES (OLD.`user_id`, 'DELETE', ROUND(UNIX_TIMESTAMP(NOW(3)) * 1000));
@@ -5,8 +5,13 @@ import org.junit.runner.RunWith;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 
+/**
+ * 只验证上下文能启动;依赖 Redis、数据库的后台任务(变更同步、布隆过滤器同步、缓存预热、搜索索引构建)关闭,
+ * 日志里不混入连接失败
+ */
 @RunWith(SpringRunner.class)
-@SpringBootTest
+@SpringBootTest(properties = {"user.cdc.enabled=false", "user.bloom.enabled=false", "user.cache.warmup.enabled=false",
+        "user.search.enabled=false"})
 public class FirstBootApplicationTests {
 
     @Test
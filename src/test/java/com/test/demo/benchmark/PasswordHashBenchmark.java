@@ -0,0 +1,71 @@
+package com.test.demo.benchmark;
+
+import com.test.demo.auth.PasswordHasher;
+import com.test.demo.auth.SessionTokenService;
+import com.test.demo.service.RedisService;
+import com.test.demo.support.InMemoryRedis;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 登录相关的单线程吞吐(次/秒),即每个核每秒能处理的登录/令牌校验数
+ * verify: 一次 BCrypt 校验,登录的主要开销,按 cost 对比,用来选 auth.password.bcrypt-strength
+ * resolveToken: 令牌命中进程内缓存时的校验,每个请求都要做一次
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class PasswordHashBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class HashState {
+        @Param({"8", "10", "12"})
+        public int strength;
+
+        PasswordHasher hasher;
+        String stored;
+
+        @Setup
+        public void setUp() {
+            hasher = new PasswordHasher(strength, Runnable::run, 1);
+            stored = hasher.encode("correct horse battery staple").join();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class TokenState {
+        SessionTokenService sessionTokenService;
+        String token;
+
+        @Setup
+        public void setUp() {
+            RedisService redisService = new RedisService();
+            redisService.setRedisTemplate(new InMemoryRedis().template());
+            sessionTokenService = new SessionTokenService(redisService, 1800, 60, 600, 1000);
+            token = sessionTokenService.issue(1L);
+        }
+    }
+
+    @Benchmark
+    public boolean verify(HashState state) {
+        return state.hasher.verify("correct horse battery staple", state.stored).join().isMatched();
+    }
+
+    @Benchmark
+    public Long resolveToken(TokenState state) {
+        return state.sessionTokenService.resolve(state.token);
+    }
+}
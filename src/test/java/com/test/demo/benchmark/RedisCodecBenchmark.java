@@ -0,0 +1,79 @@
+package com.test.demo.benchmark;
+
+import com.test.demo.codec.CodecRedisSerializer;
+import com.test.demo.comfig.RedisConfig;
+import com.test.demo.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存值序列化器对比: 每条 User 的字节数及编码/解码耗时
+ * 运行: mvn -Pbenchmark verify -Djmh.include=RedisCodec,或以测试 classpath 执行本类 main
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedisCodecBenchmark {
+
+    @Param({"json", "binary"})
+    public String codec;
+
+    private RedisSerializer<Object> serializer;
+    private User user;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() {
+        serializer = serializer(codec);
+        user = sampleUser();
+        encoded = serializer.serialize(user);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return serializer.serialize(user);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return serializer.deserialize(encoded);
+    }
+
+    static RedisSerializer<Object> serializer(String codec) {
+        return new CodecRedisSerializer(RedisConfig.valueCodec(codec), 1024);
+    }
+
+    static User sampleUser() {
+        User user = new User();
+        user.setUserId(1186473204215218176L);
+        user.setUserName("zhangsan");
+        user.setLoginPassword("$2a$10$N9qo8uLOickgx2ZMRZoMyeIjZAgcfl7p92ldGxad68LJZdL17lhWy");
+        user.setUserSex("male");
+        return user;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (String codec : new String[]{"json", "binary"}) {
+            System.out.println(codec + " bytes/entry: " + serializer(codec).serialize(sampleUser()).length);
+        }
+        new Runner(new OptionsBuilder().include(RedisCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+}
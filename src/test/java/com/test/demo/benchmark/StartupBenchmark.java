@@ -0,0 +1,124 @@
+package com.test.demo.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 启动耗时和 RSS 基准: 每种启动方式各启动 N 次,应用就绪后由 StartupReport 打印耗时和 RSS 并退出,取中位数
+ *
+ * 对比三种方式:
+ *   fat-jar      java -jar target/demo.jar,默认配置,不用组件索引
+ *   prod         java -jar target/prod/demo-prod.jar --spring.profiles.active=prod
+ *   prod+appcds  同上,加 -XX:SharedArchiveFile=target/prod/app.jsa(归档不存在时跳过)
+ * 最后一种方式的中位数超过 startup.max-uptime-ms / startup.max-rss-mb(大于0时检查)时以非0退出,CI 据此失败。
+ * 由 mvn -Pprod,appcds verify 运行,也可以以测试 classpath 直接运行:
+ *   StartupBenchmark target/demo-0.0.1-SNAPSHOT.jar target/prod/demo-0.0.1-SNAPSHOT-prod.jar target/prod/app.jsa 5
+ */
+public class StartupBenchmark {
+    private static final Pattern REPORT = Pattern.compile("startup-report uptimeMs=(\\d+) rssKb=(-?\\d+)");
+
+    public static void main(String[] args) throws Exception {
+        String fatJar = args[0];
+        String prodJar = args[1];
+        File archive = new File(args[2]);
+        int runs = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        long maxUptimeMs = Long.getLong("startup.max-uptime-ms", 0);
+        long maxRssMb = Long.getLong("startup.max-rss-mb", 0);
+        List<String> jvmArgs = split(System.getProperty("startup.jvm-args", "-Xmx512m"));
+
+        List<String> fat = new ArrayList<>(jvmArgs);
+        fat.addAll(Arrays.asList("-Dspring.index.ignore=true", "-jar", fatJar));
+        long[] result = measure("fat-jar", fat, runs);
+
+        List<String> prod = new ArrayList<>(jvmArgs);
+        prod.addAll(Arrays.asList("-jar", prodJar, "--spring.profiles.active=prod"));
+        result = measure("prod", prod, runs);
+
+        if (archive.isFile()) {
+            List<String> cds = new ArrayList<>(jvmArgs);
+            cds.add("-XX:SharedArchiveFile=" + archive.getPath());
+            cds.addAll(Arrays.asList("-jar", prodJar, "--spring.profiles.active=prod"));
+            result = measure("prod+appcds", cds, runs);
+        } else {
+            System.out.printf("prod+appcds skipped, %s not found%n", archive);
+        }
+
+        boolean failed = false;
+        if (maxUptimeMs > 0 && result[0] > maxUptimeMs) {
+            System.out.printf("FAIL startup %d ms > budget %d ms%n", result[0], maxUptimeMs);
+            failed = true;
+        }
+        if (maxRssMb > 0 && result[1] > maxRssMb * 1024) {
+            System.out.printf("FAIL rss %d MB > budget %d MB%n", result[1] / 1024, maxRssMb);
+            failed = true;
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    /**
+     * 启动 runs 次,返回耗时(毫秒)和 RSS(kB)的中位数
+     */
+    private static long[] measure(String name, List<String> args, int runs) throws Exception {
+        long[] uptimes = new long[runs];
+        long[] rss = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long[] report = launch(args);
+            uptimes[i] = report[0];
+            rss[i] = report[1];
+        }
+        Arrays.sort(uptimes);
+        Arrays.sort(rss);
+        long[] median = {uptimes[runs / 2], rss[runs / 2]};
+        System.out.printf("%-12s runs=%d startup ms p50=%d min=%d max=%d rss MB p50=%d%n",
+                name, runs, median[0], uptimes[0], uptimes[runs - 1], median[1] / 1024);
+        return median;
+    }
+
+    private static long[] launch(List<String> args) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.addAll(args);
+        command.addAll(Arrays.asList("--startup.exit-on-ready=true", "--server.port=0"));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        long[] report = null;
+        StringBuilder tail = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher matcher = REPORT.matcher(line);
+                if (matcher.find()) {
+                    report = new long[]{Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2))};
+                }
+                tail.append(line).append('\n');
+                if (tail.length() > 8192) {
+                    tail.delete(0, tail.length() - 8192);
+                }
+            }
+        }
+        if (!process.waitFor(60, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+        }
+        if (report == null) {
+            throw new IllegalStateException("no startup report from " + command + "\n" + tail);
+        }
+        return report;
+    }
+
+    private static List<String> split(String value) {
+        List<String> parts = new ArrayList<>();
+        for (String part : value.trim().split("\\s+")) {
+            if (!part.isEmpty()) {
+                parts.add(part);
+            }
+        }
+        return parts;
+    }
+}
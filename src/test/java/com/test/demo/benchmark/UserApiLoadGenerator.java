@@ -0,0 +1,120 @@
+package com.test.demo.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 简单的闭环压测: N 个并发连接持续请求同一个地址,输出吞吐量和延迟分位
+ *
+ * 对比同步/异步模式时,用同样受限的 Tomcat 线程数分别启动两次应用:
+ *   java -jar demo.jar --server.tomcat.max-threads=20 --user.web.mode=blocking
+ *   java -jar demo.jar --server.tomcat.max-threads=20 --user.web.mode=async
+ * 再以测试 classpath 运行本类:
+ *   UserApiLoadGenerator http://localhost:7070/getUserInfo?userId=1 500 30
+ * 并发数远大于 Tomcat 线程数时,同步模式的延迟随排队线性增长,异步模式受数据库线程池和队列约束,
+ * 超出队列的请求快速返回 503 而不是堆积
+ */
+public class UserApiLoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : "http://localhost:7070/getUserInfo?userId=1";
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        System.setProperty("http.maxConnections", String.valueOf(concurrency));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        List<Future<Worker>> futures = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            futures.add(clients.submit(new Worker(new URL(url), deadline)::call));
+        }
+        long ok = 0;
+        long rejected = 0;
+        long errors = 0;
+        long[] latencies = new long[0];
+        for (Future<Worker> future : futures) {
+            Worker worker = future.get();
+            ok += worker.ok;
+            rejected += worker.rejected;
+            errors += worker.errors;
+            int from = latencies.length;
+            latencies = Arrays.copyOf(latencies, from + worker.count);
+            System.arraycopy(worker.latencies, 0, latencies, from, worker.count);
+        }
+        clients.shutdown();
+        Arrays.sort(latencies);
+
+        System.out.printf("url=%s concurrency=%d seconds=%d%n", url, concurrency, seconds);
+        System.out.printf("ok=%d rejected(503)=%d errors=%d throughput=%.1f req/s%n",
+                ok, rejected, errors, (ok + rejected) / (double) seconds);
+        System.out.printf("latency ms p50=%.2f p90=%.2f p99=%.2f max=%.2f%n",
+                percentile(latencies, 0.50), percentile(latencies, 0.90),
+                percentile(latencies, 0.99), percentile(latencies, 1.0));
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static class Worker {
+        private final URL url;
+        private final long deadline;
+        private long[] latencies = new long[1024];
+        private int count;
+        private long ok;
+        private long rejected;
+        private long errors;
+
+        Worker(URL url, long deadline) {
+            this.url = url;
+            this.deadline = deadline;
+        }
+
+        Worker call() {
+            byte[] buffer = new byte[8192];
+            while (System.nanoTime() < deadline) {
+                long start = System.nanoTime();
+                try {
+                    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                    int status = connection.getResponseCode();
+                    try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                        while (in != null && in.read(buffer) != -1) {
+                            //读完响应体以便复用连接
+                        }
+                    }
+                    if (status == 503) {
+                        rejected++;
+                    } else if (status < 400) {
+                        ok++;
+                    } else {
+                        errors++;
+                    }
+                } catch (IOException e) {
+                    errors++;
+                }
+                record(System.nanoTime() - start);
+            }
+            return this;
+        }
+
+        private void record(long nanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+        }
+    }
+}
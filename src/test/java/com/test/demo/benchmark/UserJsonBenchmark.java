@@ -0,0 +1,71 @@
+package com.test.demo.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.test.demo.model.User;
+import com.test.demo.model.UserField;
+import com.test.demo.model.UserView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UserController 返回值的 JSON 序列化耗时: 反射序列化的 User 与手写序列化器的 UserView 对比
+ * ObjectMapper 与 MappingJackson2HttpMessageConverter 一样由 Jackson2ObjectMapperBuilder 创建
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserJsonBenchmark {
+
+    /**
+     * getUserInfo 返回 1 个,getUserList 默认一页 100 个
+     */
+    @Param({"1", "100"})
+    public int size;
+
+    private ObjectWriter writer;
+    private Object value;
+    private Object view;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        List<User> users = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            User user = RedisCodecBenchmark.sampleUser();
+            user.setUserId(1186473204215218176L + i);
+            users.add(user);
+        }
+        value = size == 1 ? users.get(0) : users;
+        List<UserView> views = UserView.of(users, UserField.ALL);
+        view = size == 1 ? views.get(0) : views;
+        writer = objectMapper.writer();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return writer.writeValueAsBytes(value);
+    }
+
+    @Benchmark
+    public byte[] serializeView() throws Exception {
+        return writer.writeValueAsBytes(view);
+    }
+}
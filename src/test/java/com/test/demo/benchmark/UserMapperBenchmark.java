@@ -0,0 +1,66 @@
+package com.test.demo.benchmark;
+
+import com.test.demo.dao.UserMapper;
+import com.test.demo.model.User;
+import com.test.demo.support.H2UserDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UserMapper 查询加 baseResultMap 结果映射的耗时,数据库为 MySQL 兼容模式的 H2 内存库
+ * 绝对值不代表线上 MySQL,用于比较映射文件或 MyBatis 配置改动前后的差异
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserMapperBenchmark {
+    static final int USERS = 10000;
+
+    private H2UserDatabase database;
+    private UserMapper userMapper;
+
+    @Setup
+    public void setUp() {
+        database = new H2UserDatabase("mapperBenchmark");
+        database.seed(USERS);
+        userMapper = database.userMapper();
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * 单行映射
+     */
+    @Benchmark
+    public User getUserInfo() {
+        return userMapper.getUserInfo(ThreadLocalRandom.current().nextInt(USERS) + 1);
+    }
+
+    /**
+     * 一页 100 行映射
+     */
+    @Benchmark
+    public List<User> getUserList() {
+        long lastUserId = ThreadLocalRandom.current().nextInt(USERS - 100);
+        return userMapper.getUserList(null, lastUserId, 100);
+    }
+}
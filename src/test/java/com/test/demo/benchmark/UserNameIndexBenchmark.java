@@ -0,0 +1,82 @@
+package com.test.demo.benchmark;
+
+import com.test.demo.search.UserNameIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 百万用户名下各类查询取前 10 个的耗时
+ * 名字由随机音节拼成,查询取自其中一个名字: exact 整个名字, prefix 开头 3 个字符, substring 中间 4 个字符,
+ * typo 把整个名字中间的一个字符换掉(只能靠模糊匹配找到)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class UserNameIndexBenchmark {
+    private static final String[] SYLLABLES = {
+            "an", "bel", "cho", "da", "el", "fan", "gu", "hai", "io", "jun", "ka", "li", "ming", "na", "or",
+            "pei", "qi", "ro", "sha", "tin", "u", "vi", "wen", "xu", "ya", "zhe"};
+
+    @Param({"1000000"})
+    public int users;
+
+    @Param({"exact", "prefix", "substring", "typo"})
+    public String kind;
+
+    private UserNameIndex index;
+    private String query;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        index = new UserNameIndex();
+        String sample = null;
+        for (int i = 1; i <= users; i++) {
+            StringBuilder name = new StringBuilder();
+            int syllables = 2 + random.nextInt(3);
+            for (int s = 0; s < syllables; s++) {
+                name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            name.append(random.nextInt(1000));
+            index.put(i, name.toString());
+            if (i == users / 2) {
+                sample = name.toString();
+            }
+        }
+        index.trim();
+        switch (kind) {
+            case "exact":
+                query = sample;
+                break;
+            case "prefix":
+                query = sample.substring(0, 3);
+                break;
+            case "substring":
+                query = sample.substring(2, 6);
+                break;
+            default:
+                int at = sample.length() / 2;
+                query = sample.substring(0, at) + (sample.charAt(at) == 'z' ? 'y' : 'z') + sample.substring(at + 1);
+        }
+    }
+
+    @Benchmark
+    public long[] search() {
+        return index.search(query, 10);
+    }
+}
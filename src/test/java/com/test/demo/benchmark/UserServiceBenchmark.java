@@ -0,0 +1,84 @@
+package com.test.demo.benchmark;
+
+import com.test.demo.bloom.UserIdFilter;
+import com.test.demo.cache.UserCache;
+import com.test.demo.dao.UserMapper;
+import com.test.demo.model.User;
+import com.test.demo.service.UserService;
+import com.test.demo.support.H2UserDatabase;
+import com.test.demo.support.InMemoryRedis;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UserService.getUserInfo 在不同缓存层命中时的耗时
+ * none: 直接查库(加缓存之前的实现); redis: 关闭近端缓存,每次读 Redis 替身并解码; near: 命中进程内近端缓存
+ * Redis 替身没有网络往返,redis 一档只反映序列化和缓存逻辑本身的开销
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserServiceBenchmark {
+    private static final int USERS = 1000;
+
+    @Param({"none", "redis", "near"})
+    public String cache;
+
+    private H2UserDatabase database;
+    private UserMapper userMapper;
+    private UserService userService;
+
+    @Setup
+    public void setUp() {
+        database = new H2UserDatabase("serviceBenchmark");
+        database.seed(USERS);
+        userMapper = database.userMapper();
+
+        InMemoryRedis redis = new InMemoryRedis();
+        UserCache userCache = new UserCache();
+        ReflectionTestUtils.setField(userCache, "redisTemplate", redis.template());
+        ReflectionTestUtils.setField(userCache, "valueOperations", redis.valueOperations());
+        ReflectionTestUtils.setField(userCache, "ttlSeconds", 1800L);
+        ReflectionTestUtils.setField(userCache, "nullTtlSeconds", 60L);
+        ReflectionTestUtils.setField(userCache, "nearMaximumSize", 10000L);
+        ReflectionTestUtils.setField(userCache, "nearTtlSeconds", "near".equals(cache) ? 600L : 0L);
+        userCache.init();
+
+        userService = new UserService();
+        ReflectionTestUtils.setField(userService, "userMapper", userMapper);
+        ReflectionTestUtils.setField(userService, "userCache", userCache);
+        ReflectionTestUtils.setField(userService, "userIdFilter", new UserIdFilter());
+        //预热缓存,测量阶段全部命中
+        for (int i = 1; i <= USERS; i++) {
+            userService.getUserInfo(i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public User getUserInfo() {
+        long userId = ThreadLocalRandom.current().nextInt(USERS) + 1;
+        return "none".equals(cache) ? userMapper.getUserInfo(userId) : userService.getUserInfo(userId);
+    }
+}
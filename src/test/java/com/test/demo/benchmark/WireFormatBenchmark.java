@@ -0,0 +1,96 @@
+package com.test.demo.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.test.demo.model.UserField;
+import com.test.demo.model.UserView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * getUserList 一页 100 个用户在各响应格式下的编码耗时(即服务端 CPU)和字节数,+gzip 表示再经过 Tomcat 同样的 gzip 压缩
+ * 运行: mvn -Pbenchmark verify -Djmh.include=WireFormat,或以测试 classpath 执行本类 main(先打印各格式字节数)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+    private static final String[] FORMATS = {"json", "json+gzip", "cbor", "cbor+gzip", "smile", "smile+gzip"};
+
+    @Param({"json", "json+gzip", "cbor", "cbor+gzip", "smile", "smile+gzip"})
+    public String format;
+
+    private ObjectWriter writer;
+    private boolean gzip;
+    private List<UserView> page;
+
+    @Setup
+    public void setUp() {
+        writer = mapper(format).writer();
+        gzip = format.endsWith("+gzip");
+        page = samplePage();
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return encode(writer, gzip, page);
+    }
+
+    static byte[] encode(ObjectWriter writer, boolean gzip, List<UserView> page) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+        try (OutputStream out = gzip ? new GZIPOutputStream(bytes) : bytes) {
+            writer.writeValue(out, page);
+        }
+        return bytes.toByteArray();
+    }
+
+    static ObjectMapper mapper(String format) {
+        if (format.startsWith("cbor")) {
+            return Jackson2ObjectMapperBuilder.cbor().build();
+        }
+        if (format.startsWith("smile")) {
+            return Jackson2ObjectMapperBuilder.smile().build();
+        }
+        return Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    static List<UserView> samplePage() {
+        List<UserView> page = new ArrayList<>(100);
+        for (int i = 0; i < 100; i++) {
+            page.add(new UserView(1186473204215218176L + i * 4096L, String.format("zhangsan%03d", i), i % 2 == 0 ? "male" : "female"));
+        }
+        return page;
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        List<UserView> page = samplePage();
+        for (String format : FORMATS) {
+            System.out.println(format + " bytes/page: " + encode(mapper(format).writer(), format.endsWith("+gzip"), page).length);
+        }
+        new Runner(new OptionsBuilder().include(WireFormatBenchmark.class.getSimpleName()).build()).run();
+    }
+}
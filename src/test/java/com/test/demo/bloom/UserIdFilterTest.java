@@ -0,0 +1,118 @@
+package com.test.demo.bloom;
+
+import com.test.demo.support.H2UserDatabase;
+import com.test.demo.support.InMemoryRedis;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 过滤器本身没有漏判、误判率在配置范围内;多个节点通过 Redis 位图共享同一代过滤器
+ */
+public class UserIdFilterTest {
+    private static final int USERS = 2000;
+
+    private H2UserDatabase db;
+    private InMemoryRedis redis;
+
+    @Before
+    public void setUp() {
+        db = new H2UserDatabase("bloom");
+        db.seed(USERS);
+        redis = new InMemoryRedis();
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void scalableFilterHasNoFalseNegativesAndKeepsFpp() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1000, 0.01, Long.MAX_VALUE);
+        Random random = new Random(42);
+        long[] keys = new long[20000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextLong();
+            filter.put(keys[i]);
+        }
+        for (long key : keys) {
+            assertTrue(filter.mightContain(key));
+        }
+        //超出首片容量后追加了分片,总误判率仍在目标附近
+        assertTrue(filter.sliceCount() > 1);
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (filter.mightContain(random.nextLong())) {
+                falsePositives++;
+            }
+        }
+        assertTrue("false positives " + falsePositives, falsePositives < 100000 * 0.015);
+    }
+
+    @Test
+    public void redisBytesRoundTrip() {
+        BloomFilter filter = BloomFilter.create(1000, 0.01);
+        for (long key = 0; key < 1000; key++) {
+            filter.put(key);
+        }
+        BloomFilter copy = new BloomFilter(filter.bitSize(), filter.hashes());
+        copy.or(filter.toRedisBytes(0, 100), 0);
+        copy.or(filter.toRedisBytes(100, (int) filter.sizeBytes()), 100);
+        assertEquals(filter.bitCount(), copy.bitCount());
+        for (long key = 0; key < 1000; key++) {
+            assertTrue(copy.mightContain(key));
+        }
+    }
+
+    @Test
+    public void nodesShareGenerationThroughRedis() {
+        UserIdFilter nodeA = newNode();
+        UserIdFilter nodeB = newNode();
+        long unknown = 10_000_000L;
+
+        //还没有任何一代时全部放行
+        assertTrue(nodeB.mightExist(unknown));
+
+        nodeA.sync();
+        nodeB.sync();
+        for (long userId = 1; userId <= USERS; userId++) {
+            assertTrue(nodeA.mightExist(userId));
+            assertTrue(nodeB.mightExist(userId));
+        }
+        assertFalse(nodeA.mightExist(unknown));
+        assertFalse(nodeB.mightExist(unknown));
+
+        //新增的 id SETBIT 到当前代,之后加载的节点也能看到
+        nodeB.add(unknown);
+        assertTrue(nodeB.mightExist(unknown));
+        UserIdFilter nodeC = newNode();
+        nodeC.sync();
+        assertTrue(nodeC.mightExist(unknown));
+        assertEquals(1L, nodeA.stats().get("rejected"));
+    }
+
+    private UserIdFilter newNode() {
+        UserIdFilterProperties properties = new UserIdFilterProperties();
+        properties.setExpectedInsertions(USERS);
+        UserIdFilter filter = new UserIdFilter();
+        filter.userMapper = db.userMapper();
+        ReflectionTestUtils.setField(filter, "transactionTemplate",
+                new TransactionTemplate(new DataSourceTransactionManager(db.dataSource())));
+        ReflectionTestUtils.setField(filter, "redisTemplate", redis.template());
+        ReflectionTestUtils.setField(filter, "valueOperations", redis.valueOperations());
+        ReflectionTestUtils.setField(filter, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(filter, "properties", properties);
+        return filter;
+    }
+}
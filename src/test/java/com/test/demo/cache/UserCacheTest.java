@@ -0,0 +1,160 @@
+package com.test.demo.cache;
+
+import com.test.demo.bloom.UserIdFilter;
+import com.test.demo.model.User;
+import com.test.demo.support.InMemoryRedis;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 两个节点共享同一个 Redis 替身,验证失效消息到达后近端缓存不会再返回旧值
+ */
+public class UserCacheTest {
+    private static final String TOPIC = "user:cache:invalidate";
+
+    private final Map<Long, User> database = new ConcurrentHashMap<>();
+    private final AtomicInteger databaseReads = new AtomicInteger();
+    private final LongFunction<User> loader = userId -> {
+        databaseReads.incrementAndGet();
+        return copy(database.get(userId));
+    };
+
+    private InMemoryRedis redis;
+    private UserCache nodeA;
+    private UserCache nodeB;
+
+    @Before
+    public void setUp() {
+        redis = new InMemoryRedis();
+        nodeA = newNode();
+        nodeB = newNode();
+        database.put(1L, user(1L, "old"));
+    }
+
+    @Test
+    public void staleReadImpossibleOnceInvalidationArrives() {
+        assertEquals("old", nodeA.get(1L, loader).getUserName());
+        assertEquals("old", nodeB.get(1L, loader).getUserName());
+
+        redis.holdMessages();
+        database.put(1L, user(1L, "new"));
+        nodeA.evict(1L);
+
+        //写入节点立即可见,其它节点在消息到达前仍可能读到近端缓存里的旧值
+        assertEquals("new", nodeA.get(1L, loader).getUserName());
+        assertEquals("old", nodeB.get(1L, loader).getUserName());
+
+        redis.deliverPending();
+        assertEquals("new", nodeB.get(1L, loader).getUserName());
+    }
+
+    @Test
+    public void loadRacingInvalidationIsNotKeptInNearCache() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        User stale = user(1L, "old");
+        CompletableFuture<User> racingRead = CompletableFuture.supplyAsync(() -> nodeB.get(1L, userId -> {
+            loading.countDown();
+            await(release);
+            return stale;
+        }));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        database.put(1L, user(1L, "new"));
+        nodeA.evict(1L);
+        release.countDown();
+
+        assertEquals("old", racingRead.get(5, TimeUnit.SECONDS).getUserName());
+        assertNull(nodeB.peekNear(1L));
+    }
+
+    @Test
+    public void concurrentReadsOfOneUserShareOneLoad() throws Exception {
+        int callers = 8;
+        CountDownLatch release = new CountDownLatch(1);
+        LongFunction<User> slowLoader = userId -> {
+            await(release);
+            return loader.apply(userId);
+        };
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        List<CompletableFuture<User>> reads = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            reads.add(CompletableFuture.supplyAsync(() -> nodeA.get(1L, slowLoader), pool));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((Long) nodeA.stats().get("coalesced") < callers - 1 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        for (CompletableFuture<User> read : reads) {
+            assertEquals("old", read.get(5, TimeUnit.SECONDS).getUserName());
+        }
+        assertEquals(1, databaseReads.get());
+        assertEquals((long) callers - 1, nodeA.stats().get("coalesced"));
+        pool.shutdown();
+    }
+
+    @Test
+    public void missingUserIsCachedAsNull() {
+        assertNull(nodeA.get(404L, loader));
+        assertNull(nodeB.get(404L, loader));
+        assertEquals(1, databaseReads.get());
+        assertTrue(redis.containsKey(UserCache.KEY_PREFIX + 404));
+    }
+
+    private UserCache newNode() {
+        UserCache cache = new UserCache();
+        ReflectionTestUtils.setField(cache, "redisTemplate", redis.template());
+        ReflectionTestUtils.setField(cache, "valueOperations", redis.valueOperations());
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 60L);
+        ReflectionTestUtils.setField(cache, "nullTtlSeconds", 60L);
+        ReflectionTestUtils.setField(cache, "nearMaximumSize", 100L);
+        ReflectionTestUtils.setField(cache, "nearTtlSeconds", 60L);
+        ReflectionTestUtils.setField(cache, "invalidationTopic", TOPIC);
+        cache.init();
+
+        UserCacheInvalidationListener listener = new UserCacheInvalidationListener();
+        ReflectionTestUtils.setField(listener, "userCache", cache);
+        ReflectionTestUtils.setField(listener, "redisTemplate", redis.template());
+        ReflectionTestUtils.setField(listener, "userIdFilter", new UserIdFilter());
+        redis.subscribe(TOPIC, listener);
+        return cache;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static User user(long userId, String userName) {
+        User user = new User();
+        user.setUserId(userId);
+        user.setUserName(userName);
+        return user;
+    }
+
+    private static User copy(User source) {
+        return source == null ? null : user(source.getUserId(), source.getUserName());
+    }
+}
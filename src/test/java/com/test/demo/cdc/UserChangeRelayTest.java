@@ -0,0 +1,173 @@
+package com.test.demo.cdc;
+
+import com.test.demo.cache.UserCache;
+import com.test.demo.dao.UserMapper;
+import com.test.demo.dao.UserOutboxMapper;
+import com.test.demo.datasource.ReadWriteRoutingDataSource;
+import com.test.demo.etag.UserVersions;
+import com.test.demo.id.SnowflakeIdGenerator;
+import com.test.demo.model.UserChange;
+import com.test.demo.service.RedisService;
+import com.test.demo.shard.UserShard;
+import com.test.demo.shard.UserShards;
+import com.test.demo.support.H2UserDatabase;
+import com.test.demo.support.InMemoryRedis;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * H2(MySQL 模式)作发件箱,内存 Redis 替身作缓存,验证变更批量失效且只在成功后删除
+ */
+public class UserChangeRelayTest {
+    private H2UserDatabase database;
+    private UserMapper userMapper;
+    private UserOutboxMapper outboxMapper;
+    private UserShard shard;
+    private InMemoryRedis redis;
+    private SimpleMeterRegistry meterRegistry;
+
+    @Before
+    public void setUp() {
+        database = new H2UserDatabase("cdc");
+        database.seed(3);
+        userMapper = database.userMapper();
+        outboxMapper = database.outboxMapper();
+        shard = new UserShard(0, database.sqlSessionFactory(),
+                new TransactionTemplate(new DataSourceTransactionManager(database.dataSource())));
+        redis = new InMemoryRedis();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void changesEvictCachedUsersAndLeaveTheOutbox() {
+        UserCache cache = newCache(redis.template());
+        cache.get(1L, userMapper::getUserInfo);
+        cache.get(2L, userMapper::getUserInfo);
+        cache.get(3L, userMapper::getUserInfo);
+
+        long now = System.currentTimeMillis();
+        outboxMapper.addChange(1L, UserChange.UPSERT, now);
+        outboxMapper.addChange(1L, UserChange.UPSERT, now);
+        outboxMapper.addChange(2L, UserChange.DELETE, now);
+
+        UserChangeRelay relay = newRelay(cache, 10);
+        assertEquals(3, relay.relayBatch(shard));
+
+        assertFalse(redis.containsKey(UserCache.KEY_PREFIX + 1));
+        assertFalse(redis.containsKey(UserCache.KEY_PREFIX + 2));
+        assertTrue(redis.containsKey(UserCache.KEY_PREFIX + 3));
+        assertTrue(redis.containsKey(UserVersions.KEY_PREFIX + 1));
+        assertTrue(redis.containsKey(UserVersions.LIST_KEY));
+        assertFalse(redis.containsKey(UserVersions.KEY_PREFIX + 3));
+        assertTrue(outboxMapper.getPendingChanges(10).isEmpty());
+        assertEquals(3.0, meterRegistry.get("user.cdc.changes").counter().count(), 0);
+    }
+
+    @Test
+    public void backlogIsDrainedInBatches() {
+        UserCache cache = newCache(redis.template());
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 25; i++) {
+            outboxMapper.addChange(i % 3 + 1, UserChange.UPSERT, now);
+        }
+
+        newRelay(cache, 10).relayPending();
+
+        assertTrue(outboxMapper.getPendingChanges(10).isEmpty());
+        assertEquals(3.0, meterRegistry.get("user.cdc.batches").counter().count(), 0);
+    }
+
+    @Test
+    public void changesAreKeptWhenRedisIsUnavailable() {
+        RedisTemplate<String, Object> broken = new RedisTemplate<String, Object>() {
+            @Override
+            public Long delete(Collection<String> keys) {
+                throw new RedisConnectionFailureException("connection refused");
+            }
+        };
+        outboxMapper.addChange(1L, UserChange.UPSERT, System.currentTimeMillis());
+
+        newRelay(newCache(broken), 10).relayPending();
+
+        assertEquals(1, outboxMapper.getPendingChanges(10).size());
+        assertEquals(1.0, meterRegistry.get("user.cdc.failures").counter().count(), 0);
+    }
+
+    @Test
+    public void outboxIsPolledFromPrimary() {
+        H2UserDatabase replica = new H2UserDatabase("cdcReplica");
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(database.dataSource(),
+                Collections.singletonList(new ReadWriteRoutingDataSource.Replica("replica-0", replica.dataSource())), 1);
+        try {
+            //从库还留着主库上已经处理并删除的变更
+            replica.outboxMapper().addChange(1L, UserChange.UPSERT, System.currentTimeMillis() - 60000);
+            shard = new UserShard(0, H2UserDatabase.sqlSessionFactory("cdcRouting", routing),
+                    new TransactionTemplate(new DataSourceTransactionManager(routing)));
+            UserChangeRelay relay = newRelay(newCache(redis.template()), 10);
+
+            assertEquals(0, relay.relayBatch(shard));
+            assertEquals(0.0, meterRegistry.get("user.cdc.lag").gauge().value(), 0);
+
+            outboxMapper.addChange(2L, UserChange.UPSERT, System.currentTimeMillis());
+            assertEquals(1, relay.relayBatch(shard));
+            assertTrue(outboxMapper.getPendingChanges(10).isEmpty());
+        } finally {
+            routing.close();
+            replica.close();
+        }
+    }
+
+    private UserCache newCache(RedisTemplate<String, Object> template) {
+        UserCache cache = new UserCache();
+        ReflectionTestUtils.setField(cache, "redisTemplate", template);
+        ReflectionTestUtils.setField(cache, "valueOperations", redis.valueOperations());
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 60L);
+        ReflectionTestUtils.setField(cache, "nullTtlSeconds", 60L);
+        ReflectionTestUtils.setField(cache, "nearMaximumSize", 100L);
+        ReflectionTestUtils.setField(cache, "nearTtlSeconds", 60L);
+        ReflectionTestUtils.setField(cache, "invalidationTopic", "user:cache:invalidate");
+        cache.init();
+        return cache;
+    }
+
+    private UserVersions newVersions() {
+        RedisService redisService = new RedisService();
+        redisService.setRedisTemplate(redis.template());
+        UserVersions versions = new UserVersions();
+        ReflectionTestUtils.setField(versions, "redisService", redisService);
+        ReflectionTestUtils.setField(versions, "valueOperations", redis.valueOperations());
+        ReflectionTestUtils.setField(versions, "idGenerator", new SnowflakeIdGenerator(() -> 1, 1000));
+        ReflectionTestUtils.setField(versions, "ttlSeconds", 60L);
+        return versions;
+    }
+
+    private UserChangeRelay newRelay(UserCache cache, int batchSize) {
+        UserChangeRelay relay = new UserChangeRelay();
+        relay.userShards = new UserShards(Collections.singletonList(shard), 0);
+        relay.userCache = cache;
+        relay.userVersions = newVersions();
+        ReflectionTestUtils.setField(relay, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(relay, "batchSize", batchSize);
+        relay.init();
+        return relay;
+    }
+}
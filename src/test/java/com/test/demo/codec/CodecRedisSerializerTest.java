@@ -0,0 +1,105 @@
+package com.test.demo.codec;
+
+import com.test.demo.comfig.RedisConfig;
+import com.test.demo.model.User;
+import org.junit.Test;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CodecRedisSerializerTest {
+
+    @Test
+    public void roundTripsUserAndScalarsWithEveryCodec() {
+        for (String name : new String[]{"json", "binary"}) {
+            CodecRedisSerializer serializer = new CodecRedisSerializer(RedisConfig.valueCodec(name), 1024);
+            User user = new User();
+            user.setUserId(42L);
+            user.setUserName("张三");
+            User decoded = (User) serializer.deserialize(serializer.serialize(user));
+            assertEquals(name, 42L, decoded.getUserId());
+            assertEquals(name, "张三", decoded.getUserName());
+            assertEquals(name, null, decoded.getUserSex());
+            assertEquals(name, "__NULL__", serializer.deserialize(serializer.serialize("__NULL__")));
+        }
+    }
+
+    @Test
+    public void compressesOnlyAboveThreshold() {
+        CodecRedisSerializer serializer = new CodecRedisSerializer(RedisConfig.valueCodec("binary"), 64);
+        char[] name = new char[4096];
+        Arrays.fill(name, 'a');
+        Map<String, Object> large = new HashMap<>();
+        large.put("name", new String(name));
+
+        byte[] bytes = serializer.serialize(large);
+        assertTrue(bytes.length < 4096);
+        assertEquals(large, serializer.deserialize(bytes));
+    }
+
+    @Test
+    public void jsonRoundTripsCollectionsButRejectsUnknownTypes() {
+        ValueCodec json = RedisConfig.valueCodec("json");
+        List<Object> list = new ArrayList<>(Arrays.asList(1L, "a", new HashMap<>(Collections.singletonMap("k", 2L))));
+        assertEquals(list, json.decode(json.encode(list)));
+
+        //能写 Redis 的人伪造的 @class 不会被实例化
+        String[] forged = {
+                "{\"@class\":\"org.springframework.context.support.ClassPathXmlApplicationContext\",\"configLocation\":\"http://x\"}",
+                "[\"java.util.ArrayList<org.springframework.context.support.FileSystemXmlApplicationContext>\",[]]",
+                "[\"com.test.demo.model.sub.Gadget\",{}]"};
+        for (String value : forged) {
+            try {
+                json.decode(value.getBytes(StandardCharsets.UTF_8));
+                fail("expected rejection of " + value);
+            } catch (SerializationException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("not allowed"));
+            }
+        }
+    }
+
+    @Test
+    public void valuesWithoutHeaderAreReadAsStrings() {
+        CodecRedisSerializer serializer = new CodecRedisSerializer(RedisConfig.valueCodec("binary"), 1024);
+        assertEquals("17", serializer.deserialize("17".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void emptyBinaryValueIsAMiss() {
+        CodecRedisSerializer serializer = new CodecRedisSerializer(RedisConfig.valueCodec("binary"), 1024);
+        assertNull(RedisConfig.valueCodec("binary").decode(new byte[0]));
+        //只有头部、没有内容的值
+        assertNull(serializer.deserialize(new byte[]{serializer.serialize(1L)[0]}));
+    }
+
+    @Test
+    public void unknownSchemaTagIsRejected() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(0x10);
+        out.writeByte(1 | 1 << 1);
+        out.writeUTF("42");
+        out.writeUTF("张三");
+
+        try {
+            RedisConfig.valueCodec("binary").decode(bytes.toByteArray());
+            fail("expected unknown tag");
+        } catch (SerializationException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Unknown binary schema tag"));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.test.demo.comfig;
+
+import org.junit.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 监控页面默认不注册,显式开启时必须带登录密码
+ */
+public class DruidConfigTest {
+    private final WebApplicationContextRunner runner = new WebApplicationContextRunner()
+            .withUserConfiguration(Properties.class, DruidConfig.class);
+
+    @Test
+    public void statViewIsOffByDefault() {
+        runner.run(context -> assertFalse(context.containsBean("druidStatViewServlet")));
+        runner.withPropertyValues("spring.datasource.druid.stat-view.login-password=secret")
+                .run(context -> assertFalse(context.containsBean("druidStatViewServlet")));
+    }
+
+    @Test
+    public void enabledStatViewRequiresPassword() {
+        runner.withPropertyValues("spring.datasource.druid.stat-view.enabled=true",
+                "spring.datasource.druid.stat-view.login-password=")
+                .run(context -> assertTrue(context.getStartupFailure() != null));
+
+        runner.withPropertyValues("spring.datasource.druid.stat-view.enabled=true",
+                "spring.datasource.druid.stat-view.login-password=secret")
+                .run(context -> {
+                    ServletRegistrationBean<?> registration = context.getBean("druidStatViewServlet", ServletRegistrationBean.class);
+                    assertEquals("secret", registration.getInitParameters().get("loginPassword"));
+                    assertEquals("admin", registration.getInitParameters().get("loginUsername"));
+                });
+    }
+
+    @Configuration
+    static class Properties {
+        @Bean
+        public DataSourceProperties dataSourceProperties() {
+            DataSourceProperties properties = new DataSourceProperties();
+            properties.setUrl("jdbc:h2:mem:druidConfig");
+            return properties;
+        }
+    }
+}
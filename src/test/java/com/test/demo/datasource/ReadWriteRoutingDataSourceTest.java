@@ -0,0 +1,175 @@
+package com.test.demo.datasource;
+
+import com.test.demo.bloom.UserIdFilter;
+import com.test.demo.cache.UserCache;
+import com.test.demo.dao.UserMapper;
+import com.test.demo.model.User;
+import com.test.demo.service.RedisService;
+import com.test.demo.service.UserService;
+import com.test.demo.support.H2UserDatabase;
+import com.test.demo.support.InMemoryRedis;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 两个 H2 库分别作主库和从库,主库 3 个用户、从库 2 个,根据查到的数据判断语句落在哪个库
+ */
+public class ReadWriteRoutingDataSourceTest {
+    private H2UserDatabase primary;
+    private H2UserDatabase replica;
+    private ReadWriteRoutingDataSource routing;
+    private UserMapper userMapper;
+
+    @Before
+    public void setUp() {
+        primary = new H2UserDatabase("routingPrimary");
+        primary.seed(3);
+        replica = new H2UserDatabase("routingReplica");
+        replica.seed(2);
+        routing = new ReadWriteRoutingDataSource(primary.dataSource(),
+                Collections.singletonList(new ReadWriteRoutingDataSource.Replica("replica-0", replica.dataSource())), 1);
+        userMapper = mapper(routing);
+    }
+
+    @After
+    public void tearDown() {
+        routing.close();
+        primary.close();
+        replica.close();
+    }
+
+    @Test
+    public void readsGoToReplicaAndWritesToPrimary() {
+        assertEquals(2, userMapper.getUserList(null, null, 10).size());
+        assertNull(userMapper.getUserInfo(3L));
+
+        assertEquals(1, userMapper.addUser(user(4L)));
+        assertNotNull(primary.userMapper().getUserInfo(4L));
+        assertNull(replica.userMapper().getUserInfo(4L));
+    }
+
+    @Test
+    public void readsAfterWriteInSameScopeStayOnPrimary() {
+        ReadWriteRouting.Scope previous = ReadWriteRouting.bind(new ReadWriteRouting.Scope());
+        try {
+            assertNull(userMapper.getUserInfo(3L));
+            userMapper.addUser(user(4L));
+            assertNotNull(userMapper.getUserInfo(4L));
+            //提交到线程池的任务沿用同一个 Scope
+            AtomicReference<User> fromPool = new AtomicReference<>();
+            Thread thread = new Thread(ReadWriteRouting.propagate(() -> fromPool.set(userMapper.getUserInfo(3L))));
+            thread.start();
+            thread.join();
+            assertNotNull(fromPool.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            ReadWriteRouting.restore(previous);
+        }
+        //新的请求重新读从库
+        assertNull(userMapper.getUserInfo(4L));
+    }
+
+    @Test
+    public void transactionsUsePrimary() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(routing));
+        User found = transactionTemplate.execute(status -> userMapper.getUserInfo(3L));
+        assertNotNull(found);
+    }
+
+    @Test
+    public void explicitCredentialsUsePrimary() throws SQLException {
+        try (Connection connection = routing.getConnection("sa", "");
+             ResultSet resultSet = connection.createStatement().executeQuery("SELECT COUNT(*) FROM user")) {
+            assertTrue(resultSet.next());
+            assertEquals(3, resultSet.getInt(1));
+        }
+    }
+
+    @Test
+    public void laggingReplicaDoesNotPopulateCache() {
+        InMemoryRedis redis = new InMemoryRedis();
+        RedisService redisService = new RedisService();
+        redisService.setRedisTemplate(redis.template());
+        UserCache userCache = new UserCache();
+        ReflectionTestUtils.setField(userCache, "redisTemplate", redis.template());
+        ReflectionTestUtils.setField(userCache, "valueOperations", redis.valueOperations());
+        ReflectionTestUtils.setField(userCache, "redisService", redisService);
+        ReflectionTestUtils.setField(userCache, "nearMaximumSize", 100L);
+        ReflectionTestUtils.setField(userCache, "invalidationTopic", "user:cache:invalidate");
+        userCache.init();
+        UserService userService = new UserService();
+        ReflectionTestUtils.setField(userService, "userMapper", userMapper);
+        ReflectionTestUtils.setField(userService, "userCache", userCache);
+        ReflectionTestUtils.setField(userService, "userIdFilter", new UserIdFilter());
+        ReflectionTestUtils.setField(userService, "maxPageSize", 100);
+
+        //主库已改名、新增了用户 3,从库还没同步
+        User renamed = user(2L);
+        renamed.setUserName("renamed");
+        primary.userMapper().upUser(renamed);
+        assertEquals("user0002", userMapper.getUserInfo(2L).getUserName());
+
+        assertEquals("renamed", userService.getUserInfo(2L).getUserName());
+        assertEquals("renamed", ((User) redis.valueOperations().get(UserCache.KEY_PREFIX + 2)).getUserName());
+        assertNotNull(userService.getUserInfo(3L));
+        assertEquals(3, userService.getUserInfoList(Arrays.asList(1L, 2L, 3L)).size());
+        assertEquals("renamed", ((User) redis.valueOperations().get(UserCache.KEY_PREFIX + 2)).getUserName());
+    }
+
+    @Test
+    public void unreachableReplicaFallsBackToPrimary() {
+        PooledDataSource down = new PooledDataSource("org.h2.Driver", "jdbc:h2:tcp://127.0.0.1:1/none", "sa", "");
+        ReadWriteRoutingDataSource.Replica broken = new ReadWriteRoutingDataSource.Replica("replica-down", down);
+        ReadWriteRoutingDataSource.Replica healthy = new ReadWriteRoutingDataSource.Replica("replica-0", replica.dataSource());
+        ReadWriteRoutingDataSource withBroken = new ReadWriteRoutingDataSource(primary.dataSource(), Arrays.asList(broken, healthy), 1);
+        UserMapper mapper = mapper(withBroken);
+
+        //轮到坏从库时摘除并改用下一个从库
+        for (int i = 0; i < 4; i++) {
+            assertEquals(2, mapper.getUserList(null, null, 10).size());
+        }
+        assertFalse(broken.isHealthy());
+        assertTrue(healthy.isHealthy());
+
+        ReadWriteRoutingDataSource primaryOnly = new ReadWriteRoutingDataSource(primary.dataSource(),
+                Collections.singletonList(new ReadWriteRoutingDataSource.Replica("replica-down", down)), 1);
+        primaryOnly.checkHealth();
+        assertFalse(primaryOnly.getReplicas().get(0).isHealthy());
+        assertEquals(3, mapper(primaryOnly).getUserList(null, null, 10).size());
+    }
+
+    private static UserMapper mapper(ReadWriteRoutingDataSource dataSource) {
+        SqlSessionFactory factory = H2UserDatabase.sqlSessionFactory("routing", dataSource);
+        factory.getConfiguration().addInterceptor(new ReadWriteRoutingInterceptor());
+        return new SqlSessionTemplate(factory).getMapper(UserMapper.class);
+    }
+
+    private static User user(long userId) {
+        User user = new User();
+        user.setUserId(userId);
+        user.setUserName("user" + userId);
+        user.setLoginPassword("secret");
+        return user;
+    }
+}
@@ -0,0 +1,94 @@
+package com.test.demo.etag;
+
+import com.test.demo.id.SnowflakeIdGenerator;
+import com.test.demo.service.RedisService;
+import com.test.demo.support.InMemoryRedis;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ConditionalGetTest {
+    private InMemoryRedis redis;
+    private UserVersions versions;
+    private SimpleMeterRegistry meterRegistry;
+    private ConditionalGet conditionalGet;
+
+    @Before
+    public void setUp() {
+        redis = new InMemoryRedis();
+        RedisService redisService = new RedisService();
+        redisService.setRedisTemplate(redis.template());
+        versions = new UserVersions();
+        ReflectionTestUtils.setField(versions, "redisService", redisService);
+        ReflectionTestUtils.setField(versions, "valueOperations", redis.valueOperations());
+        ReflectionTestUtils.setField(versions, "idGenerator", new SnowflakeIdGenerator(() -> 1, 1000));
+        ReflectionTestUtils.setField(versions, "ttlSeconds", 60L);
+
+        HttpCacheProperties properties = new HttpCacheProperties();
+        properties.getCacheControl().put("/getUserInfo", "private, no-cache");
+        meterRegistry = new SimpleMeterRegistry();
+        conditionalGet = new ConditionalGet();
+        ReflectionTestUtils.setField(conditionalGet, "userVersions", versions);
+        ReflectionTestUtils.setField(conditionalGet, "properties", properties);
+        ReflectionTestUtils.setField(conditionalGet, "meterRegistry", meterRegistry);
+    }
+
+    @Test
+    public void matchingETagIsAnsweredWithoutLoadingTheBody() {
+        AtomicInteger loads = new AtomicInteger();
+        String etag = conditionalGet.userETag(1L);
+        assertNotNull(etag);
+
+        ResponseEntity<String> first = conditionalGet.respond("/getUserInfo", etag, null, () -> "user" + loads.incrementAndGet());
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        assertEquals(etag, first.getHeaders().getETag());
+        assertEquals("private, no-cache", first.getHeaders().getCacheControl());
+
+        String revalidated = conditionalGet.userETag(1L);
+        assertEquals(etag, revalidated);
+        ResponseEntity<String> second = conditionalGet.respond("/getUserInfo", revalidated, "W/" + etag, () -> "user" + loads.incrementAndGet());
+        assertEquals(HttpStatus.NOT_MODIFIED, second.getStatusCode());
+        assertNull(second.getBody());
+        assertEquals(1, loads.get());
+
+        assertEquals(1.0, meterRegistry.get("user.http.etag.requests").tag("result", "not-modified").counter().count(), 0);
+        assertEquals(1.0, meterRegistry.get("user.http.etag.requests").tag("result", "unconditional").counter().count(), 0);
+    }
+
+    @Test
+    public void changesInvalidateUserAndListETags() {
+        String user1 = conditionalGet.userETag(1L);
+        String user2 = conditionalGet.userETag(2L);
+        String list = conditionalGet.listETag();
+        String both = conditionalGet.usersETag(Arrays.asList(1L, 2L));
+
+        versions.bump(Collections.singletonList(1L));
+
+        assertNotEquals(user1, conditionalGet.userETag(1L));
+        assertEquals(user2, conditionalGet.userETag(2L));
+        assertNotEquals(list, conditionalGet.listETag());
+        assertNotEquals(both, conditionalGet.usersETag(Arrays.asList(1L, 2L)));
+        assertEquals(HttpStatus.OK, conditionalGet.respond("/getUserList", conditionalGet.listETag(), list, () -> "page").getStatusCode());
+    }
+
+    @Test
+    public void lostVersionsNeverRevalidateOldETags() {
+        String before = conditionalGet.userETag(1L);
+        redis.template().delete(UserVersions.KEY_PREFIX + 1);
+
+        assertNotEquals(before, conditionalGet.userETag(1L));
+        assertNotEquals(before, conditionalGet.usersETag(Collections.singletonList(1L)));
+    }
+}
@@ -0,0 +1,147 @@
+package com.test.demo.export;
+
+import com.test.demo.model.User;
+import com.test.demo.model.UserField;
+import com.test.demo.shard.UserShard;
+import com.test.demo.shard.UserShards;
+import com.test.demo.support.H2UserDatabase;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 各格式的编码、列式文件跨行组的读写往返,以及按区间并行导出到目录
+ */
+public class UserExportTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void csvAndNdjsonEscapeValues() throws IOException {
+        //缓冲区只有 1KB,长名字会跨越多次刷新
+        BufferPool pool = new BufferPool(1024, 1);
+        String longName = String.join("", Collections.nCopies(600, "名"));
+        List<User> users = Arrays.asList(user(1, "a,b", "male"), user(2, "say \"hi\"\nbye", null), user(3, longName, " x"));
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        try (UserRowWriter writer = new CsvUserWriter(Channels.newChannel(csv), pool, 100, UserField.ALL)) {
+            for (User user : users) {
+                writer.write(user);
+            }
+        }
+        assertEquals("user_id,user_name,user_sex\r\n1,\"a,b\",male\r\n2,\"say \"\"hi\"\"\nbye\",\r\n3," + longName + ",\" x\"\r\n",
+                new String(csv.toByteArray(), StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        try (UserRowWriter writer = new NdjsonUserWriter(Channels.newChannel(ndjson), pool, 100, UserField.parse("userSex"))) {
+            writer.write(users.get(1));
+            writer.write(user(4, null, "a\\b\u0001"));
+        }
+        assertEquals("{\"userId\":\"2\",\"userSex\":null}\n{\"userId\":\"4\",\"userSex\":\"a\\\\b\\u0001\"}\n",
+                new String(ndjson.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(1, pool.available());
+    }
+
+    @Test
+    public void columnarRoundTripsAcrossRowGroups() throws IOException {
+        List<User> users = new ArrayList<>();
+        for (int i = 1; i <= 2500; i++) {
+            //user_sex 只有两个值走字典,user_name 各不相同走逐行编码;user_id 有跳跃
+            users.add(user(i * 7L, i % 100 == 0 ? null : "用户" + i, i % 3 == 0 ? "female" : "male"));
+        }
+        Path file = folder.getRoot().toPath().resolve("users.ucol");
+        try (SeekableByteChannel channel = Files.newByteChannel(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE);
+             UserRowWriter writer = new ColumnarUserWriter(channel, new BufferPool(1024, 1), 100, UserField.ALL, 1000, 1)) {
+            for (User user : users) {
+                writer.write(user);
+            }
+        }
+
+        List<User> read = new ArrayList<>();
+        try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+            assertEquals(2500, ColumnarUserReader.read(channel, read::add));
+        }
+        for (int i = 0; i < users.size(); i++) {
+            assertEquals(users.get(i).getUserId(), read.get(i).getUserId());
+            assertEquals(users.get(i).getUserName(), read.get(i).getUserName());
+            assertEquals(users.get(i).getUserSex(), read.get(i).getUserSex());
+            assertNull(read.get(i).getLoginPassword());
+        }
+    }
+
+    @Test
+    public void exportsRangesInParallelToDirectory() throws IOException {
+        H2UserDatabase db = new H2UserDatabase("export");
+        try {
+            db.seed(1000);
+            UserExportService service = new UserExportService();
+            service.userShards = new UserShards(Collections.singletonList(new UserShard(0, db.sqlSessionFactory(),
+                    new TransactionTemplate(new DataSourceTransactionManager(db.dataSource())))), 0);
+            UserExportProperties properties = new UserExportProperties();
+            properties.setBufferKb(4);
+            properties.setParallelism(3);
+            properties.setRangesPerShard(5);
+            ReflectionTestUtils.setField(service, "properties", properties);
+            ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+            service.init();
+
+            Path dir = folder.getRoot().toPath().resolve("nightly");
+            assertEquals(1000, service.exportToDirectory(UserExportFormat.CSV, UserField.parse(""), dir));
+
+            List<Path> files;
+            try (Stream<Path> list = Files.list(dir)) {
+                files = list.sorted().collect(Collectors.toList());
+            }
+            assertEquals(5, files.size());
+            TreeSet<Long> ids = new TreeSet<>();
+            for (Path file : files) {
+                assertTrue(file.getFileName().toString().matches("users-0-\\d\\.csv"));
+                List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+                assertEquals("user_id,user_name,user_sex", lines.get(0));
+                for (String line : lines.subList(1, lines.size())) {
+                    assertTrue(ids.add(Long.parseLong(line.substring(0, line.indexOf(',')))));
+                }
+            }
+            assertEquals(1000, ids.size());
+            assertEquals(1L, (long) ids.first());
+            assertEquals(1000L, (long) ids.last());
+            assertEquals(16, service.getBufferPool().available());
+        } finally {
+            db.close();
+        }
+    }
+
+    private static User user(long userId, String userName, String userSex) {
+        User user = new User();
+        user.setUserId(userId);
+        user.setUserName(userName);
+        user.setUserSex(userSex);
+        user.setLoginPassword("secret");
+        return user;
+    }
+}
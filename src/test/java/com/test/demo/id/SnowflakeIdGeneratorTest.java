@@ -0,0 +1,98 @@
+package com.test.demo.id;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SnowflakeIdGeneratorTest {
+    private static final long NOW = SnowflakeIdGenerator.EPOCH + 86400000L;
+
+    @Test
+    public void idsAreUniqueAndIncreasingAcrossThreads() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(() -> 7, 1000);
+        int threads = 8;
+        int perThread = 20000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit((Callable<long[]>) () -> {
+                long[] ids = new long[perThread];
+                for (int i = 0; i < perThread; i++) {
+                    ids[i] = generator.nextId();
+                }
+                return ids;
+            }));
+        }
+        Set<Long> all = new HashSet<>();
+        for (Future<long[]> future : futures) {
+            long[] ids = future.get();
+            for (int i = 0; i < ids.length; i++) {
+                assertTrue(i == 0 || ids[i] > ids[i - 1]);
+                assertEquals(7, SnowflakeIdGenerator.workerOf(ids[i]));
+                all.add(ids[i]);
+            }
+        }
+        pool.shutdown();
+        assertEquals(threads * perThread, all.size());
+    }
+
+    @Test
+    public void sequenceOverflowAndSmallClockRollbackKeepIdsIncreasing() {
+        AtomicLong clock = new AtomicLong(NOW);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(() -> 1, 5, clock::get);
+
+        long previous = 0;
+        for (int i = 0; i < 4096 * 3; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            previous = id;
+        }
+        //同一毫秒发了 3 批序号,借用了后面两毫秒
+        assertEquals(NOW + 2, SnowflakeIdGenerator.timestampOf(previous));
+
+        clock.set(NOW - 2);
+        assertTrue(generator.nextId() > previous);
+    }
+
+    @Test
+    public void largeClockRollbackIsRejected() {
+        AtomicLong clock = new AtomicLong(NOW);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(() -> 1, 5, clock::get);
+        generator.nextId();
+
+        clock.set(NOW - 1000);
+        try {
+            generator.nextId();
+            fail("expected the clock rollback to be rejected");
+        } catch (IllegalStateException expected) {
+        }
+        clock.set(NOW + 1);
+        assertEquals(NOW + 1, SnowflakeIdGenerator.timestampOf(generator.nextId()));
+    }
+
+    @Test
+    public void idsAreRefusedWithoutWorkerLease() {
+        AtomicInteger worker = new AtomicInteger(-1);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(worker::get, 5, () -> NOW);
+        try {
+            generator.nextId();
+            fail("expected no id without a worker lease");
+        } catch (IllegalStateException expected) {
+        }
+        worker.set(3);
+        assertEquals(3, SnowflakeIdGenerator.workerOf(generator.nextId()));
+    }
+}
@@ -0,0 +1,75 @@
+package com.test.demo.metrics;
+
+import com.test.demo.dao.UserMapper;
+import com.test.demo.model.User;
+import com.test.demo.support.H2UserDatabase;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+public class MybatisMetricsInterceptorTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private H2UserDatabase database;
+    private UserMapper userMapper;
+
+    @Before
+    public void setUp() {
+        database = new H2UserDatabase("mybatisMetrics");
+        database.seed(20);
+        database.sqlSessionFactory().getConfiguration().addInterceptor(new MybatisMetricsInterceptor(registry));
+        userMapper = database.userMapper();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void recordsTimeAndRowsPerStatement() {
+        userMapper.getUserList(null, null, 10);
+        userMapper.getUserList(null, 15L, 10);
+        userMapper.getUserInfo(3L);
+
+        Timer list = registry.get("mybatis.statement").tag("statement", "UserMapper.getUserList").tag("exception", "None").timer();
+        assertEquals(2, list.count());
+        DistributionSummary listRows = registry.get("mybatis.statement.rows").tag("statement", "UserMapper.getUserList").summary();
+        assertEquals(15, listRows.totalAmount(), 0);
+        assertEquals(1, registry.get("mybatis.statement").tag("statement", "UserMapper.getUserInfo").timer().count());
+    }
+
+    @Test
+    public void recordsAffectedRowsAndFailures() {
+        User user = new User();
+        user.setUserId(21L);
+        user.setUserName("user0021");
+        assertEquals(1, userMapper.addUser(user));
+        assertEquals(1, userMapper.delUser(21L));
+        Throwable cause = null;
+        try {
+            userMapper.addUser(database.userMapper().getUserInfo(1L));
+            fail("duplicate key expected");
+        } catch (RuntimeException expected) {
+            //主键冲突,指标上记录的是执行器抛出的驱动异常,而不是外层包装
+            cause = expected;
+            while (cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+        }
+
+        DistributionSummary insertRows = registry.get("mybatis.statement.rows").tag("statement", "UserMapper.addUser").summary();
+        assertEquals(1, insertRows.count());
+        assertEquals(1, registry.get("mybatis.statement.rows").tag("command", "delete").summary().totalAmount(), 0);
+        Timer failed = registry.find("mybatis.statement").tag("statement", "UserMapper.addUser")
+                .tag("exception", cause.getClass().getSimpleName()).timer();
+        assertNotNull(failed);
+        assertEquals(1, failed.count());
+    }
+}
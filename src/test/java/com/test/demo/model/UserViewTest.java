@@ -0,0 +1,71 @@
+package com.test.demo.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.test.demo.support.H2UserDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class UserViewTest {
+    private H2UserDatabase db;
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Before
+    public void setUp() {
+        db = new H2UserDatabase("view");
+        db.seed(5);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void onlySelectedColumnsAreReadAndWritten() throws Exception {
+        List<UserView> views = db.userMapper().getUserViewList(null, 2L, 2, UserField.parse("userName"));
+
+        assertEquals(2, views.size());
+        assertEquals(3, views.get(0).getUserId());
+        assertEquals("user0003", views.get(0).getUserName());
+        assertNull(views.get(0).getUserSex());
+        assertEquals("[{\"userId\":\"3\",\"userName\":\"user0003\"},{\"userId\":\"4\",\"userName\":\"user0004\"}]",
+                objectMapper.writeValueAsString(views));
+    }
+
+    @Test
+    public void binaryFormatsCarryTheSameFields() throws Exception {
+        List<UserView> views = db.userMapper().getUserViewList(null, null, 3, UserField.ALL);
+        JsonNode json = objectMapper.readTree(objectMapper.writeValueAsBytes(views));
+        for (ObjectMapper binary : new ObjectMapper[]{Jackson2ObjectMapperBuilder.cbor().build(), Jackson2ObjectMapperBuilder.smile().build()}) {
+            byte[] encoded = binary.writeValueAsBytes(views);
+            assertEquals(json, binary.readTree(encoded));
+        }
+    }
+
+    @Test
+    public void allPublicFieldsByDefaultAndNeverThePassword() throws Exception {
+        UserView view = db.userMapper().getUserViewList(null, null, 1, UserField.parse(null)).get(0);
+        assertEquals("{\"userId\":\"1\",\"userName\":\"user0001\",\"userSex\":\"male\"}",
+                objectMapper.writeValueAsString(view));
+
+        String detail = objectMapper.writeValueAsString(UserView.of(db.userMapper().getUserInfo(2L), UserField.ALL));
+        assertFalse(detail.contains("loginPassword"));
+        assertEquals(EnumSet.of(UserField.USER_ID, UserField.USER_SEX), UserField.parse(" userSex, "));
+        try {
+            UserField.parse("userName,loginPassword");
+            fail("expected loginPassword to be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
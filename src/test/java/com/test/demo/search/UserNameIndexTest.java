@@ -0,0 +1,65 @@
+package com.test.demo.search;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class UserNameIndexTest {
+    private UserNameIndex index;
+
+    @Before
+    public void setUp() {
+        index = new UserNameIndex();
+        index.put(1, "Alice");
+        index.put(2, "Alicia");
+        index.put(3, "Malice");
+        index.put(4, "Bob");
+        index.put(5, "Alexander");
+    }
+
+    @Test
+    public void exactThenPrefixThenSubstring() {
+        assertArrayEquals(new long[]{1, 2, 3}, index.search("ali", 10));
+        //有精确/子串结果时不再做模糊匹配,alicia 不出现
+        assertArrayEquals(new long[]{1, 3}, index.search("alice", 10));
+        assertArrayEquals(new long[]{1, 2, 5}, index.search("a", 10));
+        assertArrayEquals(new long[]{4}, index.search("BO", 10));
+    }
+
+    @Test
+    public void typosMatchWholeNameOrPrefix() {
+        //相邻字符交换算 2 次编辑,5 个字符的查询只允许 1 次
+        assertArrayEquals(new long[0], index.search("alcie", 10));
+        assertArrayEquals(new long[]{1}, index.search("alixe", 10));
+        assertArrayEquals(new long[]{5}, index.search("alexnder", 10));
+        assertArrayEquals(new long[]{5}, index.search("alexandre", 10));
+    }
+
+    @Test
+    public void limitKeepsBestResults() {
+        assertArrayEquals(new long[]{1}, index.search("ali", 1));
+    }
+
+    @Test
+    public void updatesReplaceAndRemoveNames() {
+        index.put(4, "Alison");
+        index.remove(1);
+        assertArrayEquals(new long[]{2, 4, 3}, index.search("ali", 10));
+        assertArrayEquals(new long[0], index.search("bob", 10));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void compactionKeepsLiveDocuments() {
+        for (int round = 0; round < 3; round++) {
+            for (int id = 100; id < 2100; id++) {
+                index.put(id, "user" + id + "-" + round);
+            }
+        }
+        assertEquals(2005, index.size());
+        assertEquals(1500, index.search("user1500-2", 10)[0]);
+        assertArrayEquals(new long[]{1}, index.search("alice", 1));
+    }
+}
@@ -0,0 +1,146 @@
+package com.test.demo.service;
+
+import com.test.demo.auth.PasswordHasher;
+import com.test.demo.auth.SessionTokenService;
+import com.test.demo.bloom.UserIdFilter;
+import com.test.demo.cache.UserCache;
+import com.test.demo.dao.UserMapper;
+import com.test.demo.model.LoginResult;
+import com.test.demo.etag.UserVersions;
+import com.test.demo.id.SnowflakeIdGenerator;
+import com.test.demo.model.User;
+import com.test.demo.model.UserChange;
+import com.test.demo.shard.UserShard;
+import com.test.demo.shard.UserShards;
+import com.test.demo.support.H2UserDatabase;
+import com.test.demo.support.InMemoryRedis;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 登录流程: 明文密码登录后升级为哈希,令牌可以解析回 userId,注销后失效
+ */
+public class LoginServiceTest {
+    private static final Executor DIRECT = Runnable::run;
+
+    private H2UserDatabase database;
+    private UserMapper userMapper;
+    private SessionTokenService sessionTokenService;
+    private LoginService loginService;
+
+    @Before
+    public void setUp() {
+        database = new H2UserDatabase("loginTest");
+        database.seed(3);
+        userMapper = database.userMapper();
+
+        InMemoryRedis redis = new InMemoryRedis();
+        RedisService redisService = new RedisService();
+        redisService.setRedisTemplate(redis.template());
+        sessionTokenService = new SessionTokenService(redisService, 1800, 60, 30, 100);
+
+        UserCache userCache = new UserCache();
+        ReflectionTestUtils.setField(userCache, "redisTemplate", redis.template());
+        ReflectionTestUtils.setField(userCache, "valueOperations", redis.valueOperations());
+        ReflectionTestUtils.setField(userCache, "redisService", redisService);
+        ReflectionTestUtils.setField(userCache, "nearMaximumSize", 100L);
+        ReflectionTestUtils.setField(userCache, "invalidationTopic", "user:cache:invalidate");
+        userCache.init();
+
+        //cost 4 只为测试快,校验逻辑与线上一致
+        PasswordHasher passwordHasher = new PasswordHasher(4, DIRECT, 1);
+        UserVersions userVersions = new UserVersions();
+        ReflectionTestUtils.setField(userVersions, "redisService", redisService);
+        ReflectionTestUtils.setField(userVersions, "valueOperations", redis.valueOperations());
+        ReflectionTestUtils.setField(userVersions, "idGenerator", new SnowflakeIdGenerator(() -> 1, 1000));
+        ReflectionTestUtils.setField(userVersions, "ttlSeconds", 60L);
+
+        UserService userService = new UserService();
+        userService.userMapper = userMapper;
+        userService.userCache = userCache;
+        userService.passwordHasher = passwordHasher;
+        userService.userSearchService = new UserSearchService();
+        userService.userShards = new UserShards(Collections.singletonList(new UserShard(0, database.sqlSessionFactory(),
+                new TransactionTemplate(new DataSourceTransactionManager(database.dataSource())))), 0);
+        userService.userVersions = userVersions;
+        userService.userIdFilter = new UserIdFilter();
+
+        loginService = new LoginService();
+        ReflectionTestUtils.setField(loginService, "userMapper", userMapper);
+        ReflectionTestUtils.setField(loginService, "userService", userService);
+        ReflectionTestUtils.setField(loginService, "passwordHasher", passwordHasher);
+        ReflectionTestUtils.setField(loginService, "sessionTokenService", sessionTokenService);
+        ReflectionTestUtils.setField(loginService, "userDbExecutor", DIRECT);
+        ReflectionTestUtils.setField(loginService, "meterRegistry", new SimpleMeterRegistry());
+        loginService.init();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void plaintextPasswordIsUpgradedOnLogin() {
+        User legacy = new User();
+        legacy.setUserId(2L);
+        legacy.setLoginPassword("secret");
+        userMapper.upUser(legacy);
+
+        LoginResult result = loginService.login("user0002", "secret").join();
+        assertNotNull(result);
+        assertEquals(2L, result.getUserId());
+        String stored = userMapper.getUserInfo(2L).getLoginPassword();
+        assertTrue(PasswordHasher.isHashed(stored));
+        //升级与其它修改一样记发件箱,由 relay 通知其它节点失效缓存
+        List<UserChange> changes = database.outboxMapper().getPendingChanges(10);
+        assertEquals(1, changes.size());
+        assertEquals(2L, changes.get(0).getUserId());
+
+        //升级后用哈希校验,同一个密码仍能登录,哈希不会再变
+        assertNotNull(loginService.login("user0002", "secret").join());
+        assertEquals(stored, userMapper.getUserInfo(2L).getLoginPassword());
+    }
+
+    @Test
+    public void wrongPasswordOrUnknownUserIsRejected() {
+        User legacy = new User();
+        legacy.setUserId(1L);
+        legacy.setLoginPassword("secret");
+        userMapper.upUser(legacy);
+
+        assertNull(loginService.login("user0001", "wrong").join());
+        assertNull(loginService.login("nobody", "secret").join());
+        assertEquals("secret", userMapper.getUserInfo(1L).getLoginPassword());
+    }
+
+    @Test
+    public void tokenResolvesUntilLogout() {
+        User legacy = new User();
+        legacy.setUserId(3L);
+        legacy.setLoginPassword("secret");
+        userMapper.upUser(legacy);
+
+        String token = loginService.login("user0003", "secret").join().getToken();
+        assertEquals(Long.valueOf(3), sessionTokenService.resolve(token));
+        assertNotEquals(token, loginService.login("user0003", "secret").join().getToken());
+
+        loginService.logout(token);
+        assertNull(sessionTokenService.resolve(token));
+    }
+}
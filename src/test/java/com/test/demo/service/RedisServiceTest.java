@@ -0,0 +1,28 @@
+package com.test.demo.service;
+
+import com.test.demo.support.InMemoryRedis;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 写入并设置过期的脚本按批调用,大集合不会超过 Lua unpack 的参数上限
+ */
+public class RedisServiceTest {
+
+    @Test
+    public void largeSetIsWrittenInChunks() {
+        InMemoryRedis redis = new InMemoryRedis();
+        RedisService redisService = new RedisService();
+        redisService.setRedisTemplate(redis.template());
+
+        Object[] values = new Object[20000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = "member" + i;
+        }
+        assertEquals(20000L, redisService.sSetAndTime("big:set", 60, values));
+        assertEquals(20000, redis.setSize("big:set"));
+        //已有的成员不再计数
+        assertEquals(1L, redisService.sSetAndTime("big:set", 60, "member0", "member20000"));
+    }
+}
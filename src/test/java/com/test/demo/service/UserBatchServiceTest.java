@@ -0,0 +1,192 @@
+package com.test.demo.service;
+
+import com.test.demo.auth.PasswordHasher;
+import com.test.demo.bloom.UserIdFilter;
+import com.test.demo.cache.UserCache;
+import com.test.demo.etag.UserVersions;
+import com.test.demo.id.SnowflakeIdGenerator;
+import com.test.demo.model.BatchRowResult;
+import com.test.demo.model.User;
+import com.test.demo.model.UserChange;
+import com.test.demo.shard.UserShard;
+import com.test.demo.shard.UserShards;
+import com.test.demo.support.H2UserDatabase;
+import com.test.demo.support.InMemoryRedis;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 批量添加: 客户端不传(或乱传)user_id 时,每行都由服务端分配各自的 id,写入各自的一行
+ * 批量修改、删除: 迁移期间还没搬走的用户在旧分片上被修改、删除,新分片上的行不受影响
+ */
+public class UserBatchServiceTest {
+    private H2UserDatabase db;
+    private UserBatchService batchService;
+
+    @Before
+    public void setUp() {
+        db = new H2UserDatabase("batchAdd");
+        batchService = batchService(new UserShards(Collections.singletonList(shard(0, db)), 0));
+    }
+
+    private static UserShard shard(int index, H2UserDatabase database) {
+        return new UserShard(index, database.sqlSessionFactory(),
+                new TransactionTemplate(new DataSourceTransactionManager(database.dataSource())));
+    }
+
+    private static UserBatchService batchService(UserShards userShards) {
+        InMemoryRedis redis = new InMemoryRedis();
+
+        RedisService redisService = new RedisService();
+        redisService.setRedisTemplate(redis.template());
+        UserCache userCache = new UserCache();
+        ReflectionTestUtils.setField(userCache, "redisTemplate", redis.template());
+        ReflectionTestUtils.setField(userCache, "valueOperations", redis.valueOperations());
+        ReflectionTestUtils.setField(userCache, "redisService", redisService);
+        ReflectionTestUtils.setField(userCache, "nearMaximumSize", 100L);
+        ReflectionTestUtils.setField(userCache, "invalidationTopic", "user:cache:invalidate");
+        userCache.init();
+
+        SnowflakeIdGenerator idGenerator = new SnowflakeIdGenerator(() -> 1, 1000);
+        UserVersions versions = new UserVersions();
+        ReflectionTestUtils.setField(versions, "redisService", redisService);
+        ReflectionTestUtils.setField(versions, "valueOperations", redis.valueOperations());
+        ReflectionTestUtils.setField(versions, "idGenerator", idGenerator);
+        ReflectionTestUtils.setField(versions, "ttlSeconds", 60L);
+
+        UserBatchService batchService = new UserBatchService();
+        batchService.userCache = userCache;
+        batchService.userVersions = versions;
+        //cost 4 只为测试快
+        batchService.passwordHasher = new PasswordHasher(4, Runnable::run, 1);
+        batchService.userSearchService = new UserSearchService();
+        batchService.userShards = userShards;
+        batchService.userIdFilter = new UserIdFilter();
+        batchService.idGenerator = idGenerator;
+        ReflectionTestUtils.setField(batchService, "chunkSize", 2);
+        return batchService;
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void rowsWithoutIdEachGetTheirOwnRow() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            User user = new User();
+            user.setUserName("batch" + i);
+            user.setLoginPassword("pw" + i);
+            user.setUserSex("male");
+            //第二行带了客户端自己的 id,同样被忽略
+            if (i == 1) {
+                user.setUserId(1L);
+            }
+            users.add(user);
+        }
+
+        List<BatchRowResult> results = batchService.addUsers(users);
+
+        assertEquals(5, results.size());
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < results.size(); i++) {
+            BatchRowResult result = results.get(i);
+            assertEquals(i, result.getIndex());
+            assertEquals(BatchRowResult.OK, result.getStatus());
+            assertNotEquals(0L, result.getUserId());
+            assertNotEquals(1L, result.getUserId());
+            assertTrue(ids.add(result.getUserId()));
+            User saved = db.userMapper().getUserInfo(result.getUserId());
+            assertEquals("batch" + i, saved.getUserName());
+        }
+        assertEquals(5, db.userMapper().getUserIdRange(null).getUserCount());
+    }
+
+    @Test
+    public void preHashedPasswordsAreStoredAsIs() {
+        String hash = "$2a$10$N9qo8uLOickgx2ZMRZoMyeIjZAgcfl7p92ldGxad68LJZdL17lhWy";
+        User user = new User();
+        user.setUserName("imported");
+        user.setLoginPassword(hash);
+
+        BatchRowResult result = batchService.addUsers(Collections.singletonList(user)).get(0);
+
+        assertEquals(BatchRowResult.OK, result.getStatus());
+        assertEquals(hash, db.userMapper().getUserInfo(result.getUserId()).getLoginPassword());
+    }
+
+    @Test
+    public void batchUpdateAndDeleteFindUsersNotYetMigrated() {
+        db.seed(20);
+        H2UserDatabase target = new H2UserDatabase("batchTarget");
+        try {
+            //从 1 个分片扩到 2 个,还没开始搬运: 所有用户都还在旧分片上,一部分的新位置是 target
+            UserShards migrating = new UserShards(Arrays.asList(shard(0, db), shard(1, target)), 1);
+            UserBatchService service = batchService(migrating);
+            ReflectionTestUtils.setField(service, "chunkSize", 7);
+            Long moved = null;
+            List<User> renames = new ArrayList<>();
+            List<Long> userIds = new ArrayList<>();
+            for (long userId = 1; userId <= 20; userId++) {
+                if (moved == null && migrating.previousLocation(userId) != null) {
+                    moved = userId;
+                }
+                User user = new User();
+                user.setUserId(userId);
+                user.setUserName("renamed" + userId);
+                renames.add(user);
+                userIds.add(userId);
+            }
+            assertNotNull(moved);
+            //其中一个已经搬到新位置,旧位置上没命中后要再去新位置修改、删除
+            migrating.locate(moved).getReshardMapper().copyUsers(Collections.singletonList(db.userMapper().getUserInfo(moved)));
+            db.userMapper().delUser(moved);
+
+            for (BatchRowResult result : service.upUsers(renames)) {
+                assertEquals(BatchRowResult.OK, result.getStatus());
+                H2UserDatabase holder = result.getUserId() == moved ? target : db;
+                assertEquals("renamed" + result.getUserId(), holder.userMapper().getUserInfo(result.getUserId()).getUserName());
+            }
+            assertEquals(1, target.userMapper().getUserIdRange(null).getUserCount());
+
+            userIds.add(21L);
+            List<BatchRowResult> deleted = service.delUsers(userIds);
+            for (int i = 0; i < 20; i++) {
+                assertEquals(BatchRowResult.OK, deleted.get(i).getStatus());
+            }
+            assertEquals(BatchRowResult.NOT_FOUND, deleted.get(20).getStatus());
+            assertEquals(0, db.userMapper().getUserIdRange(null).getUserCount());
+            assertEquals(0, target.userMapper().getUserIdRange(null).getUserCount());
+            //删除与发件箱记录在旧分片的同一个事务里
+            Set<Long> deletes = new HashSet<>();
+            for (UserChange change : db.outboxMapper().getPendingChanges(100)) {
+                if (UserChange.DELETE.equals(change.getOp())) {
+                    deletes.add(change.getUserId());
+                }
+            }
+            Set<Long> onPrevious = new HashSet<>(userIds.subList(0, 20));
+            onPrevious.remove(moved);
+            assertTrue(deletes.containsAll(onPrevious));
+        } finally {
+            target.close();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.test.demo.shard;
+
+import com.test.demo.model.User;
+import com.test.demo.support.H2UserDatabase;
+import org.apache.ibatis.cursor.Cursor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 三个 H2 库作分片: 先用前两个写入 30 个用户,再扩到三个分片并在线迁移
+ */
+public class ShardedUserMapperTest {
+    private static final int USERS = 30;
+
+    private H2UserDatabase[] databases;
+    private List<UserShard> shards;
+
+    @Before
+    public void setUp() {
+        databases = new H2UserDatabase[3];
+        shards = new ArrayList<>();
+        for (int i = 0; i < databases.length; i++) {
+            databases[i] = new H2UserDatabase("shard" + i);
+            shards.add(new UserShard(i, databases[i].sqlSessionFactory(),
+                    new TransactionTemplate(new DataSourceTransactionManager(databases[i].dataSource()))));
+        }
+        ShardedUserMapper twoShards = mapper(new UserShards(shards.subList(0, 2), 0));
+        for (int i = 1; i <= USERS; i++) {
+            twoShards.addUser(user(i));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (H2UserDatabase database : databases) {
+            database.close();
+        }
+    }
+
+    @Test
+    public void usersAreStoredOnTheirHashedShard() {
+        for (long i = 1; i <= USERS; i++) {
+            int bucket = JumpConsistentHash.bucket(i, 2);
+            assertNotNull(databases[bucket].userMapper().getUserInfo(i));
+            assertNull(databases[1 - bucket].userMapper().getUserInfo(i));
+        }
+    }
+
+    @Test
+    public void listsAreMergedInUserIdOrder() throws IOException {
+        ShardedUserMapper mapper = mapper(new UserShards(shards.subList(0, 2), 0));
+
+        assertEquals(range(1, 10), userIds(mapper.getUserList(null, null, 10)));
+        assertEquals(range(11, 20), userIds(mapper.getUserList(null, 10L, 10)));
+        assertEquals(range(1, 5), userIds(mapper.getUserInfoList(Arrays.asList(3L, 1L, 5L, 2L, 4L))));
+
+        List<Long> streamed = new ArrayList<>();
+        try (Cursor<User> cursor = mapper.streamUserList(null, null, null)) {
+            for (User user : cursor) {
+                streamed.add(user.getUserId());
+            }
+        }
+        assertEquals(range(1, USERS), streamed);
+    }
+
+    @Test
+    public void usersStayReadableWhileMigrating() {
+        UserShards migrating = new UserShards(shards, 2);
+        ShardedUserMapper mapper = mapper(migrating);
+        for (long i = 1; i <= USERS; i++) {
+            assertNotNull(mapper.getUserInfo(i));
+        }
+        long moved = firstMovedUserId(migrating);
+        User renamed = user(moved);
+        renamed.setUserName("renamed");
+        assertEquals(1, mapper.upUser(renamed));
+
+        long count = new UserShardMigrator(migrating, 7).migrate();
+
+        assertEquals(0, databases[0].userMapper().getUserList(null, null, USERS).stream()
+                .filter(user -> migrating.locate(user.getUserId()).getIndex() != 0).count());
+        ShardedUserMapper migrated = mapper(new UserShards(shards, 0));
+        for (long i = 1; i <= USERS; i++) {
+            UserShard target = migrating.locate(i);
+            assertNotNull(databases[target.getIndex()].userMapper().getUserInfo(i));
+            assertNotNull(migrated.getUserInfo(i));
+        }
+        assertEquals(range(1, USERS), userIds(migrated.getUserList(null, null, USERS)));
+        assertEquals("renamed", migrated.getUserInfo(moved).getUserName());
+        assertEquals(count, databases[2].userMapper().getUserList(null, null, USERS).size());
+    }
+
+    private long firstMovedUserId(UserShards migrating) {
+        for (long i = 1; i <= USERS; i++) {
+            if (migrating.previousLocation(i) != null) {
+                return i;
+            }
+        }
+        throw new AssertionError("no user moves to the new shard");
+    }
+
+    private static ShardedUserMapper mapper(UserShards userShards) {
+        return new ShardedUserMapper(userShards, Runnable::run);
+    }
+
+    private static User user(long userId) {
+        User user = new User();
+        user.setUserId(userId);
+        user.setUserName(String.format("user%04d", userId));
+        user.setLoginPassword("hash");
+        user.setUserSex("male");
+        return user;
+    }
+
+    private static List<Long> userIds(List<User> users) {
+        List<Long> userIds = new ArrayList<>();
+        for (User user : users) {
+            userIds.add(user.getUserId());
+        }
+        return userIds;
+    }
+
+    private static List<Long> range(long from, long to) {
+        List<Long> userIds = new ArrayList<>();
+        for (long i = from; i <= to; i++) {
+            userIds.add(i);
+        }
+        return userIds;
+    }
+}
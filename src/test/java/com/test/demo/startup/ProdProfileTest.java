@@ -0,0 +1,101 @@
+package com.test.demo.startup;
+
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.session.Configuration;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProdProfileTest {
+
+    @Test
+    public void applicationBeansAreDeferredUnlessTheyReactToStartup() {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.addBeanFactoryPostProcessor(new LazyInitBeanFactoryPostProcessor("com.test.demo"));
+        context.register(Plain.class, Listening.class, Eager.class, Factory.class);
+        context.refresh();
+        try {
+            assertFalse(context.getBeanFactory().containsSingleton("prodProfileTest.Plain"));
+            assertFalse(context.getBeanFactory().containsSingleton("deferred"));
+            assertTrue(context.getBeanFactory().containsSingleton("prodProfileTest.Listening"));
+            assertTrue(context.getBeanFactory().containsSingleton("prodProfileTest.Eager"));
+            assertTrue(context.getBeanFactory().containsSingleton("prodProfileTest.Factory"));
+            assertTrue(context.getBeanFactory().containsSingleton("eager"));
+
+            context.getBean("prodProfileTest.Plain");
+            assertTrue(context.getBeanFactory().containsSingleton("prodProfileTest.Plain"));
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * prod 下逐个列出的映射文件要覆盖 mapper/*.xml,并且不依赖别名包就能解析
+     */
+    @Test
+    public void prodMapperLocationsCoverEveryMapperAndParseWithoutAliases() throws Exception {
+        Properties prod = PropertiesLoaderUtils.loadProperties(new ClassPathResource("application-prod.properties"));
+        Set<String> listed = new TreeSet<>();
+        Configuration configuration = new Configuration();
+        for (String location : prod.getProperty("mybatis.mapperLocations").split(",")) {
+            Resource resource = new ClassPathResource(location.trim().substring("classpath:".length()));
+            listed.add(resource.getFilename());
+            try (InputStream in = resource.getInputStream()) {
+                new XMLMapperBuilder(in, configuration, resource.toString(), configuration.getSqlFragments()).parse();
+            }
+        }
+        Set<String> all = new TreeSet<>();
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources("classpath*:mapper/*.xml")) {
+            all.add(resource.getFilename());
+        }
+        assertEquals(all, listed);
+        assertTrue(configuration.hasStatement("com.test.demo.dao.UserMapper.getUserViewList"));
+        assertEquals("", prod.getProperty("mybatis.type-aliases-package"));
+    }
+
+    @Component
+    static class Plain {
+    }
+
+    @Component
+    static class Listening {
+        @EventListener
+        public void on(Object event) {
+        }
+    }
+
+    @Component
+    @Lazy(false)
+    static class Eager {
+    }
+
+    @org.springframework.context.annotation.Configuration
+    static class Factory {
+        @Bean
+        public Plain deferred() {
+            return new Plain();
+        }
+
+        @Bean
+        @Lazy(false)
+        public Plain eager() {
+            return new Plain();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.test.demo.support;
+
+import com.test.demo.dao.UserMapper;
+import com.test.demo.dao.UserOutboxMapper;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * MySQL 兼容模式的 H2 内存库,建表语句和映射文件都用 main 里的正式版本
+ * 事务工厂与线上一致(SpringManagedTransactionFactory),可以配合 DataSourceTransactionManager 使用
+ */
+public class H2UserDatabase {
+    private final PooledDataSource dataSource;
+    private final SqlSessionFactory sqlSessionFactory;
+
+    public H2UserDatabase(String name) {
+        dataSource = new PooledDataSource("org.h2.Driver",
+                "jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Connection connection = dataSource.getConnection()) {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/schema.sql"));
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        sqlSessionFactory = sqlSessionFactory(name, dataSource);
+    }
+
+    /**
+     * 用 main 里的映射文件在任意数据源上建 SqlSessionFactory,例如包装了多个 H2 库的路由数据源
+     */
+    public static SqlSessionFactory sqlSessionFactory(String environment, DataSource dataSource) {
+        Configuration configuration = new Configuration(new Environment(environment, new SpringManagedTransactionFactory(), dataSource));
+        configuration.getTypeAliasRegistry().registerAliases("com.test.demo.model");
+        for (String mapper : new String[]{"mapper/UserMapper.xml", "mapper/UserOutboxMapper.xml",
+                "mapper/UserReshardMapper.xml"}) {
+            try (InputStream in = new ClassPathResource(mapper).getInputStream()) {
+                new XMLMapperBuilder(in, configuration, mapper, configuration.getSqlFragments()).parse();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return new SqlSessionFactoryBuilder().build(configuration);
+    }
+
+    public DataSource dataSource() {
+        return dataSource;
+    }
+
+    public SqlSessionFactory sqlSessionFactory() {
+        return sqlSessionFactory;
+    }
+
+    /**
+     * 与线上 MapperFactoryBean 一样经过 SqlSessionTemplate,每次调用独立的会话
+     */
+    public UserMapper userMapper() {
+        return new SqlSessionTemplate(sqlSessionFactory).getMapper(UserMapper.class);
+    }
+
+    public UserOutboxMapper outboxMapper() {
+        return new SqlSessionTemplate(sqlSessionFactory).getMapper(UserOutboxMapper.class);
+    }
+
+    /**
+     * 插入 user_id 为 1..count 的用户,user_name 为 user0001 形式
+     */
+    public void seed(int count) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "INSERT INTO user (user_id,user_name,login_password,user_sex) VALUES (?,?,?,?)")) {
+            connection.setAutoCommit(false);
+            for (int i = 1; i <= count; i++) {
+                statement.setLong(1, i);
+                statement.setString(2, String.format("user%04d", i));
+                statement.setString(3, "$2a$10$N9qo8uLOickgx2ZMRZoMyeIjZAgcfl7p92ldGxad68LJZdL17lhWy");
+                statement.setString(4, i % 2 == 0 ? "female" : "male");
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            connection.commit();
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void close() {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.createStatement().execute("SHUTDOWN");
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        dataSource.forceCloseAll();
+    }
+}
@@ -0,0 +1,281 @@
+package com.test.demo.support;
+
+import com.test.demo.codec.CodecRedisSerializer;
+import com.test.demo.comfig.RedisConfig;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 测试用的进程内 Redis 替身,多个"节点"共享同一份数据和发布订阅频道
+ * 只实现了缓存层、会话令牌、版本戳和布隆过滤器位图用到的命令,值按模板的序列化器编解码以贴近真实行为
+ */
+public class InMemoryRedis {
+    private static final int LUA_MAX_UNPACK = 8000;
+
+    private final Map<String, byte[]> store = new ConcurrentHashMap<>();
+    private final Map<String, Set<ByteBuffer>> sets = new ConcurrentHashMap<>();
+    private final Map<String, List<MessageListener>> subscribers = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Runnable> pendingMessages = new ConcurrentLinkedQueue<>();
+    private volatile boolean holdMessages;
+
+    private final RedisSerializer<Object> valueSerializer;
+    private final RedisTemplate<String, Object> template;
+    private final ValueOperations<String, Object> valueOperations;
+
+    public InMemoryRedis() {
+        this(new CodecRedisSerializer(RedisConfig.valueCodec("binary"), 1024));
+    }
+
+    public InMemoryRedis(RedisSerializer<Object> valueSerializer) {
+        this.valueSerializer = valueSerializer;
+        this.valueOperations = createValueOperations();
+        this.template = new StandInTemplate();
+        this.template.setValueSerializer(valueSerializer);
+    }
+
+    public RedisTemplate<String, Object> template() {
+        return template;
+    }
+
+    public ValueOperations<String, Object> valueOperations() {
+        return valueOperations;
+    }
+
+    public void subscribe(String channel, MessageListener listener) {
+        subscribers.computeIfAbsent(channel, c -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    /**
+     * 暂存发布的消息,直到调用 deliverPending,用于模拟消息在网络上的延迟
+     */
+    public void holdMessages() {
+        holdMessages = true;
+    }
+
+    public void deliverPending() {
+        holdMessages = false;
+        Runnable delivery;
+        while ((delivery = pendingMessages.poll()) != null) {
+            delivery.run();
+        }
+    }
+
+    public boolean containsKey(String key) {
+        return store.containsKey(key) || sets.containsKey(key);
+    }
+
+    public int setSize(String key) {
+        Set<ByteBuffer> members = sets.get(key);
+        return members == null ? 0 : members.size();
+    }
+
+    private Object read(Object key) {
+        byte[] bytes = store.get((String) key);
+        return bytes == null ? null : valueSerializer.deserialize(bytes);
+    }
+
+    private void write(String key, Object value) {
+        store.put(key, valueSerializer.serialize(value));
+    }
+
+    /**
+     * 与 Redis 一致: 位图按字节从高位起编号,写到超出长度的位置时补 0 扩展
+     */
+    private boolean setBit(String key, long offset, boolean value) {
+        boolean[] previous = new boolean[1];
+        store.compute(key, (k, old) -> {
+            int index = (int) (offset / Byte.SIZE);
+            byte[] bytes = old == null ? new byte[index + 1] : Arrays.copyOf(old, Math.max(old.length, index + 1));
+            int mask = 0x80 >>> (offset % Byte.SIZE);
+            previous[0] = (bytes[index] & mask) != 0;
+            bytes[index] = (byte) (value ? bytes[index] | mask : bytes[index] & ~mask);
+            return bytes;
+        });
+        return previous[0];
+    }
+
+    private byte[] getRange(byte[] key, long start, long end) {
+        byte[] bytes = store.get(new String(key, StandardCharsets.UTF_8));
+        if (bytes == null || start >= bytes.length) {
+            return new byte[0];
+        }
+        return Arrays.copyOfRange(bytes, (int) start, (int) Math.min(bytes.length, end + 1));
+    }
+
+    private void setRange(byte[] key, byte[] value, long offset) {
+        store.compute(new String(key, StandardCharsets.UTF_8), (k, old) -> {
+            byte[] bytes = old == null ? new byte[0] : old;
+            if (bytes.length < offset + value.length) {
+                bytes = Arrays.copyOf(bytes, (int) offset + value.length);
+            }
+            System.arraycopy(value, 0, bytes, (int) offset, value.length);
+            return bytes;
+        });
+    }
+
+    /**
+     * 只支持 GETRANGE/SETRANGE 的原始连接
+     */
+    private RedisConnection createConnection() {
+        return (RedisConnection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RedisConnection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getRange":
+                            return getRange((byte[]) args[0], (Long) args[1], (Long) args[2]);
+                        case "setRange":
+                            setRange((byte[]) args[0], (byte[]) args[1], (Long) args[2]);
+                            return null;
+                        case "toString":
+                            return "InMemoryRedisConnection";
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private ValueOperations<String, Object> createValueOperations() {
+        return (ValueOperations<String, Object>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ValueOperations.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "get":
+                            return read(args[0]);
+                        case "set":
+                            write((String) args[0], args[1]);
+                            return null;
+                        case "setIfAbsent":
+                            return store.putIfAbsent((String) args[0], valueSerializer.serialize(args[1])) == null;
+                        case "multiGet":
+                            List<Object> values = new ArrayList<>();
+                            for (Object key : (Collection<?>) args[0]) {
+                                values.add(read(key));
+                            }
+                            return values;
+                        case "increment":
+                            long delta = args.length > 1 ? ((Number) args[1]).longValue() : 1L;
+                            byte[] next = store.compute((String) args[0], (k, old) -> {
+                                long current = old == null ? 0 : Long.parseLong(new String(old, StandardCharsets.UTF_8));
+                                return String.valueOf(current + delta).getBytes(StandardCharsets.UTF_8);
+                            });
+                            return Long.parseLong(new String(next, StandardCharsets.UTF_8));
+                        case "setBit":
+                            return setBit((String) args[0], (Long) args[1], (Boolean) args[2]);
+                        case "toString":
+                            return "InMemoryValueOperations";
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private class StandInTemplate extends RedisTemplate<String, Object> {
+        @Override
+        public ValueOperations<String, Object> opsForValue() {
+            return valueOperations;
+        }
+
+        @Override
+        public Boolean hasKey(String key) {
+            return store.containsKey(key);
+        }
+
+        /**
+         * 替身不做过期,只返回 key 是否存在
+         */
+        @Override
+        public Boolean expire(String key, long timeout, TimeUnit unit) {
+            return store.containsKey(key);
+        }
+
+        @Override
+        public Boolean delete(String key) {
+            return store.remove(key) != null;
+        }
+
+        @Override
+        public Long delete(Collection<String> keys) {
+            long removed = 0;
+            for (String key : keys) {
+                if (store.remove(key) != null) {
+                    removed++;
+                }
+            }
+            return removed;
+        }
+
+        /**
+         * 只支持 RedisService 的写入并设置过期脚本(ARGV[1] 命令 ARGV[2] 过期秒数 ARGV[3..] 参数)中的 SADD,
+         * 与真实 Redis 一样,unpack 超过 Lua 栈上限(8000)时报错
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T execute(RedisScript<T> script, RedisSerializer<?> argsSerializer, RedisSerializer<T> resultSerializer,
+                             List<String> keys, Object... args) {
+            if (args.length - 2 >= LUA_MAX_UNPACK) {
+                throw new RedisSystemException("ERR Error running script: too many results to unpack", null);
+            }
+            String command = new String((byte[]) args[0], StandardCharsets.UTF_8);
+            if (!"SADD".equals(command)) {
+                throw new UnsupportedOperationException(command);
+            }
+            Set<ByteBuffer> members = sets.computeIfAbsent(keys.get(0), k -> ConcurrentHashMap.newKeySet());
+            long added = 0;
+            for (int i = 2; i < args.length; i++) {
+                if (members.add(ByteBuffer.wrap((byte[]) args[i]))) {
+                    added++;
+                }
+            }
+            return (T) Long.valueOf(added);
+        }
+
+        @Override
+        public <T> T execute(RedisCallback<T> action) {
+            return action.doInRedis(createConnection());
+        }
+
+        /**
+         * 回调里的命令逐条直接执行,不收集返回值
+         */
+        @Override
+        public List<Object> executePipelined(SessionCallback<?> session) {
+            session.execute(this);
+            return new ArrayList<>();
+        }
+
+        @Override
+        public void convertAndSend(String channel, Object message) {
+            byte[] body = valueSerializer.serialize(message);
+            DefaultMessage redisMessage = new DefaultMessage(channel.getBytes(StandardCharsets.UTF_8), body);
+            for (MessageListener listener : subscribers.getOrDefault(channel, new ArrayList<>())) {
+                Runnable delivery = () -> listener.onMessage(redisMessage, null);
+                if (holdMessages) {
+                    pendingMessages.add(delivery);
+                } else {
+                    delivery.run();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.test.demo.warmup;
+
+import com.test.demo.cache.UserCache;
+import com.test.demo.model.UserIdRange;
+import com.test.demo.shard.ShardedUserMapper;
+import com.test.demo.shard.UserShard;
+import com.test.demo.shard.UserShards;
+import com.test.demo.support.H2UserDatabase;
+import com.test.demo.support.InMemoryRedis;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 两个节点共享一个 Redis 替身: 第一个节点预热后两个节点都就绪,Redis 丢数据后重新预热
+ */
+public class UserCacheWarmerTest {
+    private static final int USERS = 1000;
+
+    private H2UserDatabase db;
+    private InMemoryRedis redis;
+    private UserShards shards;
+
+    @Before
+    public void setUp() {
+        db = new H2UserDatabase("warmup");
+        db.seed(USERS);
+        redis = new InMemoryRedis();
+        shards = new UserShards(Collections.singletonList(new UserShard(0, db.sqlSessionFactory(),
+                new TransactionTemplate(new DataSourceTransactionManager(db.dataSource())))), 0);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void firstNodeWarmsAllRangesAndBothBecomeReady() {
+        UserCacheWarmer nodeA = newNode();
+        UserCacheWarmer nodeB = newNode();
+        assertFalse(nodeA.isReady());
+
+        nodeA.check();
+        assertTrue(nodeA.isReady());
+        assertEquals(1.0, nodeA.getProgress(), 0);
+        assertEquals((long) USERS, nodeA.stats().get("warmedRows"));
+        for (long userId = 1; userId <= USERS; userId++) {
+            assertTrue(redis.containsKey(UserCache.KEY_PREFIX + userId));
+        }
+
+        //缓存已经是热的,第二个节点不再扫表
+        nodeB.check();
+        assertTrue(nodeB.isReady());
+        assertEquals(0L, nodeB.stats().get("warmedRows"));
+    }
+
+    @Test
+    public void warmsAgainAfterRedisLosesData() {
+        UserCacheWarmer node = newNode();
+        node.check();
+        List<String> keys = new ArrayList<>();
+        keys.add("user:cache:warmup:done");
+        for (long userId = 1; userId <= USERS; userId++) {
+            keys.add(UserCache.KEY_PREFIX + userId);
+        }
+        redis.template().delete(keys);
+
+        node.check();
+        assertTrue(node.isReady());
+        assertTrue(redis.containsKey("user:cache:warmup:done"));
+        assertTrue(redis.containsKey(UserCache.KEY_PREFIX + USERS));
+        assertFalse(redis.containsKey("user:cache:warmup:lock"));
+    }
+
+    @Test
+    public void rangesCoverAllIdsWithoutOverlap() {
+        long min = 1L << 40;
+        long max = Long.MAX_VALUE - 1;
+        List<UserCacheWarmer.Range> ranges = UserCacheWarmer.split(null, new UserIdRange(min, max, 10), 7);
+        assertEquals(7, ranges.size());
+        assertEquals(min - 1, ranges.get(0).after);
+        for (int i = 1; i < ranges.size(); i++) {
+            assertEquals(ranges.get(i - 1).upTo, ranges.get(i).after);
+        }
+        assertEquals(max, ranges.get(ranges.size() - 1).upTo);
+        assertEquals(1, UserCacheWarmer.split(null, new UserIdRange(5L, 5L, 1), 7).size());
+    }
+
+    private UserCacheWarmer newNode() {
+        UserCache cache = new UserCache();
+        ReflectionTestUtils.setField(cache, "redisTemplate", redis.template());
+        ReflectionTestUtils.setField(cache, "valueOperations", redis.valueOperations());
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 60L);
+        ReflectionTestUtils.setField(cache, "nearMaximumSize", 100L);
+        ReflectionTestUtils.setField(cache, "invalidationTopic", "user:cache:invalidate");
+        cache.init();
+
+        CacheWarmupProperties properties = new CacheWarmupProperties();
+        properties.setThreads(3);
+        properties.setRangesPerShard(7);
+        properties.setPageSize(50);
+        properties.setMaxRowsPerSecond(0);
+        UserCacheWarmer warmer = new UserCacheWarmer();
+        warmer.userShards = shards;
+        warmer.userMapper = new ShardedUserMapper(shards, Runnable::run);
+        warmer.userCache = cache;
+        ReflectionTestUtils.setField(warmer, "redisTemplate", redis.template());
+        ReflectionTestUtils.setField(warmer, "valueOperations", redis.valueOperations());
+        ReflectionTestUtils.setField(warmer, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(warmer, "properties", properties);
+        return warmer;
+    }
+}